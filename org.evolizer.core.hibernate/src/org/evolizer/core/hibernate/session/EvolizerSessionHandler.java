@@ -16,9 +16,14 @@
 package org.evolizer.core.hibernate.session;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.eclipse.core.resources.IProject;
@@ -32,13 +37,23 @@ import org.evolizer.core.hibernate.EvolizerHibernatePlugin;
 import org.evolizer.core.hibernate.model.api.IEvolizerModelEntity;
 import org.evolizer.core.hibernate.model.api.IEvolizerModelProvider;
 import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.core.hibernate.session.api.IEvolizerUnitOfWork;
+import org.evolizer.core.hibernate.session.internal.BoundedCache;
+import org.evolizer.core.hibernate.session.internal.BoundedCacheProvider;
 import org.evolizer.core.hibernate.session.internal.EvolizerSessionImpl;
+import org.evolizer.core.hibernate.session.internal.PooledConnectionProvider;
 import org.evolizer.core.preferences.EvolizerPreferences;
+import org.hibernate.FlushMode;
 import org.hibernate.HibernateException;
 import org.hibernate.MappingException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cache.RegionFactory;
+import org.hibernate.cache.UpdateTimestampsCache;
+import org.hibernate.cache.impl.bridge.RegionFactoryCacheProviderBridge;
 import org.hibernate.cfg.AnnotationConfiguration;
+import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.tool.hbm2ddl.SchemaExport;
 import org.hibernate.tool.hbm2ddl.SchemaUpdate;
 
@@ -59,6 +74,12 @@ import org.hibernate.tool.hbm2ddl.SchemaUpdate;
  * e.g., because of lazy loading. Therefore, the session should be opened when the view is created and closed when the
  * view is closed.
  * 
+ * Jobs and analyses that run concurrently with other database clients should use a unit of work instead of the
+ * shared session: {@link #beginUnitOfWork(String, boolean)} binds a new session to the calling thread, which is
+ * returned by {@link #getCurrentSession(String)} until {@link #endUnitOfWork(String)} releases it. Each session
+ * obtains its own connection from a {@link PooledConnectionProvider}, hence, read-only units of work of different
+ * threads run in parallel against the same database.
+ * 
  * @author pinzger
  * 
  */
@@ -75,11 +96,47 @@ public class EvolizerSessionHandler {
      */
     private final static String DEFAULT_DRIVER = "com.mysql.jdbc.Driver";
 
+    /**
+     * Default maximum number of pooled connections per database
+     */
+    private final static String DEFAULT_POOL_SIZE = "8";
+    /**
+     * Default milliseconds to wait for a pooled connection
+     */
+    private final static String DEFAULT_POOL_CHECKOUT_TIMEOUT = "30000";
+    /**
+     * Default milliseconds after which an idle pooled connection is closed
+     */
+    private final static String DEFAULT_POOL_IDLE_TIMEOUT = "300000";
+    /**
+     * Default maximum number of elements per second-level cache region
+     */
+    private final static String DEFAULT_CACHE_MAX_ELEMENTS = "10000";
+    /**
+     * Default number of prepared statements cached per MySQL connection
+     */
+    private final static String DEFAULT_STATEMENT_CACHE_SIZE = "250";
+    /**
+     * Default maximum length of the SQL of prepared statements cached by the MySQL driver
+     */
+    private final static String DEFAULT_STATEMENT_CACHE_SQL_LIMIT = "2048";
+
     /**
      * Singleton of EvolizerSessionHandler
      */
     private static EvolizerSessionHandler fSessionHandler = null;
 
+    /**
+     * Map of dbURL to the unit of work bound to the current thread.
+     */
+    private static final ThreadLocal<Map<String, UnitOfWork>> sfUnitsOfWork = new ThreadLocal<Map<String, UnitOfWork>>() {
+
+        @Override
+        protected Map<String, UnitOfWork> initialValue() {
+            return new HashMap<String, UnitOfWork>();
+        }
+    };
+
     /**
      * Map caching Hibernate session factories. There is one session factory per database.
      */
@@ -95,6 +152,31 @@ public class EvolizerSessionHandler {
      */
     private Hashtable<String, Properties> fConnectionPropertiesMap = new Hashtable<String, Properties>();
 
+    /**
+     * Sessions of the open units of work of all threads, closed on cleanup.
+     */
+    private Set<IEvolizerSession> fUnitOfWorkSessions = Collections.synchronizedSet(new HashSet<IEvolizerSession>());
+
+    /**
+     * Map of dbURL to the number of open writing units of work of all threads.
+     */
+    private Map<String, Integer> fNrOfWritingUnitsOfWork = new HashMap<String, Integer>();
+
+    /**
+     * A session bound to a thread and the number of nested units of work using it.
+     */
+    private static class UnitOfWork {
+
+        private IEvolizerSession fSession;
+        private boolean fReadOnly;
+        private int fDepth = 1;
+
+        UnitOfWork(IEvolizerSession session, boolean readOnly) {
+            fSession = session;
+            fReadOnly = readOnly;
+        }
+    }
+
     /**
      * Hidden default constructor.
      */
@@ -105,7 +187,7 @@ public class EvolizerSessionHandler {
      * 
      * @return The single instance of the current {@link EvolizerSessionHandler}
      */
-    public static EvolizerSessionHandler getHandler() {
+    public static synchronized EvolizerSessionHandler getHandler() {
         if (fSessionHandler == null) {
             fSessionHandler = new EvolizerSessionHandler();
         }
@@ -113,9 +195,9 @@ public class EvolizerSessionHandler {
     }
 
     /**
-     * Obtains the current session for the given the Url of the database. Keep in mind that ThreadLocal has to be
-     * activated: current_session_context_class = "thread" This method can only be used after the Hibernate session has
-     * been initialized.
+     * Obtains the current session for the given the Url of the database. If the calling thread has begun a unit of
+     * work on the database, its session is returned, otherwise the session shared by all threads. This method can
+     * only be used after the Hibernate session has been initialized.
      * 
      * @param dbUrl
      *            URL of the database in the form of <code>dbHost/dbName</code>, e.g.,
@@ -127,6 +209,11 @@ public class EvolizerSessionHandler {
     public IEvolizerSession getCurrentSession(String dbUrl) throws EvolizerException {
         IEvolizerSession session = null;
 
+        UnitOfWork unitOfWork = sfUnitsOfWork.get().get(dbUrl);
+        if ((unitOfWork != null) && unitOfWork.fSession.isOpen()) {
+            return unitOfWork.fSession;
+        }
+
         try {
             if (fSessionMap.containsKey(dbUrl) && fSessionMap.get(dbUrl).isOpen()) {
                 session = fSessionMap.get(dbUrl);
@@ -200,6 +287,232 @@ public class EvolizerSessionHandler {
         return session;
     }
 
+    /**
+     * Begins a unit of work on the given database and binds its session to the calling thread. Until the unit of
+     * work is ended, {@link #getCurrentSession(String)} returns this session in the calling thread. A unit of work
+     * begun while another one on the same database is open in the calling thread joins the open one and shares its
+     * session. Read-only units of work never flush their session. Writing units of work must commit their changes
+     * with {@link IEvolizerSession#startTransaction()} and {@link IEvolizerSession#endTransaction()}, changes that
+     * have not been committed when the unit of work ends are discarded.
+     * 
+     * Each call must be paired with a call of {@link #endUnitOfWork(String)} in a finally block, or use
+     * {@link #executeUnitOfWork(String, boolean, IEvolizerUnitOfWork)}.
+     * 
+     * @param dbUrl
+     *            URL of the database in the form of <code>dbHost/dbName</code>.
+     * @param readOnly
+     *            true, if the unit of work only reads from the database.
+     * @return the session of the unit of work.
+     * @throws EvolizerException
+     *             if the session factory has not been initialized, the session could not be opened, or a writing
+     *             unit of work is nested in a read-only one.
+     */
+    public IEvolizerSession beginUnitOfWork(String dbUrl, boolean readOnly) throws EvolizerException {
+        Map<String, UnitOfWork> unitsOfWork = sfUnitsOfWork.get();
+        UnitOfWork unitOfWork = unitsOfWork.get(dbUrl);
+        if ((unitOfWork != null) && unitOfWork.fSession.isOpen()) {
+            if (unitOfWork.fReadOnly && !readOnly) {
+                throw new EvolizerException("Cannot begin a writing unit of work on '" + dbUrl
+                        + "' within a read-only unit of work");
+            }
+            unitOfWork.fDepth++;
+            return unitOfWork.fSession;
+        }
+
+        SessionFactory sessionFactory = getSessionFactory(dbUrl);
+        if (sessionFactory == null) {
+            throw new EvolizerException("Evolizer session factory for '" + dbUrl + "' has not been initialized.");
+        }
+
+        try {
+            Session hibernateSession = sessionFactory.openSession();
+            if (readOnly) {
+                hibernateSession.setFlushMode(FlushMode.MANUAL);
+            }
+            unitOfWork = new UnitOfWork(new EvolizerSessionImpl(hibernateSession), readOnly);
+        } catch (HibernateException he) {
+            throw new EvolizerException(he);
+        }
+        unitsOfWork.put(dbUrl, unitOfWork);
+        fUnitOfWorkSessions.add(unitOfWork.fSession);
+        if (!readOnly) {
+            updateNrOfWritingUnitsOfWork(dbUrl, 1);
+        }
+
+        return unitOfWork.fSession;
+    }
+
+    /**
+     * Begins a unit of work on the database configured by the Evolizer properties of the given project and
+     * initializes the session factory if needed.
+     * 
+     * @param project
+     *            the Eclipse project containing Evolizer properties.
+     * @param readOnly
+     *            true, if the unit of work only reads from the database.
+     * @return the session of the unit of work.
+     * @throws EvolizerException
+     *             if the session could not be opened.
+     * @see #beginUnitOfWork(String, boolean)
+     */
+    public IEvolizerSession beginUnitOfWork(IProject project, boolean readOnly) throws EvolizerException {
+        String dbUrl = getDBUrl(project);
+        if (getSessionFactory(dbUrl) == null) {
+            initSessionFactory(project);
+        }
+
+        return beginUnitOfWork(dbUrl, readOnly);
+    }
+
+    /**
+     * Ends the unit of work on the given database of the calling thread. When the outermost unit of work ends, a
+     * transaction left open is rolled back, changes that have not been committed are discarded, and the session is
+     * closed, which returns its connection to the pool.
+     * 
+     * @param dbUrl
+     *            URL of the database in the form of <code>dbHost/dbName</code>.
+     * @throws EvolizerException
+     *             if the calling thread has no unit of work on the database, or the session could not be released.
+     */
+    public void endUnitOfWork(String dbUrl) throws EvolizerException {
+        Map<String, UnitOfWork> unitsOfWork = sfUnitsOfWork.get();
+        UnitOfWork unitOfWork = unitsOfWork.get(dbUrl);
+        if (unitOfWork == null) {
+            throw new EvolizerException("No unit of work on '" + dbUrl + "' has been begun by the current thread");
+        }
+        if (--unitOfWork.fDepth > 0) {
+            return;
+        }
+
+        unitsOfWork.remove(dbUrl);
+        if (unitsOfWork.isEmpty()) {
+            sfUnitsOfWork.remove();
+        }
+        fUnitOfWorkSessions.remove(unitOfWork.fSession);
+        if (!unitOfWork.fReadOnly) {
+            updateNrOfWritingUnitsOfWork(dbUrl, -1);
+        }
+        release(unitOfWork.fSession);
+    }
+
+    /**
+     * Adds the given value to the number of open writing units of work on the given database.
+     * 
+     * @param dbUrl
+     *            URL of the database in the form of <code>dbHost/dbName</code>.
+     * @param delta
+     *            1 for a begun, -1 for an ended unit of work.
+     */
+    private void updateNrOfWritingUnitsOfWork(String dbUrl, int delta) {
+        synchronized (fNrOfWritingUnitsOfWork) {
+            Integer nrOfUnitsOfWork = fNrOfWritingUnitsOfWork.get(dbUrl);
+            int newNrOfUnitsOfWork = ((nrOfUnitsOfWork != null) ? nrOfUnitsOfWork.intValue() : 0) + delta;
+            if (newNrOfUnitsOfWork > 0) {
+                fNrOfWritingUnitsOfWork.put(dbUrl, Integer.valueOf(newNrOfUnitsOfWork));
+            } else {
+                fNrOfWritingUnitsOfWork.remove(dbUrl);
+            }
+        }
+    }
+
+    /**
+     * Executes the given unit of work with a session bound to the calling thread and releases the session
+     * afterwards, also if the unit of work fails.
+     * 
+     * @param <T>
+     *            The type of the result.
+     * @param dbUrl
+     *            URL of the database in the form of <code>dbHost/dbName</code>.
+     * @param readOnly
+     *            true, if the unit of work only reads from the database.
+     * @param work
+     *            The unit of work.
+     * @return The result of the unit of work.
+     * @throws EvolizerException
+     *             if the session could not be opened or the unit of work failed.
+     * @see #beginUnitOfWork(String, boolean)
+     */
+    public <T> T executeUnitOfWork(String dbUrl, boolean readOnly, IEvolizerUnitOfWork<T> work)
+            throws EvolizerException {
+        IEvolizerSession session = beginUnitOfWork(dbUrl, readOnly);
+        boolean completed = false;
+        try {
+            T result = work.execute(session);
+            completed = true;
+            return result;
+        } finally {
+            try {
+                endUnitOfWork(dbUrl);
+            } catch (EvolizerException ee) {
+                if (completed) {
+                    throw ee;
+                }
+                sfLogger.error("Error while releasing the unit of work on '" + dbUrl + "'", ee);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the calling thread has an open unit of work on the given database.
+     * 
+     * @param dbUrl
+     *            URL of the database in the form of <code>dbHost/dbName</code>.
+     * @return true, if the calling thread has begun a unit of work that has not ended yet.
+     */
+    public boolean isInUnitOfWork(String dbUrl) {
+        UnitOfWork unitOfWork = sfUnitsOfWork.get().get(dbUrl);
+        return (unitOfWork != null) && unitOfWork.fSession.isOpen();
+    }
+
+    /**
+     * Checks whether a thread other than the calling one has an open writing unit of work on the given database.
+     * Writes through the shared session returned outside of units of work, and writes of other processes, are not
+     * detected.
+     * 
+     * @param dbUrl
+     *            URL of the database in the form of <code>dbHost/dbName</code>.
+     * @return true, if a writing unit of work of another thread has not ended yet.
+     */
+    public boolean hasOtherWritingUnitOfWork(String dbUrl) {
+        UnitOfWork unitOfWork = sfUnitsOfWork.get().get(dbUrl);
+        int ownNrOfUnitsOfWork = ((unitOfWork != null) && !unitOfWork.fReadOnly) ? 1 : 0;
+        synchronized (fNrOfWritingUnitsOfWork) {
+            Integer nrOfUnitsOfWork = fNrOfWritingUnitsOfWork.get(dbUrl);
+            return (nrOfUnitsOfWork != null) && (nrOfUnitsOfWork.intValue() > ownNrOfUnitsOfWork);
+        }
+    }
+
+    /**
+     * Releases the session of a unit of work. An open transaction is rolled back and the session is cleared, such
+     * that changes that have not been committed are discarded and closing the session does not write to the
+     * database.
+     * 
+     * @param session
+     *            The session.
+     * @throws EvolizerException
+     *             if the session could not be closed.
+     */
+    private void release(IEvolizerSession session) throws EvolizerException {
+        if (!session.isOpen()) {
+            return;
+        }
+
+        try {
+            Transaction transaction = session.getHibernateSession().getTransaction();
+            if ((transaction != null) && transaction.isActive()) {
+                sfLogger.warn("Rolling back the transaction left open by a unit of work");
+                transaction.rollback();
+            }
+            session.clear();
+            session.close();
+        } catch (HibernateException he) {
+            if (session.getHibernateSession().isOpen()) {
+                session.getHibernateSession().close();
+            }
+            throw new EvolizerException(he);
+        }
+    }
+
     /**
      * Initializes the Hibernate session factory with the given dbUrl, dbUser, and dbPassword. Each newly initializes
      * session factory is remembered in the session factory map.
@@ -236,7 +549,7 @@ public class EvolizerSessionHandler {
      * @param properties  Hibernate configuration parameters
      * @throws EvolizerException  
      */
-    public void initSessionFactory(Properties properties) throws EvolizerException {
+    public synchronized void initSessionFactory(Properties properties) throws EvolizerException {
         try {
             if (properties.getProperty("hibernate.connection.url") != null) {
                 String dbUrl = properties.getProperty("hibernate.connection.url");
@@ -260,7 +573,20 @@ public class EvolizerSessionHandler {
      * Cleanup all open Hibernate sessions. Should be used when an application is closed.
      */
     public void cleanupHibernateSessions() {
-        for (String dbUrl : fSessionMap.keySet()) {
+        synchronized (fUnitOfWorkSessions) {
+            for (IEvolizerSession session : fUnitOfWorkSessions) {
+                if (session.isOpen()) {
+                    session.getHibernateSession().close();
+                }
+            }
+            fUnitOfWorkSessions.clear();
+        }
+        synchronized (fNrOfWritingUnitsOfWork) {
+            fNrOfWritingUnitsOfWork.clear();
+        }
+        sfUnitsOfWork.remove();
+
+        for (String dbUrl : new ArrayList<String>(fSessionMap.keySet())) {
             if (fSessionMap.get(dbUrl).isOpen()) {
                 fSessionMap.get(dbUrl).close();
                 fSessionMap.remove(dbUrl);
@@ -274,13 +600,84 @@ public class EvolizerSessionHandler {
      * Cleanup open Hibernate session factories.
      */
     private void cleanupHibernateSessionFactories() {
-        for (String dbUrl : fSessionFactoryMap.keySet()) {
+        for (String dbUrl : new ArrayList<String>(fSessionFactoryMap.keySet())) {
             fSessionFactoryMap.get(dbUrl).close();
             fSessionFactoryMap.remove(dbUrl);
             fConnectionPropertiesMap.remove(dbUrl);
         }
     }
 
+    /**
+     * Returns the second-level cache regions of the given database. Their hit and miss counts show how well the
+     * cache serves repeated reads.
+     * 
+     * @param dbUrl
+     *            URL of the database in the form of <code>dbHost/dbName</code>.
+     * @return the cache regions, empty if the session factory has not been initialized or does not use a
+     *         {@link BoundedCacheProvider}.
+     * @throws EvolizerException
+     *             if the session factory could not be obtained
+     */
+    public List<BoundedCache> getCaches(String dbUrl) throws EvolizerException {
+        SessionFactory sessionFactory = getSessionFactory(dbUrl);
+        if (sessionFactory instanceof SessionFactoryImplementor) {
+            RegionFactory regionFactory = ((SessionFactoryImplementor) sessionFactory).getSettings().getRegionFactory();
+            if ((regionFactory instanceof RegionFactoryCacheProviderBridge)
+                    && (((RegionFactoryCacheProviderBridge) regionFactory).getCacheProvider() instanceof BoundedCacheProvider)) {
+                return ((BoundedCacheProvider) ((RegionFactoryCacheProviderBridge) regionFactory).getCacheProvider()).getCaches();
+            }
+        }
+
+        return new ArrayList<BoundedCache>();
+    }
+
+    /**
+     * Logs the element, hit, and miss counts of the second-level cache regions of the given database.
+     * 
+     * @param dbUrl
+     *            URL of the database in the form of <code>dbHost/dbName</code>.
+     * @throws EvolizerException
+     *             if the session factory could not be obtained
+     */
+    public void logCacheStatistics(String dbUrl) throws EvolizerException {
+        for (BoundedCache cache : getCaches(dbUrl)) {
+            sfLogger.info(cache.toString());
+        }
+    }
+
+    /**
+     * Evicts all entities, collections, and query results from the second-level cache of the given database.
+     * Needed after writes that bypass Hibernate, e.g., JDBC batches.
+     * 
+     * @param dbUrl
+     *            URL of the database in the form of <code>dbHost/dbName</code>.
+     * @throws EvolizerException
+     *             if the session factory has not been initialized
+     */
+    public void evictCaches(String dbUrl) throws EvolizerException {
+        SessionFactory sessionFactory = getSessionFactory(dbUrl);
+        if (sessionFactory == null) {
+            throw new EvolizerException("Evolizer session factory for '" + dbUrl + "' has not been initialized.");
+        }
+
+        try {
+            for (Object entityName : sessionFactory.getAllClassMetadata().keySet()) {
+                sessionFactory.evictEntity((String) entityName);
+            }
+            for (Object roleName : sessionFactory.getAllCollectionMetadata().keySet()) {
+                sessionFactory.evictCollection((String) roleName);
+            }
+            sessionFactory.evictQueries();
+            for (BoundedCache cache : getCaches(dbUrl)) {
+                if (!cache.getRegionName().endsWith(UpdateTimestampsCache.REGION_NAME)) {
+                    cache.clear();
+                }
+            }
+        } catch (HibernateException he) {
+            throw new EvolizerException(he);
+        }
+    }
+
     /**
      * Helper function using the dbUrl to obtain the Hibernate session factory from the map. If the session factory has
      * not been initializes before, <code>null</code> is returned.
@@ -590,7 +987,12 @@ public class EvolizerSessionHandler {
         properties.setProperty("hibernate.connection.driver_class", dbDriverName);
 
         properties.setProperty("hibernate.jdbc.batch_size", "25");
-        properties.setProperty("hibernate.cache.use_second_level_cache", "false");
+
+        setDefaultPoolConfig(properties);
+        setDefaultCacheConfig(properties);
+        if (dbUrl.startsWith("mysql:")) {
+            setDefaultMySQLStatementCacheConfig(properties);
+        }
 
         // configuration.setProperty("hibernate.current_session_context_class", "thread");
         // configuration.setProperty("hibernate.current_session_context_class", "managed");
@@ -641,9 +1043,55 @@ public class EvolizerSessionHandler {
         //        properties.setProperty("hibernate.cache.provider_class", "org.hibernate.cache.HashtableCacheProvider");
         properties.setProperty("hibernate.hbm2ddl.auto", "create-drop");
 
+        setDefaultPoolConfig(properties);
+        setDefaultCacheConfig(properties);
+
         return properties;
     }
 
+    /**
+     * Configures the given properties to obtain connections from a {@link PooledConnectionProvider} with the
+     * default pool size and timeouts. The pool keeps one idle connection open, which also keeps in-memory
+     * databases alive between sessions.
+     * 
+     * @param properties    The properties to extend.
+     */
+    private static void setDefaultPoolConfig(Properties properties) {
+        properties.setProperty("hibernate.connection.provider_class", PooledConnectionProvider.class.getName());
+        properties.setProperty("hibernate.connection.pool_size", DEFAULT_POOL_SIZE);
+        properties.setProperty(PooledConnectionProvider.POOL_MIN_SIZE, "1");
+        properties.setProperty(PooledConnectionProvider.POOL_CHECKOUT_TIMEOUT, DEFAULT_POOL_CHECKOUT_TIMEOUT);
+        properties.setProperty(PooledConnectionProvider.POOL_IDLE_TIMEOUT, DEFAULT_POOL_IDLE_TIMEOUT);
+    }
+
+    /**
+     * Configures the given properties to cache entities, collections, and query results of stored models in the
+     * bounded in-process regions of a {@link BoundedCacheProvider}. Only entities and collections mapped as
+     * cacheable and queries marked as cacheable are cached.
+     * 
+     * @param properties    The properties to extend.
+     */
+    private static void setDefaultCacheConfig(Properties properties) {
+        properties.setProperty("hibernate.cache.use_second_level_cache", "true");
+        properties.setProperty("hibernate.cache.use_query_cache", "true");
+        properties.setProperty("hibernate.cache.provider_class", BoundedCacheProvider.class.getName());
+        properties.setProperty(BoundedCacheProvider.CACHE_MAX_ELEMENTS, DEFAULT_CACHE_MAX_ELEMENTS);
+    }
+
+    /**
+     * Configures the given properties to cache the prepared statements of the named queries per connection in the
+     * MySQL driver. The statements are prepared on the server, such that repeated lookups reuse the parsed
+     * statements. The properties are passed to the driver by the {@link PooledConnectionProvider}.
+     * 
+     * @param properties    The properties to extend.
+     */
+    private static void setDefaultMySQLStatementCacheConfig(Properties properties) {
+        properties.setProperty("hibernate.connection.cachePrepStmts", "true");
+        properties.setProperty("hibernate.connection.prepStmtCacheSize", DEFAULT_STATEMENT_CACHE_SIZE);
+        properties.setProperty("hibernate.connection.prepStmtCacheSqlLimit", DEFAULT_STATEMENT_CACHE_SQL_LIMIT);
+        properties.setProperty("hibernate.connection.useServerPrepStmts", "true");
+    }
+
     /**
      * Queries all model providers and returns ejb3-annotated classes.
      * 
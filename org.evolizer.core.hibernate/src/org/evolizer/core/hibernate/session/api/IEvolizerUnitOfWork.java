@@ -0,0 +1,41 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.core.hibernate.session.api;
+
+import org.evolizer.core.exceptions.EvolizerException;
+
+/**
+ * A unit of work executed with a session bound to the executing thread. The session is opened before and
+ * released after the unit of work, see
+ * {@link org.evolizer.core.hibernate.session.EvolizerSessionHandler#executeUnitOfWork(String, boolean, IEvolizerUnitOfWork)}.
+ *
+ * @param <T>
+ *            The type of the result.
+ * @author pinzger
+ */
+public interface IEvolizerUnitOfWork<T> {
+
+    /**
+     * Executes the unit of work.
+     *
+     * @param session
+     *            The session bound to the executing thread. Must not be closed by the unit of work.
+     * @return The result of the unit of work.
+     * @throws EvolizerException
+     *             if the unit of work failed.
+     */
+    public T execute(IEvolizerSession session) throws EvolizerException;
+}
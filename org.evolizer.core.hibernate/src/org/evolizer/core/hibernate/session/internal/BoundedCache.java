@@ -0,0 +1,269 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.core.hibernate.session.internal;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.Timestamper;
+
+/**
+ * In-process cache region of the second-level cache holding at most a given number of elements. When the region
+ * is full, the least recently used element is evicted. The region counts hits, misses, puts, and evictions.
+ *
+ * @author pinzger
+ */
+public class BoundedCache implements Cache {
+
+    /**
+     * Timeout of soft locks, 60 seconds in units of the {@link Timestamper}.
+     */
+    private static final int TIMEOUT = Timestamper.ONE_MS * 60000;
+
+    /**
+     * Name of the region.
+     */
+    private String fRegionName;
+    /**
+     * Maximum number of elements, 0 for an unbounded region.
+     */
+    private int fMaxElements;
+    /**
+     * The elements in least recently used order.
+     */
+    private LinkedHashMap<Object, Object> fElements;
+    /**
+     * Number of reads finding an element.
+     */
+    private long fHitCount;
+    /**
+     * Number of reads not finding an element.
+     */
+    private long fMissCount;
+    /**
+     * Number of elements put into the region.
+     */
+    private long fPutCount;
+    /**
+     * Number of elements evicted because the region was full.
+     */
+    private long fEvictionCount;
+
+    /**
+     * The constructor.
+     *
+     * @param regionName
+     *            The name of the region.
+     * @param maxElements
+     *            The maximum number of elements, 0 for an unbounded region.
+     */
+    public BoundedCache(String regionName, int maxElements) {
+        fRegionName = regionName;
+        fMaxElements = Math.max(0, maxElements);
+        fElements = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                if ((fMaxElements > 0) && (size() > fMaxElements)) {
+                    fEvictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized Object read(Object key) throws CacheException {
+        return get(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized Object get(Object key) throws CacheException {
+        Object lValue = fElements.get(key);
+        if (lValue != null) {
+            fHitCount++;
+        } else {
+            fMissCount++;
+        }
+        return lValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void put(Object key, Object value) throws CacheException {
+        fPutCount++;
+        fElements.put(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void update(Object key, Object value) throws CacheException {
+        put(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void remove(Object key) throws CacheException {
+        fElements.remove(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void clear() throws CacheException {
+        fElements.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void destroy() throws CacheException {
+        clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void lock(Object key) throws CacheException {
+        // local cache, concurrent access is handled by the concurrency strategy
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void unlock(Object key) throws CacheException {
+        // local cache, concurrent access is handled by the concurrency strategy
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long nextTimestamp() {
+        return Timestamper.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getTimeout() {
+        return TIMEOUT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getRegionName() {
+        return fRegionName;
+    }
+
+    /**
+     * Returns -1 because the size of the elements is not measured.
+     *
+     * @return -1
+     */
+    public long getSizeInMemory() {
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized long getElementCountInMemory() {
+        return fElements.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getElementCountOnDisk() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized Map<Object, Object> toMap() {
+        return new HashMap<Object, Object>(fElements);
+    }
+
+    /**
+     * Returns the maximum number of elements of the region.
+     *
+     * @return The maximum number of elements, 0 if the region is unbounded.
+     */
+    public int getMaxElements() {
+        return fMaxElements;
+    }
+
+    /**
+     * Returns the number of reads that found an element.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getHitCount() {
+        return fHitCount;
+    }
+
+    /**
+     * Returns the number of reads that did not find an element.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getMissCount() {
+        return fMissCount;
+    }
+
+    /**
+     * Returns the number of elements put into the region.
+     *
+     * @return The number of puts.
+     */
+    public synchronized long getPutCount() {
+        return fPutCount;
+    }
+
+    /**
+     * Returns the number of elements evicted because the region was full.
+     *
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return fEvictionCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "BoundedCache(" + fRegionName + "): " + fElements.size() + "/"
+                + ((fMaxElements > 0) ? String.valueOf(fMaxElements) : "unbounded") + " elements, " + fHitCount
+                + " hits, " + fMissCount + " misses, " + fPutCount + " puts, " + fEvictionCount + " evictions";
+    }
+}
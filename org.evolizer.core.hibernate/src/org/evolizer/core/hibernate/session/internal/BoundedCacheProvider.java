@@ -0,0 +1,128 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.core.hibernate.session.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.evolizer.core.hibernate.EvolizerHibernatePlugin;
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.CacheProvider;
+import org.hibernate.cache.Timestamper;
+import org.hibernate.cache.UpdateTimestampsCache;
+import org.hibernate.util.PropertiesHelper;
+
+/**
+ * Provider of the in-process second-level cache regions plugged into Hibernate via
+ * <code>hibernate.cache.provider_class</code>. Each region is a {@link BoundedCache} evicting its least recently
+ * used elements when full.
+ *
+ * The regions are configured with the following properties:
+ * <ul>
+ * <li><code>hibernate.evolizer.cache.max_elements</code>: maximum number of elements per region (default
+ * 10000).</li>
+ * <li><code>hibernate.evolizer.cache.max_elements.&lt;region&gt;</code>: maximum number of elements of the given
+ * region, 0 for an unbounded region.</li>
+ * </ul>
+ * The region of the update timestamps used to invalidate cached query results is never bounded, since evicting a
+ * timestamp could return stale query results.
+ *
+ * @author pinzger
+ */
+public class BoundedCacheProvider implements CacheProvider {
+
+    private final static Logger sfLogger =
+            EvolizerHibernatePlugin.getLogManager().getLogger(BoundedCacheProvider.class.getName());
+
+    /**
+     * Property for the maximum number of elements per region.
+     */
+    public final static String CACHE_MAX_ELEMENTS = "hibernate.evolizer.cache.max_elements";
+
+    /**
+     * Default maximum number of elements per region.
+     */
+    public final static int DEFAULT_MAX_ELEMENTS = 10000;
+
+    /**
+     * The maximum number of elements of regions without a specific configuration.
+     */
+    private int fMaxElements = DEFAULT_MAX_ELEMENTS;
+    /**
+     * The regions built by this provider by region name.
+     */
+    private Map<String, BoundedCache> fCaches = new LinkedHashMap<String, BoundedCache>();
+
+    /**
+     * {@inheritDoc}
+     */
+    public void start(Properties properties) throws CacheException {
+        fMaxElements = PropertiesHelper.getInt(CACHE_MAX_ELEMENTS, properties, DEFAULT_MAX_ELEMENTS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized Cache buildCache(String regionName, Properties properties) throws CacheException {
+        int lMaxElements = PropertiesHelper.getInt(CACHE_MAX_ELEMENTS + "." + regionName, properties, fMaxElements);
+        if (regionName.endsWith(UpdateTimestampsCache.REGION_NAME)) {
+            lMaxElements = 0;
+        }
+        BoundedCache lCache = new BoundedCache(regionName, lMaxElements);
+        fCaches.put(regionName, lCache);
+        sfLogger.debug("Built cache region " + regionName + " with max " + lMaxElements + " elements");
+
+        return lCache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long nextTimestamp() {
+        return Timestamper.next();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void stop() {
+        for (BoundedCache lCache : fCaches.values()) {
+            sfLogger.debug(lCache.toString());
+        }
+        fCaches.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isMinimalPutsEnabledByDefault() {
+        return false;
+    }
+
+    /**
+     * Returns the regions built by this provider.
+     *
+     * @return The list of regions in the order they have been built.
+     */
+    public synchronized List<BoundedCache> getCaches() {
+        return new ArrayList<BoundedCache>(fCaches.values());
+    }
+}
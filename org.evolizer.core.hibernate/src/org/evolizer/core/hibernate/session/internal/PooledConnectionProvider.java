@@ -0,0 +1,437 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.core.hibernate.session.internal;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.evolizer.core.hibernate.EvolizerHibernatePlugin;
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.connection.ConnectionProviderFactory;
+import org.hibernate.util.PropertiesHelper;
+import org.hibernate.util.ReflectHelper;
+
+/**
+ * Bounded pool of JDBC connections plugged into Hibernate via <code>hibernate.connection.provider_class</code>.
+ * Every Evolizer session of a session factory obtains its connection from this pool, such that sessions of
+ * different threads work on different connections.
+ *
+ * The pool is configured with the following properties:
+ * <ul>
+ * <li><code>hibernate.connection.pool_size</code>: maximum number of open connections (default 8).</li>
+ * <li><code>hibernate.evolizer.pool.min_size</code>: number of idle connections that are never closed because
+ * of the idle timeout (default 1). Keeps in-memory databases alive.</li>
+ * <li><code>hibernate.evolizer.pool.checkout_timeout</code>: milliseconds to wait for a free connection before
+ * failing (default 30000, 0 waits forever).</li>
+ * <li><code>hibernate.evolizer.pool.idle_timeout</code>: milliseconds after which an idle connection is closed
+ * (default 300000, 0 keeps idle connections forever).</li>
+ * </ul>
+ *
+ * @author pinzger
+ */
+public class PooledConnectionProvider implements ConnectionProvider {
+
+    private final static Logger sfLogger =
+            EvolizerHibernatePlugin.getLogManager().getLogger(PooledConnectionProvider.class.getName());
+
+    /**
+     * Property for the number of idle connections kept regardless of the idle timeout.
+     */
+    public final static String POOL_MIN_SIZE = "hibernate.evolizer.pool.min_size";
+    /**
+     * Property for the milliseconds to wait for a free connection.
+     */
+    public final static String POOL_CHECKOUT_TIMEOUT = "hibernate.evolizer.pool.checkout_timeout";
+    /**
+     * Property for the milliseconds after which an idle connection is closed.
+     */
+    public final static String POOL_IDLE_TIMEOUT = "hibernate.evolizer.pool.idle_timeout";
+
+    /**
+     * Default maximum number of open connections.
+     */
+    public final static int DEFAULT_MAX_SIZE = 8;
+    /**
+     * Default number of idle connections kept.
+     */
+    public final static int DEFAULT_MIN_SIZE = 1;
+    /**
+     * Default checkout timeout in milliseconds.
+     */
+    public final static long DEFAULT_CHECKOUT_TIMEOUT = 30000;
+    /**
+     * Default idle timeout in milliseconds.
+     */
+    public final static long DEFAULT_IDLE_TIMEOUT = 300000;
+
+    /**
+     * The JDBC URL.
+     */
+    private String fUrl;
+    /**
+     * The connection properties passed to the driver, e.g., user and password.
+     */
+    private Properties fConnectionProperties;
+    /**
+     * The transaction isolation level, or <code>null</code> to keep the driver's default.
+     */
+    private Integer fIsolation;
+    /**
+     * The auto-commit mode of the connections.
+     */
+    private boolean fAutoCommit;
+    /**
+     * Maximum number of open connections.
+     */
+    private int fMaxSize;
+    /**
+     * Number of idle connections kept regardless of the idle timeout.
+     */
+    private int fMinSize;
+    /**
+     * Milliseconds to wait for a free connection, 0 waits forever.
+     */
+    private long fCheckoutTimeout;
+    /**
+     * Milliseconds after which an idle connection is closed, 0 keeps idle connections.
+     */
+    private long fIdleTimeout;
+    /**
+     * Permits for the open connections; one permit is held per checked out connection.
+     */
+    private Semaphore fPermits;
+    /**
+     * The idle connections, the most recently released one first.
+     */
+    private LinkedList<IdleConnection> fIdleConnections = new LinkedList<IdleConnection>();
+    /**
+     * The checked out connections, each holding one permit.
+     */
+    private Set<Connection> fActiveConnections =
+            Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>()));
+    /**
+     * Set when the pool has been closed.
+     */
+    private volatile boolean fClosed;
+
+    /**
+     * An idle connection and the time it has been released to the pool.
+     */
+    private static class IdleConnection {
+
+        private Connection fConnection;
+        private long fReleaseTime;
+
+        IdleConnection(Connection connection, long releaseTime) {
+            fConnection = connection;
+            fReleaseTime = releaseTime;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void configure(Properties properties) throws HibernateException {
+        String lDriverName = properties.getProperty(Environment.DRIVER);
+        if (lDriverName != null) {
+            try {
+                ReflectHelper.classForName(lDriverName);
+            } catch (ClassNotFoundException cnfe) {
+                throw new HibernateException("JDBC driver class not found: " + lDriverName, cnfe);
+            }
+        }
+
+        fUrl = properties.getProperty(Environment.URL);
+        if (fUrl == null) {
+            throw new HibernateException("JDBC URL was not specified by property " + Environment.URL);
+        }
+        fConnectionProperties = ConnectionProviderFactory.getConnectionProperties(properties);
+        fIsolation = PropertiesHelper.getInteger(Environment.ISOLATION, properties);
+        fAutoCommit = PropertiesHelper.getBoolean(Environment.AUTOCOMMIT, properties);
+
+        fMaxSize = Math.max(1, PropertiesHelper.getInt(Environment.POOL_SIZE, properties, DEFAULT_MAX_SIZE));
+        fMinSize = Math.min(fMaxSize, Math.max(0, PropertiesHelper.getInt(POOL_MIN_SIZE, properties, DEFAULT_MIN_SIZE)));
+        fCheckoutTimeout = getLong(POOL_CHECKOUT_TIMEOUT, properties, DEFAULT_CHECKOUT_TIMEOUT);
+        fIdleTimeout = getLong(POOL_IDLE_TIMEOUT, properties, DEFAULT_IDLE_TIMEOUT);
+        fPermits = new Semaphore(fMaxSize, true);
+
+        sfLogger.debug("Configured connection pool for " + fUrl + " with max size " + fMaxSize + ", min size "
+                + fMinSize + ", checkout timeout " + fCheckoutTimeout + "ms, idle timeout " + fIdleTimeout + "ms");
+    }
+
+    /**
+     * Returns an idle connection or opens a new one. Waits for a connection to be released if the maximum number
+     * of connections is open.
+     *
+     * @return The connection.
+     * @throws SQLException
+     *             if no connection has been released within the checkout timeout, or the connection could not be
+     *             opened.
+     */
+    public Connection getConnection() throws SQLException {
+        if (fClosed) {
+            throw new SQLException("Connection pool for " + fUrl + " has been closed");
+        }
+        acquirePermit();
+
+        try {
+            Connection lConnection = pollIdleConnection();
+            while ((lConnection != null) && lConnection.isClosed()) {
+                lConnection = pollIdleConnection();
+            }
+            if (lConnection == null) {
+                lConnection = openConnection();
+            }
+            fActiveConnections.add(lConnection);
+            return lConnection;
+        } catch (SQLException sqle) {
+            fPermits.release();
+            throw sqle;
+        } catch (RuntimeException re) {
+            fPermits.release();
+            throw re;
+        }
+    }
+
+    /**
+     * Returns the connection to the idle connections of the pool. Uncommitted work is rolled back. Connections
+     * that are not checked out, e.g., because they have already been released, are ignored, such that their
+     * permits are not released twice.
+     *
+     * @param connection
+     *            The connection obtained from {@link #getConnection()}.
+     * @throws SQLException
+     *             if the connection could not be closed after the pool has been closed.
+     */
+    public void closeConnection(Connection connection) throws SQLException {
+        if (!fActiveConnections.remove(connection)) {
+            sfLogger.warn("Ignoring release of a connection to " + fUrl + " that is not checked out of the pool");
+            return;
+        }
+        try {
+            if (fClosed) {
+                connection.close();
+            } else if (!connection.isClosed()) {
+                if (reset(connection)) {
+                    synchronized (fIdleConnections) {
+                        fIdleConnections.addFirst(new IdleConnection(connection, System.currentTimeMillis()));
+                    }
+                } else {
+                    closeQuietly(connection);
+                }
+            }
+        } finally {
+            fPermits.release();
+        }
+        evictIdleConnections();
+    }
+
+    /**
+     * Closes all idle connections. Connections still checked out are closed when they are released.
+     *
+     * @throws HibernateException
+     *             never, closing failures are logged.
+     */
+    public void close() throws HibernateException {
+        fClosed = true;
+        synchronized (fIdleConnections) {
+            for (IdleConnection lIdleConnection : fIdleConnections) {
+                closeQuietly(lIdleConnection.fConnection);
+            }
+            fIdleConnections.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    /**
+     * Returns the maximum number of open connections.
+     *
+     * @return The maximum number of open connections.
+     */
+    public int getMaxSize() {
+        return fMaxSize;
+    }
+
+    /**
+     * Returns the number of connections currently checked out of the pool.
+     *
+     * @return The number of checked out connections.
+     */
+    public int getNrOfActiveConnections() {
+        return fMaxSize - fPermits.availablePermits();
+    }
+
+    /**
+     * Returns the number of idle connections.
+     *
+     * @return The number of idle connections.
+     */
+    public int getNrOfIdleConnections() {
+        synchronized (fIdleConnections) {
+            return fIdleConnections.size();
+        }
+    }
+
+    /**
+     * Waits for a permit to open or reuse a connection.
+     *
+     * @throws SQLException
+     *             if no permit became available within the checkout timeout or the thread has been interrupted.
+     */
+    private void acquirePermit() throws SQLException {
+        try {
+            if (fCheckoutTimeout <= 0) {
+                fPermits.acquire();
+            } else if (!fPermits.tryAcquire(fCheckoutTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timeout after " + fCheckoutTimeout + "ms waiting for a connection to "
+                        + fUrl + " (" + fMaxSize + " connections in use)");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to " + fUrl);
+        }
+    }
+
+    /**
+     * Removes the most recently released idle connection from the pool.
+     *
+     * @return The connection, or <code>null</code> if there is no idle connection.
+     */
+    private Connection pollIdleConnection() {
+        synchronized (fIdleConnections) {
+            IdleConnection lIdleConnection = fIdleConnections.poll();
+            return (lIdleConnection != null) ? lIdleConnection.fConnection : null;
+        }
+    }
+
+    /**
+     * Opens a new connection with the configured isolation level and auto-commit mode.
+     *
+     * @return The new connection.
+     * @throws SQLException
+     *             if the connection could not be opened.
+     */
+    private Connection openConnection() throws SQLException {
+        Connection lConnection = DriverManager.getConnection(fUrl, fConnectionProperties);
+        if (fIsolation != null) {
+            lConnection.setTransactionIsolation(fIsolation.intValue());
+        }
+        if (lConnection.getAutoCommit() != fAutoCommit) {
+            lConnection.setAutoCommit(fAutoCommit);
+        }
+        sfLogger.debug("Opened connection to " + fUrl);
+
+        return lConnection;
+    }
+
+    /**
+     * Discards work left uncommitted on the connection and restores the configured auto-commit mode, such that
+     * the next session starts clean.
+     *
+     * @param connection
+     *            The released connection.
+     * @return true, if the connection can be reused.
+     */
+    private boolean reset(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+            if (connection.getAutoCommit() != fAutoCommit) {
+                connection.setAutoCommit(fAutoCommit);
+            }
+            return true;
+        } catch (SQLException sqle) {
+            sfLogger.warn("Discarding connection to " + fUrl + ": " + sqle.getMessage(), sqle);
+            return false;
+        }
+    }
+
+    /**
+     * Closes the idle connections released longer than the idle timeout ago, keeping at least the minimum number
+     * of idle connections. The least recently released connections are at the end of the list.
+     */
+    private void evictIdleConnections() {
+        if (fIdleTimeout <= 0) {
+            return;
+        }
+        long lOldestReleaseTime = System.currentTimeMillis() - fIdleTimeout;
+        LinkedList<Connection> lEvicted = new LinkedList<Connection>();
+        synchronized (fIdleConnections) {
+            while ((fIdleConnections.size() > fMinSize)
+                    && (fIdleConnections.getLast().fReleaseTime < lOldestReleaseTime)) {
+                lEvicted.add(fIdleConnections.removeLast().fConnection);
+            }
+        }
+        for (Connection lConnection : lEvicted) {
+            closeQuietly(lConnection);
+        }
+    }
+
+    /**
+     * Closes the connection and logs failures.
+     *
+     * @param connection
+     *            The connection.
+     */
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException sqle) {
+            sfLogger.warn("Could not close connection to " + fUrl + ": " + sqle.getMessage(), sqle);
+        }
+    }
+
+    /**
+     * Returns the long value of a property.
+     *
+     * @param name
+     *            The name of the property.
+     * @param properties
+     *            The properties.
+     * @param defaultValue
+     *            The value returned if the property is not set.
+     * @return The value of the property.
+     */
+    private static long getLong(String name, Properties properties, long defaultValue) {
+        String lValue = PropertiesHelper.getString(name, properties, null);
+        if (lValue == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(lValue.trim());
+        } catch (NumberFormatException nfe) {
+            throw new HibernateException("Property " + name + " is not a number: " + lValue, nfe);
+        }
+    }
+}
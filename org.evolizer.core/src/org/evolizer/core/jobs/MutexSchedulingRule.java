@@ -21,7 +21,7 @@ import org.eclipse.core.runtime.jobs.Job;
 /**
  * Applying this scheduling rule to a given family of jobs ensures that a common resource is not accessed concurrently
  * and that the number of running jobs of the given family does not exceed the number of available processors in the
- * system. Usage:
+ * system, or a given maximum. Usage:
  * 
  * <pre>
  * MyResource resource = new MyResource();
@@ -44,11 +44,11 @@ import org.eclipse.core.runtime.jobs.Job;
  */
 public class MutexSchedulingRule implements ISchedulingRule {
 
-    private static final boolean MULTICORE = Runtime.getRuntime().availableProcessors() > 1;
     private static final int MAX_JOBS = Runtime.getRuntime().availableProcessors();
 
     private Object fResource;
     private Object fJobFamily;
+    private int fMaxJobs;
 
     /**
      * Constructor.
@@ -59,9 +59,26 @@ public class MutexSchedulingRule implements ISchedulingRule {
      *            the job family that this rule applies to.
      */
     public MutexSchedulingRule(Object resource, Object jobFamily) {
+        this(resource, jobFamily, MAX_JOBS);
+    }
+
+    /**
+     * Constructor limiting the number of running jobs of the given family to <code>maxJobs</code> instead of the
+     * number of available processors.
+     * 
+     * @param resource
+     *            the common resource.
+     * @param jobFamily
+     *            the job family that this rule applies to.
+     * @param maxJobs
+     *            the maximum number of running jobs of the family, values smaller than 1 are replaced by the number of
+     *            available processors.
+     */
+    public MutexSchedulingRule(Object resource, Object jobFamily, int maxJobs) {
         super();
         fResource = resource;
         fJobFamily = jobFamily;
+        fMaxJobs = (maxJobs < 1) ? MAX_JOBS : maxJobs;
     }
 
     /**
@@ -95,7 +112,7 @@ public class MutexSchedulingRule implements ISchedulingRule {
             }
 
             MutexSchedulingRule mcRule = (MutexSchedulingRule) rule;
-            if (MULTICORE) {
+            if (fMaxJobs > 1) {
                 return mcRule.fResource.equals(fResource) || numberOfAllowedRunningJobsExceeded();
             }
 
@@ -107,7 +124,7 @@ public class MutexSchedulingRule implements ISchedulingRule {
 
     /*
      * Checks whether the number of running jobs of a given family exceeds
-     * the number of available processors in the system.
+     * the maximum number of running jobs, by default the number of available processors.
      */
     private boolean numberOfAllowedRunningJobsExceeded() {
         Job[] jobs = Job.getJobManager().find(fJobFamily);
@@ -119,6 +136,6 @@ public class MutexSchedulingRule implements ISchedulingRule {
             }
         }
 
-        return numberOfRunningJobs >= MAX_JOBS;
+        return numberOfRunningJobs >= fMaxJobs;
     }
 }
@@ -53,13 +53,18 @@ public class GraphLoader {
     /** The HierachyManager that is needed to generate nested Graphs with FolderNodes and GroupNodes. */
     private HierarchyManager fHierarchyManager;
 
+    /** The URL of the database queried by the snapshot analyzer. */
+    private String fDBUrl;
+
     /**
      * Instantiates a new graph loader.
      * 
      * @param snapshotAnalyzer the snapshot analyzer
+     * @param dbUrl the URL of the database queried by the snapshot analyzer
      */
-    public GraphLoader(SnapshotAnalyzer snapshotAnalyzer) {
+    public GraphLoader(SnapshotAnalyzer snapshotAnalyzer, String dbUrl) {
         fSnapshotAnalyzer = snapshotAnalyzer;
+        fDBUrl = dbUrl;
     }
 
     /**
@@ -407,4 +412,13 @@ public class GraphLoader {
         return fSnapshotAnalyzer;
     }
 
+    /**
+     * Gets the URL of the database queried by the snapshot analyzer.
+     * 
+     * @return the database URL
+     */
+    public String getDBUrl() {
+        return fDBUrl;
+    }
+
 }
@@ -79,6 +79,9 @@ public class DA4JavaGraphEditor extends EditorPart {
     /** The GraphPanel which displays the DependencyGraph and the toolbar. */
     private DA4JavaGraphPanel fGraphPanel;
 
+    /** The URL of the database of the unit of work kept open while the editor is open. */
+    private String fDBUrl;
+
     /**
      * Initializes the editor part with a site and input. Initializes drag&drop support.
      * 
@@ -131,10 +134,18 @@ public class DA4JavaGraphEditor extends EditorPart {
     }
 
     /**
-     * Hides the corresponding filter view when the editor is closed.
+     * Ends the unit of work of the editor and hides the corresponding filter view when the editor is closed.
      */
     @Override
     public void dispose() {
+        if (fDBUrl != null) {
+            try {
+                EvolizerSessionHandler.getHandler().endUnitOfWork(fDBUrl);
+            } catch (EvolizerException ee) {
+                sLogger.error("Error releasing the session of the editor " + ee.getMessage());
+            }
+            fDBUrl = null;
+        }
         super.dispose();
     }
 
@@ -174,16 +185,20 @@ public class DA4JavaGraphEditor extends EditorPart {
     }
 
     /**
-     * Creates and initializes the DA4Java graph panel
+     * Creates and initializes the DA4Java graph panel. The graph is loaded with the session of a unit of
+     * work that is bound to the UI thread until the editor is disposed, such that the lazily loaded
+     * entities of the graph do not share the session of background jobs. 
      * 
      * @param selectionHandler  handler with the selected Java project
      * @throws EvolizerException
      */
     private DA4JavaGraphPanel initGraphPanel(AbstractSelectionHandler selectionHandler) throws EvolizerException {
         IJavaProject selectedProject = selectionHandler.getSelectedProject();
-        IEvolizerSession session = EvolizerSessionHandler.getHandler().getCurrentSession(selectedProject.getProject());
+        String dbUrl = EvolizerSessionHandler.getHandler().getDBUrl(selectedProject.getProject());
+        IEvolizerSession session = EvolizerSessionHandler.getHandler().beginUnitOfWork(selectedProject.getProject(), false);
+        fDBUrl = dbUrl;
         SnapshotAnalyzer snapshotAnalyzer = new SnapshotAnalyzer(session);
-        DA4JavaGraphPanel graphPanel = new DA4JavaGraphPanel(new GraphLoader(snapshotAnalyzer));
+        DA4JavaGraphPanel graphPanel = new DA4JavaGraphPanel(new GraphLoader(snapshotAnalyzer, fDBUrl));
         graphPanel.initGraphPanel();
         initDragAndDrop();
         
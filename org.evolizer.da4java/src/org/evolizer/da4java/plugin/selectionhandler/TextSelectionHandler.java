@@ -65,20 +65,20 @@ public class TextSelectionHandler extends AbstractSelectionHandler {
             EditorSelection editorSelection = (EditorSelection) getSelection();
             IJavaElement compilationUnit = editorSelection.getCompilationUnit();
             IPath cuPath = compilationUnit.getPath();
-            String path = cuPath.toString().substring(1);
+            String path = cuPath.toString();
 
             ITextSelection textSelection = editorSelection.getTextSelection();
-            String offset = Integer.toString(textSelection.getOffset());
             try {
-                @SuppressWarnings("unused")
-                List result = snapshotAnalyzer.getHibernateSession().createSQLQuery("SELECT fe.* FROM famixentity fe, sourceanchor sa " 
-                        + " WHERE fe.sourceanchor_fk = sa.id AND sa.file like '%" + path + "'" 
-                        + " AND fe.uniqueName not like '%.<clinit>()' and fe.uniqueName not like '%.<oinit>()'" 
-                        + " AND sa.start < " + offset + " AND sa.end > " + offset).addEntity(AbstractFamixEntity.class).list();
+                List<AbstractFamixEntity> result = snapshotAnalyzer.getHibernateSession()
+                        .getNamedQuery(AbstractFamixEntity.QUERY_AT_SOURCE_POSITION)
+                        .setString("file", path)
+                        .setInteger("offset", textSelection.getOffset())
+                        .list();
+                selectedEntities.addAll(result);
 
-                // selectedEntities = new Vector(filterResult(result));
-
-                editorSelection.setSelectionName(selectedEntities.get(0).getName());
+                if (!selectedEntities.isEmpty()) {
+                    editorSelection.setSelectionName(selectedEntities.get(0).getName());
+                }
             } catch (HibernateException e) {
                 e.printStackTrace();
             } catch (EvolizerException e) {
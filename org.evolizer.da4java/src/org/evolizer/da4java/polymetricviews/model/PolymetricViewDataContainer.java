@@ -21,6 +21,9 @@ import java.util.Hashtable;
 import java.util.Set;
 
 import org.evolizer.core.exceptions.EvolizerException;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.core.hibernate.session.api.IEvolizerUnitOfWork;
 import org.evolizer.core.util.collections.CompositeKey;
 import org.evolizer.da4java.graph.data.GraphManager;
 import org.evolizer.da4java.graph.panel.DA4JavaGraphPanel;
@@ -29,7 +32,6 @@ import org.evolizer.famix.model.entities.AbstractFamixEntity;
 import org.evolizer.famix.model.entities.FamixClass;
 import org.evolizer.famix.model.entities.FamixMethod;
 import org.evolizer.famix.model.entities.FamixPackage;
-import org.evolizer.famix.model.utils.SnapshotAnalyzer;
 import org.evolizer.metrics.store.MetricStore;
 
 import y.base.Node;
@@ -87,14 +89,33 @@ public class PolymetricViewDataContainer {
 
     /**
      * Updates the fRealizerToValue Map that contains NodeRealizers and their
-     * corresponding metric value.
+     * corresponding metric value. The values are calculated and stored in a
+     * writing unit of work, which joins the unit of work of the editor when
+     * called from the UI thread.
      * 
      * @param metricIdentifier the metric identifier
      * 
      * @throws EvolizerException the evolizer exception
      */
-    public void updateMetricValues(String metricIdentifier) throws EvolizerException {
-        SnapshotAnalyzer snapshotAnalyzer = fGraphPanel.getGraphLoader().getSnapshotAnalyzer();
+    public void updateMetricValues(final String metricIdentifier) throws EvolizerException {
+        EvolizerSessionHandler.getHandler().executeUnitOfWork(fGraphPanel.getGraphLoader().getDBUrl(), false, 
+                new IEvolizerUnitOfWork<Object>() {
+                    public Object execute(IEvolizerSession session) throws EvolizerException {
+                        updateMetricValues(metricIdentifier, session);
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Calculates the metric values of the nodes that have not been calculated yet.
+     * 
+     * @param metricIdentifier the metric identifier
+     * @param session the session of the unit of work
+     * 
+     * @throws EvolizerException the evolizer exception
+     */
+    private void updateMetricValues(String metricIdentifier, IEvolizerSession session) throws EvolizerException {
         GraphManager graph = fGraphPanel.getGraph();
         NodeMap map = graph.getRegisteredNodeMaps()[0];
         Node[] nodes = graph.getNodeArray();
@@ -111,7 +132,7 @@ public class PolymetricViewDataContainer {
                             && !(entity.getUniqueName().endsWith(AbstractFamixEntity.CLASS_INIT_METHOD) 
                                     || entity.getUniqueName().endsWith(AbstractFamixEntity.OBJECT_INIT_METHOD))) {
                         Float value = 0f;
-                        value = new Float(MetricStore.calculateMetricValue(entity, metricIdentifier, snapshotAnalyzer.getEvolizerSession()));
+                        value = new Float(MetricStore.calculateMetricValue(entity, metricIdentifier, session));
                         fFamixEntityMetricToValueMap.put(key, value);
 
                         if (fMaxMetricValues.get(metricIdentifier).get(entity.getClass()) < value) {
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Properties;
+
+import org.evolizer.core.hibernate.session.internal.BoundedCache;
+import org.evolizer.core.hibernate.session.internal.BoundedCacheProvider;
+import org.hibernate.cache.UpdateTimestampsCache;
+import org.junit.Test;
+
+/**
+ * Tests the least recently used eviction and the counters of the {@link BoundedCache} regions and their
+ * configuration by the {@link BoundedCacheProvider}.
+ *
+ * @author pinzger
+ */
+public class BoundedCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        BoundedCache cache = new BoundedCache("region", 2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        // reading a makes b the least recently used element
+        assertEquals("A", cache.get("a"));
+        cache.put("c", "C");
+
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(2, cache.getElementCountInMemory());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(3, cache.getPutCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testUpdateKeepsSize() {
+        BoundedCache cache = new BoundedCache("region", 2);
+        cache.put("a", "A");
+        cache.update("a", "A2");
+        cache.put("b", "B");
+
+        assertEquals("A2", cache.read("a"));
+        assertEquals(2, cache.getElementCountInMemory());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        BoundedCache cache = new BoundedCache("region", 10);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getElementCountInMemory());
+
+        cache.clear();
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.getElementCountInMemory());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testUnboundedRegion() {
+        BoundedCache cache = new BoundedCache("region", 0);
+        for (int i = 0; i < 100; i++) {
+            cache.put(Integer.valueOf(i), "value" + i);
+        }
+        assertEquals(100, cache.getElementCountInMemory());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testProviderRegionLimits() {
+        Properties properties = new Properties();
+        properties.setProperty(BoundedCacheProvider.CACHE_MAX_ELEMENTS, "5");
+        properties.setProperty(BoundedCacheProvider.CACHE_MAX_ELEMENTS + ".small", "1");
+        properties.setProperty(BoundedCacheProvider.CACHE_MAX_ELEMENTS + "." + UpdateTimestampsCache.REGION_NAME, "1");
+        BoundedCacheProvider provider = new BoundedCacheProvider();
+        provider.start(properties);
+
+        BoundedCache defaultCache = (BoundedCache) provider.buildCache("default", properties);
+        BoundedCache smallCache = (BoundedCache) provider.buildCache("small", properties);
+        BoundedCache timestampsCache = (BoundedCache) provider.buildCache(UpdateTimestampsCache.REGION_NAME, properties);
+
+        assertEquals(5, defaultCache.getMaxElements());
+        assertEquals(1, smallCache.getMaxElements());
+        assertEquals(0, timestampsCache.getMaxElements());
+        assertEquals(3, provider.getCaches().size());
+
+        provider.stop();
+        assertEquals(0, provider.getCaches().size());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.AbstractFamixGeneralization;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixInheritance;
+import org.evolizer.famix.model.entities.FamixInvocation;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.utils.FamixGraph;
+import org.evolizer.famix.model.utils.SnapshotAnalyzer;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the queries of the in-memory FAMIX graph and the snapshot analyzer answering its queries from the graph.
+ *
+ * @author pinzger
+ */
+public class FamixGraphTest {
+
+    private static FamixPackage pack;
+    private static FamixClass classA;
+    private static FamixClass classB;
+    private static FamixMethod methodA;
+    private static FamixMethod methodB;
+    private static FamixGraph graph;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        FamixModel model = new FamixModel("graph", new Date());
+        pack = (FamixPackage) model.addElement(new FamixPackage("p", null));
+        classA = (FamixClass) model.addElement(new FamixClass("p.A", pack));
+        classB = (FamixClass) model.addElement(new FamixClass("p.B", pack));
+        methodA = (FamixMethod) model.addElement(new FamixMethod("p.A.a()", classA));
+        methodB = (FamixMethod) model.addElement(new FamixMethod("p.B.b()", classB));
+        model.addRelation(new FamixInvocation(methodA, methodB));
+        model.addRelation(new FamixInheritance(classA, classB));
+
+        graph = new FamixGraph(model);
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals(5, graph.getNrOfEntities());
+        assertEquals(2, graph.getNrOfAssociations());
+        assertEquals(2, graph.getAssociationTypes().size());
+    }
+
+    @Test
+    public void testDescendants() {
+        List<AbstractFamixEntity> descendants = graph.getEntities(graph.getDescendants(graph.indexOf(classA)));
+        assertEquals(new HashSet<AbstractFamixEntity>(Arrays.asList(classA, methodA)), new HashSet<AbstractFamixEntity>(descendants));
+        assertEquals(graph.indexOf(pack), graph.getParent(graph.indexOf(classA)));
+        assertEquals(FamixGraph.NO_ENTITY, graph.getParent(graph.indexOf(pack)));
+    }
+
+    @Test
+    public void testAssociationsOfEntities() {
+        int[] entities = graph.getDescendants(graph.indexOf(classA));
+        assertEquals(2, graph.getAssociationsOfEntities(entities, FamixAssociation.class, FamixGraph.FROM).size());
+        assertEquals(1, graph.getAssociationsOfEntities(entities, FamixInvocation.class, FamixGraph.FROM).size());
+        assertEquals(0, graph.getAssociationsOfEntities(entities, null, FamixGraph.TO).size());
+
+        // associations within the set are not returned
+        int[] all = graph.getDescendants(graph.indexOf(pack));
+        assertTrue(graph.getAssociationsOfEntities(all, null, FamixGraph.FROM).isEmpty());
+    }
+
+    @Test
+    public void testAdjacentEntities() {
+        int[] subClasses = graph.getAdjacentEntities(graph.indexOf(classB), AbstractFamixGeneralization.class, FamixGraph.TO);
+        assertEquals(1, subClasses.length);
+        assertEquals(classA, graph.getEntity(subClasses[0]));
+    }
+
+    @Test
+    public void testSnapshotAnalyzerUsesGraph() {
+        // without a session all answers must come from the graph
+        SnapshotAnalyzer analyzer = new SnapshotAnalyzer(null, graph);
+        List<AbstractFamixEntity> descendants = analyzer.getDescendants(classA);
+        assertEquals(new HashSet<AbstractFamixEntity>(Arrays.asList(classA, methodA)), new HashSet<AbstractFamixEntity>(descendants));
+
+        List<FamixInvocation> invocations = analyzer.queryAssociationsOfEntities(descendants, FamixInvocation.class, "from");
+        assertEquals(1, invocations.size());
+        assertEquals(methodB, invocations.get(0).getTo());
+        assertEquals(1, analyzer.queryAssociationsOfEntities(Arrays.asList((AbstractFamixEntity) classB), FamixInheritance.class, "to").size());
+    }
+}
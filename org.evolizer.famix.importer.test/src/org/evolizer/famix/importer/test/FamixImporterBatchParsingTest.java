@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jdt.core.IJavaProject;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the FAMIX model extracted from ASTs created per compilation unit with the 
+ * FAMIX model extracted from ASTs created in one batch per project. The parse times 
+ * of both paths are logged.
+ * 
+ * @author pinzger
+ */
+public class FamixImporterBatchParsingTest {
+    private static Logger logger = FamixImporterTestPlugin.getLogManager().getLogger(FamixImporterBatchParsingTest.class.getName());
+
+    /**
+     * The FAMIX model extracted from ASTs created per compilation unit
+     */
+    protected static FamixModel aPerUnitModel = null;
+    /**
+     * The FAMIX model extracted from ASTs created in one batch
+     */
+    protected static FamixModel aBatchModel = null;
+
+    /**
+     * Parses the test project per compilation unit and in one batch.
+     * 
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        IJavaProject project = TestHelper.createTestProject();
+        
+        long start = System.currentTimeMillis();
+        aPerUnitModel = TestHelper.parseAndResolveProject(project, 1, ProjectParser.DEFAULT_BATCH_SIZE);
+        long perUnitTime = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        aBatchModel = TestHelper.parseAndResolveProject(project, 1, 0);
+        long batchTime = System.currentTimeMillis() - start;
+
+        logger.info("Parse time per compilation unit: " + perUnitTime + " ms, in one batch: " + batchTime + " ms");
+    }
+
+    @Test
+    public void testSameEntities() {
+        assertNotNull(aPerUnitModel);
+        assertNotNull(aBatchModel);
+        assertFalse(aBatchModel.getFamixEntities().isEmpty());
+        assertEquals(TestHelper.toEntityStrings(aPerUnitModel), TestHelper.toEntityStrings(aBatchModel));
+    }
+
+    @Test
+    public void testSameAssociations() {
+        assertFalse(aBatchModel.getFamixAssociations().isEmpty());
+        assertEquals(TestHelper.toAssociationStrings(aPerUnitModel), TestHelper.toAssociationStrings(aBatchModel));
+    }
+
+    @Test
+    public void testEntitiesAreCanonical() {
+        for (AbstractFamixEntity entity : aBatchModel.getFamixEntities()) {
+            if (entity.getParent() != null) {
+                assertTrue("Parent of " + entity.getUniqueName() + " is not contained by the model", 
+                        aBatchModel.getElement(entity.getParent()) == entity.getParent());
+            }
+        }
+        for (FamixAssociation association : aBatchModel.getFamixAssociations()) {
+            assertTrue(aBatchModel.getElement(association.getFrom()) == association.getFrom());
+            assertTrue(aBatchModel.getElement(association.getTo()) == association.getTo());
+        }
+    }
+}
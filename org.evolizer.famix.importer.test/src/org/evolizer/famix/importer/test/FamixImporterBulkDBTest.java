@@ -0,0 +1,103 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.preferences.EvolizerPreferences;
+import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Stores the parsed model in bulk mode (JDBC batches) and runs the importer tests
+ * on the loaded model.
+ *
+ * @author pinzger
+ */
+public class FamixImporterBulkDBTest extends FamixImporterTest {
+
+    private static FamixModel createdModel;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        FamixImporterTest.setUpBeforeClass();
+
+        project.getProject().setPersistentProperty(EvolizerPreferences.DB_USE_INMEMORY, "true");
+        createdModel = aModel;
+
+        EvolizerSessionHandler.getHandler().getCurrentSession(project.getProject());
+        DAOModel aDAOModel = new DAOModel(EvolizerSessionHandler.getHandler().getDBUrl(project.getProject()), createdModel);
+        // small batches to exercise batch boundaries and deferred references
+        aDAOModel.setJdbcBatchSize(7);
+        aDAOModel.store(null);
+
+        aModel = aDAOModel.loadModel(createdModel.getName());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        FamixImporterTest.tearDownAfterClass();
+
+        EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+    }
+
+    @Test
+    public void testAllObjectsHaveIds() {
+        assertNotNull(createdModel.getId());
+        for (AbstractFamixEntity entity : createdModel.getFamixEntities()) {
+            assertNotNull("No ID assigned to " + entity.getUniqueName(), entity.getId());
+        }
+    }
+
+    @Test
+    public void testUniqueIds() {
+        // the IDs are fetched from the shared sequence in blocks of the batch size
+        Set<Long> ids = new HashSet<Long>();
+        for (AbstractFamixEntity entity : createdModel.getFamixEntities()) {
+            assertTrue("Duplicate ID of " + entity.getUniqueName(), ids.add(entity.getId()));
+        }
+        Set<FamixAssociation> associations = new HashSet<FamixAssociation>();
+        for (AbstractFamixEntity entity : createdModel.getFamixEntities()) {
+            associations.addAll(createdModel.getAssociations(entity));
+        }
+        assertTrue(associations.size() > 0);
+        for (FamixAssociation association : associations) {
+            assertNotNull("No ID assigned to " + association, association.getId());
+            assertTrue("Duplicate ID of " + association, ids.add(association.getId()));
+        }
+    }
+
+    @Test
+    public void testSameEntities() {
+        assertEquals(TestHelper.toEntityStrings(createdModel), TestHelper.toEntityStrings(aModel));
+    }
+
+    @Test
+    public void testSameAssociations() {
+        assertEquals(TestHelper.toAssociationStrings(createdModel), TestHelper.toAssociationStrings(aModel));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.evolizer.famix.importer.ASTCrawler;
+import org.evolizer.famix.importer.FamixModelFactory;
+import org.evolizer.famix.importer.unresolved.UnresolvedAnonymousClassInstanceCreationInvocation;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.importer.unresolved.UnresolvedMethodInvocation;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the resolution of the unresolved invocations detached from the AST when a compilation unit has been
+ * crawled with the resolution of invocations that keep their AST until they are processed, as done before the
+ * invocations were detached. Both must resolve the same invocations, including the anonymous class instance
+ * creations.
+ *
+ * @author pinzger
+ */
+public class FamixImporterDetachedInvocationTest {
+
+    private static List<ICompilationUnit> aCompilationUnits = new ArrayList<ICompilationUnit>();
+    private static Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> aDetachedCalls;
+    private static FamixModel aDetachedModel;
+    private static Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> aAttachedCalls;
+    private static FamixModel aAttachedModel;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        IJavaProject project = TestHelper.createTestProject();
+        for (IPackageFragment fragment : project.getPackageFragments()) {
+            if (fragment.getKind() == IPackageFragmentRoot.K_SOURCE) {
+                for (ICompilationUnit cu : fragment.getCompilationUnits()) {
+                    aCompilationUnits.add(cu);
+                }
+            }
+        }
+
+        aDetachedCalls = new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+        aDetachedModel = crawl(true, aDetachedCalls);
+        aAttachedCalls = new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+        aAttachedModel = crawl(false, aAttachedCalls);
+
+        resolve(aDetachedModel, aDetachedCalls);
+        resolve(aAttachedModel, aAttachedCalls);
+    }
+
+    /**
+     * Crawls the compilation units of the test project.
+     *
+     * @param detach true to detach the unresolved invocations from the AST.
+     * @param unresolvedCalls The table to which the unresolved invocations are added.
+     * @return The model.
+     */
+    private static FamixModel crawl(boolean detach, Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) {
+        ASTCrawler crawler = new ASTCrawler(new FamixModel("TestProject1", new Date()), new FamixModelFactory());
+        crawler.setDetachUnresolvedCalls(detach);
+        for (ICompilationUnit cu : aCompilationUnits) {
+            crawler.analyze(cu, new NullProgressMonitor());
+            unresolvedCalls.putAll(crawler.getUnresolvedCalls());
+        }
+        return crawler.getModel();
+    }
+
+    /**
+     * Resolves the unresolved invocations and adds them to the model.
+     *
+     * @param model The model.
+     * @param unresolvedCalls The unresolved invocations.
+     */
+    private static void resolve(FamixModel model, Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) {
+        UnresolvedInvocationHandler handler = new UnresolvedInvocationHandler(model, unresolvedCalls);
+        handler.process(new NullProgressMonitor());
+        handler.addInvocations(new NullProgressMonitor());
+    }
+
+    @Test
+    public void testUnresolvedCallsDetached() {
+        assertFalse(aDetachedCalls.isEmpty());
+        for (List<UnresolvedMethodInvocation> calls : aDetachedCalls.values()) {
+            for (UnresolvedMethodInvocation call : calls) {
+                assertTrue("Not detached: " + call.getStatement(), call.isDetached());
+                assertNull(call.getASTNode());
+                assertNotNull(call.getSourceAnchor());
+            }
+        }
+        for (List<UnresolvedMethodInvocation> calls : aAttachedCalls.values()) {
+            for (UnresolvedMethodInvocation call : calls) {
+                assertFalse(call.isDetached());
+            }
+        }
+    }
+
+    @Test
+    public void testSameResolvedStatements() {
+        Map<String, String> detachedStatements = getResolvedStatements(aDetachedCalls);
+        assertFalse(detachedStatements.isEmpty());
+        assertEquals(getResolvedStatements(aAttachedCalls), detachedStatements);
+    }
+
+    @Test
+    public void testSameAnonymousClasses() {
+        Map<String, String> detachedClassIDs = getAnonymousClassIDs(aDetachedCalls);
+        assertFalse(detachedClassIDs.isEmpty());
+        boolean testAnonymClassFound = false;
+        for (String classID : detachedClassIDs.values()) {
+            testAnonymClassFound |= (classID != null) && classID.startsWith("testPackage.ae.Test$");
+        }
+        assertTrue("Anonymous classes of testPackage.ae.Test not resolved", testAnonymClassFound);
+        assertEquals(getAnonymousClassIDs(aAttachedCalls), detachedClassIDs);
+    }
+
+    @Test
+    public void testSameModel() {
+        assertEquals(TestHelper.toEntityStrings(aAttachedModel), TestHelper.toEntityStrings(aDetachedModel));
+        assertEquals(TestHelper.toAssociationStrings(aAttachedModel), TestHelper.toAssociationStrings(aDetachedModel));
+    }
+
+    /**
+     * Returns the resolved statements of the given invocations by their source anchor.
+     *
+     * @param unresolvedCalls The resolved invocations.
+     * @return The resolved statements by source anchor.
+     */
+    private Map<String, String> getResolvedStatements(Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) {
+        Map<String, String> statements = new HashMap<String, String>();
+        for (List<UnresolvedMethodInvocation> calls : unresolvedCalls.values()) {
+            for (UnresolvedMethodInvocation call : calls) {
+                statements.put(call.getSourceAnchor().toString(), call.getResolvedStatement());
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Returns the unique names of the anonymous classes of the given anonymous class instance creations by their
+     * source anchor.
+     *
+     * @param unresolvedCalls The resolved invocations.
+     * @return The unique names of the anonymous classes by source anchor.
+     */
+    private Map<String, String> getAnonymousClassIDs(Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) {
+        Map<String, String> classIDs = new HashMap<String, String>();
+        for (List<UnresolvedMethodInvocation> calls : unresolvedCalls.values()) {
+            for (UnresolvedMethodInvocation call : calls) {
+                if (call instanceof UnresolvedAnonymousClassInstanceCreationInvocation) {
+                    classIDs.put(call.getSourceAnchor().toString(), 
+                            ((UnresolvedAnonymousClassInstanceCreationInvocation) call).getAnonymousClassID());
+                }
+            }
+        }
+        return classIDs;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.evolizer.famix.importer.ASTCrawler;
+import org.evolizer.famix.importer.FamixModelFactory;
+import org.evolizer.famix.importer.nodehandler.ASTNodeHandlerPool;
+import org.evolizer.famix.importer.nodehandler.MethodDeclarationHandler;
+import org.evolizer.famix.importer.util.ImportStatistics;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the crawler with and without reusing the node handlers on the ASTs of the test project. Both modes
+ * must extract the same model, and released handlers must be reset before they are handed out again. The
+ * time and allocations of both modes are measured by {@link HandlerPoolingBenchmark}.
+ *
+ * @author pinzger
+ */
+public class FamixImporterHandlerPoolingTest {
+
+    private static List<ICompilationUnit> aCompilationUnits = new ArrayList<ICompilationUnit>();
+    private static List<CompilationUnit> aASTs = new ArrayList<CompilationUnit>();
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        IJavaProject project = TestHelper.createTestProject();
+        for (IPackageFragment fragment : project.getPackageFragments()) {
+            if (fragment.getKind() == IPackageFragmentRoot.K_SOURCE) {
+                for (ICompilationUnit cu : fragment.getCompilationUnits()) {
+                    ASTParser parser = ASTParser.newParser(AST.JLS3);
+                    parser.setSource(cu);
+                    parser.setResolveBindings(true);
+                    aCompilationUnits.add(cu);
+                    aASTs.add((CompilationUnit) parser.createAST(null));
+                }
+            }
+        }
+    }
+
+    /**
+     * Crawls the ASTs of the test project once.
+     *
+     * @param pooling true to reuse the node handlers.
+     * @return The crawler.
+     */
+    private static ASTCrawler crawl(boolean pooling) {
+        ASTCrawler crawler = new ASTCrawler(new FamixModel("TestProject1", new Date()), new FamixModelFactory());
+        ImportStatistics statistics = new ImportStatistics();
+        statistics.setHandlerTimingEnabled(false);
+        crawler.setStatistics(statistics);
+        crawler.setHandlerPooling(pooling);
+        for (int i = 0; i < aASTs.size(); i++) {
+            crawler.analyze(aCompilationUnits.get(i), aASTs.get(i), new NullProgressMonitor());
+        }
+        return crawler;
+    }
+
+    @Test
+    public void testSameModel() {
+        FamixModel allocatingModel = crawl(false).getModel();
+        FamixModel pooledModel = crawl(true).getModel();
+        assertEquals(TestHelper.toEntityStrings(allocatingModel), TestHelper.toEntityStrings(pooledModel));
+        assertEquals(TestHelper.toAssociationStrings(allocatingModel), TestHelper.toAssociationStrings(pooledModel));
+    }
+
+    @Test
+    public void testHandlersReused() {
+        ASTCrawler crawler = crawl(true);
+        long nodes = crawler.getStatistics().getNrOfVisits();
+        long createdHandlers = crawler.getHandlerPool().getNrOfCreatedHandlers();
+        assertTrue(nodes > 0);
+        assertTrue(createdHandlers < nodes);
+        assertEquals(nodes, createdHandlers + crawler.getHandlerPool().getNrOfReusedHandlers());
+    }
+
+    @Test
+    public void testReleasedHandlerReused() {
+        ASTNodeHandlerPool pool = new ASTNodeHandlerPool(crawl(false));
+        MethodDeclarationHandler handler = pool.acquire(MethodDeclarationHandler.class);
+        pool.release(handler);
+
+        assertSame(handler, pool.acquire(MethodDeclarationHandler.class));
+        assertEquals(1, pool.getNrOfCreatedHandlers());
+        assertEquals(1, pool.getNrOfReusedHandlers());
+        // the pool is empty again
+        assertTrue(handler != pool.acquire(MethodDeclarationHandler.class));
+        assertEquals(2, pool.getNrOfCreatedHandlers());
+    }
+
+    @Test
+    public void testReusedHandlerIsReset() {
+        // method declaration handlers are never retained, the last one is released after the crawl
+        ASTNodeHandlerPool pool = crawl(true).getHandlerPool();
+        long reusedHandlers = pool.getNrOfReusedHandlers();
+        MethodDeclarationHandler handler = pool.acquire(MethodDeclarationHandler.class);
+
+        assertEquals(reusedHandlers + 1, pool.getNrOfReusedHandlers());
+        assertNull(handler.getASTNode());
+    }
+}
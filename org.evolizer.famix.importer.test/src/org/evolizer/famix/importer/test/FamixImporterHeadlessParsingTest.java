@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IJavaProject;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.importer.SourceDirectoryParser;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the FAMIX model extracted from the Java project with the FAMIX model extracted
+ * from its source folder without the Java model by two workers.
+ *
+ * @author pinzger
+ */
+public class FamixImporterHeadlessParsingTest {
+    /**
+     * The FAMIX model extracted from the Java project
+     */
+    protected static FamixModel aProjectModel = null;
+    /**
+     * The FAMIX model extracted from the source folder
+     */
+    protected static FamixModel aHeadlessModel = null;
+    /**
+     * The status of parsing the source folder
+     */
+    protected static IStatus aStatus = null;
+
+    /**
+     * Parses the test project and its source folder.
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        IJavaProject project = TestHelper.createTestProject();
+        aProjectModel = TestHelper.parseAndResolveProject(project, 1, ProjectParser.DEFAULT_BATCH_SIZE);
+
+        List<File> sourceDirectories = new ArrayList<File>();
+        sourceDirectories.add(project.getProject().getFolder("src").getLocation().toFile());
+        SourceDirectoryParser parser = new SourceDirectoryParser("TestProject1", sourceDirectories, new ArrayList<String>());
+        parser.setNumberOfWorkers(2);
+        parser.setBatchSize(2);
+        aStatus = parser.parse(new NullProgressMonitor());
+        UnresolvedInvocationHandler handler = new UnresolvedInvocationHandler(parser.getModel(), parser.getUnresolvedCalls());
+        handler.process(new NullProgressMonitor());
+        handler.addInvocations(new NullProgressMonitor());
+        aHeadlessModel = parser.getModel();
+    }
+
+    /**
+     * Converts the associations into strings without the file of the source anchor, which
+     * is the absolute path of the source file in the headless model.
+     *
+     * @param famixModel the FAMIX model
+     * @return  the set of association strings
+     */
+    private static Set<String> toAssociationStrings(FamixModel famixModel) {
+        Set<String> associations = new HashSet<String>();
+        for (FamixAssociation association : famixModel.getFamixAssociations()) {
+            String anchor = association.getSourceAnchor() != null ? association.getSourceAnchor().getStartPos() + "-"
+                    + association.getSourceAnchor().getEndPos() : "<none>";
+            associations.add(association.getType() + ":" + association.getFrom().getUniqueName() + "->"
+                    + association.getTo().getUniqueName() + ":" + anchor);
+        }
+        return associations;
+    }
+
+    @Test
+    public void testParsed() {
+        assertTrue(aStatus.isOK());
+        assertNotNull(aHeadlessModel);
+    }
+
+    @Test
+    public void testSameEntities() {
+        assertEquals(TestHelper.toEntityStrings(aProjectModel), TestHelper.toEntityStrings(aHeadlessModel));
+    }
+
+    @Test
+    public void testSameAssociations() {
+        assertEquals(toAssociationStrings(aProjectModel), toAssociationStrings(aHeadlessModel));
+    }
+
+    @Test
+    public void testSourceOfFile() {
+        FamixClass base = (FamixClass) aHeadlessModel.getElement(new FamixClass("testPackage.Base", null));
+        assertNotNull(base);
+        assertTrue(base.getSourceAnchor().getFile().endsWith("Base.java"));
+        assertTrue(base.getSource().contains("class Base"));
+    }
+}
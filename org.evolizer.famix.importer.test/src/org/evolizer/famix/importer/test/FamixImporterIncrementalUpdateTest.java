@@ -0,0 +1,145 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.evolizer.famix.importer.IncrementalModelUpdater;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares incrementally updated FAMIX models with FAMIX models extracted from scratch.
+ * 
+ * @author pinzger
+ */
+public class FamixImporterIncrementalUpdateTest {
+    /**
+     * The Java project to parse
+     */
+    protected static IJavaProject project = null;
+
+    /**
+     * Creates the test project before each test case because test cases modify it.
+     * 
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        project = TestHelper.createTestProject();
+    }
+
+    private ICompilationUnit getSumCompilationUnit() throws Exception {
+        return (ICompilationUnit) project.findElement(new Path("testPackage/Sum.java"));
+    }
+
+    private FamixModel parseAndUpdate(List<ICompilationUnit> changedUnits, Runnable modification) {
+        List<IJavaElement> selection = new LinkedList<IJavaElement>();
+        selection.add(project);
+        ProjectParser parser = new ProjectParser(selection);
+        parser.parse(null);
+        UnresolvedInvocationHandler handler = new UnresolvedInvocationHandler(parser.getModel(), parser.getUnresolvedCalls());
+        handler.process(new NullProgressMonitor());
+        handler.addInvocations(new NullProgressMonitor());
+
+        if (modification != null) {
+            modification.run();
+        }
+
+        IncrementalModelUpdater updater = new IncrementalModelUpdater(parser.getModel(), handler.getUnresolvedCalls());
+        updater.update(changedUnits, new NullProgressMonitor());
+
+        return updater.getModel();
+    }
+
+    @Test
+    public void testUpdateUnchangedFile() throws Exception {
+        List<ICompilationUnit> changedUnits = new LinkedList<ICompilationUnit>();
+        changedUnits.add(getSumCompilationUnit());
+
+        FamixModel updatedModel = parseAndUpdate(changedUnits, null);
+        FamixModel expectedModel = TestHelper.parseAndResolveProject(project, 1, ProjectParser.DEFAULT_BATCH_SIZE);
+
+        assertEquals(TestHelper.toEntityStrings(expectedModel), TestHelper.toEntityStrings(updatedModel));
+        assertEquals(TestHelper.toAssociationStrings(expectedModel), TestHelper.toAssociationStrings(updatedModel));
+    }
+
+    @Test
+    public void testUpdateChangedFile() throws Exception {
+        final ICompilationUnit sum = getSumCompilationUnit();
+        List<ICompilationUnit> changedUnits = new LinkedList<ICompilationUnit>();
+        changedUnits.add(sum);
+
+        FamixModel updatedModel = parseAndUpdate(changedUnits, new Runnable() {
+            public void run() {
+                try {
+                    String source = sum.getSource();
+                    source = source.substring(0, source.lastIndexOf('}')) 
+                            + "\tpublic int computeTwice() {\n\t\treturn compute() * 2;\n\t}\n}\n";
+                    ((IFile) sum.getResource()).setContents(new ByteArrayInputStream(source.getBytes()), true, false, null);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        FamixModel expectedModel = TestHelper.parseAndResolveProject(project, 1, ProjectParser.DEFAULT_BATCH_SIZE);
+
+        assertTrue(TestHelper.toEntityStrings(updatedModel).toString().contains("testPackage.Sum.computeTwice()"));
+        assertEquals(TestHelper.toEntityStrings(expectedModel), TestHelper.toEntityStrings(updatedModel));
+        assertEquals(TestHelper.toAssociationStrings(expectedModel), TestHelper.toAssociationStrings(updatedModel));
+    }
+
+    @Test
+    public void testUpdateRemovedMethod() throws Exception {
+        final ICompilationUnit sum = getSumCompilationUnit();
+        List<ICompilationUnit> changedUnits = new LinkedList<ICompilationUnit>();
+        changedUnits.add(sum);
+
+        // testPackage.ae.Test calls the removed method
+        FamixModel updatedModel = parseAndUpdate(changedUnits, new Runnable() {
+            public void run() {
+                try {
+                    String source = sum.getSource();
+                    int start = source.indexOf("\tpublic int computeOtherResolved");
+                    int end = source.indexOf('}', source.indexOf("return super.computeOther", start)) + 1;
+                    source = source.substring(0, start) + source.substring(end);
+                    ((IFile) sum.getResource()).setContents(new ByteArrayInputStream(source.getBytes()), true, false, null);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        assertTrue(TestHelper.toEntityStrings(updatedModel).toString().contains("testPackage.Sum.compute()"));
+        assertFalse(TestHelper.toEntityStrings(updatedModel).toString().contains("computeOtherResolved"));
+        assertFalse(TestHelper.toAssociationStrings(updatedModel).toString().contains("computeOtherResolved"));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.jdt.core.IJavaModel;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.evolizer.core.util.projecthandling.JavaProjectHelper;
+import org.evolizer.famix.importer.MultiProjectParser;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that the multi-project parser parses independent projects at the same time, but not more
+ * of them than the configured maximum number of concurrent projects.
+ *
+ * @author pinzger
+ */
+public class FamixImporterIndependentProjectsTest {
+
+    private static final String[] PROJECT_NAMES = {"IndependentProject1", "IndependentProject2", "IndependentProject3"};
+
+    /**
+     * Time in milliseconds a started project job waits for the other jobs allowed to run at the same time.
+     */
+    private static final long START_TIMEOUT = 5000;
+
+    private static List<IJavaProject> aJavaProjects = new LinkedList<IJavaProject>();
+
+    /**
+     * Sets up three projects that do not require each other.
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        JavaCore.setOptions(TestHelper.getJavaCoreOptions());
+        IJavaModel model = JavaCore.create(workspace.getRoot());
+
+        for (String name : PROJECT_NAMES) {
+            IProject project = workspace.getRoot().getProject(name);
+            if (project.exists()) {
+                project.delete(true, true, new NullProgressMonitor());
+            }
+
+            JavaProjectHelper helper = new JavaProjectHelper();
+            helper.createProject(name, "bin", null);
+            helper.addStandartSourceFolder(null);
+            helper.addPackage("testPackage", null);
+            for (String file : new String[]{"Base.java", "IBase.java", "Sum.java"}) {
+                helper.addSourceFile("testPackage", file, TestHelper.getFileContent(
+                        FamixImporterTestPlugin.openBundledFile("./data/testPackage/" + file)), null);
+            }
+
+            IJavaProject javaProject = model.getJavaProject(name);
+            assertTrue(name + " does not exist", javaProject.exists());
+            aJavaProjects.add(javaProject);
+        }
+    }
+
+    @Test
+    public void testIndependentProjectsParsedConcurrently() {
+        MultiProjectParser parser = new MultiProjectParser(aJavaProjects);
+        for (IJavaProject project : aJavaProjects) {
+            assertEquals(0, parser.getRequiredProjects(project).size());
+        }
+
+        assertEquals(2, parseAndCountRunningJobs(2));
+    }
+
+    @Test
+    public void testMaxConcurrentProjects() {
+        assertEquals(1, parseAndCountRunningJobs(1));
+    }
+
+    /**
+     * Parses the projects and returns the maximum number of project jobs that have been running at the
+     * same time. Each started job waits until the allowed number of jobs is running, such that the
+     * result does not depend on how fast the projects are parsed.
+     *
+     * @param maxConcurrentProjects The maximum number of projects parsed at the same time.
+     * @return  The maximum number of running project jobs.
+     */
+    private int parseAndCountRunningJobs(int maxConcurrentProjects) {
+        MultiProjectParser parser = new MultiProjectParser(aJavaProjects);
+        parser.setMaxConcurrentProjects(maxConcurrentProjects);
+        RunningJobsListener listener = new RunningJobsListener(parser, Math.min(maxConcurrentProjects, aJavaProjects.size()));
+        Job.getJobManager().addJobChangeListener(listener);
+        try {
+            assertEquals(IStatus.OK, parser.parse(new NullProgressMonitor()).getSeverity());
+        } finally {
+            Job.getJobManager().removeJobChangeListener(listener);
+        }
+
+        assertTrue(TestHelper.toEntityStrings(parser.getModel()).toString().contains("testPackage.Sum.compute()"));
+        assertEquals(aJavaProjects.size(), parser.getProjectOrder().size());
+        assertEquals(aJavaProjects.size(), listener.getNrOfStartedJobs());
+
+        return listener.getMaxRunningJobs();
+    }
+
+    /**
+     * Counts the running jobs of a job family.
+     */
+    private static class RunningJobsListener extends JobChangeAdapter {
+        private Object fFamily;
+        private int fNrOfExpectedRunningJobs;
+        private int fNrOfRunningJobs;
+        private int fMaxRunningJobs;
+        private int fNrOfStartedJobs;
+
+        /**
+         * The constructor.
+         *
+         * @param family    The job family.
+         * @param nrOfExpectedRunningJobs   The number of jobs a started job waits for.
+         */
+        public RunningJobsListener(Object family, int nrOfExpectedRunningJobs) {
+            fFamily = family;
+            fNrOfExpectedRunningJobs = nrOfExpectedRunningJobs;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized void running(IJobChangeEvent event) {
+            if (!event.getJob().belongsTo(fFamily)) {
+                return;
+            }
+            fNrOfStartedJobs++;
+            fNrOfRunningJobs++;
+            fMaxRunningJobs = Math.max(fMaxRunningJobs, fNrOfRunningJobs);
+            notifyAll();
+
+            long end = System.currentTimeMillis() + START_TIMEOUT;
+            try {
+                long remaining = end - System.currentTimeMillis();
+                while ((fNrOfRunningJobs < fNrOfExpectedRunningJobs) && (remaining > 0)) {
+                    wait(remaining);
+                    remaining = end - System.currentTimeMillis();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized void done(IJobChangeEvent event) {
+            if (event.getJob().belongsTo(fFamily)) {
+                fNrOfRunningJobs--;
+                notifyAll();
+            }
+        }
+
+        public synchronized int getMaxRunningJobs() {
+            return fMaxRunningJobs;
+        }
+
+        public synchronized int getNrOfStartedJobs() {
+            return fNrOfStartedJobs;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaModel;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.evolizer.famix.importer.MultiProjectParser;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the FAMIX model of two dependent projects extracted by the multi-project parser with the
+ * FAMIX model extracted by one project parser for both projects.
+ * 
+ * @author pinzger
+ */
+public class FamixImporterMultiProjectSchedulerTest {
+
+    private static IJavaProject aJavaProject1;
+    private static IJavaProject aJavaProject2;
+
+    /**
+     * Sets up the two test projects, TestProject2 requires TestProject1.
+     * 
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        for (String name : new String[]{"TestProject1", "TestProject2"}) {
+            IProject project = workspace.getRoot().getProject(name);
+            if (project.exists()) {
+                project.delete(true, true, new NullProgressMonitor());
+            }
+        }
+
+        JavaCore.setOptions(TestHelper.getJavaCoreOptions());
+        IJavaModel model = JavaCore.create(workspace.getRoot());
+
+        FamixImporterMultiProjectParsingTest.setUpProject1();
+        FamixImporterMultiProjectParsingTest.setUpProject2();
+
+        aJavaProject1 = model.getJavaProject("TestProject1");
+        assertTrue("TestProject1 does not exist", aJavaProject1.exists());
+        aJavaProject2 = model.getJavaProject("TestProject2");
+        assertTrue("TestProject2 does not exist", aJavaProject2.exists());
+
+        List<IClasspathEntry> entries = new ArrayList<IClasspathEntry>();
+        for (IClasspathEntry entry : aJavaProject2.getRawClasspath()) {
+            entries.add(entry);
+        }
+        entries.add(JavaCore.newProjectEntry(aJavaProject1.getPath()));
+        aJavaProject2.setRawClasspath(entries.toArray(new IClasspathEntry[entries.size()]), null);
+    }
+
+    /**
+     * Parses the projects with the multi-project parser and resolves the invocations.
+     * 
+     * @param maxConcurrentProjects the maximum number of projects parsed at the same time
+     * @return  the FAMIX model
+     */
+    private static FamixModel parseAndResolve(int maxConcurrentProjects) {
+        List<IJavaProject> projects = new LinkedList<IJavaProject>();
+        projects.add(aJavaProject2);
+        projects.add(aJavaProject1);
+        MultiProjectParser parser = new MultiProjectParser(projects);
+        parser.setMaxConcurrentProjects(maxConcurrentProjects);
+        assertEquals(IStatus.OK, parser.parse(new NullProgressMonitor()).getSeverity());
+
+        UnresolvedInvocationHandler handler = new UnresolvedInvocationHandler(parser.getModel(), parser.getUnresolvedCalls());
+        handler.process(new NullProgressMonitor());
+        handler.addInvocations(new NullProgressMonitor());
+        return parser.getModel();
+    }
+
+    @Test
+    public void testProjectOrder() {
+        List<IJavaProject> projects = new LinkedList<IJavaProject>();
+        projects.add(aJavaProject2);
+        projects.add(aJavaProject1);
+        MultiProjectParser parser = new MultiProjectParser(projects);
+        assertEquals(1, parser.getRequiredProjects(aJavaProject2).size());
+        assertEquals(0, parser.getRequiredProjects(aJavaProject1).size());
+        assertEquals(aJavaProject1, parser.getProjectOrder().get(0));
+        assertEquals(aJavaProject2, parser.getProjectOrder().get(1));
+    }
+
+    @Test
+    public void testSameModel() {
+        List<IJavaElement> selection = new LinkedList<IJavaElement>();
+        selection.add(aJavaProject1);
+        selection.add(aJavaProject2);
+        ProjectParser parser = new ProjectParser(selection);
+        parser.parse(null);
+        UnresolvedInvocationHandler handler = new UnresolvedInvocationHandler(parser.getModel(), parser.getUnresolvedCalls());
+        handler.process(new NullProgressMonitor());
+        handler.addInvocations(new NullProgressMonitor());
+        FamixModel sequentialModel = parser.getModel();
+
+        for (int maxConcurrentProjects = 1; maxConcurrentProjects <= 2; maxConcurrentProjects++) {
+            FamixModel model = parseAndResolve(maxConcurrentProjects);
+            assertEquals(TestHelper.toEntityStrings(sequentialModel), TestHelper.toEntityStrings(model));
+            assertEquals(TestHelper.toAssociationStrings(sequentialModel), TestHelper.toAssociationStrings(model));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.jdt.core.IJavaProject;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the FAMIX model extracted sequentially with the FAMIX model extracted
+ * by several parallel workers.
+ * 
+ * @author pinzger
+ */
+public class FamixImporterParallelParsingTest {
+    /**
+     * The FAMIX model extracted sequentially
+     */
+    protected static FamixModel aSequentialModel = null;
+    /**
+     * The FAMIX model extracted in parallel
+     */
+    protected static FamixModel aParallelModel = null;
+
+    /**
+     * Parses the test project sequentially and in parallel.
+     * 
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        IJavaProject project = TestHelper.createTestProject();
+        
+        aSequentialModel = TestHelper.parseAndResolveProject(project, 1, ProjectParser.DEFAULT_BATCH_SIZE);
+        aParallelModel = TestHelper.parseAndResolveProject(project, 3, ProjectParser.DEFAULT_BATCH_SIZE);
+    }
+
+    @Test
+    public void testSameEntities() {
+        assertNotNull(aSequentialModel);
+        assertNotNull(aParallelModel);
+        assertEquals(TestHelper.toEntityStrings(aSequentialModel), TestHelper.toEntityStrings(aParallelModel));
+    }
+
+    @Test
+    public void testSameAssociations() {
+        assertEquals(TestHelper.toAssociationStrings(aSequentialModel), TestHelper.toAssociationStrings(aParallelModel));
+    }
+
+    @Test
+    public void testEntitiesAreCanonical() {
+        for (AbstractFamixEntity entity : aParallelModel.getFamixEntities()) {
+            if (entity.getParent() != null) {
+                assertTrue("Parent of " + entity.getUniqueName() + " is not contained by the model", 
+                        aParallelModel.getElement(entity.getParent()) == entity.getParent());
+            }
+        }
+        for (FamixAssociation association : aParallelModel.getFamixAssociations()) {
+            assertTrue(aParallelModel.getElement(association.getFrom()) == association.getFrom());
+            assertTrue(aParallelModel.getElement(association.getTo()) == association.getTo());
+        }
+    }
+}
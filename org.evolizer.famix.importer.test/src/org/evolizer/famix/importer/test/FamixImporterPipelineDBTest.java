@@ -0,0 +1,95 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.preferences.EvolizerPreferences;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.importer.jobs.FamixParserJob;
+import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.importer.util.FamixImportPipeline;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Stores the model with the import pipeline while parsing and compares the loaded model
+ * with the model parsed and resolved without storing it.
+ *
+ * @author pinzger
+ */
+public class FamixImporterPipelineDBTest {
+
+    private static FamixModel aResolvedModel;
+    private static FamixModel aStoredModel;
+    private static IStatus aStatus;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        IJavaProject project = TestHelper.createTestProject();
+        aResolvedModel = TestHelper.parseAndResolveProject(project, 1, ProjectParser.DEFAULT_BATCH_SIZE);
+
+        project.getProject().setPersistentProperty(EvolizerPreferences.DB_USE_INMEMORY, "true");
+        EvolizerSessionHandler.getHandler().getCurrentSession(project.getProject());
+        String dbUrl = EvolizerSessionHandler.getHandler().getDBUrl(project.getProject());
+
+        List<IJavaElement> selection = new LinkedList<IJavaElement>();
+        selection.add(project);
+        FamixParserJob job = new FamixParserJob(selection);
+        FamixImportPipeline pipeline = new FamixImportPipeline(dbUrl, 7);
+        // small chunks and queue to exercise the hand-over between parser and writer
+        pipeline.setChunkSize(5);
+        pipeline.setQueueCapacity(1);
+        job.setImportPipeline(pipeline);
+        job.schedule();
+        job.join();
+        aStatus = job.getResult();
+
+        aStoredModel = new DAOModel(dbUrl).loadModel(job.getFamixModel().getName());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+    }
+
+    @Test
+    public void testStored() {
+        assertTrue(aStatus.isOK());
+        assertNotNull(aStoredModel);
+    }
+
+    @Test
+    public void testSameEntities() {
+        assertEquals(TestHelper.toEntityStrings(aResolvedModel), TestHelper.toEntityStrings(aStoredModel));
+    }
+
+    @Test
+    public void testSameAssociations() {
+        assertEquals(TestHelper.toAssociationStrings(aResolvedModel), TestHelper.toAssociationStrings(aStoredModel));
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IJavaElement;
+import org.evolizer.core.exceptions.EvolizerException;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.core.hibernate.session.api.IEvolizerUnitOfWork;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.entities.SourceAnchor;
+import org.evolizer.famix.model.utils.SnapshotAnalyzer;
+import org.evolizer.famix.model.utils.SourceCache;
+import org.evolizer.model.resources.entities.misc.Content;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Stores the test project twice, once with the Hibernate session and once in bulk mode, and tests that the
+ * source code of each Java file is stored in one shared source blob and is loaded again. Also tests that
+ * source code stored inline by previous versions is still loaded.
+ *
+ * @author pinzger
+ */
+public class FamixImporterSourceBlobDBTest {
+
+    private static final String LEGACY_CLASS_NAME = "legacy.Legacy";
+    private static final String LEGACY_SOURCE = "package legacy;\n\npublic class Legacy {\n}\n";
+
+    private static String dbUrl;
+    private static FamixModel firstModel;
+    private static FamixModel secondModel;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Properties properties = EvolizerSessionHandler.getDefaultH2InMemoryConfig("sourceBlobTest");
+        EvolizerSessionHandler.getHandler().getCurrentSession(properties);
+        dbUrl = properties.getProperty("hibernate.connection.url").substring("jdbc:".length());
+
+        firstModel = parseTestProject();
+        new DAOModel(dbUrl, firstModel).store(null);
+
+        // the second snapshot reuses the blobs stored with the first one
+        secondModel = parseTestProject();
+        DAOModel daoModel = new DAOModel(dbUrl, secondModel);
+        daoModel.setJdbcBatchSize(7);
+        daoModel.store(null);
+
+        new DAOModel(dbUrl, createLegacyModel()).store(null);
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        SourceCache.getSharedCache().clear();
+        EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+    }
+
+    @Test
+    public void testOneBlobPerFile() throws Exception {
+        Map<String, SourceBlob> blobsByFile = getBlobsByFile(firstModel);
+        assertTrue(blobsByFile.size() > 1);
+        Set<String> hashes = new HashSet<String>();
+        for (SourceBlob blob : blobsByFile.values()) {
+            assertNotNull(blob.getId());
+            hashes.add(blob.getHash());
+        }
+
+        for (Map.Entry<String, SourceBlob> entry : getBlobsByFile(secondModel).entrySet()) {
+            assertEquals("Blob of " + entry.getKey() + " not reused", blobsByFile.get(entry.getKey()).getId(), 
+                    entry.getValue().getId());
+        }
+        assertEquals(hashes.size(), countBlobs());
+    }
+
+    @Test
+    public void testSourceAfterReload() throws Exception {
+        final Map<String, String> expectedSources = new HashMap<String, String>();
+        for (AbstractFamixEntity entity : firstModel.getFamixEntities()) {
+            if ((entity instanceof FamixClass) && (entity.getSourceAnchor() != null)) {
+                expectedSources.put(entity.getUniqueName(), entity.getSource());
+            }
+        }
+        assertTrue(expectedSources.size() > 1);
+
+        // the sources must be decompressed from the loaded blobs
+        SourceCache.getSharedCache().clear();
+        EvolizerSessionHandler.getHandler().executeUnitOfWork(dbUrl, true, new IEvolizerUnitOfWork<Object>() {
+            public Object execute(IEvolizerSession session) throws EvolizerException {
+                List<AbstractFamixEntity> entities = new SnapshotAnalyzer(session).queryEntitiesByUniqueName(
+                        new ArrayList<String>(expectedSources.keySet()));
+                // both snapshots
+                assertEquals(2 * expectedSources.size(), entities.size());
+                for (AbstractFamixEntity entity : entities) {
+                    assertEquals("Source of " + entity.getUniqueName(), expectedSources.get(entity.getUniqueName()), 
+                            entity.getSource());
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testLegacyInlineSource() throws Exception {
+        SourceCache.getSharedCache().clear();
+        EvolizerSessionHandler.getHandler().executeUnitOfWork(dbUrl, true, new IEvolizerUnitOfWork<Object>() {
+            public Object execute(IEvolizerSession session) throws EvolizerException {
+                List<AbstractFamixEntity> entities = 
+                    new SnapshotAnalyzer(session).queryEntitiesByUniqueName(Arrays.asList(LEGACY_CLASS_NAME));
+                assertEquals(1, entities.size());
+                Content content = entities.get(0).getContent();
+                assertNull(content.getBlob());
+                assertEquals(LEGACY_SOURCE, content.getSource());
+                assertEquals(LEGACY_SOURCE, entities.get(0).getSource());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Parses the test project and resolves the unresolved invocations.
+     *
+     * @return  The model of the test project.
+     * @throws Exception
+     */
+    private static FamixModel parseTestProject() throws Exception {
+        List<IJavaElement> selection = new LinkedList<IJavaElement>();
+        selection.add(TestHelper.createTestProject());
+        ProjectParser parser = new ProjectParser(selection);
+        parser.parse(null);
+        UnresolvedInvocationHandler handler = new UnresolvedInvocationHandler(parser.getModel(), parser.getUnresolvedCalls());
+        handler.process(new NullProgressMonitor());
+        handler.addInvocations(new NullProgressMonitor());
+        return parser.getModel();
+    }
+
+    /**
+     * Creates a model with a class whose source code is stored inline, as stored by previous versions.
+     *
+     * @return  The model.
+     */
+    private static FamixModel createLegacyModel() {
+        FamixModel model = new FamixModel("legacy", new Date());
+        FamixPackage pack = (FamixPackage) model.addElement(new FamixPackage("legacy", null));
+        FamixClass clazz = (FamixClass) model.addElement(new FamixClass(LEGACY_CLASS_NAME, pack));
+        clazz.setSourceAnchor(new SourceAnchor("legacy/Legacy.java", 0, LEGACY_SOURCE.length()));
+        Content content = new Content();
+        content.setStoredSource(LEGACY_SOURCE);
+        clazz.setContent(content);
+        return model;
+    }
+
+    /**
+     * Returns the source blobs of the top-level classes of the given model by the file of the class.
+     *
+     * @param model The model.
+     * @return  The source blobs by file.
+     */
+    private Map<String, SourceBlob> getBlobsByFile(FamixModel model) {
+        Map<String, SourceBlob> blobsByFile = new HashMap<String, SourceBlob>();
+        for (AbstractFamixEntity entity : model.getFamixEntities()) {
+            SourceBlob blob = (entity.getContent() != null) ? entity.getContent().getBlob() : null;
+            if ((entity instanceof FamixClass) && (blob != null)) {
+                blobsByFile.put(entity.getSourceAnchor().getFile(), blob);
+            }
+        }
+        return blobsByFile;
+    }
+
+    /**
+     * Counts the stored source blobs.
+     *
+     * @return  The number of source blobs.
+     * @throws EvolizerException
+     */
+    private int countBlobs() throws EvolizerException {
+        return EvolizerSessionHandler.getHandler().executeUnitOfWork(dbUrl, true, new IEvolizerUnitOfWork<Integer>() {
+            public Integer execute(IEvolizerSession session) throws EvolizerException {
+                Number count = (Number) session.getHibernateSession()
+                        .createQuery("select count(*) from " + SourceBlob.class.getName())
+                        .uniqueResult();
+                return count.intValue();
+            }
+        });
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.evolizer.famix.importer.jobs.FamixParserJob;
+import org.evolizer.famix.importer.nodehandler.MethodDeclarationHandler;
+import org.evolizer.famix.importer.nodehandler.TypeDeclarationHandler;
+import org.evolizer.famix.importer.util.ImportStatistics;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks the timings and counts recorded while parsing and resolving the test project.
+ *
+ * @author pinzger
+ */
+public class FamixImporterStatisticsTest {
+
+    private static ImportStatistics aStatistics;
+    private static IStatus aStatus;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        IJavaProject project = TestHelper.createTestProject();
+
+        List<IJavaElement> selection = new LinkedList<IJavaElement>();
+        selection.add(project);
+        FamixParserJob job = new FamixParserJob(selection, 2);
+        job.schedule();
+        job.join();
+        aStatus = job.getResult();
+        aStatistics = job.getStatistics();
+    }
+
+    @Test
+    public void testParsed() {
+        assertTrue(aStatus.isOK());
+        assertNotNull(aStatistics);
+    }
+
+    @Test
+    public void testPhases() {
+        assertTrue(aStatistics.getPhases().contains(ImportStatistics.PHASE_PARSE));
+        assertTrue(aStatistics.getPhases().contains(ImportStatistics.PHASE_RESOLVE));
+        assertTrue(aStatistics.getPhases().contains(ImportStatistics.PHASE_ADD_INVOCATIONS));
+        assertTrue(aStatistics.getWallTime(ImportStatistics.PHASE_PARSE) > 0);
+    }
+
+    @Test
+    public void testHandlerVisits() {
+        assertEquals(6, aStatistics.getNrOfCompilationUnits());
+        assertTrue(aStatistics.getNrOfVisits(TypeDeclarationHandler.class) > 0);
+        assertTrue(aStatistics.getNrOfVisits(MethodDeclarationHandler.class) > 0);
+        assertTrue(aStatistics.getHandlers().contains(MethodDeclarationHandler.class.getSimpleName()));
+    }
+
+    @Test
+    public void testResolutionStages() {
+        // each stage filters the matches of the previous stage
+        assertTrue(aStatistics.getNrOfStageHits(ImportStatistics.STAGE_NAME)
+                >= aStatistics.getNrOfStageHits(ImportStatistics.STAGE_NR_OF_PARAMETERS));
+        assertTrue(aStatistics.getNrOfStageHits(ImportStatistics.STAGE_NR_OF_PARAMETERS)
+                >= aStatistics.getNrOfStageHits(ImportStatistics.STAGE_RECEIVER_TYPE));
+        assertTrue(aStatistics.getNrOfStageHits(ImportStatistics.STAGE_RECEIVER_TYPE)
+                >= aStatistics.getNrOfStageHits(ImportStatistics.STAGE_ALL_PARAMETERS_TYPE));
+        assertTrue(aStatistics.getNrOfStageHits(ImportStatistics.STAGE_UNIQUE_MATCH)
+                <= aStatistics.getNrOfStageHits(ImportStatistics.STAGE_ALL_PARAMETERS_TYPE));
+    }
+
+    @Test
+    public void testResolutionStageCounts() {
+        ImportStatistics lStatistics = new ImportStatistics();
+        lStatistics.recordResolutionStage(ImportStatistics.STAGE_NAME, true);
+        lStatistics.recordResolutionStage(ImportStatistics.STAGE_NAME, true);
+        lStatistics.recordResolutionStage(ImportStatistics.STAGE_NAME, true);
+        lStatistics.recordResolutionStage(ImportStatistics.STAGE_NAME, false);
+        lStatistics.recordResolutionStage(ImportStatistics.STAGE_UNIQUE_MATCH, false);
+        assertEquals(3, lStatistics.getNrOfStageHits(ImportStatistics.STAGE_NAME));
+        assertEquals(0.75, lStatistics.getHitRate(ImportStatistics.STAGE_NAME), 0);
+        assertEquals(0, lStatistics.getNrOfStageHits(ImportStatistics.STAGE_UNIQUE_MATCH));
+        assertEquals(0, lStatistics.getHitRate(ImportStatistics.STAGE_UNIQUE_MATCH), 0);
+        assertEquals(0, lStatistics.getHitRate(ImportStatistics.STAGE_RECEIVER_TYPE), 0);
+    }
+
+    @Test
+    public void testReport() {
+        String lReport = aStatistics.getReport();
+        assertTrue(lReport.contains(ImportStatistics.PHASE_PARSE));
+        assertTrue(lReport.contains(MethodDeclarationHandler.class.getSimpleName()));
+    }
+
+    @Test
+    public void testStoredRows() {
+        ImportStatistics lStatistics = new ImportStatistics();
+        lStatistics.recordStoredRows(500, 250000000L);
+        lStatistics.recordStoredRows(500, 250000000L);
+        assertEquals(1000, lStatistics.getNrOfStoredRows());
+        assertEquals(2000, lStatistics.getRowsPerSecond());
+    }
+}
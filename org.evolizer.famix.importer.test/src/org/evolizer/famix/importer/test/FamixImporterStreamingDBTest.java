@@ -0,0 +1,84 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.preferences.EvolizerPreferences;
+import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Streams the stored model with lazily loaded associations and runs the importer tests
+ * on the streamed model.
+ *
+ * @author pinzger
+ */
+public class FamixImporterStreamingDBTest extends FamixImporterTest {
+
+    private static FamixModel createdModel;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        FamixImporterTest.setUpBeforeClass();
+
+        project.getProject().setPersistentProperty(EvolizerPreferences.DB_USE_INMEMORY, "true");
+        createdModel = aModel;
+
+        EvolizerSessionHandler.getHandler().getCurrentSession(project.getProject());
+        DAOModel aDAOModel = new DAOModel(EvolizerSessionHandler.getHandler().getDBUrl(project.getProject()), createdModel);
+        aDAOModel.store(null);
+
+        aModel = aDAOModel.loadModelStreaming(createdModel.getName());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        FamixImporterTest.tearDownAfterClass();
+
+        EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+    }
+
+    @Test
+    public void testSameEntities() {
+        assertEquals(TestHelper.toEntityStrings(createdModel), TestHelper.toEntityStrings(aModel));
+    }
+
+    @Test
+    public void testAssociationsLoadedOnAccess() {
+        AbstractFamixEntity entity = aModel.getElement(createdModel.getFamixEntities().iterator().next());
+        DAOModel aDAOModel = new DAOModel(EvolizerSessionHandler.getHandler().getDBUrl(project.getProject()));
+        FamixModel model = aDAOModel.loadModelStreaming(createdModel.getName());
+        assertFalse(model.isMaterialized(entity));
+        model.getAssociations(entity);
+        assertTrue(model.isMaterialized(entity));
+    }
+
+    @Test
+    public void testSameAssociations() {
+        for (AbstractFamixEntity entity : aModel.getFamixEntities()) {
+            aModel.getAssociations(entity);
+        }
+        assertEquals(TestHelper.toAssociationStrings(createdModel), TestHelper.toAssociationStrings(aModel));
+    }
+}
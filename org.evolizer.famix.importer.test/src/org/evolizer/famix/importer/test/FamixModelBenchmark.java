@@ -0,0 +1,122 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixInvocation;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.entities.SourceAnchor;
+
+/**
+ * Micro benchmark of the throughput of {@link FamixModel#addElement} and {@link FamixModel#addRelation},
+ * which is dominated by the hash codes and equality checks of the FAMIX entities and associations.
+ * Each round builds a synthetic model of fresh, non-canonical objects as the parser does, and the
+ * operations per second after warm-up are logged. Run as Java application with the test plug-in
+ * started, since the results are reported through its log manager.
+ *
+ * Usage: <code>FamixModelBenchmark [classes] [rounds]</code>
+ *
+ * @author pinzger
+ */
+public final class FamixModelBenchmark {
+
+    private static final int METHODS_PER_CLASS = 10;
+    private static final int CALLS_PER_METHOD = 5;
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static Logger logger = FamixImporterTestPlugin.getLogManager().getLogger(FamixModelBenchmark.class.getName());
+
+    private FamixModelBenchmark() {}
+
+    public static void main(String[] args) {
+        int nrOfClasses = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(nrOfClasses);
+        }
+        long elementNanos = 0;
+        long relationNanos = 0;
+        long elements = 0;
+        long relations = 0;
+        for (int i = 0; i < rounds; i++) {
+            long[] result = run(nrOfClasses);
+            elements += result[0];
+            elementNanos += result[1];
+            relations += result[2];
+            relationNanos += result[3];
+        }
+        logger.info("addElement:  " + (elements * 1000000000L / elementNanos) + " ops/s");
+        logger.info("addRelation: " + (relations * 1000000000L / relationNanos) + " ops/s");
+    }
+
+    /**
+     * Builds one model.
+     *
+     * @param nrOfClasses The number of classes.
+     * @return The number of added elements, the time for adding them, the number of added relations, and the time
+     *         for adding them.
+     */
+    private static long[] run(int nrOfClasses) {
+        List<FamixMethod> methods = new ArrayList<FamixMethod>();
+        List<AbstractFamixEntity> elements = new ArrayList<AbstractFamixEntity>();
+        FamixPackage pack = new FamixPackage("org.evolizer.bench", null);
+        elements.add(pack);
+        for (int c = 0; c < nrOfClasses; c++) {
+            FamixClass clazz = new FamixClass(pack.getUniqueName() + ".Class" + c, pack);
+            elements.add(clazz);
+            for (int m = 0; m < METHODS_PER_CLASS; m++) {
+                FamixMethod method = new FamixMethod(clazz.getUniqueName() + ".method" + m + "(java.lang.String,int)", clazz);
+                elements.add(method);
+                methods.add(method);
+            }
+        }
+        List<FamixInvocation> invocations = new ArrayList<FamixInvocation>();
+        for (int m = 0; m < methods.size(); m++) {
+            FamixMethod caller = methods.get(m);
+            for (int i = 1; i <= CALLS_PER_METHOD; i++) {
+                // fresh copies as created by the parser for each call
+                FamixMethod from = new FamixMethod(caller.getUniqueName());
+                FamixMethod to = new FamixMethod(methods.get((m * 7 + i * 13) % methods.size()).getUniqueName());
+                FamixInvocation invocation = new FamixInvocation(from, to);
+                invocation.setSourceAnchor(new SourceAnchor(caller.getParent().getUniqueName() + ".java", m * 100 + i, m * 100 + i + 10));
+                invocations.add(invocation);
+            }
+        }
+
+        FamixModel model = new FamixModel("bench", new Date());
+        long start = System.nanoTime();
+        for (AbstractFamixEntity element : elements) {
+            model.addElement(element);
+        }
+        long elementNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (FamixInvocation invocation : invocations) {
+            model.addRelation(invocation);
+        }
+        long relationNanos = System.nanoTime() - start;
+
+        return new long[] {elements.size(), elementNanos, invocations.size(), relationNanos};
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Set;
+
+import org.evolizer.famix.importer.ASTCrawler;
+import org.evolizer.famix.importer.FamixModelFactory;
+import org.evolizer.famix.importer.unresolved.UnresolvedAnonymousClassInstanceCreationInvocation;
+import org.evolizer.famix.importer.unresolved.UnresolvedMethodInvocation;
+import org.evolizer.famix.importer.util.FamixParseCache;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixAttribute;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixInheritance;
+import org.evolizer.famix.model.entities.FamixInvocation;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.entities.FamixParameter;
+import org.evolizer.famix.model.entities.SourceAnchor;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the storage of partial models and unresolved invocations in the parse cache, the pruning of entries, and the
+ * detection of changed declarations.
+ *
+ * @author pinzger
+ */
+public class FamixParseCacheTest {
+
+    private static final String SOURCE = "package p;\nclass A extends B {\n    int a;\n    void m(int x) { b(); }\n}\n";
+
+    private File directory;
+    private FamixParseCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("famixcache", "");
+        directory.delete();
+        cache = new FamixParseCache(directory);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        directory.delete();
+    }
+
+    private FamixModel createPartialModel(String attributeType) {
+        FamixModel model = new FamixModel("test", new Date());
+        FamixPackage pack = new FamixPackage("p", null);
+        FamixClass classA = new FamixClass("p.A", pack);
+        classA.setSourceAnchor(new SourceAnchor("A.java", 11, SOURCE.length()));
+        classA.setSource(new SourceBlob(SOURCE));
+        pack.getClasses().add(classA);
+        FamixAttribute attribute = new FamixAttribute("p.A.a", classA);
+        attribute.setSourceAnchor(new SourceAnchor("A.java", 35, 41));
+        attribute.setDeclaredClass(new FamixClass(attributeType, null));
+        classA.getAttributes().add(attribute);
+        FamixMethod method = new FamixMethod("p.A.m(int)", classA);
+        method.setSourceAnchor(new SourceAnchor("A.java", 46, 68));
+        method.getComments().add("// calls b");
+        classA.getMethods().add(method);
+        FamixParameter parameter = new FamixParameter("p.A.m(int).x", method, 0);
+        method.getParameters().add(parameter);
+        for (AbstractFamixEntity entity : new AbstractFamixEntity[] {pack, classA, attribute, method, parameter}) {
+            model.addElement(entity);
+        }
+
+        // referenced entities are added by the parser, their packages are not
+        FamixClass classB = new FamixClass("q.B", new FamixPackage("q", null));
+        FamixMethod methodB = new FamixMethod("q.B.b()", classB);
+        model.addElement(classB);
+        model.addElement(methodB);
+        FamixInheritance inheritance = new FamixInheritance(classA, classB);
+        inheritance.setSourceAnchor(new SourceAnchor("A.java", 19, 28));
+        model.addRelation(inheritance);
+        FamixInvocation invocation = new FamixInvocation(method, methodB);
+        invocation.setStatement("b()");
+        invocation.setSourceAnchor(new SourceAnchor("A.java", 62, 65));
+        model.addRelation(invocation);
+        return model;
+    }
+
+    @Test
+    public void testReplay() {
+        FamixModel model = createPartialModel("int");
+        String hash = SourceBlob.computeHash(SOURCE);
+        cache.store(hash, model, new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>());
+
+        SourceBlob blob = new SourceBlob(SOURCE);
+        FamixModel replayed = cache.load(hash, "replay", new Date(), blob, null, 
+                new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>());
+        assertNotNull(replayed);
+        assertEquals(model.getFamixEntities(), replayed.getFamixEntities());
+        assertEquals(model.getFamixAssociations(), replayed.getFamixAssociations());
+
+        FamixClass classA = (FamixClass) replayed.getElement(new FamixClass("p.A", null));
+        assertSame(blob, classA.getContent().getBlob());
+        assertEquals("p", classA.getParent().getUniqueName());
+        assertEquals(1, classA.getAttributes().size());
+        FamixAttribute attribute = classA.getAttributes().iterator().next();
+        assertEquals("int", attribute.getDeclaredClass().getUniqueName());
+        FamixMethod method = (FamixMethod) replayed.getElement(new FamixMethod("p.A.m(int)", null));
+        assertEquals(Integer.valueOf(46), method.getSourceAnchor().getStartPos());
+        assertTrue(method.getComments().contains("// calls b"));
+        assertEquals(Integer.valueOf(0), method.getParameters().get(0).getParamIndex());
+        for (FamixAssociation association : replayed.getFamixAssociations()) {
+            if (association instanceof FamixInvocation) {
+                assertEquals("b()", association.getStatement());
+                assertEquals("q.B", association.getTo().getParent().getUniqueName());
+            }
+        }
+        assertEquals(1, cache.getNrOfHits());
+        assertNull(cache.load("unknown", "replay", new Date(), blob, null, 
+                new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>()));
+        assertEquals(1, cache.getNrOfMisses());
+    }
+
+    @Test
+    public void testUnresolvedInvocationsReplayed() {
+        FamixModel model = createPartialModel("int");
+        FamixMethod method = (FamixMethod) model.getElement(new FamixMethod("p.A.m(int)", null));
+        Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls = 
+                new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+        UnresolvedMethodInvocation invocation = new UnresolvedMethodInvocation();
+        invocation.restore(null, method, "x.c(x)", "r.C", Arrays.asList("int"), "c", new SourceAnchor("A.java", 50, 56));
+        UnresolvedAnonymousClassInstanceCreationInvocation creation = new UnresolvedAnonymousClassInstanceCreationInvocation();
+        creation.restore(null, method, "new R(){}", "p.A$1", Arrays.asList(new String[0]), null, null);
+        creation.setAnonymousClassID("p.A$1");
+        unresolvedCalls.put(method, Arrays.asList(invocation, creation));
+        String hash = SourceBlob.computeHash(SOURCE);
+        cache.store(hash, model, unresolvedCalls);
+
+        ASTCrawler crawler = new ASTCrawler(null, new FamixModelFactory());
+        Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> replayedCalls = 
+                new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+        FamixModel replayed = cache.load(hash, "replay", new Date(), new SourceBlob(SOURCE), crawler, replayedCalls);
+        assertNotNull(replayed);
+        assertEquals(1, replayedCalls.size());
+        FamixMethod caller = replayedCalls.keySet().iterator().next();
+        assertSame(replayed.getElement(method), caller);
+        List<UnresolvedMethodInvocation> invocations = replayedCalls.get(caller);
+        assertEquals(2, invocations.size());
+
+        UnresolvedMethodInvocation replayedInvocation = invocations.get(0);
+        assertTrue(replayedInvocation.isDetached());
+        assertSame(crawler, replayedInvocation.getCrawler());
+        assertSame(caller, replayedInvocation.getCaller());
+        assertEquals("x.c(x)", replayedInvocation.getStatement());
+        assertEquals("r.C.c(int)", replayedInvocation.toString());
+        assertEquals(Integer.valueOf(50), replayedInvocation.getSourceAnchor().getStartPos());
+        UnresolvedAnonymousClassInstanceCreationInvocation replayedCreation = 
+                (UnresolvedAnonymousClassInstanceCreationInvocation) invocations.get(1);
+        assertEquals("p.A$1", replayedCreation.getAnonymousClassID());
+        assertEquals(0, replayedCreation.getNrOfArguments());
+        assertNull(replayedCreation.getSourceAnchor());
+
+        assertTrue(FamixParseCache.getReferencedNames(replayed, replayedCalls).contains("r.C"));
+        assertFalse(FamixParseCache.getReferencedNames(replayed).contains("r.C"));
+        // the declarations are read without the unresolved invocations
+        assertNotNull(cache.loadDeclarations(hash));
+    }
+
+    @Test
+    public void testHashCoversClasspath() {
+        assertEquals(FamixParseCache.computeHash(SOURCE, "1.6:lib.jar@1"), FamixParseCache.computeHash(SOURCE, "1.6:lib.jar@1"));
+        assertFalse(FamixParseCache.computeHash(SOURCE, "1.6:lib.jar@1").equals(FamixParseCache.computeHash(SOURCE, "1.6:lib.jar@2")));
+    }
+
+    @Test
+    public void testPrune() {
+        Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> noCalls = 
+                new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+        cache.store("previous", createPartialModel("int"), noCalls);
+        cache.store("current", createPartialModel("long"), noCalls);
+        cache.index("=p/src<p{A.java", "current");
+        cache.saveIndex();
+
+        assertEquals(1, cache.prune());
+        assertNull(cache.loadDeclarations("previous"));
+        assertNotNull(cache.loadDeclarations("current"));
+        assertEquals(0, cache.prune());
+    }
+
+    @Test
+    public void testChangedDeclarations() {
+        FamixModel previous = createPartialModel("int");
+        FamixModel current = createPartialModel("long");
+        Set<String> changed = FamixParseCache.getChangedDeclarations(previous, current);
+        assertEquals(2, changed.size());
+        assertTrue(changed.contains("p.A.a"));
+        assertTrue(changed.contains("p.A"));
+        assertTrue(FamixParseCache.getChangedDeclarations(previous, createPartialModel("int")).isEmpty());
+        assertEquals(3, FamixParseCache.getChangedDeclarations(null, current).size());
+        assertTrue(FamixParseCache.getReferencedNames(current).contains("q.B.b()"));
+    }
+
+    @Test
+    public void testIndex() {
+        cache.index("=p/src<p{A.java", "abc");
+        cache.saveIndex();
+        FamixParseCache reopened = new FamixParseCache(directory);
+        assertEquals("abc", reopened.getIndexedHash("=p/src<p{A.java"));
+        reopened.removeFromIndex("=p/src<p{A.java");
+        assertTrue(reopened.getIndexedPaths().isEmpty());
+    }
+}
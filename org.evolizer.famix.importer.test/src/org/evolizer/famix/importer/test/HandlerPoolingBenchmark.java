@@ -0,0 +1,208 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+import org.evolizer.famix.importer.ASTCrawler;
+import org.evolizer.famix.importer.FamixModelFactory;
+import org.evolizer.famix.importer.util.ImportStatistics;
+import org.evolizer.famix.model.entities.FamixModel;
+
+/**
+ * Micro benchmark of the crawler with and without reusing the node handlers. The ASTs of the source files
+ * below a source directory are created once, then each round crawls all of them and the handlers created,
+ * the time, and the bytes allocated per dispatched AST node are logged for both modes after warm-up.
+ * Run as Java application with the FAMIX importer and the test plug-in started, since the crawler and
+ * the benchmark log through their log managers.
+ *
+ * Usage: <code>HandlerPoolingBenchmark [source directory] [rounds]</code>
+ *
+ * @author pinzger
+ */
+public final class HandlerPoolingBenchmark {
+
+    private static final int WARMUP_ROUNDS = 20;
+
+    private static Logger logger = FamixImporterTestPlugin.getLogManager().getLogger(HandlerPoolingBenchmark.class.getName());
+
+    private static List<String> sFileNames = new ArrayList<String>();
+    private static List<String> sSources = new ArrayList<String>();
+    private static List<CompilationUnit> sASTs = new ArrayList<CompilationUnit>();
+
+    private HandlerPoolingBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        String sourceDirectory = (args.length > 0) ? args[0] : "data";
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+
+        createASTs(sourceDirectory);
+        benchmark(false, rounds);
+        benchmark(true, rounds);
+    }
+
+    /**
+     * Creates the ASTs with resolved bindings of the source files below the given directory.
+     *
+     * @param sourceDirectory The source directory.
+     * @throws IOException If a source file cannot be read.
+     */
+    @SuppressWarnings("unchecked")
+    private static void createASTs(String sourceDirectory) throws IOException {
+        List<String> files = new ArrayList<String>();
+        collectSourceFiles(new File(sourceDirectory), files);
+
+        Map<String, String> options = JavaCore.getOptions();
+        JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+        ASTParser parser = ASTParser.newParser(AST.JLS3);
+        parser.setCompilerOptions(options);
+        parser.setEnvironment(new String[0], new String[] {sourceDirectory}, null, true);
+        parser.setResolveBindings(true);
+        parser.createASTs(files.toArray(new String[files.size()]), null, new String[0], new FileASTRequestor() {
+            @Override
+            public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+                sFileNames.add(sourceFilePath);
+                sASTs.add(ast);
+            }
+        }, new NullProgressMonitor());
+
+        for (String fileName : sFileNames) {
+            sSources.add(readSource(fileName));
+        }
+    }
+
+    /**
+     * Adds the Java source files below the given directory.
+     *
+     * @param directory The directory.
+     * @param files The collected source files.
+     */
+    private static void collectSourceFiles(File directory, List<String> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectSourceFiles(child, files);
+            } else if (child.getName().endsWith(".java")) {
+                files.add(child.getPath());
+            }
+        }
+    }
+
+    /**
+     * Reads the given source file.
+     *
+     * @param fileName The source file.
+     * @return The source code.
+     * @throws IOException If the file cannot be read.
+     */
+    private static String readSource(String fileName) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(fileName));
+        try {
+            StringBuilder source = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read = reader.read(buffer);
+            while (read >= 0) {
+                source.append(buffer, 0, read);
+                read = reader.read(buffer);
+            }
+            return source.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Runs the crawler in one mode and logs the averages per round and per node.
+     *
+     * @param pooling true to reuse the node handlers.
+     * @param rounds The number of measured rounds.
+     */
+    private static void benchmark(boolean pooling, int rounds) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            crawl(pooling);
+        }
+        long nodes = 0;
+        long handlers = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < rounds; i++) {
+            long allocatedBytes = getAllocatedBytes();
+            long start = System.nanoTime();
+            ASTCrawler crawler = crawl(pooling);
+            nanos += System.nanoTime() - start;
+            bytes = ((allocatedBytes < 0) || (bytes < 0)) ? -1 : bytes + getAllocatedBytes() - allocatedBytes;
+            nodes += crawler.getStatistics().getNrOfVisits();
+            handlers = crawler.getHandlerPool().getNrOfCreatedHandlers();
+        }
+        logger.info((pooling ? "pooled:    " : "allocating:") + " " + (nodes / Math.max(1, rounds)) + " nodes, "
+                + handlers + " handlers created, " + (nanos / Math.max(1, nodes)) + " ns/node, "
+                + ((bytes < 0) ? "n/a" : String.valueOf(bytes / Math.max(1, nodes))) + " bytes/node");
+    }
+
+    /**
+     * Crawls the ASTs once.
+     *
+     * @param pooling true to reuse the node handlers.
+     * @return The crawler.
+     */
+    private static ASTCrawler crawl(boolean pooling) {
+        ASTCrawler crawler = new ASTCrawler(new FamixModel("benchmark", new Date()), new FamixModelFactory());
+        ImportStatistics statistics = new ImportStatistics();
+        statistics.setHandlerTimingEnabled(false);
+        crawler.setStatistics(statistics);
+        crawler.setHandlerPooling(pooling);
+        for (int i = 0; i < sASTs.size(); i++) {
+            crawler.analyze(sFileNames.get(i), sSources.get(i), sASTs.get(i), new NullProgressMonitor());
+        }
+        return crawler;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far.
+     *
+     * @return The allocated bytes, or -1 if the JVM does not count them.
+     */
+    private static long getAllocatedBytes() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+            return (Long) method.invoke(bean, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import org.evolizer.core.hibernate.session.internal.PooledConnectionProvider;
+import org.hibernate.cfg.Environment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the reuse, the bound, and the release of the connections of the {@link PooledConnectionProvider}.
+ *
+ * @author pinzger
+ */
+public class PooledConnectionProviderTest {
+
+    private PooledConnectionProvider provider;
+
+    @Before
+    public void setUp() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(Environment.DRIVER, "org.h2.Driver");
+        properties.setProperty(Environment.URL, "jdbc:h2:mem:connectionPoolTest");
+        properties.setProperty(Environment.USER, "sa");
+        properties.setProperty(Environment.PASS, "sa");
+        properties.setProperty(Environment.POOL_SIZE, "2");
+        properties.setProperty(PooledConnectionProvider.POOL_MIN_SIZE, "1");
+        properties.setProperty(PooledConnectionProvider.POOL_CHECKOUT_TIMEOUT, "100");
+
+        provider = new PooledConnectionProvider();
+        provider.configure(properties);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        provider.close();
+    }
+
+    @Test
+    public void testConnectionReused() throws Exception {
+        Connection connection = provider.getConnection();
+        assertEquals(1, provider.getNrOfActiveConnections());
+        provider.closeConnection(connection);
+        assertEquals(0, provider.getNrOfActiveConnections());
+        assertEquals(1, provider.getNrOfIdleConnections());
+
+        Connection reused = provider.getConnection();
+        assertSame(connection, reused);
+        assertEquals(0, provider.getNrOfIdleConnections());
+        provider.closeConnection(reused);
+    }
+
+    @Test
+    public void testMaxSizeBounded() throws Exception {
+        Connection first = provider.getConnection();
+        Connection second = provider.getConnection();
+        assertNotSame(first, second);
+        assertEquals(2, provider.getNrOfActiveConnections());
+        assertCheckoutTimesOut();
+
+        provider.closeConnection(first);
+        Connection third = provider.getConnection();
+        assertSame(first, third);
+        provider.closeConnection(second);
+        provider.closeConnection(third);
+    }
+
+    @Test
+    public void testDoubleCloseReleasesOnePermit() throws Exception {
+        Connection connection = provider.getConnection();
+        provider.closeConnection(connection);
+        provider.closeConnection(connection);
+        assertEquals(0, provider.getNrOfActiveConnections());
+
+        Connection first = provider.getConnection();
+        Connection second = provider.getConnection();
+        assertEquals(2, provider.getNrOfActiveConnections());
+        assertCheckoutTimesOut();
+        provider.closeConnection(first);
+        provider.closeConnection(second);
+    }
+
+    @Test
+    public void testUncommittedWorkRolledBack() throws Exception {
+        Connection connection = provider.getConnection();
+        connection.setAutoCommit(false);
+        Statement statement = connection.createStatement();
+        statement.execute("create table pooled (id int)");
+        connection.commit();
+        statement.execute("insert into pooled values (1)");
+        statement.close();
+        provider.closeConnection(connection);
+
+        Connection reused = provider.getConnection();
+        statement = reused.createStatement();
+        ResultSet rows = statement.executeQuery("select count(*) from pooled");
+        rows.next();
+        assertEquals(0, rows.getInt(1));
+        rows.close();
+        statement.execute("drop table pooled");
+        statement.close();
+        provider.closeConnection(reused);
+    }
+
+    private void assertCheckoutTimesOut() {
+        try {
+            provider.getConnection();
+            fail("Checkout must time out when all connections are in use");
+        } catch (SQLException sqle) {
+            assertEquals(provider.getMaxSize(), provider.getNrOfActiveConnections());
+        }
+    }
+}
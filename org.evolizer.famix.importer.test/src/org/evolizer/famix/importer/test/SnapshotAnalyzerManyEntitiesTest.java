@@ -0,0 +1,232 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixInvocation;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.utils.SnapshotAnalyzer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that the associations of entity sets are the same when queried with one <code>IN</code> list,
+ * in chunks of {@link SnapshotAnalyzer#ENTITY_CHUNK_SIZE} entities, and by joining temporary tables.
+ * Also tests the associations between parent entities whose descendants exceed one chunk.
+ *
+ * @author pinzger
+ */
+public class SnapshotAnalyzerManyEntitiesTest {
+
+    private static final int NR_OF_CLASSES = 30;
+    private static final int NR_OF_METHODS_PER_CLASS = 20;
+    /**
+     * Size of the queried set, above the chunk size and below the number of methods.
+     */
+    private static final int NR_OF_QUERIED_METHODS = SnapshotAnalyzer.ENTITY_CHUNK_SIZE + 50;
+    /**
+     * Size of the queried subset that fits into one <code>IN</code> list.
+     */
+    private static final int NR_OF_QUERIED_METHODS_IN_ONE_LIST = SnapshotAnalyzer.ENTITY_CHUNK_SIZE - 100;
+
+    private static IEvolizerSession session;
+    private static List<String> classNames = new ArrayList<String>();
+    private static List<String> methodNames = new ArrayList<String>();
+    private static List<String[]> calls = new ArrayList<String[]>();
+    private static List<AbstractFamixEntity> storedMethods;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        FamixModel model = new FamixModel("manyEntities", new Date());
+        FamixPackage pack = (FamixPackage) model.addElement(new FamixPackage("p", null));
+        List<FamixMethod> methods = new ArrayList<FamixMethod>();
+        for (int c = 0; c < NR_OF_CLASSES; c++) {
+            FamixClass clazz = (FamixClass) model.addElement(new FamixClass("p.C" + c, pack));
+            classNames.add(clazz.getUniqueName());
+            for (int m = 0; m < NR_OF_METHODS_PER_CLASS; m++) {
+                FamixMethod method = (FamixMethod) model.addElement(new FamixMethod("p.C" + c + ".m" + m + "()", clazz));
+                methods.add(method);
+                methodNames.add(method.getUniqueName());
+            }
+        }
+        // calls within and across the queried sets, including calls to methods outside of them
+        for (int i = 0; i < methods.size(); i++) {
+            int[] callees = {(i + 1) % methods.size(), (i * 7 + 3) % methods.size()};
+            for (int j = 0; j < callees.length; j++) {
+                if ((j == 0) || (callees[1] != callees[0])) {
+                    model.addRelation(new FamixInvocation(methods.get(i), methods.get(callees[j])));
+                    calls.add(new String[] {methodNames.get(i), methodNames.get(callees[j])});
+                }
+            }
+        }
+
+        Properties properties = EvolizerSessionHandler.getDefaultH2InMemoryConfig("manyEntitiesTest");
+        session = EvolizerSessionHandler.getHandler().getCurrentSession(properties);
+        String dbUrl = properties.getProperty("hibernate.connection.url").substring("jdbc:".length());
+        new DAOModel(dbUrl, model).store(null);
+
+        storedMethods = new SnapshotAnalyzer(session).queryEntitiesByUniqueName(methodNames.subList(0, NR_OF_QUERIED_METHODS));
+        assertEquals(NR_OF_QUERIED_METHODS, storedMethods.size());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+    }
+
+    @Test
+    public void testAssociationsOfEntitiesInOneList() throws Exception {
+        List<AbstractFamixEntity> entities = storedMethods.subList(0, NR_OF_QUERIED_METHODS_IN_ONE_LIST);
+        Set<String> expected = getExpectedCalls(entities, false);
+        assertFalse(expected.isEmpty());
+
+        assertEquals(expected, toCalls(createAnalyzer(0).queryAssociationsOfEntities(entities, FamixInvocation.class, "from")));
+        assertEquals(expected, toCalls(createAnalyzer(1).queryAssociationsOfEntities(entities, FamixInvocation.class, "from")));
+    }
+
+    @Test
+    public void testAssociationsOfEntitiesInChunksAndTemporaryTables() throws Exception {
+        Set<String> expected = getExpectedCalls(storedMethods, false);
+        assertFalse(expected.isEmpty());
+
+        // the threshold 0 never uses temporary tables, 1 always for more than the chunk size
+        assertEquals(expected, toCalls(createAnalyzer(0).queryAssociationsOfEntities(storedMethods, FamixInvocation.class, "from")));
+        assertEquals(expected, toCalls(createAnalyzer(1).queryAssociationsOfEntities(storedMethods, FamixInvocation.class, "from")));
+        // repeated to reuse the temporary tables
+        assertEquals(expected, toCalls(createAnalyzer(1).queryAssociationsOfEntities(storedMethods, FamixInvocation.class, "from")));
+    }
+
+    @Test
+    public void testAssociationsBetweenEntities() throws Exception {
+        List<AbstractFamixEntity> entities = storedMethods.subList(0, NR_OF_QUERIED_METHODS_IN_ONE_LIST);
+        Set<String> expected = getExpectedCalls(entities, true);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, toCalls(createAnalyzer(0).queryAssociationsBetweenEntities(entities, FamixInvocation.class)));
+
+        expected = getExpectedCalls(storedMethods, true);
+        assertEquals(expected, toCalls(createAnalyzer(0).queryAssociationsBetweenEntities(storedMethods, FamixInvocation.class)));
+        assertEquals(expected, toCalls(createAnalyzer(1).queryAssociationsBetweenEntities(storedMethods, FamixInvocation.class)));
+    }
+
+    @Test
+    public void testAssociationsBetweenParentEntities() throws Exception {
+        // the methods of all classes exceed one chunk
+        List<AbstractFamixEntity> classes = new SnapshotAnalyzer(session).queryEntitiesByUniqueName(classNames);
+        assertEquals(NR_OF_CLASSES, classes.size());
+        Set<String> expected = new HashSet<String>();
+        for (String[] call : calls) {
+            if (!getClassName(call[0]).equals(getClassName(call[1]))) {
+                expected.add(call[0] + "->" + call[1]);
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        // without and with temporary tables restricting the to-entities
+        assertEquals(expected, toCalls(createAnalyzer(0).getAssociationsBetweenParentEntities(classes, FamixInvocation.class)));
+        assertEquals(expected, toCalls(createAnalyzer(1).getAssociationsBetweenParentEntities(classes, FamixInvocation.class)));
+    }
+
+    @Test
+    public void testAssociationsBetweenOverlappingParentEntities() throws Exception {
+        // the package contains the class, each call of the class connects the pair (package, class) once
+        List<String> parentNames = new ArrayList<String>();
+        parentNames.add("p");
+        parentNames.add(classNames.get(0));
+        List<AbstractFamixEntity> parents = new SnapshotAnalyzer(session).queryEntitiesByUniqueName(parentNames);
+        assertEquals(2, parents.size());
+        Set<String> expected = new HashSet<String>();
+        for (String[] call : calls) {
+            if (getClassName(call[0]).equals(classNames.get(0)) || getClassName(call[1]).equals(classNames.get(0))) {
+                expected.add(call[0] + "->" + call[1]);
+            }
+        }
+        assertFalse(expected.isEmpty());
+
+        assertEquals(expected, toCalls(createAnalyzer(0).getAssociationsBetweenParentEntities(parents, null)));
+        assertEquals(expected, toCalls(createAnalyzer(1).getAssociationsBetweenParentEntities(parents, null)));
+    }
+
+    private SnapshotAnalyzer createAnalyzer(int temporaryTableThreshold) {
+        SnapshotAnalyzer analyzer = new SnapshotAnalyzer(session);
+        analyzer.setUseQueryCache(false);
+        analyzer.setTemporaryTableThreshold(temporaryTableThreshold);
+        return analyzer;
+    }
+
+    /**
+     * Returns the calls of the created model from the given entities.
+     *
+     * @param entities  The calling entities.
+     * @param between   True for calls to the entities, false for calls to other entities.
+     * @return  The calls in the form <code>caller->callee</code>.
+     */
+    private Set<String> getExpectedCalls(List<AbstractFamixEntity> entities, boolean between) {
+        Set<String> names = new HashSet<String>();
+        for (AbstractFamixEntity entity : entities) {
+            names.add(entity.getUniqueName());
+        }
+        Set<String> expected = new HashSet<String>();
+        for (String[] call : calls) {
+            if (names.contains(call[0]) && (names.contains(call[1]) == between)) {
+                expected.add(call[0] + "->" + call[1]);
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Returns the unique name of the class declaring the given method.
+     *
+     * @param methodName    The unique name of the method.
+     * @return  The unique name of the class.
+     */
+    private String getClassName(String methodName) {
+        return methodName.substring(0, methodName.lastIndexOf('.'));
+    }
+
+    /**
+     * Converts the queried associations, failing for associations returned more than once.
+     *
+     * @param associations  The queried associations.
+     * @return  The calls in the form <code>caller->callee</code>.
+     */
+    private Set<String> toCalls(List<? extends FamixAssociation> associations) {
+        Set<String> result = new HashSet<String>();
+        for (FamixAssociation association : associations) {
+            result.add(association.getFrom().getUniqueName() + "->" + association.getTo().getUniqueName());
+        }
+        assertEquals(associations.size(), result.size());
+        return result;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.evolizer.core.exceptions.EvolizerException;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixInheritance;
+import org.evolizer.famix.model.entities.FamixInvocation;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.utils.SnapshotAnalyzer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the transitive dependency queries of the {@link SnapshotAnalyzer} on a call graph with cycles
+ * and calls between start entities. The level-by-level queries are checked on the in-memory database.
+ * The recursive queries are compared with them on the test database configured in
+ * <code>config/db.properties</code> (e.g., MySQL 8), if it is reachable, since H2 does not support
+ * them.
+ *
+ * @author pinzger
+ */
+public class SnapshotAnalyzerTransitiveDependencyTest {
+    private static Logger logger = FamixImporterTestPlugin.getLogManager().getLogger(SnapshotAnalyzerTransitiveDependencyTest.class.getName());
+
+    private static final String DB_PROPERTIES_FILE = "config/db.properties";
+
+    private static FamixMethod a;
+    private static FamixMethod b;
+    private static FamixMethod c;
+    private static FamixMethod f;
+    private static List<IEvolizerSession> sessions = new ArrayList<IEvolizerSession>();
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Properties inMemory = EvolizerSessionHandler.getDefaultH2InMemoryConfig("transitiveDependencyTest");
+        sessions.add(storeModel(inMemory));
+
+        Properties testDB = loadTestDBProperties();
+        if (testDB != null) {
+            try {
+                EvolizerSessionHandler.getHandler().createSchema(testDB);
+                sessions.add(storeModel(testDB));
+            } catch (Exception e) {
+                logger.warn("Test database not available, recursive queries are not compared: " + e.getMessage());
+            }
+        }
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+    }
+
+    /**
+     * Creates and stores the call graph a->b, b->a, a->c, c->d, b->d, d->b, d->e, e->c, e->f, f->f
+     * in the given database.
+     *
+     * @param properties    The connection properties.
+     * @return  The session of the database.
+     * @throws Exception
+     */
+    private static IEvolizerSession storeModel(Properties properties) throws Exception {
+        FamixModel model = new FamixModel("transitive", new Date());
+        FamixPackage pack = (FamixPackage) model.addElement(new FamixPackage("p", null));
+        FamixClass classA = (FamixClass) model.addElement(new FamixClass("p.A", pack));
+        FamixClass classB = (FamixClass) model.addElement(new FamixClass("p.B", pack));
+        a = (FamixMethod) model.addElement(new FamixMethod("p.A.a()", classA));
+        b = (FamixMethod) model.addElement(new FamixMethod("p.A.b()", classA));
+        c = (FamixMethod) model.addElement(new FamixMethod("p.B.c()", classB));
+        FamixMethod d = (FamixMethod) model.addElement(new FamixMethod("p.B.d()", classB));
+        FamixMethod e = (FamixMethod) model.addElement(new FamixMethod("p.B.e()", classB));
+        f = (FamixMethod) model.addElement(new FamixMethod("p.B.f()", classB));
+
+        FamixMethod[][] calls = {{a, b}, {b, a}, {a, c}, {c, d}, {b, d}, {d, b}, {d, e}, {e, c}, {e, f}, {f, f}};
+        for (FamixMethod[] call : calls) {
+            model.addRelation(new FamixInvocation(call[0], call[1]));
+        }
+        // must not be followed by invocation queries
+        model.addRelation(new FamixInheritance(classB, classA));
+
+        IEvolizerSession session = EvolizerSessionHandler.getHandler().getCurrentSession(properties);
+        String dbUrl = properties.getProperty("hibernate.connection.url").substring("jdbc:".length());
+        new DAOModel(dbUrl, model).store(null);
+
+        return session;
+    }
+
+    /**
+     * Loads the test database from the bundled properties file.
+     *
+     * @return  The connection properties, or null if no test database is configured.
+     */
+    private static Properties loadTestDBProperties() {
+        try {
+            InputStream propertiesInputStream = FamixImporterTestPlugin.openBundledFile(DB_PROPERTIES_FILE);
+            Properties db = new Properties();
+            db.load(propertiesInputStream);
+            propertiesInputStream.close();
+
+            return EvolizerSessionHandler.getDefaultDBCofig(
+                    db.getProperty("dbUrl"),
+                    db.getProperty("dbDialect"),
+                    db.getProperty("dbDriverName"),
+                    db.getProperty("dbUser"),
+                    db.getProperty("dbPasswd"));
+        } catch (Exception e) {
+            logger.warn("No test database configured: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Test
+    public void testOutgoingDependencies() throws Exception {
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("p.A.b()", 1);
+        expected.put("p.B.d()", 1);
+        expected.put("p.B.e()", 2);
+        expected.put("p.B.f()", 3);
+
+        for (IEvolizerSession session : sessions) {
+            assertEquals(expected, queryDependencies(session, false, Arrays.asList(a, c), "from", SnapshotAnalyzer.UNLIMITED_DEPTH));
+            assertEquals(expected, queryDependencies(session, true, Arrays.asList(a, c), "from", SnapshotAnalyzer.UNLIMITED_DEPTH));
+        }
+    }
+
+    @Test
+    public void testIncomingDependencies() throws Exception {
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("p.B.e()", 1);
+        expected.put("p.B.d()", 2);
+        expected.put("p.B.c()", 3);
+        expected.put("p.A.b()", 3);
+        expected.put("p.A.a()", 4);
+
+        for (IEvolizerSession session : sessions) {
+            assertEquals(expected, queryDependencies(session, false, Arrays.asList(f), "to", SnapshotAnalyzer.UNLIMITED_DEPTH));
+            assertEquals(expected, queryDependencies(session, true, Arrays.asList(f), "to", SnapshotAnalyzer.UNLIMITED_DEPTH));
+        }
+    }
+
+    @Test
+    public void testBoundedDependencies() throws Exception {
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("p.A.b()", 1);
+        expected.put("p.B.d()", 1);
+        expected.put("p.B.e()", 2);
+
+        for (IEvolizerSession session : sessions) {
+            assertEquals(expected, queryDependencies(session, false, Arrays.asList(a, c), "from", 2));
+            assertEquals(expected, queryDependencies(session, true, Arrays.asList(a, c), "from", 2));
+        }
+    }
+
+    @Test
+    public void testStartEntitiesNotReturned() throws Exception {
+        for (IEvolizerSession session : sessions) {
+            Map<String, Integer> fallback = queryDependencies(session, false, Arrays.asList(a, b, c), "from", SnapshotAnalyzer.UNLIMITED_DEPTH);
+            assertEquals(fallback, queryDependencies(session, true, Arrays.asList(a, b, c), "from", SnapshotAnalyzer.UNLIMITED_DEPTH));
+            assertEquals(3, fallback.size());
+            assertEquals(Integer.valueOf(1), fallback.get("p.B.d()"));
+            assertEquals(Integer.valueOf(2), fallback.get("p.B.e()"));
+            assertEquals(Integer.valueOf(3), fallback.get("p.B.f()"));
+        }
+    }
+
+    /**
+     * Queries the transitive invocation dependencies of the given methods.
+     *
+     * @param session   The session of the database.
+     * @param recursive True to use recursive queries if the database supports them.
+     * @param methods   The start methods.
+     * @param direction The direction of the invocations.
+     * @param maxDepth  The maximum path length.
+     * @return  The depths by unique name of the dependent methods.
+     * @throws EvolizerException
+     */
+    private Map<String, Integer> queryDependencies(IEvolizerSession session, boolean recursive, List<FamixMethod> methods, String direction, int maxDepth) throws EvolizerException {
+        SnapshotAnalyzer analyzer = new SnapshotAnalyzer(session);
+        analyzer.setUseRecursiveQueries(recursive);
+        analyzer.setUseQueryCache(false);
+
+        List<FamixMethod> storedMethods = new ArrayList<FamixMethod>();
+        for (AbstractFamixEntity entity : analyzer.queryEntitiesByUniqueName(toUniqueNames(methods))) {
+            storedMethods.add((FamixMethod) entity);
+        }
+
+        Map<String, Integer> depths = new HashMap<String, Integer>();
+        for (Map.Entry<FamixMethod, Integer> dependency : analyzer.queryTransitiveDependencies(
+                storedMethods, FamixInvocation.class, direction, maxDepth).entrySet()) {
+            depths.put(dependency.getKey().getUniqueName(), dependency.getValue());
+        }
+        return depths;
+    }
+
+    private List<String> toUniqueNames(List<FamixMethod> methods) {
+        List<String> uniqueNames = new ArrayList<String>();
+        for (FamixMethod method : methods) {
+            uniqueNames.add(method.getUniqueName());
+        }
+        return uniqueNames;
+    }
+}
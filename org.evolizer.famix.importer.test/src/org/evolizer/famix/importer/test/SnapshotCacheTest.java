@@ -0,0 +1,279 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.evolizer.core.exceptions.EvolizerException;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.core.hibernate.session.api.IEvolizerUnitOfWork;
+import org.evolizer.core.hibernate.session.internal.BoundedCache;
+import org.evolizer.famix.importer.IncrementalModelUpdater;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixInvocation;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.utils.SnapshotAnalyzer;
+import org.hibernate.cache.CacheKey;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that storing a model, storing the changes of a model, and deleting a model invalidate the
+ * cached query results, entities, associations, and collections of the second-level cache.
+ *
+ * @author pinzger
+ */
+public class SnapshotCacheTest {
+
+    private static String dbUrl;
+    private static IEvolizerSession sharedSession;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Properties properties = EvolizerSessionHandler.getDefaultH2InMemoryConfig("snapshotCacheTest");
+        sharedSession = EvolizerSessionHandler.getHandler().getCurrentSession(properties);
+        dbUrl = properties.getProperty("hibernate.connection.url").substring("jdbc:".length());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+    }
+
+    @Test
+    public void testStoreEvictsQueries() throws Exception {
+        List<String> names = Arrays.asList("p.Stored1", "p.Stored2");
+        new DAOModel(dbUrl, createModel("stored1", "p.Stored1")).store(null);
+
+        assertEquals(1, queryEntities(names).size());
+        BoundedCache queryCache = getCache(SnapshotAnalyzer.QUERY_CACHE_REGION);
+        assertNotNull(queryCache);
+        assertEquals(1, queryCache.getElementCountInMemory());
+        long hits = queryCache.getHitCount();
+        assertEquals(1, queryEntities(names).size());
+        assertEquals(hits + 1, queryCache.getHitCount());
+
+        // JDBC batches bypass the invalidation of the cached queries by Hibernate
+        DAOModel daoModel = new DAOModel(dbUrl, createModel("stored2", "p.Stored2"));
+        daoModel.setJdbcBatchSize(100);
+        daoModel.store(null);
+
+        assertEquals(0, queryCache.getElementCountInMemory());
+        assertEquals(2, queryEntities(names).size());
+    }
+
+    @Test
+    public void testStoreChangesEvictsCollections() throws Exception {
+        IJavaProject project = TestHelper.createTestProject();
+        List<IJavaElement> selection = new LinkedList<IJavaElement>();
+        selection.add(project);
+        ProjectParser parser = new ProjectParser(selection);
+        parser.parse(null);
+        UnresolvedInvocationHandler handler = new UnresolvedInvocationHandler(parser.getModel(), parser.getUnresolvedCalls());
+        handler.process(new NullProgressMonitor());
+        handler.addInvocations(new NullProgressMonitor());
+        new DAOModel(dbUrl, parser.getModel()).store(null);
+
+        final String sumName = "testPackage.Sum";
+        final String addedMethodName = "testPackage.Sum.computeTwice()";
+        assertFalse(queryMethodNames(sumName).contains(addedMethodName));
+        assertEquals(0, queryEntities(Arrays.asList(addedMethodName)).size());
+
+        ICompilationUnit sum = (ICompilationUnit) project.findElement(new Path("testPackage/Sum.java"));
+        String source = sum.getSource();
+        source = source.substring(0, source.lastIndexOf('}'))
+                + "\tpublic int computeTwice() {\n\t\treturn compute() * 2;\n\t}\n}\n";
+        ((IFile) sum.getResource()).setContents(new ByteArrayInputStream(source.getBytes()), true, false, null);
+        List<ICompilationUnit> changedUnits = new LinkedList<ICompilationUnit>();
+        changedUnits.add(sum);
+        IncrementalModelUpdater updater = new IncrementalModelUpdater(parser.getModel(), handler.getUnresolvedCalls());
+        updater.update(changedUnits, new NullProgressMonitor());
+        new DAOModel(dbUrl, updater.getModel()).storeChanges(updater, null);
+
+        assertTrue(queryMethodNames(sumName).contains(addedMethodName));
+        assertEquals(1, queryEntities(Arrays.asList(addedMethodName)).size());
+    }
+
+    @Test
+    public void testDeleteModelEvictsEntities() throws Exception {
+        FamixModel model = createModel("deleted", "q.Deleted1", "q.Deleted2");
+        new DAOModel(dbUrl, model).store(null);
+
+        Set<Long> entityIds = new HashSet<Long>();
+        List<String> names = new LinkedList<String>();
+        for (AbstractFamixEntity entity : model.getFamixEntities()) {
+            entityIds.add(entity.getId());
+            names.add(entity.getUniqueName());
+        }
+        Set<Long> associationIds = new HashSet<Long>();
+        for (FamixAssociation association : model.getFamixAssociations()) {
+            associationIds.add(association.getId());
+        }
+        assertEquals(names.size(), queryEntities(names).size());
+        queryMethodNames("q.Deleted1");
+        assertTrue(countCachedEntries(AbstractFamixEntity.class.getName(), entityIds) > 0);
+        assertTrue(countCachedEntries(FamixAssociation.class.getName(), associationIds) > 0);
+        assertTrue(countCachedEntries(FamixClass.class.getName() + ".", entityIds) > 0);
+
+        // the cascaded deletes are not ordered by the references between the entities
+        setReferentialIntegrity(false);
+        try {
+            assertTrue(new DAOModel(dbUrl, model).deleteModel());
+        } finally {
+            setReferentialIntegrity(true);
+        }
+
+        assertEquals(0, countCachedEntries(AbstractFamixEntity.class.getName(), entityIds));
+        assertEquals(0, countCachedEntries(FamixAssociation.class.getName(), associationIds));
+        assertEquals(0, countCachedEntries(FamixClass.class.getName() + ".", entityIds));
+        assertEquals(0, queryEntities(names).size());
+    }
+
+    /**
+     * Creates a model with a package containing the given classes. Each class has one method calling
+     * the method of the next class.
+     *
+     * @param name  The name of the model.
+     * @param classNames    The unique names of the classes.
+     * @return  The model.
+     */
+    private FamixModel createModel(String name, String... classNames) {
+        FamixModel model = new FamixModel(name, new Date());
+        String packageName = classNames[0].substring(0, classNames[0].lastIndexOf('.'));
+        FamixPackage pack = (FamixPackage) model.addElement(new FamixPackage(packageName, null));
+        FamixMethod previousMethod = null;
+        for (String className : classNames) {
+            FamixClass clazz = (FamixClass) model.addElement(new FamixClass(className, pack));
+            FamixMethod method = (FamixMethod) model.addElement(new FamixMethod(className + ".m()", clazz));
+            clazz.getMethods().add(method);
+            if (previousMethod != null) {
+                model.addRelation(new FamixInvocation(previousMethod, method));
+            }
+            previousMethod = method;
+        }
+        return model;
+    }
+
+    /**
+     * Queries the entities with the given unique names, and their outgoing invocations, in a read-only
+     * unit of work.
+     *
+     * @param names The unique names.
+     * @return  The unique names of the found entities.
+     * @throws EvolizerException
+     */
+    private List<String> queryEntities(final List<String> names) throws EvolizerException {
+        return EvolizerSessionHandler.getHandler().executeUnitOfWork(dbUrl, true, new IEvolizerUnitOfWork<List<String>>() {
+            public List<String> execute(IEvolizerSession session) throws EvolizerException {
+                SnapshotAnalyzer analyzer = new SnapshotAnalyzer(session);
+                List<AbstractFamixEntity> entities = analyzer.queryEntitiesByUniqueName(names);
+                analyzer.queryAssociationsOfEntities(entities, FamixInvocation.class, "from");
+                List<String> result = new LinkedList<String>();
+                for (AbstractFamixEntity entity : entities) {
+                    result.add(entity.getUniqueName());
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Returns the unique names of the methods of the given class, read through its collection in a
+     * read-only unit of work.
+     *
+     * @param className The unique name of the class.
+     * @return  The unique names of the methods.
+     * @throws EvolizerException
+     */
+    private Set<String> queryMethodNames(final String className) throws EvolizerException {
+        return EvolizerSessionHandler.getHandler().executeUnitOfWork(dbUrl, true, new IEvolizerUnitOfWork<Set<String>>() {
+            public Set<String> execute(IEvolizerSession session) throws EvolizerException {
+                List<AbstractFamixEntity> entities =
+                    new SnapshotAnalyzer(session).queryEntitiesByUniqueName(Arrays.asList(className));
+                assertEquals(1, entities.size());
+                Set<String> result = new HashSet<String>();
+                for (FamixMethod method : ((FamixClass) entities.get(0)).getMethods()) {
+                    result.add(method.getUniqueName());
+                }
+                return result;
+            }
+        });
+    }
+
+    private void setReferentialIntegrity(boolean enabled) {
+        sharedSession.startTransaction();
+        sharedSession.getHibernateSession().createSQLQuery("SET REFERENTIAL_INTEGRITY " + enabled).executeUpdate();
+        sharedSession.endTransaction();
+    }
+
+    private BoundedCache getCache(String regionName) throws EvolizerException {
+        for (BoundedCache cache : EvolizerSessionHandler.getHandler().getCaches(dbUrl)) {
+            if (cache.getRegionName().equals(regionName)) {
+                return cache;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts the cached entities or collections with the given identifiers.
+     *
+     * @param entityOrRoleName  The prefix of the entity names or collection roles.
+     * @param ids   The identifiers of the entities or of the collection owners.
+     * @return  The number of cache entries.
+     * @throws EvolizerException
+     */
+    private int countCachedEntries(String entityOrRoleName, Set<Long> ids) throws EvolizerException {
+        int count = 0;
+        for (BoundedCache cache : EvolizerSessionHandler.getHandler().getCaches(dbUrl)) {
+            for (Object key : cache.toMap().keySet()) {
+                if ((key instanceof CacheKey)
+                        && ((CacheKey) key).getEntityOrRoleName().startsWith(entityOrRoleName)
+                        && ids.contains(((CacheKey) key).getKey())) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
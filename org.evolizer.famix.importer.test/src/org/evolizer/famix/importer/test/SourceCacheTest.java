@@ -0,0 +1,114 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.entities.SourceAnchor;
+import org.evolizer.famix.model.utils.SourceCache;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the views and the bounds of the source cache.
+ *
+ * @author pinzger
+ */
+public class SourceCacheTest {
+
+    private static final String SOURCE_A = "package p;\nclass A {\n    void a() {}\n}\n";
+    private static final String SOURCE_B = "package p;\nclass B {\n    void b() {}\n}\n";
+
+    private FamixClass classA;
+    private FamixClass classB;
+    private FamixMethod methodA;
+
+    @Before
+    public void setUp() {
+        FamixPackage pack = new FamixPackage("p", null);
+        classA = createClass("p.A", pack, SOURCE_A);
+        classB = createClass("p.B", pack, SOURCE_B);
+        methodA = new FamixMethod("p.A.a()", classA);
+        int start = SOURCE_A.indexOf("void a()");
+        methodA.setSourceAnchor(new SourceAnchor("A.java", start, start + "void a() {}".length()));
+    }
+
+    private FamixClass createClass(String uniqueName, FamixPackage pack, String source) {
+        FamixClass clazz = new FamixClass(uniqueName, pack);
+        clazz.setSourceAnchor(new SourceAnchor(uniqueName + ".java", 0, source.length()));
+        clazz.setSource(source);
+        return clazz;
+    }
+
+    @Test
+    public void testSourceViews() {
+        SourceCache cache = new SourceCache(SourceCache.DEFAULT_MAX_CHARS);
+        assertEquals("void a() {}", cache.getSource(methodA).toString());
+        assertEquals(SOURCE_A, cache.getSource(classA).toString());
+        assertEquals(SOURCE_A, cache.getJavaFileSource(methodA).toString());
+        assertEquals(1, cache.getNrOfMisses());
+        assertEquals(2, cache.getNrOfHits());
+        assertEquals(SOURCE_A.length(), cache.getNrOfCharsRead());
+        assertEquals("void a() {}", methodA.getSource());
+    }
+
+    @Test
+    public void testSharedBlob() {
+        SourceBlob blob = new SourceBlob(SOURCE_A);
+        FamixClass classC = new FamixClass("p.C", classA.getParent());
+        classC.setSourceAnchor(new SourceAnchor("A.java", 0, 5));
+        classA.setSource(blob);
+        classC.setSource(blob);
+
+        SourceCache cache = new SourceCache(SourceCache.DEFAULT_MAX_CHARS);
+        assertEquals("packa", cache.getSource(classC).toString());
+        assertEquals(SOURCE_A, cache.getSource(classA).toString());
+        assertEquals(1, cache.getNrOfMisses());
+    }
+
+    @Test
+    public void testEqualBlobInstances() {
+        // instances of the same stored blob loaded by different sessions
+        FamixClass classC = new FamixClass("p.C", classA.getParent());
+        classC.setSourceAnchor(new SourceAnchor("A.java", 0, 5));
+        classA.setSource(new SourceBlob(SOURCE_A));
+        classC.setSource(new SourceBlob(SOURCE_A));
+
+        SourceCache cache = new SourceCache(SourceCache.DEFAULT_MAX_CHARS);
+        assertEquals(SOURCE_A, cache.getSource(classA).toString());
+        assertEquals("packa", cache.getSource(classC).toString());
+        assertEquals(1, cache.getNrOfMisses());
+        assertEquals(1, cache.getNrOfHits());
+        assertEquals(SOURCE_A.length(), cache.getNrOfCachedChars());
+    }
+
+    @Test
+    public void testEviction() {
+        SourceCache cache = new SourceCache(SOURCE_A.length() + SOURCE_B.length() - 1);
+        cache.getSource(classA);
+        cache.getSource(classB);
+        assertEquals(SOURCE_B.length(), cache.getNrOfCachedChars());
+        cache.getSource(classB);
+        cache.getSource(classA);
+        assertEquals(3, cache.getNrOfMisses());
+        assertEquals(1, cache.getNrOfHits());
+        assertEquals(SOURCE_A.length(), cache.getNrOfCachedChars());
+    }
+}
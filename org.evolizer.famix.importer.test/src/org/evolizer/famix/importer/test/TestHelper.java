@@ -20,17 +20,23 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
 import org.evolizer.core.util.projecthandling.JavaProjectHelper;
 import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
 import org.evolizer.famix.model.entities.FamixAssociation;
 import org.evolizer.famix.model.entities.FamixLocalVariable;
@@ -97,14 +103,107 @@ public class TestHelper {
      * @return  the FAMIX model
      */
     public static FamixModel parseProject(IJavaProject project) {
+        return parseProject(project, ProjectParser.DEFAULT_NUMBER_OF_WORKERS);
+    }
+
+    /**
+     * Parses the given Java project with the given number of workers.
+     * 
+     * @param project   the given Java project
+     * @param numberOfWorkers   the number of workers parsing the compilation units
+     * @return  the FAMIX model
+     */
+    public static FamixModel parseProject(IJavaProject project, int numberOfWorkers) {
+        List<IJavaElement> selection = new LinkedList<IJavaElement>();
+        selection.add(project);
+        ProjectParser parser = new ProjectParser(selection, numberOfWorkers);
+        parser.parse(null);
+
+        return parser.getModel();
+    }
+
+    /**
+     * Parses the given Java project with the given number of workers and batch size and resolves
+     * the unresolved invocations.
+     * 
+     * @param project   the given Java project
+     * @param numberOfWorkers   the number of workers parsing the compilation units and matching the calls
+     * @param batchSize the number of compilation units parsed in one batch
+     * @return  the FAMIX model
+     */
+    public static FamixModel parseAndResolveProject(IJavaProject project, int numberOfWorkers, int batchSize) {
         List<IJavaElement> selection = new LinkedList<IJavaElement>();
         selection.add(project);
-        ProjectParser parser = new ProjectParser(selection);
+        ProjectParser parser = new ProjectParser(selection, numberOfWorkers);
+        parser.setBatchSize(batchSize);
         parser.parse(null);
 
+        UnresolvedInvocationHandler handler = new UnresolvedInvocationHandler(parser.getModel(), parser.getUnresolvedCalls());
+        handler.setNumberOfWorkers(numberOfWorkers);
+        handler.process(new NullProgressMonitor());
+        handler.addInvocations(new NullProgressMonitor());
+
         return parser.getModel();
     }
+
+    /**
+     * Converts the entities of the given model into comparable strings containing
+     * type, unique name, parent, and modifiers.
+     * 
+     * @param model the FAMIX model
+     * @return  the set of entity strings
+     */
+    public static Set<String> toEntityStrings(FamixModel model) {
+        Set<String> entities = new HashSet<String>();
+        for (AbstractFamixEntity entity : model.getFamixEntities()) {
+            String parentName = entity.getParent() != null ? entity.getParent().getUniqueName() : "<none>";
+            entities.add(entity.getType() + ":" + entity.getUniqueName() + ":" + parentName + ":" + entity.getModifiers());
+        }
+        return entities;
+    }
+
+    /**
+     * Converts the associations of the given model into comparable strings containing
+     * type, from and to entity, and source anchor.
+     * 
+     * @param model the FAMIX model
+     * @return  the set of association strings
+     */
+    public static Set<String> toAssociationStrings(FamixModel model) {
+        Set<String> associations = new HashSet<String>();
+        for (FamixAssociation association : model.getFamixAssociations()) {
+            String anchor = association.getSourceAnchor() != null ? association.getSourceAnchor().toString() : "<none>";
+            associations.add(association.getType() + ":" + association.getFrom().getUniqueName() + "->" 
+                    + association.getTo().getUniqueName() + ":" + anchor);
+        }
+        return associations;
+    }
     
+    /**
+     * Deletes an existing temporary Java project, configures the jdt parser, and sets up the
+     * temporary Java project again.
+     * 
+     * @return  the temporary Java project
+     * @throws CoreException
+     * @throws IOException
+     */
+    public static IJavaProject createTestProject() throws CoreException, IOException {
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        IProject projectNormal = root.getProject("TestProject1");
+        if (projectNormal.exists()) {
+            projectNormal.delete(true, true, new NullProgressMonitor());
+        }
+
+        JavaCore.setOptions(getJavaCoreOptions());
+        setUpProject();
+
+        IJavaProject project = JavaCore.create(root).getJavaProject("TestProject1");
+        if (!project.exists()) {
+            throw new IllegalStateException("TestProject1 does not exist");
+        }
+        return project;
+    }
+
     /**
      * Sets up the temporary Java project.
      * 
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+
+import org.evolizer.famix.importer.unresolved.TypeHierarchyIndex;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixInheritance;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the super types and the subtype checks of the type hierarchy index.
+ *
+ * @author pinzger
+ */
+public class TypeHierarchyIndexTest {
+
+    private FamixModel model;
+    private FamixClass classObject;
+    private FamixClass classA;
+    private FamixClass classB;
+    private FamixClass interfaceI;
+    private FamixClass classC;
+
+    @Before
+    public void setUp() {
+        model = new FamixModel("TypeHierarchy", new Date());
+        FamixPackage pack = (FamixPackage) model.addElement(new FamixPackage("p", null));
+        classObject = (FamixClass) model.addElement(new FamixClass("java.lang.Object", null));
+        classA = (FamixClass) model.addElement(new FamixClass("p.A", pack));
+        classB = (FamixClass) model.addElement(new FamixClass("p.B", pack));
+        interfaceI = (FamixClass) model.addElement(new FamixClass("p.I", pack));
+        classC = (FamixClass) model.addElement(new FamixClass("p.C", pack));
+        model.addRelation(new FamixInheritance(classA, classObject));
+        model.addRelation(new FamixInheritance(classB, classA));
+        model.addRelation(new FamixInheritance(classB, interfaceI));
+        model.addRelation(new FamixInheritance(classC, classB));
+    }
+
+    @Test
+    public void testSuperTypes() {
+        TypeHierarchyIndex index = new TypeHierarchyIndex(model);
+        assertEquals(5, index.size());
+        assertEquals(classC, index.getType("p.C"));
+        assertNull(index.getType("p.D"));
+
+        List<FamixClass> superTypes = index.getSuperTypes(classC);
+        assertEquals(4, superTypes.size());
+        assertEquals(classB, superTypes.get(0));
+        assertEquals(classObject, superTypes.get(3));
+        assertTrue(superTypes.contains(classA));
+        assertTrue(superTypes.contains(interfaceI));
+        assertTrue(index.getSuperTypes(classObject).isEmpty());
+    }
+
+    @Test
+    public void testSubtypeChecks() {
+        TypeHierarchyIndex index = new TypeHierarchyIndex(model);
+        assertTrue(index.isSameOrSuperType(classC, classC));
+        assertTrue(index.isSameOrSuperType(classA, classC));
+        assertTrue(index.isSameOrSuperType(interfaceI, classC));
+        assertTrue(index.isSameOrSuperType(classObject, classB));
+        assertFalse(index.isSameOrSuperType(classC, classA));
+        assertFalse(index.isSameOrSuperType(interfaceI, classA));
+        assertFalse(index.isSameOrSuperType(null, classA));
+    }
+
+    @Test
+    public void testCyclicHierarchy() {
+        model.addRelation(new FamixInheritance(classObject, classC));
+        TypeHierarchyIndex index = new TypeHierarchyIndex(model);
+        assertEquals(4, index.getSuperTypes(classC).size());
+        assertTrue(index.isSameOrSuperType(classC, classA));
+    }
+}
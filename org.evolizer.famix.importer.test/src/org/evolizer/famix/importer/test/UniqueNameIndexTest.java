@@ -0,0 +1,109 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Properties;
+
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.entities.SourceAnchor;
+import org.evolizer.famix.model.utils.SnapshotAnalyzer;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Tests the indexed hash and prefix columns maintained with the unique name of FAMIX entities.
+ *
+ * @author pinzger
+ */
+public class UniqueNameIndexTest {
+
+    @Test
+    public void testHashMaintained() {
+        FamixClass clazz = new FamixClass("p.A", null);
+        assertEquals(AbstractFamixEntity.computeUniqueNameHash("p.A"), clazz.getUniqueNameHash().longValue());
+        assertFalse(AbstractFamixEntity.computeUniqueNameHash("p.A") == AbstractFamixEntity.computeUniqueNameHash("p.B"));
+
+        clazz.setUniqueName("p.B");
+        assertEquals(AbstractFamixEntity.computeUniqueNameHash("p.B"), clazz.getUniqueNameHash().longValue());
+        assertEquals("p.B", clazz.getUniqueNamePrefix());
+
+        clazz.setUniqueName(null);
+        assertNull(clazz.getUniqueNameHash());
+        assertNull(clazz.getUniqueNamePrefix());
+    }
+
+    @Test
+    public void testPrefixBounded() {
+        StringBuilder name = new StringBuilder("p.A.m(");
+        while (name.length() < 2 * AbstractFamixEntity.UNIQUE_NAME_PREFIX_LENGTH) {
+            name.append("java.lang.String,");
+        }
+        name.append("int)");
+        FamixMethod method = new FamixMethod(name.toString(), null);
+        assertEquals(AbstractFamixEntity.UNIQUE_NAME_PREFIX_LENGTH, method.getUniqueNamePrefix().length());
+        assertEquals(name.substring(0, AbstractFamixEntity.UNIQUE_NAME_PREFIX_LENGTH), method.getUniqueNamePrefix());
+    }
+
+    @Test
+    public void testStoredEntitiesWithoutHashFound() throws Exception {
+        FamixModel model = new FamixModel("unindexed", new Date());
+        FamixPackage pack = (FamixPackage) model.addElement(new FamixPackage("p", null));
+        FamixClass clazz = (FamixClass) model.addElement(new FamixClass("p.A", pack));
+        FamixMethod method = (FamixMethod) model.addElement(new FamixMethod("p.A.m(int)", clazz));
+        method.setSourceAnchor(new SourceAnchor("/P/src/p/A.java", 20, 40));
+
+        Properties properties = EvolizerSessionHandler.getDefaultH2InMemoryConfig("uniqueNameIndexTest");
+        IEvolizerSession session = EvolizerSessionHandler.getHandler().getCurrentSession(properties);
+        new DAOModel(properties.getProperty("hibernate.connection.url").substring("jdbc:".length()), model).store(null);
+
+        // entities stored before the columns were mapped
+        session.startTransaction();
+        session.getHibernateSession().createSQLQuery(
+                "update AbstractFamixEntity set uniqueNameHash = null, uniqueNamePrefix = null").executeUpdate();
+        session.endTransaction();
+        session.clear();
+
+        SnapshotAnalyzer analyzer = new SnapshotAnalyzer(session);
+        List<AbstractFamixEntity> entities = analyzer.queryEntitiesByUniqueName(Arrays.asList("p.A", "p.A.m(int)"));
+        assertEquals(2, entities.size());
+
+        Hashtable<String, Integer> sourceReferences = new Hashtable<String, Integer>();
+        sourceReferences.put("p.A.m", 20);
+        entities = analyzer.queryEntitiesBySourceReference(sourceReferences);
+        assertEquals(1, entities.size());
+        assertEquals("p.A.m(int)", entities.get(0).getUniqueName());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Date;
+import java.util.Properties;
+
+import org.evolizer.core.exceptions.EvolizerException;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.core.hibernate.session.api.IEvolizerUnitOfWork;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the lifecycle of the units of work of the {@link EvolizerSessionHandler}: binding to the calling
+ * thread, joining of nested units of work, and release of the sessions.
+ *
+ * @author pinzger
+ */
+public class UnitOfWorkTest {
+
+    private static String dbUrl;
+    private static IEvolizerSession sharedSession;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Properties properties = EvolizerSessionHandler.getDefaultH2InMemoryConfig("unitOfWorkTest");
+        sharedSession = EvolizerSessionHandler.getHandler().getCurrentSession(properties);
+        dbUrl = properties.getProperty("hibernate.connection.url").substring("jdbc:".length());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception {
+        EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+    }
+
+    @Test
+    public void testSessionBoundToThread() throws Exception {
+        EvolizerSessionHandler handler = EvolizerSessionHandler.getHandler();
+        assertFalse(handler.isInUnitOfWork(dbUrl));
+
+        IEvolizerSession session = handler.beginUnitOfWork(dbUrl, true);
+        try {
+            assertNotSame(sharedSession, session);
+            assertSame(session, handler.getCurrentSession(dbUrl));
+            assertTrue(handler.isInUnitOfWork(dbUrl));
+
+            final IEvolizerSession[] otherThreadSession = new IEvolizerSession[1];
+            Thread otherThread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        otherThreadSession[0] = EvolizerSessionHandler.getHandler().getCurrentSession(dbUrl);
+                    } catch (EvolizerException ee) {
+                        otherThreadSession[0] = null;
+                    }
+                }
+            };
+            otherThread.start();
+            otherThread.join();
+            assertSame(sharedSession, otherThreadSession[0]);
+        } finally {
+            handler.endUnitOfWork(dbUrl);
+        }
+
+        assertFalse(handler.isInUnitOfWork(dbUrl));
+        assertFalse(session.isOpen());
+        assertSame(sharedSession, handler.getCurrentSession(dbUrl));
+    }
+
+    @Test
+    public void testNestedUnitsOfWorkJoined() throws Exception {
+        EvolizerSessionHandler handler = EvolizerSessionHandler.getHandler();
+        IEvolizerSession outer = handler.beginUnitOfWork(dbUrl, false);
+        IEvolizerSession inner = handler.beginUnitOfWork(dbUrl, true);
+        assertSame(outer, inner);
+
+        handler.endUnitOfWork(dbUrl);
+        assertTrue(handler.isInUnitOfWork(dbUrl));
+        assertTrue(outer.isOpen());
+
+        handler.endUnitOfWork(dbUrl);
+        assertFalse(handler.isInUnitOfWork(dbUrl));
+        assertFalse(outer.isOpen());
+    }
+
+    @Test
+    public void testWritingNestedInReadOnlyRejected() throws Exception {
+        EvolizerSessionHandler handler = EvolizerSessionHandler.getHandler();
+        handler.beginUnitOfWork(dbUrl, true);
+        try {
+            handler.beginUnitOfWork(dbUrl, false);
+            fail("A writing unit of work must not join a read-only one");
+        } catch (EvolizerException ee) {
+            assertTrue(handler.isInUnitOfWork(dbUrl));
+        } finally {
+            handler.endUnitOfWork(dbUrl);
+        }
+        assertFalse(handler.isInUnitOfWork(dbUrl));
+    }
+
+    @Test
+    public void testOtherWritingUnitOfWorkDetected() throws Exception {
+        final EvolizerSessionHandler handler = EvolizerSessionHandler.getHandler();
+        handler.beginUnitOfWork(dbUrl, false);
+        final boolean[] detected = new boolean[1];
+        try {
+            assertFalse(handler.hasOtherWritingUnitOfWork(dbUrl));
+
+            Thread otherThread = new Thread() {
+                @Override
+                public void run() {
+                    detected[0] = handler.hasOtherWritingUnitOfWork(dbUrl);
+                }
+            };
+            otherThread.start();
+            otherThread.join();
+            assertTrue(detected[0]);
+        } finally {
+            handler.endUnitOfWork(dbUrl);
+        }
+
+        handler.beginUnitOfWork(dbUrl, true);
+        try {
+            Thread otherThread = new Thread() {
+                @Override
+                public void run() {
+                    detected[0] = handler.hasOtherWritingUnitOfWork(dbUrl);
+                }
+            };
+            otherThread.start();
+            otherThread.join();
+            assertFalse(detected[0]);
+        } finally {
+            handler.endUnitOfWork(dbUrl);
+        }
+    }
+
+    @Test(expected = EvolizerException.class)
+    public void testEndWithoutBeginRejected() throws Exception {
+        EvolizerSessionHandler.getHandler().endUnitOfWork(dbUrl);
+    }
+
+    @Test
+    public void testCommittedChangesKeptAndOthersDiscarded() throws Exception {
+        EvolizerSessionHandler handler = EvolizerSessionHandler.getHandler();
+        handler.executeUnitOfWork(dbUrl, false, new IEvolizerUnitOfWork<Object>() {
+            public Object execute(IEvolizerSession session) throws EvolizerException {
+                session.startTransaction();
+                session.saveObject(new FamixModel("committed", new Date()));
+                session.endTransaction();
+                return null;
+            }
+        });
+        handler.executeUnitOfWork(dbUrl, false, new IEvolizerUnitOfWork<Object>() {
+            public Object execute(IEvolizerSession session) throws EvolizerException {
+                session.startTransaction();
+                session.saveObject(new FamixModel("uncommitted", new Date()));
+                session.getHibernateSession().flush();
+                return null;
+            }
+        });
+
+        assertEquals(1, countModels("committed"));
+        assertEquals(0, countModels("uncommitted"));
+        assertFalse(handler.isInUnitOfWork(dbUrl));
+    }
+
+    @Test
+    public void testReleasedWhenUnitOfWorkFails() throws Exception {
+        EvolizerSessionHandler handler = EvolizerSessionHandler.getHandler();
+        final IEvolizerSession[] failedSession = new IEvolizerSession[1];
+        try {
+            handler.executeUnitOfWork(dbUrl, true, new IEvolizerUnitOfWork<Object>() {
+                public Object execute(IEvolizerSession session) throws EvolizerException {
+                    failedSession[0] = session;
+                    throw new EvolizerException("failed");
+                }
+            });
+            fail("The exception of the unit of work must be passed on");
+        } catch (EvolizerException ee) {
+            assertEquals("failed", ee.getMessage());
+        }
+        assertFalse(handler.isInUnitOfWork(dbUrl));
+        assertFalse(failedSession[0].isOpen());
+    }
+
+    private int countModels(final String name) throws EvolizerException {
+        return EvolizerSessionHandler.getHandler().executeUnitOfWork(dbUrl, true, new IEvolizerUnitOfWork<Integer>() {
+            public Integer execute(IEvolizerSession session) throws EvolizerException {
+                return session.getHibernateSession().getNamedQuery(FamixModel.QUERY_BY_NAME)
+                        .setString("name", name)
+                        .list().size();
+            }
+        });
+    }
+}
@@ -21,16 +21,22 @@ import java.util.List;
 import org.eclipse.core.commands.AbstractHandler;
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.ui.handlers.HandlerUtil;
 import org.evolizer.core.exceptions.EvolizerException;
 import org.evolizer.core.util.selectionhandling.JavaSelectionHelper;
+import org.evolizer.famix.importer.jobs.FamixMultiProjectParserJob;
 import org.evolizer.famix.importer.jobs.FamixParserJob;
 
 /**
- * Handler to perform the parsing of selected source code units.
+ * Handler to perform the parsing of selected source code units. Several selected projects are
+ * parsed by a {@link FamixMultiProjectParserJob}.
  * 
  * @author pinzger
  */
@@ -46,6 +52,15 @@ public class ParserAction extends AbstractHandler {
 
         List<IJavaElement> selectedJavaElements = new ArrayList<IJavaElement>();
         try {
+            List<IJavaProject> selectedProjects = getSelectedProjects(selection);
+            if (selectedProjects.size() > 1) {
+                // independent projects are parsed at the same time
+                Job mainJob = new FamixMultiProjectParserJob(selectedProjects);
+                mainJob.setUser(true);
+                mainJob.schedule();
+                return null;
+            }
+
             selectedJavaElements = JavaSelectionHelper.getPackagesAndSelectedJavaElements(selection);
 
             if (selectedJavaElements.size() > 0) {
@@ -61,6 +76,32 @@ public class ParserAction extends AbstractHandler {
         return null;
     }
 
+    /**
+     * Returns the selected Java projects if only projects are selected.
+     * 
+     * @param selection The selection.
+     * @return  The selected Java projects, empty if other elements are selected as well.
+     */
+    private List<IJavaProject> getSelectedProjects(ISelection selection) {
+        List<IJavaProject> selectedProjects = new ArrayList<IJavaProject>();
+        if (selection instanceof IStructuredSelection) {
+            for (Object element : ((IStructuredSelection) selection).toArray()) {
+                IJavaProject javaProject = null;
+                if (element instanceof IJavaProject) {
+                    javaProject = (IJavaProject) element;
+                } else if (element instanceof IProject) {
+                    javaProject = JavaCore.create((IProject) element);
+                }
+                if ((javaProject == null) || !javaProject.exists()) {
+                    return new ArrayList<IJavaProject>();
+                }
+                selectedProjects.add(javaProject);
+            }
+        }
+
+        return selectedProjects;
+    }
+
     //    @SuppressWarnings("unchecked")
     //    private List<IJavaElement> getSelectedJavaElements(ISelection selection) {
     //        List<IJavaElement> selectedJavaElements = new ArrayList<IJavaElement>();
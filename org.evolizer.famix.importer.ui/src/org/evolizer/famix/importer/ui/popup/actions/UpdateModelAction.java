@@ -0,0 +1,100 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.ui.popup.actions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.ui.handlers.HandlerUtil;
+import org.evolizer.core.exceptions.EvolizerException;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.natures.EvolizerNature;
+import org.evolizer.core.util.selectionhandling.JavaSelectionHelper;
+import org.evolizer.famix.importer.jobs.FamixIncrementalUpdateJob;
+import org.evolizer.famix.importer.ui.FamixImporterUIPlugin;
+
+/**
+ * Handler to update the FAMIX model of a project with the selected compilation units. The compilation
+ * units of selected packages are updated as well. The changes are stored if the project has the
+ * Evolizer nature.
+ *
+ * @author pinzger
+ */
+public class UpdateModelAction extends AbstractHandler {
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterUIPlugin.getLogManager().getLogger(UpdateModelAction.class.getName());
+
+    /**
+     * Initializes and runs the job to update the FAMIX model with the selected compilation units.
+     *
+     * {@inheritDoc}
+     */
+    public Object execute(ExecutionEvent event) throws ExecutionException {
+        ISelection selection = HandlerUtil.getCurrentSelection(event);
+
+        try {
+            List<ICompilationUnit> changedUnits = new ArrayList<ICompilationUnit>();
+            for (IJavaElement javaElement : JavaSelectionHelper.getPackagesAndSelectedJavaElements(selection)) {
+                if (javaElement.getElementType() == IJavaElement.COMPILATION_UNIT) {
+                    changedUnits.add((ICompilationUnit) javaElement);
+                } else if (javaElement.getElementType() == IJavaElement.PACKAGE_FRAGMENT) {
+                    changedUnits.addAll(Arrays.asList(((IPackageFragment) javaElement).getCompilationUnits()));
+                }
+            }
+            if (changedUnits.isEmpty()) {
+                sLogger.warn("No compilation units selected to update the FAMIX model.");
+                return null;
+            }
+
+            IJavaProject javaProject = JavaSelectionHelper.getProject(changedUnits.get(0));
+            for (ICompilationUnit changedUnit : changedUnits) {
+                if (!javaProject.equals(changedUnit.getJavaProject())) {
+                    sLogger.warn("Select compilation units of one project to update its FAMIX model.");
+                    return null;
+                }
+            }
+
+            String dbUrl = null;
+            if (javaProject.getProject().hasNature(EvolizerNature.ID)) {
+                EvolizerSessionHandler.getHandler().initSessionFactory(javaProject.getProject());
+                dbUrl = EvolizerSessionHandler.getHandler().getDBUrl(javaProject.getProject());
+            }
+            Job mainJob = new FamixIncrementalUpdateJob(changedUnits, dbUrl);
+            mainJob.setUser(true);
+            mainJob.schedule();
+        } catch (CoreException ce) {
+            throw new ExecutionException(ce.getMessage());
+        } catch (EvolizerException ee) {
+            throw new ExecutionException(ee.getMessage());
+        }
+
+        return null;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.evolizer.famix.importer;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Stack;
@@ -52,6 +53,7 @@ import org.eclipse.jdt.core.dom.SuperFieldAccess;
 import org.eclipse.jdt.core.dom.SuperMethodInvocation;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.evolizer.famix.importer.nodehandler.ASTNodeHandlerPool;
 import org.evolizer.famix.importer.nodehandler.AbstractASTNodeHandler;
 import org.evolizer.famix.importer.nodehandler.AnonymTypeHandler;
 import org.evolizer.famix.importer.nodehandler.CastExpressionHandler;
@@ -71,10 +73,12 @@ import org.evolizer.famix.importer.nodehandler.SuperMethodInvocationHandler;
 import org.evolizer.famix.importer.nodehandler.TypeDeclarationHandler;
 import org.evolizer.famix.importer.nodehandler.VariableDeclarationFragmentHandler;
 import org.evolizer.famix.importer.unresolved.UnresolvedMethodInvocation;
+import org.evolizer.famix.importer.util.ImportStatistics;
 import org.evolizer.famix.model.entities.FamixClass;
 import org.evolizer.famix.model.entities.FamixLocalVariable;
 import org.evolizer.famix.model.entities.FamixMethod;
 import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
 
 /**
  * The main class for extracting the FAMIX source model from an Eclipse Java compilation unit. The crawler first creates
@@ -167,15 +171,51 @@ public class ASTCrawler extends ASTVisitor {
     private FamixModelFactory fFactory;
 
     /**
-     * Map that for each AST node remembers the corresponding handler to process the AST node information.
+     * The handlers of the declarations currently being visited, in the order of their visit. The handler
+     * on top of the stack is the one of the next <code>endVisit</code>.
      */
-    private Hashtable<ASTNode, AbstractASTNodeHandler> fNodeHandler;
+    private ArrayList<AbstractASTNodeHandler> fHandlerStack = new ArrayList<AbstractASTNodeHandler>();
+
+    /**
+     * The idle node handlers to reuse.
+     */
+    private ASTNodeHandlerPool fHandlerPool = new ASTNodeHandlerPool(this);
+
+    /**
+     * Switch to control the reuse of node handlers.
+     */
+    private boolean fHandlerPooling = true;
+
+    /**
+     * Switch to control the detaching of the unresolved invocations from the AST.
+     */
+    private boolean fDetachUnresolvedCalls = true;
 
     /**
      * The current compilation unit used to extract the source code.
      */
     private ICompilationUnit fCurrCompilationUnit;
 
+    /**
+     * The path of the current source file if it is parsed without an Eclipse compilation unit.
+     */
+    private String fCurrFileName;
+
+    /**
+     * The source code of the current source file if it is parsed without an Eclipse compilation unit.
+     */
+    private String fCurrSource;
+
+    /**
+     * The source blob of the current compilation unit, shared by its top-level types.
+     */
+    private SourceBlob fCurrSourceBlob;
+
+    /**
+     * The statistics to which the visits of the node handlers are recorded.
+     */
+    private ImportStatistics fStatistics = new ImportStatistics();
+
     /**
      * The constructor
      * 
@@ -204,12 +244,59 @@ public class ASTCrawler extends ASTVisitor {
 
         setLocalVariableScope(new Hashtable<FamixLocalVariable, StatementBlock>());
         setAnonymClassCounter(new Hashtable<FamixClass, Integer>());
-        fNodeHandler = new Hashtable<ASTNode, AbstractASTNodeHandler>();
+        fHandlerStack.clear();
         fUnresolvedCalls = new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
     }
 
+    /**
+     * Detaches the unresolved invocations from the AST and drops the node handlers, such that the AST of the
+     * traversed compilation unit is not referenced by the crawler anymore and can be garbage collected.
+     */
+    private void releaseAST() {
+        if (fDetachUnresolvedCalls) {
+            for (List<UnresolvedMethodInvocation> lInvocations : fUnresolvedCalls.values()) {
+                for (UnresolvedMethodInvocation lInvocation : lInvocations) {
+                    lInvocation.detach();
+                }
+            }
+        }
+        fHandlerStack.clear();
+    }
+
     private void setCurrCompilationUnit(ICompilationUnit cu) {
         fCurrCompilationUnit = cu;
+        fCurrFileName = null;
+        fCurrSource = null;
+        fCurrSourceBlob = null;
+    }
+
+    /**
+     * Returns the path of the current source file if it is parsed without an Eclipse compilation unit.
+     * Used for the source anchors of ASTs that are not backed by a Java element.
+     * 
+     * @return The path of the source file, or <code>null</code> if the current compilation unit is an Eclipse one.
+     */
+    public String getCurrFileName() {
+        return fCurrFileName;
+    }
+
+    /**
+     * Returns the source blob of the current compilation unit. The blob is created on the first access, such that the
+     * source code is hashed and compressed once per compilation unit.
+     * 
+     * @return The source blob, or <code>null</code> if there is no current compilation unit or source file.
+     * @throws JavaModelException If the source code cannot be obtained.
+     */
+    private SourceBlob getCurrSourceBlob() throws JavaModelException {
+        if ((fCurrSourceBlob == null) && (fCurrCompilationUnit != null)) {
+            String lSource = fCurrCompilationUnit.getSource();
+            if (lSource != null) {
+                fCurrSourceBlob = new SourceBlob(lSource);
+            }
+        } else if ((fCurrSourceBlob == null) && (fCurrSource != null)) {
+            fCurrSourceBlob = new SourceBlob(fCurrSource);
+        }
+        return fCurrSourceBlob;
     }
 
     /**
@@ -222,32 +309,97 @@ public class ASTCrawler extends ASTVisitor {
      * @return OK_Status if the parsing was successful otherwise error.
      */
     public IStatus analyze(ICompilationUnit cu, IProgressMonitor monitor) {
-        IStatus status = Status.OK_STATUS;
-
-        resetASTCrawler();
-
-        fCurrCompilationUnit = cu;
-
         ASTParser lParser = ASTParser.newParser(AST.JLS3); // up to J2SE 1.5
         lParser.setSource(cu);
         lParser.setResolveBindings(true);
         CompilationUnit lResult = (CompilationUnit) lParser.createAST(monitor);
-        IProblem[] problems = lResult.getProblems();
+
+        return analyze(cu, lResult, monitor);
+    }
+
+    /**
+     * Traverses the already created AST of a Java compilation unit. Used for ASTs that have been created in a batch
+     * with {@link ASTParser#createASTs(ICompilationUnit[], String[], org.eclipse.jdt.core.dom.ASTRequestor, IProgressMonitor)}
+     * sharing the binding environment. The AST must have been created with resolved bindings.
+     * 
+     * @param cu
+     *            Eclipse Java compilation unit the AST was created from.
+     * @param astRoot
+     *            The AST of the compilation unit.
+     * @param monitor
+     *            The progress monitor.
+     * @return OK_Status if the parsing was successful otherwise error.
+     */
+    public IStatus analyze(ICompilationUnit cu, CompilationUnit astRoot, IProgressMonitor monitor) {
+        resetASTCrawler();
+
+        setCurrCompilationUnit(cu);
+
+        return traverse(astRoot, cu.getPath().toString(), monitor);
+    }
+
+    /**
+     * Traverses the AST of a source file that has been created without an Eclipse Java project, e.g., with
+     * {@link ASTParser#setEnvironment(String[], String[], String[], boolean)} and
+     * {@link ASTParser#createASTs(String[], String[], String[], org.eclipse.jdt.core.dom.FileASTRequestor, IProgressMonitor)}
+     * by a headless import. The AST must have been created with resolved bindings.
+     * 
+     * @param fileName
+     *            The path of the source file, used for the source anchors.
+     * @param source
+     *            The source code of the file the AST was created from.
+     * @param astRoot
+     *            The AST of the source file.
+     * @param monitor
+     *            The progress monitor.
+     * @return OK_Status if the parsing was successful otherwise error.
+     */
+    public IStatus analyze(String fileName, String source, CompilationUnit astRoot, IProgressMonitor monitor) {
+        resetASTCrawler();
+
+        fCurrFileName = fileName;
+        fCurrSource = source;
+
+        return traverse(astRoot, fileName, monitor);
+    }
+
+    /**
+     * Visits the AST of the current compilation unit and releases it afterwards.
+     * 
+     * @param astRoot
+     *            The AST of the compilation unit.
+     * @param path
+     *            The path of the compilation unit used for logging.
+     * @param monitor
+     *            The progress monitor.
+     * @return OK_Status if the parsing was successful otherwise error.
+     */
+    private IStatus traverse(CompilationUnit astRoot, String path, IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+
+        IProblem[] problems = astRoot.getProblems();
         if (problems.length > 0) {
             for (IProblem problem : problems) {
                 sLogger.warn(problem.getMessage());
             }
         }
-        sLogger.debug("Visiting AST of " + cu.getPath());
+        sLogger.debug("Visiting AST of " + path);
 
         // catch all errors
         try {
-            lResult.accept(this);
+            astRoot.accept(this);
         } catch (IllegalArgumentException ex) {
-            sLogger.error("Error during processing AST of " + cu.getPath());
+            sLogger.error("Error during processing AST of " + path);
             sLogger.error(ex.fillInStackTrace());
         }
-        sLogger.debug("Visiting AST of " + cu.getPath() + " complete");
+        sLogger.debug("Visiting AST of " + path + " complete");
+        fStatistics.recordCompilationUnit();
+        int lNrOfUnresolvedCalls = 0;
+        for (List<UnresolvedMethodInvocation> lInvocations : fUnresolvedCalls.values()) {
+            lNrOfUnresolvedCalls += lInvocations.size();
+        }
+        fStatistics.recordBindingFailures(ImportStatistics.BINDING_METHOD, lNrOfUnresolvedCalls);
+        releaseAST();
 
         if (monitor.isCanceled()) {
             status = Status.CANCEL_STATUS;
@@ -289,6 +441,7 @@ public class ASTCrawler extends ASTVisitor {
             sLogger.error(ex.fillInStackTrace());
         }
         sLogger.debug("Visiting AST of complete");
+        releaseAST();
 
         if (monitor.isCanceled()) {
             status = Status.CANCEL_STATUS;
@@ -297,6 +450,102 @@ public class ASTCrawler extends ASTVisitor {
         return status;
     }
 
+    /**
+     * Returns a handler of the given type, reused from the pool of idle handlers if handler pooling is enabled.
+     * 
+     * @param <T>
+     *            The type of the handler.
+     * @param handlerType
+     *            The class of the handler.
+     * @return The handler.
+     */
+    private <T extends AbstractASTNodeHandler> T acquireHandler(Class<T> handlerType) {
+        return fHandlerPool.acquire(handlerType);
+    }
+
+    /**
+     * Returns a handler that is not used anymore to the pool of idle handlers if handler pooling is enabled.
+     * 
+     * @param handler
+     *            The handler.
+     */
+    private void releaseHandler(AbstractASTNodeHandler handler) {
+        if (fHandlerPooling) {
+            fHandlerPool.release(handler);
+        }
+    }
+
+    /**
+     * Lets the handler process an AST node without post-processing and releases it afterwards.
+     * 
+     * @param handler
+     *            The handler of the AST node.
+     * @param node
+     *            The AST node.
+     * @return true, if child nodes should be visited.
+     */
+    private boolean dispatch(AbstractASTNodeHandler handler, ASTNode node) {
+        boolean lVisitChildren = visitHandler(handler, node);
+        releaseHandler(handler);
+        return lVisitChildren;
+    }
+
+    /**
+     * Pushes the handler of an AST node on the handler stack and lets it process the node. The handler
+     * is popped by {@link #endDispatch(ASTNode)} when the node is post-processed.
+     * 
+     * @param handler
+     *            The handler of the AST node.
+     * @param node
+     *            The AST node.
+     * @return true, if child nodes should be visited.
+     */
+    private boolean pushAndDispatch(AbstractASTNodeHandler handler, ASTNode node) {
+        fHandlerStack.add(handler);
+        return visitHandler(handler, node);
+    }
+
+    /**
+     * Lets the handler process an AST node. The visit and the time spent in the handler are recorded in
+     * the import statistics.
+     * 
+     * @param handler
+     *            The handler of the AST node.
+     * @param node
+     *            The AST node.
+     * @return true, if child nodes should be visited.
+     */
+    private boolean visitHandler(AbstractASTNodeHandler handler, ASTNode node) {
+        if (!fStatistics.isHandlerTimingEnabled()) {
+            fStatistics.recordVisit(handler.getClass(), 0);
+            return handler.visit(node);
+        }
+        long lStartTime = System.nanoTime();
+        boolean lVisitChildren = handler.visit(node);
+        fStatistics.recordVisit(handler.getClass(), System.nanoTime() - lStartTime);
+        return lVisitChildren;
+    }
+
+    /**
+     * Pops the handler of an AST node from the handler stack, lets it post-process the node, and records the
+     * time spent. The visitor ends the visits of the nodes in the reverse order of their visits, hence, the
+     * handler on top of the stack is the one of the given node.
+     * 
+     * @param node
+     *            The AST node.
+     */
+    private void endDispatch(ASTNode node) {
+        AbstractASTNodeHandler lHandler = fHandlerStack.remove(fHandlerStack.size() - 1);
+        if (!fStatistics.isHandlerTimingEnabled()) {
+            lHandler.endVisit();
+        } else {
+            long lStartTime = System.nanoTime();
+            lHandler.endVisit();
+            fStatistics.addHandlerTime(lHandler.getClass(), System.nanoTime() - lStartTime);
+        }
+        releaseHandler(lHandler);
+    }
+
     /** 
      * Handle type declarations.
      * 
@@ -307,18 +556,19 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(TypeDeclaration typeDeclaration) {
-        sLogger.debug("Processing type declaration node " + typeDeclaration.getName());
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing type declaration node " + typeDeclaration.getName());
+        }
 
-        TypeDeclarationHandler lTypeHandler = new TypeDeclarationHandler(this);
+        TypeDeclarationHandler lTypeHandler = acquireHandler(TypeDeclarationHandler.class);
 
         try {
-            lTypeHandler.setSource(fCurrCompilationUnit.getSource());
+            lTypeHandler.setSource(getCurrSourceBlob());
         } catch (JavaModelException e) {
             e.printStackTrace();
         }
 
-        fNodeHandler.put(typeDeclaration, lTypeHandler);
-        return lTypeHandler.visit(typeDeclaration);
+        return pushAndDispatch(lTypeHandler, typeDeclaration);
     }
 
     /**
@@ -330,8 +580,10 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public void endVisit(TypeDeclaration typeDeclaration) {
-        sLogger.debug("Post processing type declaration node " + typeDeclaration.getName());
-        fNodeHandler.get(typeDeclaration).endVisit();
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Post processing type declaration node " + typeDeclaration.getName());
+        }
+        endDispatch(typeDeclaration);
     }
 
     /** 
@@ -344,18 +596,19 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(EnumDeclaration enumDeclaration) {
-        sLogger.debug("Processing enum declaration node " + enumDeclaration.getName());
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing enum declaration node " + enumDeclaration.getName());
+        }
 
-        EnumDeclarationHandler lTypeHandler = new EnumDeclarationHandler(this);
+        EnumDeclarationHandler lTypeHandler = acquireHandler(EnumDeclarationHandler.class);
 
         try {
-            lTypeHandler.setSource(fCurrCompilationUnit.getSource());
+            lTypeHandler.setSource(getCurrSourceBlob());
         } catch (JavaModelException e) {
             e.printStackTrace();
         }
 
-        fNodeHandler.put(enumDeclaration, lTypeHandler);
-        return lTypeHandler.visit(enumDeclaration);
+        return pushAndDispatch(lTypeHandler, enumDeclaration);
     }
 
     /**
@@ -367,8 +620,10 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public void endVisit(EnumDeclaration enumDeclaration) {
-        sLogger.debug("Post processing enum declaration node " + enumDeclaration.getName());
-        fNodeHandler.get(enumDeclaration).endVisit();
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Post processing enum declaration node " + enumDeclaration.getName());
+        }
+        endDispatch(enumDeclaration);
     }
     
     /**
@@ -381,11 +636,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(EnumConstantDeclaration enumConstantDeclaration) {
-        sLogger.debug("Processing enum constant declaration node " + enumConstantDeclaration.getName());
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing enum constant declaration node " + enumConstantDeclaration.getName());
+        }
 
-        AbstractASTNodeHandler lEnumConstantHandler = new EnumConstantDeclarationHandler(this);
-        fNodeHandler.put(enumConstantDeclaration, lEnumConstantHandler);
-        return lEnumConstantHandler.visit(enumConstantDeclaration);
+        AbstractASTNodeHandler lEnumConstantHandler = acquireHandler(EnumConstantDeclarationHandler.class);
+        return dispatch(lEnumConstantHandler, enumConstantDeclaration);
     }
     
     /**
@@ -400,9 +656,8 @@ public class ASTCrawler extends ASTVisitor {
     public boolean visit(AnonymousClassDeclaration anonymTypeDeclaration) {
         sLogger.debug("Processing anonymous class declaration node");
 
-        AbstractASTNodeHandler lTypeHandler = new AnonymTypeHandler(this);
-        fNodeHandler.put(anonymTypeDeclaration, lTypeHandler);
-        return lTypeHandler.visit(anonymTypeDeclaration);
+        AbstractASTNodeHandler lTypeHandler = acquireHandler(AnonymTypeHandler.class);
+        return pushAndDispatch(lTypeHandler, anonymTypeDeclaration);
     }
 
     /**
@@ -416,7 +671,7 @@ public class ASTCrawler extends ASTVisitor {
     public void endVisit(AnonymousClassDeclaration anonymTypeDeclaration) {
         sLogger.debug("Post processing anonymous class declaration node");
 
-        fNodeHandler.get(anonymTypeDeclaration).endVisit();
+        endDispatch(anonymTypeDeclaration);
     }
 
     /**
@@ -429,11 +684,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(MethodDeclaration methodDeclaration) {
-        sLogger.debug("Processing method declaration node " + methodDeclaration.getName());
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing method declaration node " + methodDeclaration.getName());
+        }
 
-        AbstractASTNodeHandler lMethodHandler = new MethodDeclarationHandler(this);
-        fNodeHandler.put(methodDeclaration, lMethodHandler);
-        return lMethodHandler.visit(methodDeclaration);
+        AbstractASTNodeHandler lMethodHandler = acquireHandler(MethodDeclarationHandler.class);
+        return pushAndDispatch(lMethodHandler, methodDeclaration);
     }
 
     /**
@@ -445,8 +701,10 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public void endVisit(MethodDeclaration methodDeclaration) {
-        sLogger.debug("Post processing method declaration node " + methodDeclaration.getName());
-        fNodeHandler.get(methodDeclaration).endVisit();
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Post processing method declaration node " + methodDeclaration.getName());
+        }
+        endDispatch(methodDeclaration);
     }
 
     /**
@@ -461,9 +719,8 @@ public class ASTCrawler extends ASTVisitor {
     public boolean visit(FieldDeclaration fieldDeclaration) {
         sLogger.debug("Processing attribute declaration");
 
-        AbstractASTNodeHandler lFieldHandler = new FieldDeclarationHandler(this);
-        fNodeHandler.put(fieldDeclaration, lFieldHandler);
-        return lFieldHandler.visit(fieldDeclaration);
+        AbstractASTNodeHandler lFieldHandler = acquireHandler(FieldDeclarationHandler.class);
+        return pushAndDispatch(lFieldHandler, fieldDeclaration);
     }
 
     /**
@@ -476,7 +733,7 @@ public class ASTCrawler extends ASTVisitor {
     @Override
     public void endVisit(FieldDeclaration fieldDeclaration) {
         sLogger.debug("Post processing attribute declaration");
-        fNodeHandler.get(fieldDeclaration).endVisit();
+        endDispatch(fieldDeclaration);
     }
 
     /**
@@ -506,11 +763,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(VariableDeclarationFragment variableDeclarationFragment) {
-        sLogger.debug("Processing variable declaration fragment node " + variableDeclarationFragment.getName());
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing variable declaration fragment node " + variableDeclarationFragment.getName());
+        }
 
-        AbstractASTNodeHandler lVariableDeclarationHandler = new VariableDeclarationFragmentHandler(this);
-        fNodeHandler.put(variableDeclarationFragment, lVariableDeclarationHandler);
-        return lVariableDeclarationHandler.visit(variableDeclarationFragment);
+        AbstractASTNodeHandler lVariableDeclarationHandler = acquireHandler(VariableDeclarationFragmentHandler.class);
+        return dispatch(lVariableDeclarationHandler, variableDeclarationFragment);
     }
 
     /**
@@ -524,12 +782,13 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(SingleVariableDeclaration singleVariableDeclaration) {
-        sLogger.debug("Processing single variable declaration statement node " + singleVariableDeclaration);
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing single variable declaration statement node " + singleVariableDeclaration);
+        }
 
         if (singleVariableDeclaration.getParent() instanceof CatchClause) {
-            AbstractASTNodeHandler lVariableDeclarationHandler = new VariableDeclarationFragmentHandler(this);
-            fNodeHandler.put(singleVariableDeclaration, lVariableDeclarationHandler);
-            return lVariableDeclarationHandler.visit(singleVariableDeclaration);
+            AbstractASTNodeHandler lVariableDeclarationHandler = acquireHandler(VariableDeclarationFragmentHandler.class);
+            return dispatch(lVariableDeclarationHandler, singleVariableDeclaration);
         }
 
         return true;
@@ -547,9 +806,8 @@ public class ASTCrawler extends ASTVisitor {
     public boolean visit(MethodInvocation methodInvocation) {
         sLogger.debug("Processing method invocation node");
 
-        AbstractASTNodeHandler lInvocationHandler = new MethodInvocationHandler(this);
-        fNodeHandler.put(methodInvocation, lInvocationHandler);
-        return lInvocationHandler.visit(methodInvocation);
+        AbstractASTNodeHandler lInvocationHandler = acquireHandler(MethodInvocationHandler.class);
+        return dispatch(lInvocationHandler, methodInvocation);
     }
 
     /**
@@ -564,9 +822,8 @@ public class ASTCrawler extends ASTVisitor {
     public boolean visit(ConstructorInvocation constructorInvocation) {
         sLogger.debug("Processing constructor invocation node");
 
-        AbstractASTNodeHandler lInvocationHandler = new ConstructorInvocationHandler(this);
-        fNodeHandler.put(constructorInvocation, lInvocationHandler);
-        return lInvocationHandler.visit(constructorInvocation);
+        AbstractASTNodeHandler lInvocationHandler = acquireHandler(ConstructorInvocationHandler.class);
+        return dispatch(lInvocationHandler, constructorInvocation);
     }
 
     /**
@@ -581,9 +838,8 @@ public class ASTCrawler extends ASTVisitor {
     public boolean visit(SuperMethodInvocation superMethodInvocation) {
         sLogger.debug("Processing super method invocation node");
 
-        AbstractASTNodeHandler lInvocationHandler = new SuperMethodInvocationHandler(this);
-        fNodeHandler.put(superMethodInvocation, lInvocationHandler);
-        return lInvocationHandler.visit(superMethodInvocation);
+        AbstractASTNodeHandler lInvocationHandler = acquireHandler(SuperMethodInvocationHandler.class);
+        return dispatch(lInvocationHandler, superMethodInvocation);
     }
 
     /**
@@ -598,9 +854,8 @@ public class ASTCrawler extends ASTVisitor {
     public boolean visit(SuperConstructorInvocation superConstructorInvocation) {
         sLogger.debug("Processing super constructor invocation node");
 
-        AbstractASTNodeHandler lInvocationHandler = new SuperConstructorInvocationHandler(this);
-        fNodeHandler.put(superConstructorInvocation, lInvocationHandler);
-        return lInvocationHandler.visit(superConstructorInvocation);
+        AbstractASTNodeHandler lInvocationHandler = acquireHandler(SuperConstructorInvocationHandler.class);
+        return dispatch(lInvocationHandler, superConstructorInvocation);
     }
 
     /** 
@@ -613,11 +868,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(ClassInstanceCreation classInstanceCreation) {
-        sLogger.debug("Visiting class instance creation node " + classInstanceCreation);
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Visiting class instance creation node " + classInstanceCreation);
+        }
 
-        AbstractASTNodeHandler lInvocationHandler = new ClassInstanceCreationHandler(this);
-        fNodeHandler.put(classInstanceCreation, lInvocationHandler);
-        return lInvocationHandler.visit(classInstanceCreation);
+        AbstractASTNodeHandler lInvocationHandler = acquireHandler(ClassInstanceCreationHandler.class);
+        return dispatch(lInvocationHandler, classInstanceCreation);
     }
 
     /**
@@ -631,11 +887,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(FieldAccess fieldAccess) {
-        sLogger.debug("Processing field access node " + fieldAccess.getName());
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing field access node " + fieldAccess.getName());
+        }
 
-        AbstractASTNodeHandler lFieldAccessHandler = new FieldAccessHandler(this);
-        fNodeHandler.put(fieldAccess, lFieldAccessHandler);
-        return lFieldAccessHandler.visit(fieldAccess);
+        AbstractASTNodeHandler lFieldAccessHandler = acquireHandler(FieldAccessHandler.class);
+        return dispatch(lFieldAccessHandler, fieldAccess);
     }
 
     /**
@@ -648,11 +905,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(SuperFieldAccess superFieldAccess) {
-        sLogger.debug("Processing super field access node " + superFieldAccess.getName());
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing super field access node " + superFieldAccess.getName());
+        }
 
-        AbstractASTNodeHandler lSuperFieldAccessHandler = new SuperFieldAccessHandler(this);
-        fNodeHandler.put(superFieldAccess, lSuperFieldAccessHandler);
-        return lSuperFieldAccessHandler.visit(superFieldAccess);
+        AbstractASTNodeHandler lSuperFieldAccessHandler = acquireHandler(SuperFieldAccessHandler.class);
+        return dispatch(lSuperFieldAccessHandler, superFieldAccess);
     }
 
     /**
@@ -665,11 +923,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(QualifiedName qualifiedName) {
-        sLogger.debug("Processing qualified name node " + qualifiedName.getFullyQualifiedName());
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing qualified name node " + qualifiedName.getFullyQualifiedName());
+        }
 
-        AbstractASTNodeHandler lNameAccessHandler = new NameAccessHandler(this);
-        fNodeHandler.put(qualifiedName, lNameAccessHandler);
-        return lNameAccessHandler.visit(qualifiedName);
+        AbstractASTNodeHandler lNameAccessHandler = acquireHandler(NameAccessHandler.class);
+        return dispatch(lNameAccessHandler, qualifiedName);
     }
 
     /**
@@ -682,11 +941,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(SimpleName simpleName) {
-        sLogger.debug("Processing simple name node " + simpleName.getFullyQualifiedName());
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing simple name node " + simpleName.getFullyQualifiedName());
+        }
 
-        AbstractASTNodeHandler lNameAccessHandler = new NameAccessHandler(this);
-        fNodeHandler.put(simpleName, lNameAccessHandler);
-        return lNameAccessHandler.visit(simpleName);
+        AbstractASTNodeHandler lNameAccessHandler = acquireHandler(NameAccessHandler.class);
+        return dispatch(lNameAccessHandler, simpleName);
     }
 
     /**
@@ -699,11 +959,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(CastExpression castExpression) {
-        sLogger.debug("Processing cast expression node " + castExpression);
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing cast expression node " + castExpression);
+        }
 
-        AbstractASTNodeHandler lCastExpressionHandler = new CastExpressionHandler(this);
-        fNodeHandler.put(castExpression, lCastExpressionHandler);
-        return lCastExpressionHandler.visit(castExpression);
+        AbstractASTNodeHandler lCastExpressionHandler = acquireHandler(CastExpressionHandler.class);
+        return dispatch(lCastExpressionHandler, castExpression);
     }
 
     /**
@@ -716,11 +977,12 @@ public class ASTCrawler extends ASTVisitor {
      */
     @Override
     public boolean visit(InstanceofExpression instanceOfExpression) {
-        sLogger.debug("Processing instanceof expression node " + instanceOfExpression);
+        if (sLogger.isDebugEnabled()) {
+            sLogger.debug("Processing instanceof expression node " + instanceOfExpression);
+        }
 
-        AbstractASTNodeHandler lInstanceofExpressionHandler = new InstanceofExpressionHandler(this);
-        fNodeHandler.put(instanceOfExpression, lInstanceofExpressionHandler);
-        return lInstanceofExpressionHandler.visit(instanceOfExpression);
+        AbstractASTNodeHandler lInstanceofExpressionHandler = acquireHandler(InstanceofExpressionHandler.class);
+        return dispatch(lInstanceofExpressionHandler, instanceOfExpression);
     }
 
     /**
@@ -932,6 +1194,77 @@ public class ASTCrawler extends ASTVisitor {
         return fFactory;
     }
 
+    /**
+     * Sets the statistics to which the visits of the node handlers are recorded. Crawlers of the same
+     * import share the statistics.
+     * 
+     * @param statistics The import statistics.
+     */
+    public void setStatistics(ImportStatistics statistics) {
+        fStatistics = statistics;
+    }
+
+    /**
+     * Returns the statistics to which the visits of the node handlers are recorded.
+     * 
+     * @return The import statistics.
+     */
+    public ImportStatistics getStatistics() {
+        return fStatistics;
+    }
+
+    /**
+     * Enables or disables the reuse of node handlers. Without pooling a new handler is created for
+     * each visited AST node.
+     *
+     * @param handlerPooling true to reuse the node handlers.
+     */
+    public void setHandlerPooling(boolean handlerPooling) {
+        fHandlerPooling = handlerPooling;
+        if (!handlerPooling) {
+            fHandlerPool.clear();
+        }
+    }
+
+    /**
+     * Enables or disables the detaching of the unresolved invocations when a compilation unit has been
+     * crawled. Without detaching, the invocations are resolved with the AST when they are processed by
+     * the {@link org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler}, hence, the ASTs of
+     * all crawled compilation units are kept in memory until then.
+     *
+     * @param detachUnresolvedCalls true to detach the unresolved invocations from the AST.
+     */
+    public void setDetachUnresolvedCalls(boolean detachUnresolvedCalls) {
+        fDetachUnresolvedCalls = detachUnresolvedCalls;
+    }
+
+    /**
+     * Check if the unresolved invocations are detached from the AST.
+     *
+     * @return true yes, otherwise false.
+     */
+    public boolean isDetachUnresolvedCalls() {
+        return fDetachUnresolvedCalls;
+    }
+
+    /**
+     * Check if node handlers are reused.
+     *
+     * @return true yes, otherwise false.
+     */
+    public boolean isHandlerPooling() {
+        return fHandlerPooling;
+    }
+
+    /**
+     * Returns the pool of idle node handlers.
+     *
+     * @return The handler pool.
+     */
+    public ASTNodeHandlerPool getHandlerPool() {
+        return fHandlerPool;
+    }
+
     /**
      * Sets the local variable scope hash table.
      * 
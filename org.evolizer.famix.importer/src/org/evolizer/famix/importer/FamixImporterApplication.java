@@ -0,0 +1,243 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.evolizer.core.exceptions.EvolizerException;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.famix.importer.jobs.FamixStoreModelJob;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.importer.util.FamixBulkWriter;
+import org.evolizer.famix.model.entities.FamixModel;
+
+/**
+ * Headless entry point for extracting a FAMIX model from Java source directories and storing it
+ * in a database, e.g., on a build server. The application does not need a workbench or projects
+ * and is started from a plain JVM with the Equinox launcher. JDT Core is activated for the compiler
+ * options and opens the workspace, hence <code>-data</code> must name a writable directory, e.g.,
+ * an empty scratch directory:
+ *
+ * <pre>
+ * java -Xmx1g -jar plugins/org.eclipse.equinox.launcher_&lt;version&gt;.jar -nosplash -data /tmp/famix-workspace
+ *      -application org.evolizer.famix.importer.headless
+ *      -source src/main/java -classpath lib/a.jar:lib/b.jar -modelName myproject
+ *      -db h2:/var/famix/myproject -dbDialect org.hibernate.dialect.H2Dialect -dbDriver org.h2.Driver
+ * </pre>
+ *
+ * Paths of the <code>-source</code> and <code>-classpath</code> options are separated by the platform
+ * path separator. Without the <code>-db</code> option the model is parsed and resolved but not stored.
+ *
+ * @author pinzger
+ */
+public class FamixImporterApplication implements IApplication {
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(FamixImporterApplication.class.getName());
+
+    /**
+     * Exit code of a failed import.
+     */
+    public static final Integer EXIT_ERROR = Integer.valueOf(1);
+
+    /**
+     * Usage message printed for invalid arguments.
+     */
+    private static final String USAGE =
+            "Usage: -source <dirs> [-classpath <entries>] [-modelName <name>] [-encoding <encoding>] [-sourceLevel <level>]\n"
+            + "       [-workers <n>] [-batchSize <files>] [-memoryLimit <MB>]\n"
+            + "       [-db <url> [-dbUser <user>] [-dbPassword <password>] [-dbDialect <dialect>] [-dbDriver <driver>]"
+            + " [-jdbcBatchSize <rows>]]";
+
+    private List<File> fSourceDirectories = new ArrayList<File>();
+    private List<String> fClasspath = new ArrayList<String>();
+    private String fModelName;
+    private String fEncoding;
+    private String fSourceLevel = SourceDirectoryParser.DEFAULT_SOURCE_LEVEL;
+    private int fNumberOfWorkers = ProjectParser.DEFAULT_NUMBER_OF_WORKERS;
+    private int fBatchSize = SourceDirectoryParser.DEFAULT_BATCH_SIZE;
+    private long fMemoryLimit;
+    private String fDBUrl;
+    private String fDBUser = "";
+    private String fDBPassword = "";
+    private String fDBDialect = "";
+    private String fDBDriver = "";
+    private int fJdbcBatchSize = FamixBulkWriter.DEFAULT_BATCH_SIZE;
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object start(IApplicationContext context) throws Exception {
+        String[] lArguments = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+        if (!parseArguments(lArguments)) {
+            System.err.println(USAGE);
+            return EXIT_ERROR;
+        }
+        context.applicationRunning();
+
+        IStatus status = importModel();
+        if (!status.isOK()) {
+            sLogger.error("FAMIX import failed: " + status.getMessage(), status.getException());
+            return EXIT_ERROR;
+        }
+        return IApplication.EXIT_OK;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void stop() {
+        // the import runs to completion in the application thread
+    }
+
+    /**
+     * Parses the source directories, resolves the unresolved invocations, and stores the model
+     * if a database is given.
+     *
+     * @return Status.
+     * @throws EvolizerException If the database session cannot be initialized.
+     */
+    private IStatus importModel() throws EvolizerException {
+        SourceDirectoryParser lParser = new SourceDirectoryParser(fModelName, fSourceDirectories, fClasspath);
+        lParser.setEncoding(fEncoding);
+        lParser.setSourceLevel(fSourceLevel);
+        lParser.setNumberOfWorkers(fNumberOfWorkers);
+        lParser.setBatchSize(fBatchSize);
+        lParser.setMemoryLimit(fMemoryLimit);
+        IStatus status = lParser.parse(new NullProgressMonitor());
+        if (!status.isOK()) {
+            return status;
+        }
+
+        UnresolvedInvocationHandler lUnresolvedInvocationHandler =
+                new UnresolvedInvocationHandler(lParser.getModel(), lParser.getUnresolvedCalls());
+        lUnresolvedInvocationHandler.setNumberOfWorkers(lParser.getNumberOfWorkers());
+        lUnresolvedInvocationHandler.setStatistics(lParser.getStatistics());
+        status = lUnresolvedInvocationHandler.process(new NullProgressMonitor());
+        if (status.isOK()) {
+            status = lUnresolvedInvocationHandler.addInvocations(new NullProgressMonitor());
+        }
+        if (!status.isOK()) {
+            return status;
+        }
+        FamixModel lModel = lParser.getModel();
+        sLogger.info("Extracted " + lModel.getFamixEntities().size() + " entities and "
+                + lModel.getFamixAssociations().size() + " associations of model " + lModel.getName());
+
+        if (fDBUrl != null) {
+            Properties lProperties = EvolizerSessionHandler.getDefaultDBCofig(fDBUrl, fDBDialect, fDBDriver, fDBUser, fDBPassword);
+            EvolizerSessionHandler.getHandler().initSessionFactory(lProperties);
+            try {
+                FamixStoreModelJob lStoreJob = new FamixStoreModelJob(fDBUrl, lModel);
+                lStoreJob.setJdbcBatchSize(fJdbcBatchSize);
+                lStoreJob.setStatistics(lParser.getStatistics());
+                lStoreJob.schedule();
+                lStoreJob.join();
+                status = lStoreJob.getResult();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                status = new Status(IStatus.CANCEL, FamixImporterPlugin.PLUGIN_ID,
+                        "Storing the model has been interrupted", ie);
+            } finally {
+                EvolizerSessionHandler.getHandler().cleanupHibernateSessions();
+            }
+        }
+        sLogger.info(lParser.getStatistics().getReport());
+
+        return status;
+    }
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param arguments
+     *            The application arguments.
+     * @return True, if the arguments are valid.
+     */
+    private boolean parseArguments(String[] arguments) {
+        if (arguments == null) {
+            return false;
+        }
+        try {
+            for (int i = 0; i < arguments.length; i++) {
+                String lOption = arguments[i];
+                if (i + 1 >= arguments.length) {
+                    sLogger.error("Missing value of option " + lOption);
+                    return false;
+                }
+                String lValue = arguments[++i];
+                if (lOption.equals("-source")) {
+                    for (String lPath : lValue.split(File.pathSeparator)) {
+                        fSourceDirectories.add(new File(lPath));
+                    }
+                } else if (lOption.equals("-classpath")) {
+                    for (String lPath : lValue.split(File.pathSeparator)) {
+                        fClasspath.add(new File(lPath).getAbsolutePath());
+                    }
+                } else if (lOption.equals("-modelName")) {
+                    fModelName = lValue;
+                } else if (lOption.equals("-encoding")) {
+                    fEncoding = lValue;
+                } else if (lOption.equals("-sourceLevel")) {
+                    fSourceLevel = lValue;
+                } else if (lOption.equals("-workers")) {
+                    fNumberOfWorkers = Integer.parseInt(lValue);
+                } else if (lOption.equals("-batchSize")) {
+                    fBatchSize = Integer.parseInt(lValue);
+                } else if (lOption.equals("-memoryLimit")) {
+                    fMemoryLimit = Long.parseLong(lValue) << 20;
+                } else if (lOption.equals("-db")) {
+                    fDBUrl = lValue;
+                } else if (lOption.equals("-dbUser")) {
+                    fDBUser = lValue;
+                } else if (lOption.equals("-dbPassword")) {
+                    fDBPassword = lValue;
+                } else if (lOption.equals("-dbDialect")) {
+                    fDBDialect = lValue;
+                } else if (lOption.equals("-dbDriver")) {
+                    fDBDriver = lValue;
+                } else if (lOption.equals("-jdbcBatchSize")) {
+                    fJdbcBatchSize = Integer.parseInt(lValue);
+                } else {
+                    sLogger.error("Unknown option " + lOption);
+                    return false;
+                }
+            }
+        } catch (NumberFormatException nfe) {
+            sLogger.error("Invalid number: " + nfe.getMessage());
+            return false;
+        }
+
+        if (fSourceDirectories.isEmpty()) {
+            sLogger.error("No source directory given");
+            return false;
+        }
+        if (fModelName == null) {
+            fModelName = fSourceDirectories.get(0).getAbsoluteFile().getName();
+        }
+        return true;
+    }
+}
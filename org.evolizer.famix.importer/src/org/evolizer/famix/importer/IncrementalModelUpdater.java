@@ -0,0 +1,582 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaCore;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.importer.unresolved.UnresolvedMethodInvocation;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.AbstractFamixVariable;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixAttribute;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixInvocation;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.entities.SourceAnchor;
+
+/**
+ * Updates an existing FAMIX model with the changes of a set of compilation units instead of
+ * re-parsing the whole selection.
+ *
+ * The update is done in the following steps:
+ * <ul>
+ * <li>Associations anchored in the changed files are removed.
+ * <li>Classes, methods, and attributes declared in the changed files are detached from their parents
+ * and lose their declaration information, parameters and local variables are removed.
+ * <li>The changed compilation units are parsed into the model, re-declaring the detached entities.
+ * <li>The unresolved calls of the changed compilation units and the previously unresolved calls of
+ * other compilation units that could match a method declared in the changed files are resolved.
+ * <li>Detached entities that are neither re-declared nor referenced anymore are removed.
+ * </ul>
+ *
+ * The removed, added, and updated entities and associations are recorded and can be written
+ * to the database with {@link org.evolizer.famix.importer.util.DAOModel#storeChanges(IncrementalModelUpdater, IProgressMonitor)}.
+ *
+ * @author pinzger
+ */
+public class IncrementalModelUpdater {
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(IncrementalModelUpdater.class.getName());
+
+    /**
+     * The model to update.
+     */
+    private FamixModel fModel;
+    /**
+     * The crawler used to parse the changed compilation units.
+     */
+    private ASTCrawler fAnalyzer;
+    /**
+     * The unresolved calls of the previous import, may be null.
+     */
+    private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fPreviousUnresolvedCalls;
+    /**
+     * The unresolved calls of the changed compilation units.
+     */
+    private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fUnresolvedCalls =
+            new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+    /**
+     * The previously unresolved calls of unchanged compilation units that are resolved again.
+     */
+    private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fAffectedCalls =
+            new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+
+    /**
+     * Entities removed from the model.
+     */
+    private Set<AbstractFamixEntity> fRemovedEntities = new HashSet<AbstractFamixEntity>();
+    /**
+     * Associations removed from the model.
+     */
+    private Set<FamixAssociation> fRemovedAssociations = new HashSet<FamixAssociation>();
+    /**
+     * Source anchors replaced during the update.
+     */
+    private List<SourceAnchor> fRemovedSourceAnchors = new LinkedList<SourceAnchor>();
+    /**
+     * Entities kept in the model whose declaration or children changed.
+     */
+    private Set<AbstractFamixEntity> fUpdatedEntities = new HashSet<AbstractFamixEntity>();
+    /**
+     * Entities detached from their declaration in the changed files.
+     */
+    private Set<AbstractFamixEntity> fDetachedEntities = new HashSet<AbstractFamixEntity>();
+    /**
+     * Detached entities that were declared in the changed files before the update.
+     */
+    private Set<AbstractFamixEntity> fPreviouslyDeclaredEntities = new HashSet<AbstractFamixEntity>();
+
+    /**
+     * The constructor.
+     *
+     * @param model
+     *            The FAMIX model to update.
+     */
+    public IncrementalModelUpdater(FamixModel model) {
+        this(model, null);
+    }
+
+    /**
+     * The constructor.
+     *
+     * @param model
+     *            The FAMIX model to update.
+     * @param previousUnresolvedCalls
+     *            The unresolved calls of the import that created the model, may be null. The table
+     *            is updated with the unresolved calls of the changed compilation units.
+     */
+    public IncrementalModelUpdater(FamixModel model, Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> previousUnresolvedCalls) {
+        fModel = model;
+        fPreviousUnresolvedCalls = previousUnresolvedCalls;
+        fAnalyzer = new ASTCrawler(fModel, new FamixModelFactory());
+    }
+
+    /**
+     * Collects the added, changed, and removed Java compilation units of a resource delta.
+     *
+     * @param delta
+     *            The resource delta.
+     * @return The list of changed compilation units. Removed compilation units do not exist anymore.
+     * @throws CoreException
+     *             If the delta can not be traversed.
+     */
+    public static List<ICompilationUnit> getChangedCompilationUnits(IResourceDelta delta) throws CoreException {
+        final List<ICompilationUnit> changedUnits = new ArrayList<ICompilationUnit>();
+        delta.accept(new IResourceDeltaVisitor() {
+            public boolean visit(IResourceDelta resourceDelta) throws CoreException {
+                IResource resource = resourceDelta.getResource();
+                if ((resource.getType() == IResource.FILE) && "java".equals(resource.getFileExtension())) {
+                    boolean isContentChange = (resourceDelta.getKind() != IResourceDelta.CHANGED)
+                            || ((resourceDelta.getFlags() & IResourceDelta.CONTENT) != 0);
+                    IJavaElement element = JavaCore.create((IFile) resource);
+                    if (isContentChange && (element instanceof ICompilationUnit)) {
+                        changedUnits.add((ICompilationUnit) element);
+                    }
+                }
+                return true;
+            }
+        });
+
+        return changedUnits;
+    }
+
+    /**
+     * Replaces the entities and associations of the given compilation units in the model.
+     *
+     * @param changedUnits
+     *            The added, changed, and removed compilation units.
+     * @param monitor
+     *            The progress monitor.
+     * @return Status.
+     */
+    public IStatus update(List<ICompilationUnit> changedUnits, IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        SubMonitor progress = SubMonitor.convert(monitor, 100);
+        progress.setTaskName("Update FAMIX model");
+        long lStartTime = System.currentTimeMillis();
+
+        Set<String> lChangedFiles = new HashSet<String>();
+        for (ICompilationUnit cu : changedUnits) {
+            lChangedFiles.add(cu.getPath().toString());
+        }
+
+        try {
+            progress.subTask("Remove entities and associations of changed files");
+            List<UnresolvedMethodInvocation> lCandidateCalls = removePreviousUnresolvedCalls(lChangedFiles);
+            removeAssociations(lChangedFiles);
+            detachEntities(lChangedFiles);
+            progress.worked(10);
+
+            status = parseCompilationUnits(changedUnits, progress.newChild(60));
+            if (status.getSeverity() == IStatus.CANCEL) {
+                return status;
+            }
+
+            progress.subTask("Resolve affected method calls");
+            collectAffectedCalls(lCandidateCalls, getDeclaredMethodNames(lChangedFiles));
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> lCallsToResolve =
+                    new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>(fAffectedCalls);
+            lCallsToResolve.putAll(fUnresolvedCalls);
+            UnresolvedInvocationHandler lUnresolvedInvocationHandler = new UnresolvedInvocationHandler(fModel, lCallsToResolve);
+            status = lUnresolvedInvocationHandler.process(progress.newChild(15));
+            if (status.getSeverity() == IStatus.OK) {
+                status = lUnresolvedInvocationHandler.addInvocations(progress.newChild(10));
+            }
+
+            removeAssociationsToDeletedEntities(lChangedFiles);
+            removeObsoleteEntities();
+            if (fPreviousUnresolvedCalls != null) {
+                fPreviousUnresolvedCalls.putAll(fUnresolvedCalls);
+            }
+            progress.worked(5);
+        } finally {
+            if (monitor != null) {
+                monitor.done();
+            }
+        }
+
+        sLogger.info("Updated FAMIX model with " + changedUnits.size() + " compilation units in "
+                + (System.currentTimeMillis() - lStartTime) + " ms (removed entities: " + fRemovedEntities.size()
+                + ", removed associations: " + fRemovedAssociations.size() + ", re-resolved calls: "
+                + fAffectedCalls.size() + ")");
+
+        return status;
+    }
+
+    /**
+     * Removes the previously unresolved calls of the changed files from the table of previously
+     * unresolved calls and returns the remaining calls.
+     *
+     * @param changedFiles
+     *            The paths of the changed files.
+     * @return The previously unresolved calls of unchanged files.
+     */
+    private List<UnresolvedMethodInvocation> removePreviousUnresolvedCalls(Set<String> changedFiles) {
+        List<UnresolvedMethodInvocation> lCandidateCalls = new LinkedList<UnresolvedMethodInvocation>();
+        if (fPreviousUnresolvedCalls != null) {
+            for (FamixMethod lCaller : new ArrayList<FamixMethod>(fPreviousUnresolvedCalls.keySet())) {
+                if (isDeclaredIn(lCaller, changedFiles)) {
+                    fPreviousUnresolvedCalls.remove(lCaller);
+                } else {
+                    lCandidateCalls.addAll(fPreviousUnresolvedCalls.get(lCaller));
+                }
+            }
+        }
+
+        return lCandidateCalls;
+    }
+
+    /**
+     * Removes all associations anchored in the changed files.
+     *
+     * @param changedFiles
+     *            The paths of the changed files.
+     */
+    private void removeAssociations(Set<String> changedFiles) {
+        for (FamixAssociation lAssociation : new ArrayList<FamixAssociation>(fModel.getFamixAssociations())) {
+            SourceAnchor lAnchor = lAssociation.getSourceAnchor();
+            if ((lAnchor != null) && changedFiles.contains(lAnchor.getFile())) {
+                fModel.removeRelation(lAssociation);
+                fRemovedAssociations.add(lAssociation);
+            }
+        }
+    }
+
+    /**
+     * Detaches all entities declared in the changed files.
+     *
+     * @param changedFiles
+     *            The paths of the changed files.
+     */
+    private void detachEntities(Set<String> changedFiles) {
+        for (AbstractFamixEntity lEntity : new ArrayList<AbstractFamixEntity>(fModel.getFamixEntities())) {
+            if (isDeclaredIn(lEntity, changedFiles) && fModel.contains(lEntity) && !fDetachedEntities.contains(lEntity)) {
+                detach(lEntity);
+            }
+        }
+    }
+
+    /**
+     * Detaches an entity and its children from their declaration. Parameters and local variables
+     * are removed because they can not be referenced from other files.
+     *
+     * @param entity
+     *            The entity to detach.
+     */
+    private void detach(AbstractFamixEntity entity) {
+        removeFromParent(entity);
+        if ((entity instanceof AbstractFamixVariable) && !(entity instanceof FamixAttribute)) {
+            fRemovedAssociations.addAll(fModel.removeElement(entity));
+            fRemovedEntities.add(entity);
+            if (entity.getSourceAnchor() != null) {
+                fRemovedSourceAnchors.add(entity.getSourceAnchor());
+            }
+            return;
+        }
+
+        fDetachedEntities.add(entity);
+        fUpdatedEntities.add(entity);
+        for (AbstractFamixEntity lChild : new ArrayList<AbstractFamixEntity>(entity.getChildren())) {
+            if (fModel.contains(lChild) && !fDetachedEntities.contains(lChild)) {
+                detach(lChild);
+            }
+        }
+
+        if (entity.getSourceAnchor() != null) {
+            fPreviouslyDeclaredEntities.add(entity);
+            fRemovedSourceAnchors.add(entity.getSourceAnchor());
+            entity.setSourceAnchor(null);
+        }
+        if (entity instanceof FamixClass) {
+            ((FamixClass) entity).getMethods().clear();
+            ((FamixClass) entity).getAttributes().clear();
+            ((FamixClass) entity).getInnerClasses().clear();
+        } else if (entity instanceof FamixMethod) {
+            ((FamixMethod) entity).getParameters().clear();
+            ((FamixMethod) entity).getLocalVariables().clear();
+            ((FamixMethod) entity).getAnonymClasses().clear();
+            ((FamixMethod) entity).setDeclaredReturnClass(null);
+        } else if (entity instanceof FamixAttribute) {
+            ((FamixAttribute) entity).setDeclaredClass(null);
+        }
+    }
+
+    /**
+     * Removes the entity from the children of its parent.
+     *
+     * @param entity
+     *            The entity.
+     */
+    private void removeFromParent(AbstractFamixEntity entity) {
+        AbstractFamixEntity lParent = entity.getParent();
+        if (lParent instanceof FamixPackage) {
+            ((FamixPackage) lParent).getClasses().remove(entity);
+        } else if (lParent instanceof FamixClass) {
+            ((FamixClass) lParent).getMethods().remove(entity);
+            ((FamixClass) lParent).getAttributes().remove(entity);
+            ((FamixClass) lParent).getInnerClasses().remove(entity);
+        } else if (lParent instanceof FamixMethod) {
+            ((FamixMethod) lParent).getParameters().remove(entity);
+            ((FamixMethod) lParent).getLocalVariables().remove(entity);
+            ((FamixMethod) lParent).getAnonymClasses().remove(entity);
+        }
+        if (lParent != null) {
+            fUpdatedEntities.add(lParent);
+            entity.setParent(null);
+        }
+    }
+
+    /**
+     * Parses the existing compilation units into the model.
+     *
+     * @param changedUnits
+     *            The changed compilation units.
+     * @param monitor
+     *            The progress monitor.
+     * @return Status.
+     */
+    private IStatus parseCompilationUnits(List<ICompilationUnit> changedUnits, IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        SubMonitor progress = SubMonitor.convert(monitor, changedUnits.size());
+
+        for (ICompilationUnit cu : changedUnits) {
+            if (!cu.exists()) {
+                sLogger.debug("Compilation unit " + cu.getPath() + " has been removed");
+                progress.worked(1);
+                continue;
+            }
+            sLogger.debug("Processing compilation unit " + cu.getElementName() + ": " + cu.getPath());
+            progress.subTask("File " + cu.getElementName());
+
+            String lPackageID = cu.getParent().getElementName();
+            if ((lPackageID == null) || lPackageID.equals("")) {
+                lPackageID = AbstractFamixEntity.DEFAULT_PACKAGE_NAME;
+            }
+            fModel.addElement(fAnalyzer.getFactory().createPackage(lPackageID, null));
+
+            try {
+                status = fAnalyzer.analyze(cu, progress.newChild(1));
+                if (fAnalyzer.getUnresolvedCalls().size() > 0) {
+                    fUnresolvedCalls.putAll(fAnalyzer.getUnresolvedCalls());
+                }
+            } catch (OperationCanceledException oce) {
+                status = Status.CANCEL_STATUS;
+            }
+            if (status.getSeverity() == IStatus.CANCEL) {
+                break;
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Returns the names of the methods declared in the changed files before and after the update.
+     *
+     * @param changedFiles
+     *            The paths of the changed files.
+     * @return The set of method names.
+     */
+    private Set<String> getDeclaredMethodNames(Set<String> changedFiles) {
+        Set<String> lMethodNames = new HashSet<String>();
+        for (AbstractFamixEntity lEntity : fDetachedEntities) {
+            if (lEntity instanceof FamixMethod) {
+                lMethodNames.add(lEntity.getName());
+            }
+        }
+        for (AbstractFamixEntity lEntity : fModel.getFamixEntities()) {
+            if ((lEntity instanceof FamixMethod) && isDeclaredIn(lEntity, changedFiles)) {
+                lMethodNames.add(lEntity.getName());
+            }
+        }
+
+        return lMethodNames;
+    }
+
+    /**
+     * Selects the previously unresolved calls that could match a method declared in the changed files and
+     * removes the invocations that have been created for them.
+     *
+     * @param candidateCalls
+     *            The previously unresolved calls of unchanged files.
+     * @param methodNames
+     *            The names of the methods declared in the changed files.
+     */
+    private void collectAffectedCalls(List<UnresolvedMethodInvocation> candidateCalls, Set<String> methodNames) {
+        for (UnresolvedMethodInvocation lCall : candidateCalls) {
+            if (!methodNames.contains(lCall.getLabel())) {
+                continue;
+            }
+
+            FamixMethod lCaller = (FamixMethod) fModel.getElement(lCall.getCaller());
+            if (lCaller == null) {
+                continue;
+            }
+            SourceAnchor lCallAnchor = lCall.getSourceAnchor();
+            for (FamixAssociation lAssociation : new ArrayList<FamixAssociation>(fModel.getAssociations(lCaller))) {
+                if ((lAssociation instanceof FamixInvocation) && lAssociation.getFrom().equals(lCaller)
+                        && lCallAnchor.equals(lAssociation.getSourceAnchor())) {
+                    fModel.removeRelation(lAssociation);
+                    fRemovedAssociations.add(lAssociation);
+                    fDetachedEntities.add(lAssociation.getTo()); // might be an obsolete callee stub
+                }
+            }
+
+            if (!fAffectedCalls.containsKey(lCaller)) {
+                fAffectedCalls.put(lCaller, new LinkedList<UnresolvedMethodInvocation>());
+            }
+            fAffectedCalls.get(lCaller).add(lCall);
+        }
+    }
+
+    /**
+     * Removes the associations of unchanged files to the entities that have been deleted from the changed
+     * files, e.g., the invocations of a deleted method. Associations of the changed files are kept, since
+     * they have been created by the re-parse and refer to the entity as a stub.
+     *
+     * @param changedFiles
+     *            The paths of the changed files.
+     */
+    private void removeAssociationsToDeletedEntities(Set<String> changedFiles) {
+        for (AbstractFamixEntity lEntity : fPreviouslyDeclaredEntities) {
+            if ((lEntity.getSourceAnchor() != null) || !fModel.contains(lEntity)) {
+                continue;
+            }
+            for (FamixAssociation lAssociation : new ArrayList<FamixAssociation>(fModel.getAssociations(lEntity))) {
+                SourceAnchor lAnchor = lAssociation.getSourceAnchor();
+                if ((lAnchor == null) || !changedFiles.contains(lAnchor.getFile())) {
+                    fModel.removeRelation(lAssociation);
+                    fRemovedAssociations.add(lAssociation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the detached entities that have not been re-declared and are not referenced anymore.
+     */
+    private void removeObsoleteEntities() {
+        Set<AbstractFamixEntity> lReferencedEntities = new HashSet<AbstractFamixEntity>();
+        for (AbstractFamixEntity lEntity : fModel.getFamixEntities()) {
+            if ((lEntity instanceof AbstractFamixVariable) && (((AbstractFamixVariable) lEntity).getDeclaredClass() != null)) {
+                lReferencedEntities.add(((AbstractFamixVariable) lEntity).getDeclaredClass());
+            } else if ((lEntity instanceof FamixMethod) && (((FamixMethod) lEntity).getDeclaredReturnClass() != null)) {
+                lReferencedEntities.add(((FamixMethod) lEntity).getDeclaredReturnClass());
+            }
+        }
+
+        for (AbstractFamixEntity lEntity : fDetachedEntities) {
+            if ((lEntity.getSourceAnchor() == null) && (lEntity.getParent() == null)
+                    && lEntity.getChildren().isEmpty() && fModel.contains(lEntity)
+                    && fModel.getAssociations(lEntity).isEmpty() && !lReferencedEntities.contains(lEntity)) {
+                fModel.removeElement(lEntity);
+                fRemovedEntities.add(lEntity);
+                fUpdatedEntities.remove(lEntity);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the entity is declared in one of the given files.
+     *
+     * @param entity
+     *            The FAMIX entity.
+     * @param files
+     *            The paths of the files.
+     * @return True, if the source anchor of the entity refers to one of the files.
+     */
+    private boolean isDeclaredIn(AbstractFamixEntity entity, Set<String> files) {
+        return (entity.getSourceAnchor() != null) && files.contains(entity.getSourceAnchor().getFile());
+    }
+
+    /**
+     * Returns the updated model.
+     *
+     * @return The FAMIX model.
+     */
+    public FamixModel getModel() {
+        return fModel;
+    }
+
+    /**
+     * Returns the unresolved calls of the changed compilation units.
+     *
+     * @return The table of unresolved calls.
+     */
+    public Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> getUnresolvedCalls() {
+        return fUnresolvedCalls;
+    }
+
+    /**
+     * Returns the entities removed from the model.
+     *
+     * @return The set of removed entities.
+     */
+    public Set<AbstractFamixEntity> getRemovedEntities() {
+        return fRemovedEntities;
+    }
+
+    /**
+     * Returns the associations removed from the model.
+     *
+     * @return The set of removed associations.
+     */
+    public Set<FamixAssociation> getRemovedAssociations() {
+        return fRemovedAssociations;
+    }
+
+    /**
+     * Returns the source anchors that have been replaced or removed.
+     *
+     * @return The list of removed source anchors.
+     */
+    public List<SourceAnchor> getRemovedSourceAnchors() {
+        return fRemovedSourceAnchors;
+    }
+
+    /**
+     * Returns the entities kept in the model whose declaration or children changed.
+     *
+     * @return The set of updated entities.
+     */
+    public Set<AbstractFamixEntity> getUpdatedEntities() {
+        return fUpdatedEntities;
+    }
+}
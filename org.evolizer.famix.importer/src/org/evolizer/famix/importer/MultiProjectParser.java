@@ -0,0 +1,542 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
+import org.evolizer.core.jobs.MutexSchedulingRule;
+import org.evolizer.famix.importer.unresolved.UnresolvedMethodInvocation;
+import org.evolizer.famix.importer.util.FamixModelMerger;
+import org.evolizer.famix.importer.util.ImportStatistics;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+
+/**
+ * Extracts one FAMIX model from several Eclipse Java projects, parsing independent projects at the same time.
+ *
+ * The projects are ordered by their build path dependencies among the selected projects. Each project is parsed
+ * by its own {@link ProjectParser} in a job that is scheduled once the projects it depends on have been parsed.
+ * The jobs belong to the family of this parser and use a {@link MutexSchedulingRule} on their project, hence, at
+ * most the configured number of projects is parsed at the same time. The partial models of the projects are
+ * merged in the dependency order, such that the resulting model does not depend on the thread scheduling. The
+ * unresolved invocations of all projects are collected for the merged model, hence, invocations across projects
+ * are resolved by the {@link org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler} as usual.
+ *
+ * @author pinzger
+ */
+public class MultiProjectParser {
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(MultiProjectParser.class.getName());
+
+    /**
+     * Default maximum number of projects parsed at the same time, uses the number of available processors.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_PROJECTS = 0;
+
+    /**
+     * Interval in milliseconds for checking the progress and cancellation of the project jobs.
+     */
+    private static final long JOB_POLL_INTERVAL = 200;
+
+    /**
+     * The container holding the merged FAMIX entities and associations of all projects.
+     */
+    private FamixModel fModel;
+    /**
+     * The unresolved invocations of all projects, with the callers of the merged model.
+     */
+    private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fUnresolvedCalls =
+            new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+    /**
+     * The selected projects.
+     */
+    private List<IJavaProject> fProjects;
+    /**
+     * The selected projects on the build path of each selected project.
+     */
+    private Map<IJavaProject, List<IJavaProject>> fRequiredProjects = new HashMap<IJavaProject, List<IJavaProject>>();
+    /**
+     * Maximum number of projects parsed at the same time.
+     */
+    private int fMaxConcurrentProjects = DEFAULT_MAX_CONCURRENT_PROJECTS;
+    /**
+     * Number of workers parsing the compilation units of one project.
+     */
+    private int fNumberOfWorkers = ProjectParser.DEFAULT_NUMBER_OF_WORKERS;
+    /**
+     * Maximum number of compilation units whose ASTs are created in one batch.
+     */
+    private int fBatchSize = ProjectParser.DEFAULT_BATCH_SIZE;
+    /**
+     * The project jobs that have completed, in the order of completion.
+     */
+    private BlockingQueue<ProjectParserJob> fCompletedJobs = new LinkedBlockingQueue<ProjectParserJob>();
+    /**
+     * Timings and counts of the import, shared by the parsers of the projects.
+     */
+    private ImportStatistics fStatistics = new ImportStatistics();
+
+    /**
+     * Creates a new instance of the MultiProjectParser. The model is named after the first project.
+     *
+     * @param projects
+     *            The selected Java projects.
+     */
+    public MultiProjectParser(List<IJavaProject> projects) {
+        fProjects = new ArrayList<IJavaProject>(projects);
+
+        String modelName = projects.get(0).getElementName();
+        Date currentTime = Calendar.getInstance().getTime();
+        fModel = new FamixModel(modelName, currentTime);
+    }
+
+    /**
+     * Parses the selected projects and merges their partial models. A project is parsed once all selected
+     * projects on its build path have been parsed. Errors in one project are logged and the remaining
+     * projects are parsed nevertheless.
+     *
+     * @param monitor
+     *            Progress monitor.
+     * @return Status OK, if no errors have been encountered.
+     */
+    public IStatus parse(IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        List<IJavaProject> lOrder = getProjectOrder();
+        SubMonitor progress = SubMonitor.convert(monitor, 10 * lOrder.size() + 10);
+        progress.setTaskName("Parse " + lOrder.size() + " projects");
+        long lStart = System.currentTimeMillis();
+
+        Map<IJavaProject, ProjectParserJob> lJobs = new HashMap<IJavaProject, ProjectParserJob>();
+        for (IJavaProject project : lOrder) {
+            lJobs.put(project, new ProjectParserJob(project));
+        }
+        fCompletedJobs.clear();
+
+        try {
+            List<IJavaProject> lWaiting = new LinkedList<IJavaProject>(lOrder);
+            Set<IJavaProject> lParsed = new HashSet<IJavaProject>();
+            int lNrOfRunningJobs = scheduleReadyJobs(lWaiting, lParsed, lJobs, 0);
+            while (lNrOfRunningJobs > 0) {
+                if (progress.isCanceled()) {
+                    status = Status.CANCEL_STATUS;
+                    break;
+                }
+                ProjectParserJob lJob = null;
+                try {
+                    lJob = fCompletedJobs.poll(JOB_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    status = Status.CANCEL_STATUS;
+                    break;
+                }
+                if (lJob == null) {
+                    continue;
+                }
+
+                lNrOfRunningJobs--;
+                lParsed.add(lJob.getProject());
+                progress.worked(10);
+                IStatus jobStatus = lJob.getParseStatus();
+                if (jobStatus.getSeverity() == IStatus.CANCEL) {
+                    status = jobStatus;
+                    break;
+                } else if (jobStatus.getSeverity() == IStatus.ERROR) {
+                    sLogger.error("Error in parsing " + lJob.getProject().getElementName()
+                            + " - continuing with the remaining projects.");
+                    status = jobStatus;
+                }
+                lNrOfRunningJobs = scheduleReadyJobs(lWaiting, lParsed, lJobs, lNrOfRunningJobs);
+            }
+        } finally {
+            if (status.getSeverity() == IStatus.CANCEL) {
+                cancelJobs();
+            }
+        }
+
+        if (status.getSeverity() != IStatus.CANCEL) {
+            progress.subTask("Merge project models");
+            mergeProjectModels(lOrder, lJobs);
+            progress.worked(10);
+            sLogger.info("Parsed " + lOrder.size() + " projects in " + (System.currentTimeMillis() - lStart)
+                    + " ms (concurrent projects: " + getMaxConcurrentProjects() + ")");
+        }
+        if (monitor != null) {
+            monitor.done();
+        }
+
+        return status;
+    }
+
+    /**
+     * Schedules the jobs of the waiting projects whose selected required projects have been parsed. If no
+     * job is running and none is ready the projects depend on each other; then the first waiting project
+     * is scheduled to break the cycle.
+     *
+     * @param waiting
+     *            The projects whose jobs have not been scheduled yet, in dependency order.
+     * @param parsed
+     *            The projects that have been parsed.
+     * @param jobs
+     *            The jobs of the projects.
+     * @param nrOfRunningJobs
+     *            The number of scheduled jobs that have not completed yet.
+     * @return The number of scheduled jobs that have not completed yet.
+     */
+    private int scheduleReadyJobs(List<IJavaProject> waiting, Set<IJavaProject> parsed,
+            Map<IJavaProject, ProjectParserJob> jobs, int nrOfRunningJobs) {
+        int lNrOfRunningJobs = nrOfRunningJobs;
+        for (IJavaProject project : new ArrayList<IJavaProject>(waiting)) {
+            if (parsed.containsAll(getRequiredProjects(project))) {
+                waiting.remove(project);
+                jobs.get(project).schedule();
+                lNrOfRunningJobs++;
+            }
+        }
+        if ((lNrOfRunningJobs == 0) && !waiting.isEmpty()) {
+            IJavaProject lProject = waiting.remove(0);
+            sLogger.warn("Cyclic build path dependencies, parsing " + lProject.getElementName()
+                    + " before its required projects");
+            jobs.get(lProject).schedule();
+            lNrOfRunningJobs++;
+        }
+        return lNrOfRunningJobs;
+    }
+
+    /**
+     * Cancels the project jobs and waits until the running ones have stopped.
+     */
+    private void cancelJobs() {
+        Job.getJobManager().cancel(this);
+        try {
+            Job.getJobManager().join(this, null);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        sLogger.info("Parsing of the projects canceled");
+    }
+
+    /**
+     * Merges the partial models of the projects in the given order into the model of this parser and collects
+     * their unresolved invocations. The crawlers of the unresolved invocations are re-targeted to the merged
+     * model because the invocations access the model via their crawler during the resolution.
+     *
+     * @param order
+     *            The projects in dependency order.
+     * @param jobs
+     *            The jobs of the projects.
+     */
+    private void mergeProjectModels(List<IJavaProject> order, Map<IJavaProject, ProjectParserJob> jobs) {
+        ImportStatistics.PhaseTimer lMergeTimer = fStatistics.startPhase(ImportStatistics.PHASE_MERGE);
+        FamixModelMerger lMerger = new FamixModelMerger(fModel);
+        for (IJavaProject project : order) {
+            lMerger.merge(jobs.get(project).getParser().getModel());
+        }
+        lMerger.relink();
+
+        for (IJavaProject project : order) {
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> lUnresolvedCalls =
+                    jobs.get(project).getParser().getUnresolvedCalls();
+            for (FamixMethod lCaller : lUnresolvedCalls.keySet()) {
+                FamixMethod lCanonicalCaller = lMerger.getCanonicalEntity(lCaller);
+                List<UnresolvedMethodInvocation> lInvocations = lUnresolvedCalls.get(lCaller);
+                for (UnresolvedMethodInvocation lInvocation : lInvocations) {
+                    lInvocation.getCrawler().setModel(fModel);
+                    lInvocation.setCaller(lCanonicalCaller);
+                }
+                if (fUnresolvedCalls.containsKey(lCanonicalCaller)) {
+                    fUnresolvedCalls.get(lCanonicalCaller).addAll(lInvocations);
+                } else {
+                    fUnresolvedCalls.put(lCanonicalCaller, lInvocations);
+                }
+            }
+        }
+        lMergeTimer.stop();
+    }
+
+    /**
+     * Returns the selected projects ordered by their build path dependencies: a project comes after the
+     * selected projects it requires. Independent projects keep the order of the selection; projects
+     * depending on each other are ordered as selected.
+     *
+     * @return The selected projects in dependency order.
+     */
+    public List<IJavaProject> getProjectOrder() {
+        List<IJavaProject> lOrder = new ArrayList<IJavaProject>(fProjects.size());
+        List<IJavaProject> lWaiting = new LinkedList<IJavaProject>(fProjects);
+        while (!lWaiting.isEmpty()) {
+            IJavaProject lNext = lWaiting.get(0);
+            for (IJavaProject project : lWaiting) {
+                if (lOrder.containsAll(getRequiredProjects(project))) {
+                    lNext = project;
+                    break;
+                }
+            }
+            lWaiting.remove(lNext);
+            lOrder.add(lNext);
+        }
+        return lOrder;
+    }
+
+    /**
+     * Returns the selected projects on the build path of the given project.
+     *
+     * @param project
+     *            The Java project.
+     * @return The required projects that have been selected.
+     */
+    public List<IJavaProject> getRequiredProjects(IJavaProject project) {
+        List<IJavaProject> lRequiredProjects = fRequiredProjects.get(project);
+        if (lRequiredProjects != null) {
+            return lRequiredProjects;
+        }
+        lRequiredProjects = new ArrayList<IJavaProject>();
+        try {
+            for (String lName : project.getRequiredProjectNames()) {
+                for (IJavaProject lSelected : fProjects) {
+                    if (lSelected.getElementName().equals(lName) && !lSelected.equals(project)) {
+                        lRequiredProjects.add(lSelected);
+                    }
+                }
+            }
+        } catch (JavaModelException jme) {
+            sLogger.error("Error determining the required projects of Java project " + project.getElementName(), jme);
+        }
+        fRequiredProjects.put(project, lRequiredProjects);
+        return lRequiredProjects;
+    }
+
+    /**
+     * Returns the maximum number of projects parsed at the same time.
+     *
+     * @return The maximum number of concurrent projects, 0 for the number of available processors.
+     */
+    public int getMaxConcurrentProjects() {
+        return fMaxConcurrentProjects;
+    }
+
+    /**
+     * Sets the maximum number of projects parsed at the same time. Values smaller than 1 use the number
+     * of available processors, as the {@link MutexSchedulingRule} does by default.
+     *
+     * @param maxConcurrentProjects
+     *            The maximum number of concurrent projects.
+     */
+    public void setMaxConcurrentProjects(int maxConcurrentProjects) {
+        fMaxConcurrentProjects = Math.max(0, maxConcurrentProjects);
+    }
+
+    /**
+     * Returns the number of workers parsing the compilation units of one project.
+     *
+     * @return The number of workers per project.
+     */
+    public int getNumberOfWorkers() {
+        return fNumberOfWorkers;
+    }
+
+    /**
+     * Sets the number of workers parsing the compilation units of one project, see
+     * {@link ProjectParser#setNumberOfWorkers(int)}.
+     *
+     * @param numberOfWorkers
+     *            The number of workers per project.
+     */
+    public void setNumberOfWorkers(int numberOfWorkers) {
+        fNumberOfWorkers = numberOfWorkers;
+    }
+
+    /**
+     * Returns the maximum number of compilation units whose ASTs are created in one batch.
+     *
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return fBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of compilation units whose ASTs are created in one batch, see
+     * {@link ProjectParser#setBatchSize(int)}.
+     *
+     * @param batchSize
+     *            The batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        fBatchSize = batchSize;
+    }
+
+    /**
+     * Returns the timings and counts of the import. The parse phase adds up the times of the projects.
+     *
+     * @return The import statistics.
+     */
+    public ImportStatistics getStatistics() {
+        return fStatistics;
+    }
+
+    /**
+     * Sets the statistics to which the timings and counts of the import are recorded.
+     *
+     * @param statistics
+     *            The import statistics.
+     */
+    public void setStatistics(ImportStatistics statistics) {
+        fStatistics = statistics;
+    }
+
+    /**
+     * Returns the merged FAMIX model.
+     *
+     * @return The FAMIX model.
+     */
+    public FamixModel getModel() {
+        return fModel;
+    }
+
+    /**
+     * Returns the table of unresolved method invocations of all projects.
+     *
+     * @return The table of unresolved method invocations.
+     */
+    public Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> getUnresolvedCalls() {
+        return fUnresolvedCalls;
+    }
+
+    /**
+     * Returns the selected projects.
+     *
+     * @return The unmodifiable list of selected projects.
+     */
+    public List<IJavaProject> getProjects() {
+        return Collections.unmodifiableList(fProjects);
+    }
+
+    /**
+     * Parses one project into its own model. The job belongs to the family of the enclosing parser.
+     *
+     * @author pinzger
+     */
+    private class ProjectParserJob extends Job {
+        /**
+         * The project to parse.
+         */
+        private IJavaProject fProject;
+        /**
+         * The parser of the project.
+         */
+        private ProjectParser fParser;
+        /**
+         * The status of parsing the project, null until the job has run.
+         */
+        private IStatus fParseStatus;
+
+        /**
+         * The constructor.
+         *
+         * @param project
+         *            The project to parse.
+         */
+        public ProjectParserJob(IJavaProject project) {
+            super("Parse project " + project.getElementName());
+            fProject = project;
+
+            List<IJavaElement> lSelection = new ArrayList<IJavaElement>(1);
+            lSelection.add(project);
+            fParser = new ProjectParser(lSelection, getNumberOfWorkers());
+            fParser.setBatchSize(getBatchSize());
+            fParser.setStatistics(fStatistics);
+
+            setRule(new MutexSchedulingRule(project, MultiProjectParser.this, getMaxConcurrentProjects()));
+            addJobChangeListener(new JobChangeAdapter() {
+                @Override
+                public void done(IJobChangeEvent event) {
+                    fCompletedJobs.add(ProjectParserJob.this);
+                }
+            });
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            fParseStatus = fParser.parse(monitor);
+            // errors are reported by the enclosing parser
+            return (fParseStatus.getSeverity() == IStatus.CANCEL) ? Status.CANCEL_STATUS : Status.OK_STATUS;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean belongsTo(Object family) {
+            return family == MultiProjectParser.this;
+        }
+
+        /**
+         * Returns the project parsed by this job.
+         *
+         * @return The project.
+         */
+        public IJavaProject getProject() {
+            return fProject;
+        }
+
+        /**
+         * Returns the parser of the project.
+         *
+         * @return The project parser.
+         */
+        public ProjectParser getParser() {
+            return fParser;
+        }
+
+        /**
+         * Returns the status of parsing the project.
+         *
+         * @return The status, CANCEL if the job has been canceled before it ran.
+         */
+        public IStatus getParseStatus() {
+            return (fParseStatus != null) ? fParseStatus : Status.CANCEL_STATUS;
+        }
+    }
+}
@@ -15,32 +15,59 @@
  */
 package org.evolizer.famix.importer;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.evolizer.core.util.selectionhandling.JavaSelectionHelper;
 import org.evolizer.famix.importer.unresolved.UnresolvedMethodInvocation;
+import org.evolizer.famix.importer.util.FamixImportPipeline;
+import org.evolizer.famix.importer.util.FamixModelMerger;
+import org.evolizer.famix.importer.util.FamixParseCache;
+import org.evolizer.famix.importer.util.ImportStatistics;
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
 import org.evolizer.famix.model.entities.FamixMethod;
 import org.evolizer.famix.model.entities.FamixModel;
 import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
 
 /**
  * Main entry point for extracting a FAMIX source model from an Eclipse Java project, 
@@ -49,6 +76,15 @@ import org.evolizer.famix.model.entities.FamixPackage;
  * It supports the selection of single and multiple projects, source folders, packages 
  * and compilation units.
  * 
+ * If the number of workers is greater than 1 the compilation units are parsed in parallel. 
+ * Each worker fills its own partial model and table of unresolved invocations which are 
+ * merged into the resulting model in a fixed order once all workers have finished.
+ * 
+ * If the batch size is greater than 1 the ASTs of the compilation units of a project are 
+ * created in batches with {@link ASTParser#createASTs(ICompilationUnit[], String[], ASTRequestor, IProgressMonitor)}. 
+ * The compilation units of a batch share the binding environment which is therefore built 
+ * only once per batch instead of once per compilation unit.
+ * 
  * @author pinzger
  */
 public class ProjectParser {
@@ -57,6 +93,21 @@ public class ProjectParser {
      */
     private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(ProjectParser.class.getName());
 
+    /**
+     * Default number of workers, parses the compilation units sequentially.
+     */
+    public static final int DEFAULT_NUMBER_OF_WORKERS = 1;
+
+    /**
+     * Default batch size, creates the AST of each compilation unit separately.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1;
+
+    /**
+     * Interval in milliseconds for checking the progress and cancellation of parallel workers.
+     */
+    private static final long WORKER_POLL_INTERVAL = 200;
+
     /**
      * The container holding the extracted FAMIX entities and associations.
      */
@@ -85,6 +136,46 @@ public class ProjectParser {
      */
     private Set<IJavaElement> fParsedElements;
 
+    /**
+     * Number of workers parsing compilation units in parallel.
+     */
+    private int fNumberOfWorkers = DEFAULT_NUMBER_OF_WORKERS;
+
+    /**
+     * Maximum number of compilation units whose ASTs are created in one batch.
+     */
+    private int fBatchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Compilation units collected for parallel or batch parsing, in the order of the selection.
+     */
+    private List<ICompilationUnit> fPendingCompilationUnits;
+
+    /**
+     * Number of compilation units parsed by the parallel workers.
+     */
+    private AtomicInteger fParsedCompilationUnitCount;
+
+    /**
+     * Signals the parallel workers to stop parsing.
+     */
+    private volatile boolean fWorkersCanceled;
+
+    /**
+     * Cache of the partial models of unchanged compilation units, may be null.
+     */
+    private FamixParseCache fParseCache;
+
+    /**
+     * Pipeline storing the model while it is being parsed, may be null.
+     */
+    private FamixImportPipeline fImportPipeline;
+
+    /**
+     * Timings and counts of the import.
+     */
+    private ImportStatistics fStatistics = new ImportStatistics();
+
     /**
      * Creates a new instance of the ProjectParser. Initializes the FamixModel, FamixModelFactory, and the Analyzer.
      * 
@@ -100,6 +191,21 @@ public class ProjectParser {
         fModel = new FamixModel(modelName, currentTime);
         fFactory = new FamixModelFactory();
         fAnalyzer = new ASTCrawler(fModel, fFactory);
+        fAnalyzer.setStatistics(fStatistics);
+    }
+
+    /**
+     * Creates a new instance of the ProjectParser that parses the compilation units 
+     * of the selection with the given number of workers.
+     * 
+     * @param pSelection
+     *            List of selected IJavaElements.
+     * @param numberOfWorkers
+     *            Number of workers parsing compilation units in parallel.
+     */
+    public ProjectParser(List<IJavaElement> pSelection, int numberOfWorkers) {
+        this(pSelection);
+        setNumberOfWorkers(numberOfWorkers);
     }
 
     /**
@@ -111,11 +217,13 @@ public class ProjectParser {
      */
     public IStatus parse(IProgressMonitor monitor) {
         fParsedElements = new HashSet<IJavaElement>();
+        fPendingCompilationUnits = new ArrayList<ICompilationUnit>();
         IStatus status = Status.OK_STATUS;
 
         SubMonitor progress = SubMonitor.convert(monitor, 100);
         progress.setTaskName("Parse selected items");
-        SubMonitor loopProgress = progress.newChild(100).setWorkRemaining(getSelection().size());
+        SubMonitor loopProgress = progress.newChild(isDeferred() ? 10 : 100).setWorkRemaining(getSelection().size());
+        ImportStatistics.PhaseTimer lParseTimer = fStatistics.startPhase(ImportStatistics.PHASE_PARSE);
 
         try {
             for (IJavaElement javaElement : getSelection()) {
@@ -141,6 +249,25 @@ public class ProjectParser {
                     break;
                 }
             }
+
+            if (isDeferred() && (status.getSeverity() != IStatus.CANCEL)) {
+                IStatus deferredStatus;
+                if (getImportPipeline() != null) {
+                    deferredStatus = parseCompilationUnitsPipelined(progress.newChild(90));
+                } else if (getParseCache() != null) {
+                    deferredStatus = parseCompilationUnitsWithCache(progress.newChild(90));
+                } else if (isParallel()) {
+                    deferredStatus = parseCompilationUnitsInParallel(progress.newChild(90));
+                } else {
+                    deferredStatus = parseCompilationUnitsInBatches(fPendingCompilationUnits, fAnalyzer, fUnresolvedCalls, 
+                            null, progress.newChild(90));
+                }
+                if (!deferredStatus.isOK()) {
+                    status = deferredStatus;
+                }
+            }
+            sLogger.info("Parsed " + fParsedElements.size() + " Java elements in " + lParseTimer.stop() 
+                    + " ms (workers: " + getNumberOfWorkers() + ", batch size: " + getBatchSize() + ")");
         } finally {
             if (monitor != null) {
                 monitor.done();
@@ -274,7 +401,7 @@ public class ProjectParser {
 
     /**
      * Parses an Eclipse compilation unit. FAMIX entities and associations are added to the FamixModel instance. Unresolved
-     * calls are added.
+     * calls are added. In parallel or batch mode the compilation unit is only collected and parsed later on.
      * 
      * @param cu
      *            Eclipse Java compilation unit.
@@ -285,7 +412,10 @@ public class ProjectParser {
     protected IStatus parseCompilationUnit(ICompilationUnit cu, IProgressMonitor monitor) {
         IStatus status = Status.OK_STATUS;
 
-        if (! fParsedElements.contains(cu)) {
+        if (! fParsedElements.contains(cu) && isDeferred()) {
+            fPendingCompilationUnits.add(cu);
+            fParsedElements.add(cu);
+        } else if (! fParsedElements.contains(cu)) {
             sLogger.debug("Processing compilation unit " + cu.getElementName() + ": " + cu.getPath());
     
             SubMonitor progress = SubMonitor.convert(monitor, 100);
@@ -307,6 +437,527 @@ public class ProjectParser {
         return status;
     }
 
+    /**
+     * Parses the collected compilation units with a pool of workers. The compilation units are
+     * assigned round-robin (or in consecutive blocks when parsing in batches) to the workers, 
+     * each of them parsing into its own partial model.
+     * The partial models and unresolved invocations are merged in the order of the workers,
+     * hence, the resulting model does not depend on the thread scheduling.
+     * 
+     * @param monitor
+     *            Progress monitor.
+     * @return Status.
+     */
+    protected IStatus parseCompilationUnitsInParallel(IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        int lNrOfWorkers = Math.min(getNumberOfWorkers(), fPendingCompilationUnits.size());
+        if (lNrOfWorkers == 0) {
+            return status;
+        }
+        sLogger.debug("Parsing " + fPendingCompilationUnits.size() + " compilation units with " + lNrOfWorkers + " workers");
+
+        SubMonitor progress = SubMonitor.convert(monitor, 100);
+        progress.setTaskName("Parse compilation units");
+        SubMonitor parseProgress = progress.newChild(90).setWorkRemaining(fPendingCompilationUnits.size());
+
+        fWorkersCanceled = false;
+        fParsedCompilationUnitCount = new AtomicInteger(0);
+        List<ParserWorker> workers = new ArrayList<ParserWorker>(lNrOfWorkers);
+        for (int i = 0; i < lNrOfWorkers; i++) {
+            workers.add(new ParserWorker());
+        }
+        int lBlockSize = (fPendingCompilationUnits.size() + lNrOfWorkers - 1) / lNrOfWorkers;
+        for (int i = 0; i < fPendingCompilationUnits.size(); i++) {
+            // batches benefit from consecutive compilation units of the same project and package
+            int lWorker = isBatched() ? i / lBlockSize : i % lNrOfWorkers;
+            workers.get(lWorker).addCompilationUnit(fPendingCompilationUnits.get(i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(lNrOfWorkers);
+        List<Future<IStatus>> results = new ArrayList<Future<IStatus>>(lNrOfWorkers);
+        try {
+            for (ParserWorker worker : workers) {
+                results.add(executor.submit(worker));
+            }
+
+            int lReportedUnits = 0;
+            for (Future<IStatus> result : results) {
+                IStatus workerStatus = null;
+                while (workerStatus == null) {
+                    if (parseProgress.isCanceled()) {
+                        fWorkersCanceled = true;
+                    }
+                    try {
+                        workerStatus = result.get(WORKER_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException te) {
+                        // check progress and cancellation again
+                    } catch (InterruptedException ie) {
+                        fWorkersCanceled = true;
+                        Thread.currentThread().interrupt();
+                        workerStatus = Status.CANCEL_STATUS;
+                    } catch (ExecutionException ee) {
+                        sLogger.error("Error while parsing compilation units in parallel", ee.getCause());
+                        workerStatus = new Status(IStatus.ERROR, FamixImporterPlugin.PLUGIN_ID, 
+                                "Error while parsing compilation units in parallel", ee.getCause());
+                    }
+                    int lParsedUnits = fParsedCompilationUnitCount.get();
+                    parseProgress.worked(lParsedUnits - lReportedUnits);
+                    lReportedUnits = lParsedUnits;
+                }
+
+                status = getWorseStatus(status, workerStatus);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (status.getSeverity() != IStatus.CANCEL) {
+            progress.subTask("Merge partial models");
+            mergePartialModels(workers);
+            progress.worked(10);
+        }
+
+        return status;
+    }
+
+    /**
+     * Parses the given compilation units in batches. The ASTs of a batch are created with one call
+     * to {@link ASTParser#createASTs(ICompilationUnit[], String[], ASTRequestor, IProgressMonitor)}
+     * and passed to the crawler one after the other. A batch contains only compilation units of the
+     * same Java project.
+     * 
+     * @param compilationUnits
+     *            The compilation units to parse.
+     * @param crawler
+     *            The crawler extracting the FAMIX entities and associations.
+     * @param unresolvedCalls
+     *            The table to which the unresolved invocations are added.
+     * @param parsedCount
+     *            Counter of parsed compilation units, may be null.
+     * @param monitor
+     *            Progress monitor.
+     * @return Status.
+     */
+    protected IStatus parseCompilationUnitsInBatches(List<ICompilationUnit> compilationUnits, ASTCrawler crawler, 
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls, AtomicInteger parsedCount, 
+            IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        SubMonitor progress = SubMonitor.convert(monitor, compilationUnits.size());
+
+        int lStart = 0;
+        while ((lStart < compilationUnits.size()) && (status.getSeverity() != IStatus.CANCEL)) {
+            IJavaProject lProject = compilationUnits.get(lStart).getJavaProject();
+            int lEnd = lStart + 1;
+            while ((lEnd < compilationUnits.size()) && (lEnd - lStart < getBatchSize())
+                    && lProject.equals(compilationUnits.get(lEnd).getJavaProject())) {
+                lEnd++;
+            }
+            List<ICompilationUnit> lBatch = compilationUnits.subList(lStart, lEnd);
+            sLogger.debug("Creating ASTs of " + lBatch.size() + " compilation units of project " + lProject.getElementName());
+
+            ASTParser lParser = ASTParser.newParser(AST.JLS3); // up to J2SE 1.5
+            lParser.setProject(lProject);
+            lParser.setResolveBindings(true);
+            CrawlerRequestor lRequestor = new CrawlerRequestor(crawler, unresolvedCalls, parsedCount, progress);
+            try {
+                lParser.createASTs(lBatch.toArray(new ICompilationUnit[lBatch.size()]), new String[0], lRequestor, 
+                        progress.newChild(lBatch.size()));
+                status = lRequestor.getStatus();
+            } catch (OperationCanceledException oce) {
+                status = Status.CANCEL_STATUS;
+            }
+
+            lStart = lEnd;
+        }
+
+        return status;
+    }
+
+    /**
+     * Merges the partial models and unresolved invocations of the workers into the model of this parser.
+     * The crawlers of the workers are re-targeted to the merged model because the unresolved invocations
+     * access the model via their crawler during the resolution.
+     * 
+     * @param workers
+     *            The workers in the order of the compilation units assignment.
+     */
+    private void mergePartialModels(List<ParserWorker> workers) {
+        ImportStatistics.PhaseTimer lMergeTimer = fStatistics.startPhase(ImportStatistics.PHASE_MERGE);
+        FamixModelMerger lMerger = new FamixModelMerger(fModel);
+        for (ParserWorker worker : workers) {
+            lMerger.merge(worker.getModel());
+        }
+        lMerger.relink();
+
+        for (ParserWorker worker : workers) {
+            mergeUnresolvedCalls(lMerger, worker.getCrawler(), worker.getUnresolvedCalls());
+        }
+        lMergeTimer.stop();
+    }
+
+    /**
+     * Re-targets the crawler to the merged model and adds its unresolved invocations with the
+     * canonical callers to the unresolved invocations of this parser.
+     * 
+     * @param merger
+     *            The merger of the partial models.
+     * @param crawler
+     *            The crawler that extracted the unresolved invocations.
+     * @param unresolvedCalls
+     *            The unresolved invocations extracted into a partial model.
+     */
+    private void mergeUnresolvedCalls(FamixModelMerger merger, ASTCrawler crawler, 
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) {
+        crawler.setModel(fModel);
+        for (FamixMethod lCaller : unresolvedCalls.keySet()) {
+            FamixMethod lCanonicalCaller = merger.getCanonicalEntity(lCaller);
+            List<UnresolvedMethodInvocation> lInvocations = unresolvedCalls.get(lCaller);
+            for (UnresolvedMethodInvocation lInvocation : lInvocations) {
+                lInvocation.setCaller(lCanonicalCaller);
+            }
+            if (fUnresolvedCalls.containsKey(lCanonicalCaller)) {
+                fUnresolvedCalls.get(lCanonicalCaller).addAll(lInvocations);
+            } else {
+                fUnresolvedCalls.put(lCanonicalCaller, lInvocations);
+            }
+        }
+    }
+
+    /**
+     * Parses the collected compilation units using the parse cache. The partial models and unresolved 
+     * invocations of compilation units whose content and classpath have not changed are replayed from 
+     * the cache, the other compilation units are parsed into partial models and stored in the cache. 
+     * Replayed partial models referring to a declaration that has been changed, added, or removed since 
+     * the last import are parsed again, because their bindings may resolve differently. All partial 
+     * models are merged in the order of the compilation units, the unresolved invocations are resolved 
+     * afterwards as usual. Entries not referenced by the updated index are pruned from the cache.
+     * 
+     * @param monitor
+     *            Progress monitor.
+     * @return Status.
+     */
+    protected IStatus parseCompilationUnitsWithCache(IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        SubMonitor progress = SubMonitor.convert(monitor, fPendingCompilationUnits.size() + 10);
+        int lNrOfCompilationUnits = fPendingCompilationUnits.size();
+        FamixModel[] lPartialModels = new FamixModel[lNrOfCompilationUnits];
+        String[] lHashes = new String[lNrOfCompilationUnits];
+        boolean[] lReplayed = new boolean[lNrOfCompilationUnits];
+        PartialParse[] lParses = new PartialParse[lNrOfCompilationUnits];
+        int lNrOfParsed = 0;
+        Map<IJavaProject, String> lClasspaths = new HashMap<IJavaProject, String>();
+        Set<String> lChangedDeclarations = new HashSet<String>();
+        Set<String> lPaths = new HashSet<String>();
+        // the index is updated only after all changed declarations are known, such that a canceled
+        // import does not hide changes from the next one
+        Hashtable<String, String> lIndexUpdates = new Hashtable<String, String>();
+        List<String> lDeletedPaths = new ArrayList<String>();
+
+        try {
+            for (int i = 0; (i < lNrOfCompilationUnits) && (status.getSeverity() != IStatus.CANCEL); i++) {
+                ICompilationUnit cu = fPendingCompilationUnits.get(i);
+                String lSource = cu.getSource();
+                IJavaProject lProject = cu.getJavaProject();
+                if (!lClasspaths.containsKey(lProject)) {
+                    lClasspaths.put(lProject, getClasspathDescription(lProject));
+                }
+                String lHash = FamixParseCache.computeHash(lSource, lClasspaths.get(lProject));
+                lHashes[i] = lHash;
+                String lPath = cu.getHandleIdentifier();
+                lPaths.add(lPath);
+
+                lParses[i] = new PartialParse(cu, lHash);
+                lReplayed[i] = lParses[i].replay(new SourceBlob(lSource));
+                if (!lReplayed[i]) {
+                    status = lParses[i].parse(progress.newChild(1));
+                    lNrOfParsed++;
+                } else {
+                    progress.worked(1);
+                }
+                lPartialModels[i] = lParses[i].getModel();
+
+                String lIndexedHash = getParseCache().getIndexedHash(lPath);
+                if (!lHash.equals(lIndexedHash)) {
+                    lChangedDeclarations.addAll(FamixParseCache.getChangedDeclarations(
+                            getParseCache().loadDeclarations(lIndexedHash), lPartialModels[i]));
+                    lIndexUpdates.put(lPath, lHash);
+                }
+            }
+            if (status.getSeverity() == IStatus.CANCEL) {
+                return status;
+            }
+
+            for (String lPath : new ArrayList<String>(getParseCache().getIndexedPaths())) {
+                IJavaElement lElement = lPaths.contains(lPath) ? null : JavaCore.create(lPath);
+                if (!lPaths.contains(lPath) && ((lElement == null) || !lElement.exists())) {
+                    lChangedDeclarations.addAll(FamixParseCache.getChangedDeclarations(
+                            getParseCache().loadDeclarations(getParseCache().getIndexedHash(lPath)), null));
+                    lDeletedPaths.add(lPath);
+                }
+            }
+
+            if (!lChangedDeclarations.isEmpty()) {
+                sLogger.debug(lChangedDeclarations.size() + " declarations changed since the last import");
+                for (int i = 0; (i < lNrOfCompilationUnits) && (status.getSeverity() != IStatus.CANCEL); i++) {
+                    if (lReplayed[i] && !Collections.disjoint(FamixParseCache.getReferencedNames(lPartialModels[i], 
+                            lParses[i].getUnresolvedCalls()), lChangedDeclarations)) {
+                        lParses[i] = new PartialParse(fPendingCompilationUnits.get(i), lHashes[i]);
+                        status = lParses[i].parse(new NullProgressMonitor());
+                        lNrOfParsed++;
+                        lPartialModels[i] = lParses[i].getModel();
+                    }
+                }
+                if (status.getSeverity() == IStatus.CANCEL) {
+                    return status;
+                }
+            }
+        } catch (JavaModelException jme) {
+            sLogger.error("Error reading compilation unit " + jme.getMessage());
+            return new Status(IStatus.ERROR, FamixImporterPlugin.PLUGIN_ID, IStatus.ERROR, 
+                    "Error reading compilation unit", jme);
+        }
+        for (String lPath : lIndexUpdates.keySet()) {
+            getParseCache().index(lPath, lIndexUpdates.get(lPath));
+        }
+        for (String lPath : lDeletedPaths) {
+            getParseCache().removeFromIndex(lPath);
+        }
+        getParseCache().saveIndex();
+        int lNrOfPruned = getParseCache().prune();
+
+        FamixModelMerger lMerger = new FamixModelMerger(fModel);
+        for (FamixModel lPartialModel : lPartialModels) {
+            lMerger.merge(lPartialModel);
+        }
+        lMerger.relink();
+        for (PartialParse lParse : lParses) {
+            mergeUnresolvedCalls(lMerger, lParse.getCrawler(), lParse.getUnresolvedCalls());
+        }
+        progress.worked(10);
+        sLogger.info("Parse cache: replayed " + getParseCache().getNrOfHits() + ", parsed " + lNrOfParsed 
+                + " of " + lNrOfCompilationUnits + " compilation units, pruned " + lNrOfPruned + " entries");
+
+        return status;
+    }
+
+    /**
+     * Parses the collected compilation units and streams the complete entities to the import pipeline. 
+     * Each compilation unit is parsed into its own partial model, which is merged into the model of this 
+     * parser and passed to the pipeline right away, such that the entities are written while the next 
+     * compilation units are parsed. The unresolved invocations are collected as usual and resolved after 
+     * the parsing, the pipeline writes them when it is completed.
+     * 
+     * @param monitor
+     *            Progress monitor.
+     * @return Status.
+     */
+    protected IStatus parseCompilationUnitsPipelined(IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        SubMonitor progress = SubMonitor.convert(monitor, fPendingCompilationUnits.size() + 10);
+        FamixModelMerger lMerger = new FamixModelMerger(fModel);
+        getImportPipeline().start(fModel);
+
+        for (ICompilationUnit cu : fPendingCompilationUnits) {
+            PartialParse lParse = new PartialParse(cu, null);
+            status = getWorseStatus(status, lParse.parse(progress.newChild(1)));
+            if (status.getSeverity() == IStatus.CANCEL) {
+                return status;
+            }
+            lMerger.merge(lParse.getModel());
+            mergeUnresolvedCalls(lMerger, lParse.getCrawler(), lParse.getUnresolvedCalls());
+            getImportPipeline().stream(lParse.getModel(), lMerger);
+        }
+
+        // the streamed entities must not change while being written
+        getImportPipeline().awaitWritten();
+        lMerger.relink();
+        progress.worked(10);
+        sLogger.info("Import pipeline: streamed " + fPendingCompilationUnits.size() + " compilation units in " 
+                + getImportPipeline().getNrOfChunks() + " chunks");
+
+        return status;
+    }
+
+    /**
+     * Returns the status with the worse severity, such that an error or cancellation of one compilation
+     * unit is not overwritten by the status of the following ones.
+     *
+     * @param status The status so far.
+     * @param otherStatus The status to merge.
+     * @return The status with the higher severity, the first one if both have the same severity.
+     */
+    private static IStatus getWorseStatus(IStatus status, IStatus otherStatus) {
+        return (otherStatus.getSeverity() > status.getSeverity()) ? otherStatus : status;
+    }
+
+    /**
+     * Returns a description of the resolved classpath and the compiler source level of the project. 
+     * Libraries are described by their path and modification time, such that replacing a library 
+     * invalidates the cached partial models of the project.
+     * 
+     * @param project
+     *            The Java project.
+     * @return The description of the classpath.
+     * @throws JavaModelException
+     *             If the classpath cannot be resolved.
+     */
+    private String getClasspathDescription(IJavaProject project) throws JavaModelException {
+        StringBuilder lDescription = new StringBuilder(project.getOption(JavaCore.COMPILER_SOURCE, true));
+        for (IClasspathEntry lEntry : project.getResolvedClasspath(true)) {
+            lDescription.append(File.pathSeparatorChar).append(lEntry.getEntryKind()).append(lEntry.getPath());
+            if (lEntry.getEntryKind() == IClasspathEntry.CPE_LIBRARY) {
+                File lLibrary = lEntry.getPath().toFile();
+                if (!lLibrary.exists()) {
+                    IResource lResource = ResourcesPlugin.getWorkspace().getRoot().findMember(lEntry.getPath());
+                    if ((lResource != null) && (lResource.getLocation() != null)) {
+                        lLibrary = lResource.getLocation().toFile();
+                    }
+                }
+                lDescription.append('@').append(lLibrary.lastModified());
+            }
+        }
+        return lDescription.toString();
+    }
+
+    /**
+     * Returns true, if compilation units are parsed by more than one worker.
+     * 
+     * @return True, if compilation units are parsed in parallel.
+     */
+    public boolean isParallel() {
+        return getNumberOfWorkers() > 1;
+    }
+
+    /**
+     * Returns true, if the ASTs of compilation units are created in batches.
+     * 
+     * @return True, if compilation units are parsed in batches.
+     */
+    public boolean isBatched() {
+        return getBatchSize() > 1;
+    }
+
+    /**
+     * Returns true, if compilation units are collected first and parsed afterwards, either
+     * in parallel, in batches, using the parse cache, or streamed to the import pipeline.
+     * 
+     * @return True, if the parsing of compilation units is deferred.
+     */
+    private boolean isDeferred() {
+        return isParallel() || isBatched() || (getParseCache() != null) || (getImportPipeline() != null);
+    }
+
+    /**
+     * Returns the cache of the partial models of unchanged compilation units.
+     * 
+     * @return The parse cache, or null if compilation units are always parsed.
+     */
+    public FamixParseCache getParseCache() {
+        return fParseCache;
+    }
+
+    /**
+     * Sets the cache of the partial models of unchanged compilation units. With a parse cache, 
+     * compilation units are parsed sequentially, each into its own partial model.
+     * 
+     * @param parseCache
+     *            The parse cache, or null to parse all compilation units.
+     */
+    public void setParseCache(FamixParseCache parseCache) {
+        fParseCache = parseCache;
+    }
+
+    /**
+     * Returns the pipeline storing the model while it is being parsed.
+     * 
+     * @return The import pipeline, or null if the model is stored after parsing.
+     */
+    public FamixImportPipeline getImportPipeline() {
+        return fImportPipeline;
+    }
+
+    /**
+     * Sets the pipeline storing the model while it is being parsed. With an import pipeline, compilation 
+     * units are parsed sequentially, each into its own partial model that is merged and streamed to the 
+     * pipeline right away. The parse cache, the number of workers, and the batch size are not used.
+     * 
+     * @param importPipeline
+     *            The import pipeline, or null to store the model after parsing.
+     */
+    public void setImportPipeline(FamixImportPipeline importPipeline) {
+        fImportPipeline = importPipeline;
+    }
+
+    /**
+     * Returns the timings and counts of the import.
+     * 
+     * @return The import statistics.
+     */
+    public ImportStatistics getStatistics() {
+        return fStatistics;
+    }
+
+    /**
+     * Sets the statistics to which the timings and counts of the import are recorded, e.g., to
+     * share them among several imports.
+     * 
+     * @param statistics
+     *            The import statistics.
+     */
+    public void setStatistics(ImportStatistics statistics) {
+        fStatistics = statistics;
+        fAnalyzer.setStatistics(statistics);
+    }
+
+    /**
+     * Returns the maximum number of compilation units whose ASTs are created in one batch.
+     * 
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return fBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of compilation units whose ASTs are created in one batch. Larger 
+     * batches share the binding environment among more compilation units but keep more ASTs in 
+     * memory. Values smaller than 1 put all compilation units of a project into one batch.
+     * 
+     * @param batchSize
+     *            The batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            fBatchSize = Integer.MAX_VALUE;
+        } else {
+            fBatchSize = batchSize;
+        }
+    }
+
+    /**
+     * Returns the number of workers parsing compilation units in parallel.
+     * 
+     * @return The number of workers.
+     */
+    public int getNumberOfWorkers() {
+        return fNumberOfWorkers;
+    }
+
+    /**
+     * Sets the number of workers parsing compilation units in parallel. Values 
+     * smaller than 1 are replaced by the number of available processors.
+     * 
+     * @param numberOfWorkers
+     *            The number of workers.
+     */
+    public void setNumberOfWorkers(int numberOfWorkers) {
+        if (numberOfWorkers < 1) {
+            fNumberOfWorkers = Runtime.getRuntime().availableProcessors();
+        } else {
+            fNumberOfWorkers = numberOfWorkers;
+        }
+    }
+
     /**
      * Returns the FAMIX model.
      * 
@@ -343,4 +994,338 @@ public class ProjectParser {
     public List<IJavaElement> getSelection() {
         return fSelection;
     }
+
+    /**
+     * Parses a list of compilation units into a partial FAMIX model. Each worker uses its own
+     * crawler, factory, and model, hence, workers do not share any mutable state.
+     * 
+     * @author pinzger
+     */
+    private class ParserWorker implements Callable<IStatus> {
+        /**
+         * The partial model.
+         */
+        private FamixModel fPartialModel;
+        /**
+         * The crawler filling the partial model.
+         */
+        private ASTCrawler fCrawler;
+        /**
+         * The compilation units to parse.
+         */
+        private List<ICompilationUnit> fCompilationUnits = new ArrayList<ICompilationUnit>();
+        /**
+         * The unresolved invocations of the parsed compilation units.
+         */
+        private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fWorkerUnresolvedCalls =
+                new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+
+        /**
+         * The constructor. Initializes the partial model with the packages created so far
+         * such that classes can be added to their packages.
+         */
+        public ParserWorker() {
+            FamixModelFactory lFactory = new FamixModelFactory();
+            fPartialModel = new FamixModel(fModel.getName(), fModel.getCreated());
+            for (AbstractFamixEntity lEntity : fModel.getFamixEntities()) {
+                if (lEntity instanceof FamixPackage) {
+                    fPartialModel.addElement(lFactory.createPackage(lEntity.getUniqueName(), null));
+                }
+            }
+            fCrawler = new ASTCrawler(fPartialModel, lFactory);
+            fCrawler.setStatistics(fStatistics);
+        }
+
+        /**
+         * Adds a compilation unit to parse.
+         * 
+         * @param cu
+         *            The compilation unit.
+         */
+        public void addCompilationUnit(ICompilationUnit cu) {
+            fCompilationUnits.add(cu);
+        }
+
+        /**
+         * Parses the assigned compilation units and records the CPU time of the worker.
+         * 
+         * @return Status.
+         */
+        public IStatus call() {
+            long lStartCpuTime = ImportStatistics.getCurrentThreadCpuTime();
+            try {
+                return parseCompilationUnits();
+            } finally {
+                fStatistics.addWorkerCpuTime(ImportStatistics.PHASE_PARSE, 
+                        ImportStatistics.getCurrentThreadCpuTime() - lStartCpuTime);
+            }
+        }
+
+        /**
+         * Parses the assigned compilation units.
+         * 
+         * @return Status.
+         */
+        private IStatus parseCompilationUnits() {
+            IStatus status = Status.OK_STATUS;
+            IProgressMonitor lMonitor = new NullProgressMonitor() {
+                @Override
+                public boolean isCanceled() {
+                    return fWorkersCanceled;
+                }
+            };
+
+            if (isBatched()) {
+                return parseCompilationUnitsInBatches(fCompilationUnits, fCrawler, fWorkerUnresolvedCalls, 
+                        fParsedCompilationUnitCount, lMonitor);
+            }
+
+            for (ICompilationUnit cu : fCompilationUnits) {
+                if (lMonitor.isCanceled()) {
+                    status = Status.CANCEL_STATUS;
+                    break;
+                }
+                sLogger.debug("Processing compilation unit " + cu.getElementName() + ": " + cu.getPath());
+
+                try {
+                    status = getWorseStatus(status, fCrawler.analyze(cu, lMonitor));
+                    if (fCrawler.getUnresolvedCalls().size() > 0) {
+                        fWorkerUnresolvedCalls.putAll(fCrawler.getUnresolvedCalls());
+                    }
+                } catch (OperationCanceledException oce) {
+                    status = Status.CANCEL_STATUS;
+                }
+                fParsedCompilationUnitCount.incrementAndGet();
+
+                if (status.getSeverity() == IStatus.CANCEL) {
+                    break;
+                }
+            }
+
+            return status;
+        }
+
+        /**
+         * Returns the partial model.
+         * 
+         * @return The partial model.
+         */
+        public FamixModel getModel() {
+            return fPartialModel;
+        }
+
+        /**
+         * Returns the crawler of this worker.
+         * 
+         * @return The crawler.
+         */
+        public ASTCrawler getCrawler() {
+            return fCrawler;
+        }
+
+        /**
+         * Returns the unresolved invocations of the parsed compilation units.
+         * 
+         * @return The table of unresolved invocations.
+         */
+        public Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> getUnresolvedCalls() {
+            return fWorkerUnresolvedCalls;
+        }
+    }
+
+    /**
+     * Parses a single compilation unit into its own partial model or replays it from the parse cache. 
+     * With a parse cache the partial model and the unresolved invocations are stored in the cache.
+     * 
+     * @author pinzger
+     */
+    private class PartialParse {
+        /**
+         * The compilation unit.
+         */
+        private ICompilationUnit fCompilationUnit;
+        /**
+         * The hash of the compilation unit, null if the partial model is not cached.
+         */
+        private String fHash;
+        /**
+         * The partial model.
+         */
+        private FamixModel fPartialModel;
+        /**
+         * The crawler filling the partial model.
+         */
+        private ASTCrawler fCrawler;
+        /**
+         * The unresolved invocations of the compilation unit.
+         */
+        private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fCachedUnresolvedCalls =
+                new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+
+        /**
+         * The constructor. Initializes the partial model with the package of the compilation unit
+         * such that its classes can be added to the package.
+         * 
+         * @param cu
+         *            The compilation unit.
+         * @param hash
+         *            The hash of the compilation unit, null if the partial model is not cached.
+         */
+        public PartialParse(ICompilationUnit cu, String hash) {
+            fCompilationUnit = cu;
+            fHash = hash;
+            fPartialModel = new FamixModel(fModel.getName(), fModel.getCreated());
+            String lPackageName = cu.getParent().getElementName();
+            if (lPackageName.equals("")) {
+                lPackageName = AbstractFamixEntity.DEFAULT_PACKAGE_NAME;
+            }
+            fPartialModel.addElement(fFactory.createPackage(lPackageName, null));
+            fCrawler = new ASTCrawler(fPartialModel, fFactory);
+            fCrawler.setStatistics(fStatistics);
+        }
+
+        /**
+         * Parses the compilation unit and stores the partial model in the parse cache, if any.
+         * 
+         * @param monitor
+         *            Progress monitor.
+         * @return Status.
+         */
+        public IStatus parse(IProgressMonitor monitor) {
+            IStatus status;
+            sLogger.debug("Processing compilation unit " + fCompilationUnit.getElementName() + ": " + fCompilationUnit.getPath());
+            try {
+                status = fCrawler.analyze(fCompilationUnit, monitor);
+                fCachedUnresolvedCalls.putAll(fCrawler.getUnresolvedCalls());
+            } catch (OperationCanceledException oce) {
+                status = Status.CANCEL_STATUS;
+            }
+            if (status.isOK() && (fHash != null)) {
+                getParseCache().store(fHash, fPartialModel, fCachedUnresolvedCalls);
+            }
+            return status;
+        }
+
+        /**
+         * Replays the partial model and the unresolved invocations of the compilation unit from the 
+         * parse cache. The unresolved invocations refer to the crawler of this parse.
+         * 
+         * @param source
+         *            The source blob of the compilation unit.
+         * @return True, if the compilation unit has been replayed, false if it must be parsed.
+         */
+        public boolean replay(SourceBlob source) {
+            FamixModel lPartialModel = getParseCache().load(fHash, fModel.getName(), fModel.getCreated(), source, 
+                    fCrawler, fCachedUnresolvedCalls);
+            if (lPartialModel == null) {
+                return false;
+            }
+            fPartialModel = lPartialModel;
+            fCrawler.setModel(fPartialModel);
+            return true;
+        }
+
+        /**
+         * Returns the partial model.
+         * 
+         * @return The partial model.
+         */
+        public FamixModel getModel() {
+            return fPartialModel;
+        }
+
+        /**
+         * Returns the crawler that parsed the compilation unit.
+         * 
+         * @return The crawler.
+         */
+        public ASTCrawler getCrawler() {
+            return fCrawler;
+        }
+
+        /**
+         * Returns the unresolved invocations of the compilation unit.
+         * 
+         * @return The table of unresolved invocations.
+         */
+        public Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> getUnresolvedCalls() {
+            return fCachedUnresolvedCalls;
+        }
+    }
+
+    /**
+     * Receives the ASTs created in a batch and passes them to the crawler.
+     * 
+     * @author pinzger
+     */
+    private class CrawlerRequestor extends ASTRequestor {
+        /**
+         * The crawler extracting the FAMIX entities and associations.
+         */
+        private ASTCrawler fCrawler;
+        /**
+         * The table to which the unresolved invocations are added.
+         */
+        private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fTargetUnresolvedCalls;
+        /**
+         * Counter of parsed compilation units, may be null.
+         */
+        private AtomicInteger fParsedCount;
+        /**
+         * The progress monitor used for checking cancellation.
+         */
+        private IProgressMonitor fMonitor;
+        /**
+         * The worst status of the analyzed compilation units.
+         */
+        private IStatus fStatus = Status.OK_STATUS;
+
+        /**
+         * The constructor.
+         * 
+         * @param crawler
+         *            The crawler extracting the FAMIX entities and associations.
+         * @param unresolvedCalls
+         *            The table to which the unresolved invocations are added.
+         * @param parsedCount
+         *            Counter of parsed compilation units, may be null.
+         * @param monitor
+         *            The progress monitor used for checking cancellation.
+         */
+        public CrawlerRequestor(ASTCrawler crawler, Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls, 
+                AtomicInteger parsedCount, IProgressMonitor monitor) {
+            fCrawler = crawler;
+            fTargetUnresolvedCalls = unresolvedCalls;
+            fParsedCount = parsedCount;
+            fMonitor = monitor;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+            if (fStatus.getSeverity() == IStatus.CANCEL) {
+                return;
+            }
+            sLogger.debug("Processing compilation unit " + source.getElementName() + ": " + source.getPath());
+
+            fStatus = getWorseStatus(fStatus, fCrawler.analyze(source, ast, fMonitor));
+            if (fCrawler.getUnresolvedCalls().size() > 0) {
+                fTargetUnresolvedCalls.putAll(fCrawler.getUnresolvedCalls());
+            }
+            if (fParsedCount != null) {
+                fParsedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Returns the worst status of the analyzed compilation units.
+         * 
+         * @return Status.
+         */
+        public IStatus getStatus() {
+            return fStatus;
+        }
+    }
 }
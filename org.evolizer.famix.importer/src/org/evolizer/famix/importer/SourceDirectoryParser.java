@@ -0,0 +1,709 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+import org.evolizer.famix.importer.unresolved.UnresolvedMethodInvocation;
+import org.evolizer.famix.importer.util.FamixModelMerger;
+import org.evolizer.famix.importer.util.ImportStatistics;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+
+/**
+ * Extracts a FAMIX source model from Java source directories without an Eclipse workspace.
+ *
+ * The source files are parsed with a standalone binding environment, configured with
+ * {@link ASTParser#setEnvironment(String[], String[], String[], boolean)} from the source
+ * directories and the given classpath. The ASTs are created in batches with
+ * {@link ASTParser#createASTs(String[], String[], String[], FileASTRequestor, IProgressMonitor)},
+ * such that the compilation units of a batch share the binding environment.
+ *
+ * The source files are assigned in consecutive blocks to a number of workers. Each worker
+ * fills its own partial model and table of unresolved invocations which are merged into the
+ * resulting model in a fixed order once all workers have finished. The memory used by a worker
+ * is bounded by the batch size. If a memory limit is set, workers halve their batch size whenever
+ * the used heap exceeds the limit after a batch.
+ *
+ * @author pinzger
+ */
+public class SourceDirectoryParser {
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(SourceDirectoryParser.class.getName());
+
+    /**
+     * Default number of source files whose ASTs are created in one batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 200;
+    /**
+     * Default Java source level.
+     */
+    public static final String DEFAULT_SOURCE_LEVEL = JavaCore.VERSION_1_5;
+    /**
+     * Extension of Java source files.
+     */
+    private static final String JAVA_FILE_EXTENSION = ".java";
+    /**
+     * Interval in milliseconds in which the progress of the workers is polled.
+     */
+    private static final long WORKER_POLL_INTERVAL = 200;
+
+    /**
+     * The resulting model.
+     */
+    private FamixModel fModel;
+    /**
+     * The unresolved invocations of all parsed source files.
+     */
+    private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fUnresolvedCalls =
+            new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+    /**
+     * The root directories of the source files.
+     */
+    private List<File> fSourceDirectories;
+    /**
+     * The jar files and class folders referenced by the source files.
+     */
+    private List<String> fClasspath;
+    /**
+     * The encoding of the source files, null for the platform encoding.
+     */
+    private String fEncoding;
+    /**
+     * The Java source level.
+     */
+    private String fSourceLevel = DEFAULT_SOURCE_LEVEL;
+    /**
+     * Number of workers parsing source files in parallel.
+     */
+    private int fNumberOfWorkers = ProjectParser.DEFAULT_NUMBER_OF_WORKERS;
+    /**
+     * Maximum number of source files whose ASTs are created in one batch.
+     */
+    private int fBatchSize = DEFAULT_BATCH_SIZE;
+    /**
+     * Heap size in bytes above which the workers reduce their batch size, 0 for no limit.
+     */
+    private long fMemoryLimit;
+    /**
+     * Number of parsed source files.
+     */
+    private AtomicInteger fParsedFileCount;
+    /**
+     * Set to true to stop the workers.
+     */
+    private volatile boolean fWorkersCanceled;
+    /**
+     * Timings and counts of the import.
+     */
+    private ImportStatistics fStatistics = new ImportStatistics();
+
+    /**
+     * The constructor.
+     *
+     * @param modelName
+     *            The name of the resulting model.
+     * @param sourceDirectories
+     *            The root directories of the source files.
+     * @param classpath
+     *            The jar files and class folders referenced by the source files.
+     */
+    public SourceDirectoryParser(String modelName, List<File> sourceDirectories, List<String> classpath) {
+        fModel = new FamixModel(modelName, new Date());
+        fSourceDirectories = sourceDirectories;
+        fClasspath = classpath;
+    }
+
+    /**
+     * Parses all Java source files contained by the source directories.
+     *
+     * @param monitor
+     *            Progress monitor.
+     * @return Status.
+     */
+    public IStatus parse(IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        ImportStatistics.PhaseTimer lParseTimer = fStatistics.startPhase(ImportStatistics.PHASE_PARSE);
+
+        List<String> lSourceFiles = new ArrayList<String>();
+        for (File lDirectory : fSourceDirectories) {
+            collectSourceFiles(lDirectory, lSourceFiles);
+        }
+        int lNrOfWorkers = Math.min(getNumberOfWorkers(), lSourceFiles.size());
+        if (lNrOfWorkers == 0) {
+            sLogger.warn("No Java source files found in " + fSourceDirectories);
+            return status;
+        }
+        sLogger.debug("Parsing " + lSourceFiles.size() + " source files with " + lNrOfWorkers + " workers");
+
+        SubMonitor progress = SubMonitor.convert(monitor, 100);
+        progress.setTaskName("Parse source files");
+        SubMonitor parseProgress = progress.newChild(90).setWorkRemaining(lSourceFiles.size());
+
+        fWorkersCanceled = false;
+        fParsedFileCount = new AtomicInteger(0);
+        List<SourceFileWorker> workers = new ArrayList<SourceFileWorker>(lNrOfWorkers);
+        int lBlockSize = (lSourceFiles.size() + lNrOfWorkers - 1) / lNrOfWorkers;
+        for (int lStart = 0; lStart < lSourceFiles.size(); lStart += lBlockSize) {
+            // consecutive files of the same package benefit most from the shared binding environment
+            workers.add(new SourceFileWorker(lSourceFiles.subList(lStart, Math.min(lStart + lBlockSize, lSourceFiles.size()))));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        List<Future<IStatus>> results = new ArrayList<Future<IStatus>>(workers.size());
+        try {
+            for (SourceFileWorker worker : workers) {
+                results.add(executor.submit(worker));
+            }
+
+            int lReportedFiles = 0;
+            for (Future<IStatus> result : results) {
+                IStatus workerStatus = null;
+                while (workerStatus == null) {
+                    if (parseProgress.isCanceled()) {
+                        fWorkersCanceled = true;
+                    }
+                    try {
+                        workerStatus = result.get(WORKER_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException te) {
+                        // check progress and cancellation again
+                    } catch (InterruptedException ie) {
+                        fWorkersCanceled = true;
+                        Thread.currentThread().interrupt();
+                        workerStatus = Status.CANCEL_STATUS;
+                    } catch (ExecutionException ee) {
+                        sLogger.error("Error while parsing source files", ee.getCause());
+                        workerStatus = new Status(IStatus.ERROR, FamixImporterPlugin.PLUGIN_ID,
+                                "Error while parsing source files", ee.getCause());
+                    }
+                    int lParsedFiles = fParsedFileCount.get();
+                    parseProgress.worked(lParsedFiles - lReportedFiles);
+                    lReportedFiles = lParsedFiles;
+                }
+
+                status = getWorseStatus(status, workerStatus);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (status.getSeverity() != IStatus.CANCEL) {
+            progress.subTask("Merge partial models");
+            mergePartialModels(workers);
+            progress.worked(10);
+        }
+        sLogger.info("Parsed " + fParsedFileCount.get() + " source files in " + lParseTimer.stop()
+                + " ms (workers: " + lNrOfWorkers + ", batch size: " + getBatchSize() + ")");
+
+        return status;
+    }
+
+    /**
+     * Adds the paths of the Java source files contained by the given directory and its sub-directories
+     * in the order of their names, such that the resulting model does not depend on the file system.
+     *
+     * @param directory
+     *            The directory.
+     * @param sourceFiles
+     *            The list to which the paths are added.
+     */
+    private void collectSourceFiles(File directory, List<String> sourceFiles) {
+        File[] lFiles = directory.listFiles();
+        if (lFiles == null) {
+            sLogger.warn("Could not list source directory " + directory);
+            return;
+        }
+        Arrays.sort(lFiles);
+        for (File lFile : lFiles) {
+            if (lFile.isDirectory()) {
+                collectSourceFiles(lFile, sourceFiles);
+            } else if (lFile.getName().endsWith(JAVA_FILE_EXTENSION)) {
+                sourceFiles.add(lFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Merges the partial models and unresolved invocations of the workers into the resulting model.
+     * The crawlers of the workers are re-targeted to the merged model because the unresolved invocations
+     * access the model via their crawler during the resolution.
+     *
+     * @param workers
+     *            The workers in the order of the source files assignment.
+     */
+    private void mergePartialModels(List<SourceFileWorker> workers) {
+        ImportStatistics.PhaseTimer lMergeTimer = fStatistics.startPhase(ImportStatistics.PHASE_MERGE);
+        FamixModelMerger lMerger = new FamixModelMerger(fModel);
+        for (SourceFileWorker worker : workers) {
+            lMerger.merge(worker.getModel());
+        }
+        lMerger.relink();
+
+        for (SourceFileWorker worker : workers) {
+            worker.getCrawler().setModel(fModel);
+            for (FamixMethod lCaller : worker.getUnresolvedCalls().keySet()) {
+                FamixMethod lCanonicalCaller = lMerger.getCanonicalEntity(lCaller);
+                List<UnresolvedMethodInvocation> lInvocations = worker.getUnresolvedCalls().get(lCaller);
+                for (UnresolvedMethodInvocation lInvocation : lInvocations) {
+                    lInvocation.setCaller(lCanonicalCaller);
+                }
+                if (fUnresolvedCalls.containsKey(lCanonicalCaller)) {
+                    fUnresolvedCalls.get(lCanonicalCaller).addAll(lInvocations);
+                } else {
+                    fUnresolvedCalls.put(lCanonicalCaller, lInvocations);
+                }
+            }
+        }
+        lMergeTimer.stop();
+    }
+
+    /**
+     * Reads the source code of a file with the configured encoding.
+     *
+     * @param path
+     *            The path of the source file.
+     * @return The source code, or <code>null</code> if the file cannot be read.
+     */
+    private String readSource(String path) {
+        Reader lReader = null;
+        try {
+            if (fEncoding != null) {
+                lReader = new InputStreamReader(new FileInputStream(path), fEncoding);
+            } else {
+                lReader = new InputStreamReader(new FileInputStream(path));
+            }
+            StringBuilder lSource = new StringBuilder();
+            char[] lBuffer = new char[8192];
+            int lRead = lReader.read(lBuffer);
+            while (lRead >= 0) {
+                lSource.append(lBuffer, 0, lRead);
+                lRead = lReader.read(lBuffer);
+            }
+            return lSource.toString();
+        } catch (IOException ioe) {
+            sLogger.error("Could not read source file " + path + ": " + ioe.getMessage());
+            return null;
+        } finally {
+            if (lReader != null) {
+                try {
+                    lReader.close();
+                } catch (IOException ioe) {
+                    sLogger.warn("Could not close source file " + path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the paths of the source directories.
+     *
+     * @return The source directory paths.
+     */
+    private String[] getSourcepathEntries() {
+        String[] lEntries = new String[fSourceDirectories.size()];
+        for (int i = 0; i < lEntries.length; i++) {
+            lEntries[i] = fSourceDirectories.get(i).getAbsolutePath();
+        }
+        return lEntries;
+    }
+
+    /**
+     * Returns the encoding for each of the given entries.
+     *
+     * @param nrOfEntries
+     *            The number of entries.
+     * @return The encodings, or <code>null</code> for the platform encoding.
+     */
+    private String[] getEncodings(int nrOfEntries) {
+        if (fEncoding == null) {
+            return null;
+        }
+        String[] lEncodings = new String[nrOfEntries];
+        Arrays.fill(lEncodings, fEncoding);
+        return lEncodings;
+    }
+
+    /**
+     * Returns the FAMIX model.
+     *
+     * @return The FAMIX model.
+     */
+    public FamixModel getModel() {
+        return fModel;
+    }
+
+    /**
+     * Returns the unresolved invocations of all parsed source files.
+     *
+     * @return The table of unresolved invocations.
+     */
+    public Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> getUnresolvedCalls() {
+        return fUnresolvedCalls;
+    }
+
+    /**
+     * Sets the encoding of the source files.
+     *
+     * @param encoding
+     *            The encoding, or <code>null</code> for the platform encoding.
+     */
+    public void setEncoding(String encoding) {
+        fEncoding = encoding;
+    }
+
+    /**
+     * Sets the Java source level, e.g., {@link JavaCore#VERSION_1_5}.
+     *
+     * @param sourceLevel
+     *            The source level.
+     */
+    public void setSourceLevel(String sourceLevel) {
+        fSourceLevel = sourceLevel;
+    }
+
+    /**
+     * Returns the maximum number of source files whose ASTs are created in one batch.
+     *
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return fBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of source files whose ASTs are created in one batch. Larger
+     * batches share the binding environment among more source files but keep more ASTs in
+     * memory. Values smaller than 1 put all source files of a worker into one batch.
+     *
+     * @param batchSize
+     *            The batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            fBatchSize = Integer.MAX_VALUE;
+        } else {
+            fBatchSize = batchSize;
+        }
+    }
+
+    /**
+     * Returns the number of workers parsing source files in parallel.
+     *
+     * @return The number of workers.
+     */
+    public int getNumberOfWorkers() {
+        return fNumberOfWorkers;
+    }
+
+    /**
+     * Sets the number of workers parsing source files in parallel. Values
+     * smaller than 1 are replaced by the number of available processors.
+     *
+     * @param numberOfWorkers
+     *            The number of workers.
+     */
+    public void setNumberOfWorkers(int numberOfWorkers) {
+        if (numberOfWorkers < 1) {
+            fNumberOfWorkers = Runtime.getRuntime().availableProcessors();
+        } else {
+            fNumberOfWorkers = numberOfWorkers;
+        }
+    }
+
+    /**
+     * Sets the heap size above which the workers halve their batch size.
+     *
+     * @param memoryLimit
+     *            The heap size in bytes, 0 for no limit.
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        fMemoryLimit = Math.max(0, memoryLimit);
+    }
+
+    /**
+     * Returns the timings and counts of the import.
+     *
+     * @return The import statistics.
+     */
+    public ImportStatistics getStatistics() {
+        return fStatistics;
+    }
+
+    /**
+     * Sets the statistics to which the timings and counts of the import are recorded.
+     *
+     * @param statistics
+     *            The import statistics.
+     */
+    public void setStatistics(ImportStatistics statistics) {
+        fStatistics = statistics;
+    }
+
+    /**
+     * Returns the status with the worse severity, such that an error or cancellation of one source file
+     * is not overwritten by the status of the following files.
+     *
+     * @param status The status so far.
+     * @param otherStatus The status to merge.
+     * @return The status with the higher severity, the first one if both have the same severity.
+     */
+    private static IStatus getWorseStatus(IStatus status, IStatus otherStatus) {
+        return (otherStatus.getSeverity() > status.getSeverity()) ? otherStatus : status;
+    }
+
+    /**
+     * Parses a block of source files in batches into its own partial model. Each worker has its own
+     * crawler, factory, and model, hence, workers do not share any mutable state.
+     *
+     * @author pinzger
+     */
+    private class SourceFileWorker implements Callable<IStatus> {
+        /**
+         * The partial model.
+         */
+        private FamixModel fPartialModel;
+        /**
+         * The factory of the partial model.
+         */
+        private FamixModelFactory fFactory;
+        /**
+         * The crawler filling the partial model.
+         */
+        private ASTCrawler fCrawler;
+        /**
+         * The paths of the source files to parse.
+         */
+        private List<String> fSourceFiles;
+        /**
+         * The unresolved invocations of the parsed source files.
+         */
+        private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fWorkerUnresolvedCalls =
+                new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>();
+        /**
+         * The current batch size of this worker.
+         */
+        private int fWorkerBatchSize = getBatchSize();
+
+        /**
+         * The constructor.
+         *
+         * @param sourceFiles
+         *            The paths of the source files to parse.
+         */
+        public SourceFileWorker(List<String> sourceFiles) {
+            fSourceFiles = sourceFiles;
+            fFactory = new FamixModelFactory();
+            fPartialModel = new FamixModel(fModel.getName(), fModel.getCreated());
+            fCrawler = new ASTCrawler(fPartialModel, fFactory);
+            fCrawler.setStatistics(fStatistics);
+        }
+
+        /**
+         * Parses the assigned source files and records the CPU time of the worker.
+         *
+         * @return Status.
+         */
+        public IStatus call() {
+            long lStartCpuTime = ImportStatistics.getCurrentThreadCpuTime();
+            try {
+                return parseSourceFiles();
+            } finally {
+                fStatistics.addWorkerCpuTime(ImportStatistics.PHASE_PARSE,
+                        ImportStatistics.getCurrentThreadCpuTime() - lStartCpuTime);
+            }
+        }
+
+        /**
+         * Parses the assigned source files.
+         *
+         * @return Status.
+         */
+        private IStatus parseSourceFiles() {
+            IStatus status = Status.OK_STATUS;
+            IProgressMonitor lMonitor = new NullProgressMonitor() {
+                @Override
+                public boolean isCanceled() {
+                    return fWorkersCanceled;
+                }
+            };
+
+            @SuppressWarnings("unchecked")
+            Map<String, String> lOptions = JavaCore.getOptions();
+            JavaCore.setComplianceOptions(fSourceLevel, lOptions);
+            String[] lClasspath = fClasspath.toArray(new String[fClasspath.size()]);
+            String[] lSourcepath = getSourcepathEntries();
+
+            int lStart = 0;
+            while ((lStart < fSourceFiles.size()) && (status.getSeverity() != IStatus.CANCEL)) {
+                int lEnd = (int) Math.min((long) lStart + fWorkerBatchSize, fSourceFiles.size());
+                List<String> lBatch = fSourceFiles.subList(lStart, lEnd);
+                sLogger.debug("Creating ASTs of " + lBatch.size() + " source files");
+
+                ASTParser lParser = ASTParser.newParser(AST.JLS3); // up to J2SE 1.5
+                lParser.setCompilerOptions(lOptions);
+                lParser.setEnvironment(lClasspath, lSourcepath, getEncodings(lSourcepath.length), true);
+                lParser.setResolveBindings(true);
+                SourceFileRequestor lRequestor = new SourceFileRequestor(lMonitor);
+                try {
+                    lParser.createASTs(lBatch.toArray(new String[lBatch.size()]), getEncodings(lBatch.size()),
+                            new String[0], lRequestor, lMonitor);
+                    status = getWorseStatus(status, lRequestor.getStatus());
+                } catch (OperationCanceledException oce) {
+                    status = Status.CANCEL_STATUS;
+                }
+
+                lStart = lEnd;
+                checkMemoryLimit();
+            }
+
+            return status;
+        }
+
+        /**
+         * Halves the batch size of this worker if the used heap exceeds the memory limit.
+         */
+        private void checkMemoryLimit() {
+            Runtime lRuntime = Runtime.getRuntime();
+            long lUsedMemory = lRuntime.totalMemory() - lRuntime.freeMemory();
+            if ((fMemoryLimit > 0) && (lUsedMemory > fMemoryLimit) && (fWorkerBatchSize > 1)) {
+                fWorkerBatchSize = Math.max(1, Math.min(fWorkerBatchSize, fSourceFiles.size()) / 2);
+                sLogger.info("Used heap of " + (lUsedMemory >> 20) + " MB exceeds the memory limit, reducing batch size to "
+                        + fWorkerBatchSize);
+            }
+        }
+
+        /**
+         * Returns the partial model.
+         *
+         * @return The partial model.
+         */
+        public FamixModel getModel() {
+            return fPartialModel;
+        }
+
+        /**
+         * Returns the crawler of this worker.
+         *
+         * @return The crawler.
+         */
+        public ASTCrawler getCrawler() {
+            return fCrawler;
+        }
+
+        /**
+         * Returns the unresolved invocations of the parsed source files.
+         *
+         * @return The table of unresolved invocations.
+         */
+        public Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> getUnresolvedCalls() {
+            return fWorkerUnresolvedCalls;
+        }
+
+        /**
+         * Receives the ASTs created in a batch and passes them to the crawler of the worker.
+         *
+         * @author pinzger
+         */
+        private class SourceFileRequestor extends FileASTRequestor {
+            /**
+             * The progress monitor used for checking cancellation.
+             */
+            private IProgressMonitor fMonitor;
+            /**
+             * The worst status of the analyzed source files.
+             */
+            private IStatus fStatus = Status.OK_STATUS;
+
+            /**
+             * The constructor.
+             *
+             * @param monitor
+             *            The progress monitor used for checking cancellation.
+             */
+            public SourceFileRequestor(IProgressMonitor monitor) {
+                fMonitor = monitor;
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+                if (fStatus.getSeverity() == IStatus.CANCEL) {
+                    return;
+                }
+                sLogger.debug("Processing source file " + sourceFilePath);
+
+                // the crawler adds the classes to the package of the partial model
+                String lPackageName = AbstractFamixEntity.DEFAULT_PACKAGE_NAME;
+                if (ast.getPackage() != null) {
+                    lPackageName = ast.getPackage().getName().getFullyQualifiedName();
+                }
+                if (!fPartialModel.contains(fFactory.createPackage(lPackageName, null))) {
+                    fPartialModel.addElement(fFactory.createPackage(lPackageName, null));
+                }
+
+                fStatus = getWorseStatus(fStatus, fCrawler.analyze(sourceFilePath, readSource(sourceFilePath), ast, fMonitor));
+                if (fCrawler.getUnresolvedCalls().size() > 0) {
+                    fWorkerUnresolvedCalls.putAll(fCrawler.getUnresolvedCalls());
+                }
+                fParsedFileCount.incrementAndGet();
+            }
+
+            /**
+             * Returns the worst status of the analyzed source files.
+             *
+             * @return Status.
+             */
+            public IStatus getStatus() {
+                return fStatus;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.jobs;
+
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.evolizer.famix.importer.FamixImporterPlugin;
+import org.evolizer.famix.importer.IncrementalModelUpdater;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.model.entities.FamixModel;
+
+
+/**
+ * Job for updating a FAMIX model with the changes of a set of compilation units. The last parsed model
+ * is updated if it has been extracted from the project of the compilation units. Otherwise the last
+ * model of the project stored in the database is loaded and updated. If a database URL is given the
+ * changes are also written to the stored model.
+ *
+ * @author pinzger
+ *
+ */
+public class FamixIncrementalUpdateJob extends Job {
+    /**
+     * The logger. 
+     */
+    private static final Logger sfLogger = FamixImporterPlugin.getLogManager().getLogger(FamixIncrementalUpdateJob.class.getName());
+    /**
+     * The added, changed, and removed compilation units.
+     */
+    private List<ICompilationUnit> fChangedUnits;
+    /**
+     * URL of the database, may be null.
+     */
+    private String fDBUrl;
+    /**
+     * The updated FAMIX model.
+     */
+    private FamixModel fFamixModel;
+
+    /**
+     * The constructor.
+     * 
+     * @param changedUnits  The added, changed, and removed compilation units of one Java project.
+     * @param dbUrl The URL of the database containing the stored model, or null to update only the model in memory.
+     */
+    public FamixIncrementalUpdateJob(List<ICompilationUnit> changedUnits, String dbUrl) {
+        super("Update FAMIX model with changed Java elements");
+        
+        fChangedUnits = changedUnits;
+        fDBUrl = dbUrl;
+        fFamixModel = null;
+    }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        SubMonitor progress = SubMonitor.convert(monitor, "Update FAMIX model", 100);
+        try {
+            if (fChangedUnits.isEmpty()) {
+                return status;
+            }
+            String lModelName = fChangedUnits.get(0).getJavaProject().getElementName();
+
+            IncrementalModelUpdater lUpdater = null;
+            ProjectParser lParser = FamixImporterPlugin.getDefault().getParser();
+            UnresolvedInvocationHandler lUnresolvedInvocationHandler = FamixImporterPlugin.getDefault().getUnresolvedInvocationHandler();
+            if ((lParser != null) && (lUnresolvedInvocationHandler != null) && lModelName.equals(lParser.getModel().getName())) {
+                lUpdater = new IncrementalModelUpdater(lParser.getModel(), lUnresolvedInvocationHandler.getUnresolvedCalls());
+            } else if (fDBUrl != null) {
+                // the unresolved calls of the stored model are not stored, only the calls of the changed units are resolved
+                FamixModel lStoredModel = new DAOModel(fDBUrl).loadModel(lModelName);
+                if (lStoredModel == null) {
+                    sfLogger.warn("No FAMIX model of " + lModelName + " stored - parse and store the project first");
+                    return status;
+                }
+                lUpdater = new IncrementalModelUpdater(lStoredModel);
+            } else {
+                sfLogger.warn("No parsed FAMIX model of " + lModelName + " available - parse the project first");
+                return status;
+            }
+            progress.worked(10);
+
+            status = lUpdater.update(fChangedUnits, progress.newChild(fDBUrl != null ? 50 : 90));
+
+            if ((status.getSeverity() == IStatus.OK) && (fDBUrl != null)) {
+                DAOModel lDAOModel = new DAOModel(fDBUrl, lUpdater.getModel());
+                lDAOModel.storeChanges(lUpdater, progress.newChild(40));
+            }
+            fFamixModel = lUpdater.getModel();
+        } finally {
+            if (monitor != null) {
+                monitor.done();
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Return the updated FAMIX model
+     * 
+     * @return  The FAMIX model.
+     */
+    public FamixModel getFamixModel() {
+        return fFamixModel;
+    }
+}
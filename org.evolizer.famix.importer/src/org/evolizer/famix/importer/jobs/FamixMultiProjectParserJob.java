@@ -0,0 +1,148 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.jobs;
+
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.IJavaProject;
+import org.evolizer.famix.importer.FamixImporterPlugin;
+import org.evolizer.famix.importer.MultiProjectParser;
+import org.evolizer.famix.importer.ProjectParser;
+import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.importer.util.ImportStatistics;
+import org.evolizer.famix.model.entities.FamixModel;
+
+
+/**
+ * FAMIX Importer job parsing several Java projects into one model. Independent projects are
+ * parsed at the same time, invocations across projects are resolved in the merged model.
+ *
+ *
+ * @author pinzger
+ *
+ */
+public class FamixMultiProjectParserJob extends Job {
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(FamixMultiProjectParserJob.class.getName());
+
+    private List<IJavaProject> fSelectedProjects;
+    private FamixModel fFamixModel;
+    private int fMaxConcurrentProjects = MultiProjectParser.DEFAULT_MAX_CONCURRENT_PROJECTS;
+    private int fNumberOfWorkers = ProjectParser.DEFAULT_NUMBER_OF_WORKERS;
+    private int fBatchSize = ProjectParser.DEFAULT_BATCH_SIZE;
+    private ImportStatistics fStatistics;
+
+    /**
+     * Default constructor.
+     * 
+     * @param selectedProjects  The list of selected Java projects.
+     */
+    public FamixMultiProjectParserJob(List<IJavaProject> selectedProjects) {
+        super("Parse selected Java projects");
+
+        fSelectedProjects = selectedProjects;
+        fFamixModel = null;
+    }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        SubMonitor progress = SubMonitor.convert(monitor, "Process selected projects", 100);
+        try {
+            MultiProjectParser parser = new MultiProjectParser(fSelectedProjects);
+            fStatistics = parser.getStatistics();
+            parser.setMaxConcurrentProjects(fMaxConcurrentProjects);
+            parser.setNumberOfWorkers(fNumberOfWorkers);
+            parser.setBatchSize(fBatchSize);
+            status = parser.parse(progress.newChild(70));
+
+            // process unresolved method calls, also across projects
+            if (status.getSeverity() == IStatus.OK) {
+                UnresolvedInvocationHandler unresolvedInvocationHandler =
+                        new UnresolvedInvocationHandler(parser.getModel(), parser.getUnresolvedCalls());
+                unresolvedInvocationHandler.setNumberOfWorkers(fNumberOfWorkers);
+                unresolvedInvocationHandler.setStatistics(fStatistics);
+                status = unresolvedInvocationHandler.process(progress.newChild(20));
+                if (status.getSeverity() == IStatus.OK) {
+                    status = unresolvedInvocationHandler.addInvocations(progress.newChild(10));
+                }
+                if (status.getSeverity() == IStatus.OK) {
+                    fFamixModel = parser.getModel();
+                }
+            }
+            sLogger.info(fStatistics.getReport());
+        } finally {
+            if (monitor != null) {
+                monitor.done();
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Sets the maximum number of projects parsed at the same time.
+     * 
+     * @param maxConcurrentProjects The maximum number of concurrent projects, values smaller than 1 use all available processors.
+     */
+    public void setMaxConcurrentProjects(int maxConcurrentProjects) {
+        fMaxConcurrentProjects = maxConcurrentProjects;
+    }
+
+    /**
+     * Sets the number of workers parsing the compilation units of one project and resolving the invocations.
+     * 
+     * @param numberOfWorkers The number of parallel workers, values smaller than 1 use all available processors.
+     */
+    public void setNumberOfWorkers(int numberOfWorkers) {
+        fNumberOfWorkers = numberOfWorkers;
+    }
+
+    /**
+     * Sets the number of compilation units whose ASTs are created in one batch.
+     * 
+     * @param batchSize The batch size, values smaller than 1 create one batch per project.
+     */
+    public void setBatchSize(int batchSize) {
+        fBatchSize = batchSize;
+    }
+
+    /**
+     * Returns the timings and counts of the last run.
+     * 
+     * @return  The import statistics, or null if the job has not been run.
+     */
+    public ImportStatistics getStatistics() {
+        return fStatistics;
+    }
+
+    /**
+     * Return the parsed FAMIX model
+     * 
+     * @return  The FAMIX model.
+     */
+    public FamixModel getFamixModel() {
+        return fFamixModel;
+    }
+}
@@ -17,6 +17,7 @@ package org.evolizer.famix.importer.jobs;
 
 import java.util.List;
 
+import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -26,6 +27,9 @@ import org.eclipse.jdt.core.IJavaElement;
 import org.evolizer.famix.importer.FamixImporterPlugin;
 import org.evolizer.famix.importer.ProjectParser;
 import org.evolizer.famix.importer.unresolved.UnresolvedInvocationHandler;
+import org.evolizer.famix.importer.util.FamixImportPipeline;
+import org.evolizer.famix.importer.util.FamixParseCache;
+import org.evolizer.famix.importer.util.ImportStatistics;
 import org.evolizer.famix.model.entities.FamixModel;
 
 
@@ -37,8 +41,15 @@ import org.evolizer.famix.model.entities.FamixModel;
  *
  */
 public class FamixParserJob extends Job {
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(FamixParserJob.class.getName());
+
     private List<IJavaElement> fSelectedJavaElements;
     private FamixModel fFamixModel;
+    private int fNumberOfWorkers;
+    private int fBatchSize = ProjectParser.DEFAULT_BATCH_SIZE;
+    private FamixParseCache fParseCache;
+    private FamixImportPipeline fImportPipeline;
+    private ImportStatistics fStatistics;
     
     /**
      * Default constructor.
@@ -46,9 +57,20 @@ public class FamixParserJob extends Job {
      * @param selectedJavaElements  The list of selected Java elements.
      */
     public FamixParserJob(List<IJavaElement> selectedJavaElements) {
+        this(selectedJavaElements, ProjectParser.DEFAULT_NUMBER_OF_WORKERS);
+    }
+
+    /**
+     * Constructor for parsing the compilation units with the given number of workers.
+     * 
+     * @param selectedJavaElements  The list of selected Java elements.
+     * @param numberOfWorkers   The number of parallel workers, values smaller than 1 use all available processors.
+     */
+    public FamixParserJob(List<IJavaElement> selectedJavaElements, int numberOfWorkers) {
         super("Parse selected Java elements");
         
         fSelectedJavaElements = selectedJavaElements;
+        fNumberOfWorkers = numberOfWorkers;
         fFamixModel = null;
     }
 
@@ -58,9 +80,19 @@ public class FamixParserJob extends Job {
     @Override
     protected IStatus run(IProgressMonitor monitor) {
         IStatus status = Status.OK_STATUS;
-        SubMonitor progress = SubMonitor.convert(monitor, "Process selected items", 100);
+        int storeWork = (fImportPipeline != null) ? 30 : 0;
+        SubMonitor progress = SubMonitor.convert(monitor, "Process selected items", 100 + storeWork);
+        // true after the import pipeline has written the model
+        boolean completed = false;
         try {
-            final ProjectParser projectParser = new ProjectParser(fSelectedJavaElements);
+            final ProjectParser projectParser = new ProjectParser(fSelectedJavaElements, fNumberOfWorkers);
+            fStatistics = projectParser.getStatistics();
+            projectParser.setBatchSize(fBatchSize);
+            projectParser.setParseCache(fParseCache);
+            projectParser.setImportPipeline(fImportPipeline);
+            if (fImportPipeline != null) {
+                fImportPipeline.setStatistics(fStatistics);
+            }
             status = projectParser.parse(progress.newChild(70));
 
             // process unresolved method calls
@@ -68,6 +100,8 @@ public class FamixParserJob extends Job {
                 UnresolvedInvocationHandler unresolvedInvocationHandler =
                         new UnresolvedInvocationHandler(projectParser.getModel(), projectParser
                                 .getUnresolvedCalls());
+                unresolvedInvocationHandler.setNumberOfWorkers(fNumberOfWorkers);
+                unresolvedInvocationHandler.setStatistics(fStatistics);
                 status = unresolvedInvocationHandler.process(progress.newChild(20));
                 if (status.getSeverity() == IStatus.OK) {
                     status = unresolvedInvocationHandler.addInvocations(progress.newChild(10));
@@ -81,7 +115,18 @@ public class FamixParserJob extends Job {
                 }
                 
             }
+
+            // store the rest of the model streamed while parsing
+            if ((fImportPipeline != null) && (status.getSeverity() == IStatus.OK)) {
+                status = fImportPipeline.complete(progress.newChild(storeWork));
+                completed = true;
+            }
+            sLogger.info(fStatistics.getReport());
         } finally {
+            // also stops the writer thread if the parsing failed with an exception
+            if ((fImportPipeline != null) && !completed) {
+                fImportPipeline.cancel();
+            }
             if (monitor != null) {
                 monitor.done();
             }
@@ -90,6 +135,43 @@ public class FamixParserJob extends Job {
         return status;
     }
 
+    /**
+     * Sets the number of compilation units whose ASTs are created in one batch.
+     * 
+     * @param batchSize The batch size, values smaller than 1 create one batch per project.
+     */
+    public void setBatchSize(int batchSize) {
+        fBatchSize = batchSize;
+    }
+
+    /**
+     * Sets the cache of the partial models of unchanged compilation units.
+     * 
+     * @param parseCache The parse cache, or null to parse all compilation units.
+     */
+    public void setParseCache(FamixParseCache parseCache) {
+        fParseCache = parseCache;
+    }
+
+    /**
+     * Sets the pipeline that stores the model while it is being parsed. The existing models of the
+     * project are replaced, hence, no {@link FamixStoreModelJob} is needed afterwards.
+     * 
+     * @param importPipeline The import pipeline, or null to only parse the model.
+     */
+    public void setImportPipeline(FamixImportPipeline importPipeline) {
+        fImportPipeline = importPipeline;
+    }
+
+    /**
+     * Returns the timings and counts of the last run.
+     * 
+     * @return  The import statistics, or null if the job has not been run.
+     */
+    public ImportStatistics getStatistics() {
+        return fStatistics;
+    }
+
     /**
      * Return the parsed FAMIX model
      * 
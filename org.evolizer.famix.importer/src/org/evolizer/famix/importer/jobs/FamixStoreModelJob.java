@@ -30,6 +30,7 @@ import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
 import org.evolizer.core.hibernate.session.api.IEvolizerSession;
 import org.evolizer.famix.importer.FamixImporterPlugin;
 import org.evolizer.famix.importer.util.DAOModel;
+import org.evolizer.famix.importer.util.ImportStatistics;
 import org.evolizer.famix.model.entities.FamixModel;
 
 
@@ -53,6 +54,14 @@ public class FamixStoreModelJob extends Job {
      * The FAMIX model.
      */
     private FamixModel fFamixModel;
+    /**
+     * Number of rows per JDBC batch, 0 to store the model with the Hibernate session.
+     */
+    private int fJdbcBatchSize;
+    /**
+     * Timings and counts of storing the model.
+     */
+    private ImportStatistics fStatistics = new ImportStatistics();
     
     /**
      * The constructor.
@@ -95,6 +104,8 @@ public class FamixStoreModelJob extends Job {
             progress.worked(20);
             
             DAOModel newDAOModel = new DAOModel(fDBUrl, fFamixModel);
+            newDAOModel.setJdbcBatchSize(fJdbcBatchSize);
+            newDAOModel.setStatistics(fStatistics);
             newDAOModel.store(progress.newChild(60));
         } catch (EvolizerRuntimeException ere) {
             sfLogger.error("Error storing FAMIX" , ere);
@@ -109,4 +120,23 @@ public class FamixStoreModelJob extends Job {
         return status;
     }
 
+    /**
+     * Sets the number of rows sent to the database in one JDBC batch. A value greater than 0
+     * stores the model in bulk mode (see {@link DAOModel#setJdbcBatchSize(int)}).
+     * 
+     * @param jdbcBatchSize The number of rows per batch, 0 to disable the bulk mode.
+     */
+    public void setJdbcBatchSize(int jdbcBatchSize) {
+        fJdbcBatchSize = jdbcBatchSize;
+    }
+
+    /**
+     * Sets the statistics to which the time and number of rows of storing the model are recorded,
+     * e.g., the statistics of the parser that extracted the model.
+     * 
+     * @param statistics The import statistics.
+     */
+    public void setStatistics(ImportStatistics statistics) {
+        fStatistics = statistics;
+    }
 }
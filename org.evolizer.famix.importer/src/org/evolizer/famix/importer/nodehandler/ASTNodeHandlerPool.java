@@ -0,0 +1,161 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.nodehandler;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.evolizer.famix.importer.ASTCrawler;
+
+/**
+ * Per-type pools of idle AST node handlers of one crawler. Handlers are released to the pool once the crawler
+ * does not need them anymore and are reset before they are handed out again, hence, a traversal allocates
+ * roughly as many handlers as there are nested declarations instead of one handler per visited node.
+ *
+ * Handlers retained by an unresolved invocation are not pooled because the invocation reads the AST node
+ * of its handler until it is detached. The pool is not thread-safe; each crawler owns its own pool.
+ *
+ * @author pinzger
+ */
+public class ASTNodeHandlerPool {
+
+    /**
+     * The crawler passed to new handlers.
+     */
+    private ASTCrawler fCrawler;
+    /**
+     * The idle handlers by handler type.
+     */
+    private Map<Class<?>, ArrayList<AbstractASTNodeHandler>> fIdleHandlers =
+            new HashMap<Class<?>, ArrayList<AbstractASTNodeHandler>>();
+    /**
+     * The constructors of the handler types.
+     */
+    private Map<Class<?>, Constructor<?>> fConstructors = new HashMap<Class<?>, Constructor<?>>();
+    /**
+     * Number of handlers created by the pool.
+     */
+    private long fNrOfCreatedHandlers;
+    /**
+     * Number of handlers handed out again.
+     */
+    private long fNrOfReusedHandlers;
+
+    /**
+     * The constructor.
+     *
+     * @param crawler
+     *            The crawler passed to new handlers.
+     */
+    public ASTNodeHandlerPool(ASTCrawler crawler) {
+        fCrawler = crawler;
+    }
+
+    /**
+     * Returns an idle handler of the given type or creates a new one.
+     *
+     * @param <T>
+     *            The type of the handler.
+     * @param handlerType
+     *            The class of the handler, which must have a public constructor taking the crawler.
+     * @return The handler.
+     */
+    public <T extends AbstractASTNodeHandler> T acquire(Class<T> handlerType) {
+        ArrayList<AbstractASTNodeHandler> lIdleHandlers = fIdleHandlers.get(handlerType);
+        if ((lIdleHandlers != null) && !lIdleHandlers.isEmpty()) {
+            fNrOfReusedHandlers++;
+            return handlerType.cast(lIdleHandlers.remove(lIdleHandlers.size() - 1));
+        }
+        fNrOfCreatedHandlers++;
+        return create(handlerType);
+    }
+
+    /**
+     * Resets the handler and adds it to the idle handlers of its type, unless it is retained by an unresolved
+     * invocation.
+     *
+     * @param handler
+     *            The handler that is not used by the crawler anymore.
+     */
+    public void release(AbstractASTNodeHandler handler) {
+        if (handler.isRetained()) {
+            return;
+        }
+        handler.reset();
+        ArrayList<AbstractASTNodeHandler> lIdleHandlers = fIdleHandlers.get(handler.getClass());
+        if (lIdleHandlers == null) {
+            lIdleHandlers = new ArrayList<AbstractASTNodeHandler>();
+            fIdleHandlers.put(handler.getClass(), lIdleHandlers);
+        }
+        lIdleHandlers.add(handler);
+    }
+
+    /**
+     * Drops all idle handlers.
+     */
+    public void clear() {
+        fIdleHandlers.clear();
+    }
+
+    /**
+     * Returns the number of handlers created by the pool.
+     *
+     * @return The number of created handlers.
+     */
+    public long getNrOfCreatedHandlers() {
+        return fNrOfCreatedHandlers;
+    }
+
+    /**
+     * Returns the number of times an idle handler has been handed out again.
+     *
+     * @return The number of reused handlers.
+     */
+    public long getNrOfReusedHandlers() {
+        return fNrOfReusedHandlers;
+    }
+
+    /**
+     * Creates a handler of the given type.
+     *
+     * @param <T>
+     *            The type of the handler.
+     * @param handlerType
+     *            The class of the handler.
+     * @return The new handler.
+     */
+    private <T extends AbstractASTNodeHandler> T create(Class<T> handlerType) {
+        try {
+            Constructor<?> lConstructor = fConstructors.get(handlerType);
+            if (lConstructor == null) {
+                lConstructor = handlerType.getConstructor(ASTCrawler.class);
+                fConstructors.put(handlerType, lConstructor);
+            }
+            return handlerType.cast(lConstructor.newInstance(fCrawler));
+        } catch (NoSuchMethodException nsme) {
+            throw new IllegalArgumentException("No constructor " + handlerType.getName() + "(ASTCrawler)", nsme);
+        } catch (InstantiationException ie) {
+            throw new IllegalArgumentException("Could not create node handler " + handlerType.getName(), ie);
+        } catch (IllegalAccessException iae) {
+            throw new IllegalArgumentException("Could not create node handler " + handlerType.getName(), iae);
+        } catch (InvocationTargetException ite) {
+            throw new IllegalArgumentException("Could not create node handler " + handlerType.getName(), ite.getCause());
+        }
+    }
+}
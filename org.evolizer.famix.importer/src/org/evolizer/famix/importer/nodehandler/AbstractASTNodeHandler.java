@@ -31,6 +31,7 @@ import org.evolizer.famix.importer.ASTCrawler;
 import org.evolizer.famix.importer.FamixImporterPlugin;
 import org.evolizer.famix.importer.FamixModelFactory;
 import org.evolizer.famix.importer.unresolved.UnresolvedMethodInvocation;
+import org.evolizer.famix.importer.util.ImportStatistics;
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
 import org.evolizer.famix.model.entities.FamixClass;
 import org.evolizer.famix.model.entities.FamixMethod;
@@ -77,6 +78,10 @@ public abstract class AbstractASTNodeHandler implements IASTNodeHandler {
      * Switch to control the addition of methods to the method reminder stack
      */
     private boolean fMethodAdded;
+    /**
+     * Switch to control the reuse of this handler, set if an unresolved invocation refers to it
+     */
+    private boolean fRetained;
 
     /**
      * The constructor.
@@ -131,6 +136,7 @@ public abstract class AbstractASTNodeHandler implements IASTNodeHandler {
 
         // if jdt can not resolve the binding try to do it with our algorithms
         if ((lClassID == null) || lClassID.equals(AbstractASTNodeHandler.UNDEFINED_BINDING)) {
+            getCrawler().getStatistics().recordBindingFailures(ImportStatistics.BINDING_TYPE, 1);
             // is the pBinding an anonymous class or did we state that it is one
             // this only works if we are in the right top level type
             if (((pBinding != null) && pBinding.isAnonymous()) || pAnonym) {
@@ -320,8 +326,11 @@ public abstract class AbstractASTNodeHandler implements IASTNodeHandler {
     protected SourceAnchor getSourceAnchor(ASTNode astNode) {
         ASTNode root = astNode.getRoot();
         String file = "";
-        if (root instanceof CompilationUnit) {
+        if ((root instanceof CompilationUnit) && (((CompilationUnit) root).getJavaElement() != null)) {
             file = ((CompilationUnit) root).getJavaElement().getPath().toString();
+        } else if (getCrawler().getCurrFileName() != null) {
+            // AST of a headless import created without Java elements
+            file = getCrawler().getCurrFileName();
         }
 
         int startPosition = astNode.getStartPosition();
@@ -554,4 +563,31 @@ public abstract class AbstractASTNodeHandler implements IASTNodeHandler {
     protected boolean isMethodAddedActivated() {
         return fMethodAdded;
     }
+
+    /**
+     * Clears the state of the last processed AST node, such that the handler can process another node.
+     * Sub-classes with further state override this method and call it.
+     */
+    protected void reset() {
+        fASTNode = null;
+        fTypeAdded = false;
+        fMethodAdded = false;
+    }
+
+    /**
+     * Marks this handler as referenced beyond the visit of its AST node, e.g., by an unresolved invocation.
+     * Retained handlers are not reused by the {@link ASTNodeHandlerPool}.
+     */
+    protected void retain() {
+        fRetained = true;
+    }
+
+    /**
+     * Check if the handler is referenced beyond the visit of its AST node.
+     * 
+     * @return true yes, otherwise false.
+     */
+    public boolean isRetained() {
+        return fRetained;
+    }
 }
@@ -126,4 +126,13 @@ public abstract class AbstractAccessHandler extends AbstractASTNodeHandler {
     public FamixAttribute getField() {
         return fField;
     }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        fField = null;
+    }
 }
@@ -16,6 +16,7 @@
 package org.evolizer.famix.importer.nodehandler;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
@@ -153,6 +154,7 @@ public abstract class AbstractInvocationHandler extends AbstractASTNodeHandler {
             getUnresolvedCalls().put(getCurrMethod(), new LinkedList<UnresolvedMethodInvocation>());
         }
         getUnresolvedCalls().get(getCurrMethod()).add(invocationResolver);
+        retain();
         invocationResolver.addAndOverrideVariables(gatherVariablesInScope(getCurrMethod(), getCrawler()
                 .getCurrStatementBlock()));
 
@@ -299,4 +301,14 @@ public abstract class AbstractInvocationHandler extends AbstractASTNodeHandler {
     public IMethodBinding getMethodBinding() {
         return fMethodBinding;
     }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        fMethodBinding = null;
+        fArguments = Collections.emptyList();
+    }
 }
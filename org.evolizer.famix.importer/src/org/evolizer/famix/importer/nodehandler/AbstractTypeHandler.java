@@ -198,4 +198,13 @@ public abstract class AbstractTypeHandler extends AbstractASTNodeHandler impleme
 
         return lObjectInitMethod;
     }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        fTypeBinding = null;
+    }
 }
@@ -144,4 +144,13 @@ public class EnumConstantDeclarationHandler extends AbstractASTNodeHandler {
     public FamixClass getDataType() {
         return fDataType;
     }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        fDataType = null;
+    }
 }
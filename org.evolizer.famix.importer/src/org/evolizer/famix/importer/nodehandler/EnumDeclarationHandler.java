@@ -26,6 +26,7 @@ import org.evolizer.famix.importer.FamixImporterPlugin;
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
 import org.evolizer.famix.model.entities.FamixAssociation;
 import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
 
 /**
  * Handles enum declarations. 
@@ -42,7 +43,7 @@ public class EnumDeclarationHandler extends AbstractTypeHandler {
     /**
      * Reference to the source code of a top level class.
      */
-    private String fCurrSource;
+    private SourceBlob fCurrSource;
     
     /**
      * The constructor.
@@ -167,9 +168,18 @@ public class EnumDeclarationHandler extends AbstractTypeHandler {
      * Set the source code of the top level type declaration (i.e., the compilation unit).
      * 
      * @param source
-     *            The source code of the corresponding compilation unit.
+     *            The source blob of the corresponding compilation unit, shared by its top-level types.
      */
-    public void setSource(String source) {
+    public void setSource(SourceBlob source) {
         fCurrSource = source;
     }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        fCurrSource = null;
+    }
 }
@@ -210,4 +210,14 @@ public class FieldDeclarationHandler extends AbstractASTNodeHandler {
     public FamixClass getDataType() {
         return fDataType;
     }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        fFragments = null;
+        fDataType = null;
+    }
 }
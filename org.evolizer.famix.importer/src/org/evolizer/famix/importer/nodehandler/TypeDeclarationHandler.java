@@ -26,6 +26,7 @@ import org.evolizer.famix.importer.FamixImporterPlugin;
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
 import org.evolizer.famix.model.entities.FamixAssociation;
 import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
 
 /**
  * Handles top level and inner class declarations. The current type is pushed onto the type reminder stack to handle
@@ -43,7 +44,7 @@ public class TypeDeclarationHandler extends AbstractTypeHandler {
     /**
      * Reference to the source code of a top level class.
      */
-    private String fCurrSource;
+    private SourceBlob fCurrSource;
 
     /**
      * The constructor
@@ -222,9 +223,18 @@ public class TypeDeclarationHandler extends AbstractTypeHandler {
      * Set the source code of the top level type declaration (i.e., the compilation unit).
      * 
      * @param source
-     *            The source code of the corresponding compilation unit.
+     *            The source blob of the corresponding compilation unit, shared by its top-level types.
      */
-    public void setSource(String source) {
+    public void setSource(SourceBlob source) {
         fCurrSource = source;
     }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        fCurrSource = null;
+    }
 }
@@ -194,4 +194,13 @@ public class VariableDeclarationFragmentHandler extends AbstractASTNodeHandler {
             sLogger.warn("Could not get name of local variable declaration " + getASTNode());
         }
     }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        fDataType = null;
+    }
 }
@@ -156,4 +156,14 @@ public class VariableDeclarationStatementHandler extends AbstractASTNodeHandler
     public FamixClass getDataType() {
         return fDataType;
     }
+
+    /** 
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        fFragments = null;
+        fDataType = null;
+    }
 }
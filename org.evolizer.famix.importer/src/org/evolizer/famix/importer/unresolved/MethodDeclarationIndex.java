@@ -0,0 +1,165 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.unresolved;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+
+/**
+ * Index of the method declarations of a FAMIX model keyed by the simple name and the number of
+ * parameters of the methods. The index is built once per resolution pass and replaces the linear
+ * scan over all methods of the model when matching unresolved calls by name and parameter count.
+ *
+ * Once built, the index is only read and can be shared by several threads.
+ *
+ * @author pinzger
+ */
+public class MethodDeclarationIndex {
+
+    /**
+     * Map of simple method names to the methods with that name, grouped by their number of parameters.
+     */
+    private Map<String, Map<Integer, List<FamixMethod>>> fMethodsByName =
+            new HashMap<String, Map<Integer, List<FamixMethod>>>();
+
+    /**
+     * Map of simple method names to all methods with that name.
+     */
+    private Map<String, List<FamixMethod>> fAllMethodsByName = new HashMap<String, List<FamixMethod>>();
+
+    /**
+     * The number of indexed methods.
+     */
+    private int fSize;
+
+    /**
+     * The constructor. Indexes all methods of the model that have a declaring parent
+     * (i.e., methods that are declared in the source code).
+     *
+     * @param model
+     *            The FAMIX model.
+     */
+    public MethodDeclarationIndex(FamixModel model) {
+        for (AbstractFamixEntity entity : model.getFamixEntities()) {
+            if (entity instanceof FamixMethod) {
+                FamixMethod method = (FamixMethod) entity;
+                if (method.getParent() != null) {
+                    add(method);
+                }
+            }
+        }
+    }
+
+    /**
+     * The constructor. Indexes the given methods.
+     *
+     * @param methods
+     *            The list of methods.
+     */
+    public MethodDeclarationIndex(List<FamixMethod> methods) {
+        for (FamixMethod method : methods) {
+            add(method);
+        }
+    }
+
+    /**
+     * Adds the method to the index. The number of parameters is taken from the list of formal
+     * parameters of the method.
+     *
+     * @param method
+     *            The FAMIX method.
+     */
+    private void add(FamixMethod method) {
+        String lName = method.getName();
+        Integer lNrOfParameters = Integer.valueOf(method.getParameters().size());
+
+        Map<Integer, List<FamixMethod>> lMethodsByParameterCount = fMethodsByName.get(lName);
+        if (lMethodsByParameterCount == null) {
+            lMethodsByParameterCount = new HashMap<Integer, List<FamixMethod>>();
+            fMethodsByName.put(lName, lMethodsByParameterCount);
+            fAllMethodsByName.put(lName, new ArrayList<FamixMethod>());
+        }
+        List<FamixMethod> lMethods = lMethodsByParameterCount.get(lNrOfParameters);
+        if (lMethods == null) {
+            lMethods = new ArrayList<FamixMethod>();
+            lMethodsByParameterCount.put(lNrOfParameters, lMethods);
+        }
+        lMethods.add(method);
+        fAllMethodsByName.get(lName).add(method);
+        fSize++;
+    }
+
+    /**
+     * Returns the methods with the given simple name.
+     *
+     * @param name
+     *            The simple name of the method.
+     * @return The unmodifiable list of methods, empty if there is no such method.
+     */
+    public List<FamixMethod> getMethods(String name) {
+        List<FamixMethod> lMethods = fAllMethodsByName.get(name);
+        if (lMethods == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(lMethods);
+    }
+
+    /**
+     * Returns the methods with the given simple name and number of parameters.
+     *
+     * @param name
+     *            The simple name of the method.
+     * @param nrOfParameters
+     *            The number of parameters.
+     * @return The unmodifiable list of methods, empty if there is no such method.
+     */
+    public List<FamixMethod> getMethods(String name, int nrOfParameters) {
+        Map<Integer, List<FamixMethod>> lMethodsByParameterCount = fMethodsByName.get(name);
+        if (lMethodsByParameterCount == null) {
+            return Collections.emptyList();
+        }
+        List<FamixMethod> lMethods = lMethodsByParameterCount.get(Integer.valueOf(nrOfParameters));
+        if (lMethods == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(lMethods);
+    }
+
+    /**
+     * Returns the number of indexed methods.
+     *
+     * @return The number of indexed methods.
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Returns the number of distinct method names.
+     *
+     * @return The number of distinct method names.
+     */
+    public int getNrOfNames() {
+        return fMethodsByName.size();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.unresolved;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.AbstractFamixGeneralization;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixModel;
+
+/**
+ * Index of the super types of the classes of a FAMIX model. The index is built once per resolution pass and
+ * replaces walking the generalization associations of the model for each ambiguous call.
+ *
+ * The super types of a class are listed level by level, i.e., the direct super types first, then their super
+ * types, and so on, without duplicates. For the subtype checks the ancestors of each class are also kept as
+ * a sorted array of class numbers, such that a check is a binary search over the few ancestors of the class.
+ * A bitset per class would need memory quadratic in the number of classes.
+ *
+ * Once built, the index is only read and can be shared by several threads.
+ *
+ * @author pinzger
+ */
+public class TypeHierarchyIndex {
+
+    /**
+     * Map of unique names to the classes of the model.
+     */
+    private Map<String, FamixClass> fTypesByName = new HashMap<String, FamixClass>();
+    /**
+     * Map of the classes to their numbers.
+     */
+    private Map<FamixClass, Integer> fTypeNumbers = new HashMap<FamixClass, Integer>();
+    /**
+     * The classes by number.
+     */
+    private List<FamixClass> fTypes = new ArrayList<FamixClass>();
+    /**
+     * The super types of the classes by number, level by level.
+     */
+    private List<List<FamixClass>> fSuperTypes = new ArrayList<List<FamixClass>>();
+    /**
+     * The sorted numbers of the super types of the classes by number.
+     */
+    private List<int[]> fSuperTypeNumbers = new ArrayList<int[]>();
+
+    /**
+     * The constructor. Indexes the super types of all classes of the model.
+     *
+     * @param model
+     *            The FAMIX model.
+     */
+    public TypeHierarchyIndex(FamixModel model) {
+        for (AbstractFamixEntity entity : model.getFamixEntities()) {
+            if (entity instanceof FamixClass) {
+                getNumber((FamixClass) entity);
+            }
+        }
+
+        List<List<FamixClass>> lDirectSuperTypes = new ArrayList<List<FamixClass>>(fTypes.size());
+        for (int i = 0; i < fTypes.size(); i++) {
+            FamixClass lType = fTypes.get(i);
+            List<FamixClass> lSuperTypes = new ArrayList<FamixClass>();
+            for (FamixAssociation association : model.getAssociations(lType)) {
+                if ((association instanceof AbstractFamixGeneralization) && association.getFrom().equals(lType)
+                        && (association.getTo() instanceof FamixClass)) {
+                    lSuperTypes.add((FamixClass) association.getTo());
+                }
+            }
+            lDirectSuperTypes.add(lSuperTypes);
+        }
+
+        for (int i = 0; i < fTypes.size(); i++) {
+            List<FamixClass> lSuperTypes = collectSuperTypes(fTypes.get(i), lDirectSuperTypes);
+            int[] lNumbers = new int[lSuperTypes.size()];
+            for (int j = 0; j < lNumbers.length; j++) {
+                lNumbers[j] = fTypeNumbers.get(lSuperTypes.get(j)).intValue();
+            }
+            Arrays.sort(lNumbers);
+            fSuperTypes.add(lSuperTypes.isEmpty() ? Collections.<FamixClass>emptyList() : lSuperTypes);
+            fSuperTypeNumbers.add(lNumbers);
+        }
+    }
+
+    /**
+     * Returns the number of the class, numbering it if it has not been numbered yet.
+     *
+     * @param type
+     *            The class.
+     * @return The number of the class.
+     */
+    private int getNumber(FamixClass type) {
+        Integer lNumber = fTypeNumbers.get(type);
+        if (lNumber == null) {
+            lNumber = Integer.valueOf(fTypes.size());
+            fTypeNumbers.put(type, lNumber);
+            fTypesByName.put(type.getUniqueName(), type);
+            fTypes.add(type);
+        }
+        return lNumber.intValue();
+    }
+
+    /**
+     * Collects the super types of a class level by level from the direct super types. Super types outside the
+     * indexed classes are numbered, such that they are found by the subtype checks.
+     *
+     * @param type
+     *            The class.
+     * @param directSuperTypes
+     *            The direct super types of the classes by number.
+     * @return The super types, without the class itself.
+     */
+    private List<FamixClass> collectSuperTypes(FamixClass type, List<List<FamixClass>> directSuperTypes) {
+        List<FamixClass> lSuperTypes = new ArrayList<FamixClass>();
+        Set<FamixClass> lVisited = new HashSet<FamixClass>();
+        lVisited.add(type);
+        int lNext = -1;
+        FamixClass lCurrent = type;
+        while (lCurrent != null) {
+            int lNumber = fTypeNumbers.get(lCurrent).intValue();
+            if (lNumber < directSuperTypes.size()) {
+                for (FamixClass lSuperType : directSuperTypes.get(lNumber)) {
+                    if (lVisited.add(lSuperType)) {
+                        getNumber(lSuperType);
+                        lSuperTypes.add(lSuperType);
+                    }
+                }
+            }
+            lNext++;
+            lCurrent = (lNext < lSuperTypes.size()) ? lSuperTypes.get(lNext) : null;
+        }
+        return lSuperTypes;
+    }
+
+    /**
+     * Returns the class with the given unique name.
+     *
+     * @param uniqueName
+     *            The unique name of the class.
+     * @return The class, or <code>null</code> if the model does not contain such a class.
+     */
+    public FamixClass getType(String uniqueName) {
+        return fTypesByName.get(uniqueName);
+    }
+
+    /**
+     * Returns the super types of the given class level by level, i.e., the direct super types first.
+     *
+     * @param type
+     *            The class.
+     * @return The unmodifiable list of super types, empty if the class has no super type or is not indexed.
+     */
+    public List<FamixClass> getSuperTypes(FamixClass type) {
+        Integer lNumber = fTypeNumbers.get(type);
+        if ((lNumber == null) || (lNumber.intValue() >= fSuperTypes.size())) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(fSuperTypes.get(lNumber.intValue()));
+    }
+
+    /**
+     * Checks if the candidate is the given class or one of its super types.
+     *
+     * @param candidate
+     *            The candidate entity, e.g., the parent of a method.
+     * @param type
+     *            The class.
+     * @return true, if the candidate is the class or one of its super types.
+     */
+    public boolean isSameOrSuperType(AbstractFamixEntity candidate, FamixClass type) {
+        if ((candidate == null) || (type == null)) {
+            return false;
+        }
+        if (candidate.equals(type)) {
+            return true;
+        }
+        Integer lTypeNumber = fTypeNumbers.get(type);
+        Integer lCandidateNumber = fTypeNumbers.get(candidate);
+        if ((lTypeNumber == null) || (lCandidateNumber == null) || (lTypeNumber.intValue() >= fSuperTypeNumbers.size())) {
+            return false;
+        }
+        return Arrays.binarySearch(fSuperTypeNumbers.get(lTypeNumber.intValue()), lCandidateNumber.intValue()) >= 0;
+    }
+
+    /**
+     * Returns the number of indexed classes.
+     *
+     * @return The number of indexed classes.
+     */
+    public int size() {
+        return fSuperTypes.size();
+    }
+}
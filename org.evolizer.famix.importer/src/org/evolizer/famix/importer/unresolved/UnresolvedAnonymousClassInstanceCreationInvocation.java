@@ -18,6 +18,8 @@ package org.evolizer.famix.importer.unresolved;
 import javax.persistence.Entity;
 import javax.persistence.Transient;
 
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.evolizer.famix.importer.nodehandler.AbstractASTNodeHandler;
 import org.evolizer.famix.importer.nodehandler.AbstractInvocationHandler;
 import org.evolizer.famix.model.entities.FamixClass;
@@ -39,6 +41,12 @@ public class UnresolvedAnonymousClassInstanceCreationInvocation extends Unresolv
     @Transient
     private int fAnonymClassCounter;
 
+    /**
+     * Unique name of the anonymous class as resolved by jdt, null if the binding could not be resolved
+     */
+    @Transient
+    private String fAnonymousClassID;
+
     /**
      * The constructor
      * 
@@ -57,6 +65,13 @@ public class UnresolvedAnonymousClassInstanceCreationInvocation extends Unresolv
         fAnonymClassCounter = anonymClassCounter;
     }
 
+    /**
+     * The constructor of an invocation that is not attached to an AST.
+     */
+    public UnresolvedAnonymousClassInstanceCreationInvocation() {
+        super();
+    }
+
     /**
      * The name of the constructor <code>init</code>. 
      * 
@@ -70,6 +85,54 @@ public class UnresolvedAnonymousClassInstanceCreationInvocation extends Unresolv
         return AbstractFamixEntity.CONSTRUCTOR_PREFIX;
     }
 
+    /**
+     * Records the unique name of the anonymous class, if jdt can resolve its binding.
+     */
+    @Override
+    protected void detachFromAST() {
+        fAnonymousClassID = resolveAnonymousClassID();
+    }
+
+    /**
+     * Resolves the unique name of the anonymous class with the binding of the class instance creation.
+     * 
+     * @return The unique name of the anonymous class, or <code>null</code> if the binding could not be resolved.
+     */
+    private String resolveAnonymousClassID() {
+        ITypeBinding lTypeBinding = ((ClassInstanceCreation) getASTNode()).resolveTypeBinding();
+        if (lTypeBinding != null) {
+            String lClassID = getInvocationHandler().convert(lTypeBinding);
+            if ((lClassID != null) && !lClassID.equals(AbstractASTNodeHandler.UNDEFINED_BINDING)) {
+                return lClassID;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the unique name of the anonymous class. The name is resolved with the AST, if the invocation
+     * has not been detached from it.
+     * 
+     * @return The unique name of the anonymous class, or <code>null</code> if the binding could not be resolved.
+     */
+    @Transient
+    public String getAnonymousClassID() {
+        if (!isDetached()) {
+            return resolveAnonymousClassID();
+        }
+        return fAnonymousClassID;
+    }
+
+    /**
+     * Sets the unique name of the anonymous class, e.g., when restoring a detached invocation.
+     *
+     * @param anonymousClassID
+     *            The unique name of the anonymous class, or <code>null</code> if the binding could not be resolved.
+     */
+    public void setAnonymousClassID(String anonymousClassID) {
+        fAnonymousClassID = anonymousClassID;
+    }
+
     /**
      * Resolve the type of the anonymous class.
      * 
@@ -45,6 +45,13 @@ public class UnresolvedClassInstanceCreationInvocation extends UnresolvedMethodI
         super(caller, invocationHandler);
     }
 
+    /**
+     * The constructor of an invocation that is not attached to an AST.
+     */
+    public UnresolvedClassInstanceCreationInvocation() {
+        super();
+    }
+
     /**
      * Returns the constructor prefix.
      * 
@@ -15,19 +15,27 @@
  */
 package org.evolizer.famix.importer.unresolved;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
-import org.eclipse.jdt.core.dom.ClassInstanceCreation;
-import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.evolizer.famix.importer.FamixImporterPlugin;
+import org.evolizer.famix.importer.util.ImportStatistics;
 import org.evolizer.famix.model.entities.FamixAssociation;
 import org.evolizer.famix.model.entities.FamixClass;
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
@@ -44,6 +52,16 @@ import org.evolizer.famix.model.entities.FamixModel;
  */
 public class UnresolvedInvocationHandler {
 
+    /**
+     * Default number of workers matching unresolved calls (sequential matching).
+     */
+    public static final int DEFAULT_NUMBER_OF_WORKERS = 1;
+
+    /**
+     * Interval in milliseconds in which the progress of the workers is reported.
+     */
+    private static final long WORKER_POLL_INTERVAL = 200;
+
     /**
      * The sLogger, also used in the sub-classes
      */
@@ -57,6 +75,26 @@ public class UnresolvedInvocationHandler {
      * Map of FAMIX FamixMethod to its unresolved calls
      */
     private Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> fUnresolvedCalls;
+    /**
+     * Number of workers matching unresolved calls in parallel.
+     */
+    private int fNumberOfWorkers = DEFAULT_NUMBER_OF_WORKERS;
+    /**
+     * Number of callers whose unresolved calls have been matched by the workers.
+     */
+    private AtomicInteger fMatchedCallerCount;
+    /**
+     * Set to true to stop the workers.
+     */
+    private volatile boolean fWorkersCanceled;
+    /**
+     * Timings and counts of the resolution.
+     */
+    private ImportStatistics fStatistics = new ImportStatistics();
+    /**
+     * Index of the super types of the classes of the model, built once per resolution pass.
+     */
+    private TypeHierarchyIndex fTypeHierarchyIndex;
 
     /**
      * The constructor
@@ -76,6 +114,12 @@ public class UnresolvedInvocationHandler {
      * declarations. These are method declarations within the source code that could not be resolved (i.e., a parameter
      * type could not be resolved).
      * 
+     * The method declarations are indexed by name and number of parameters and the super types of the
+     * classes are indexed once per call of this method.
+     * If more than one worker is configured, the calls are first resolved sequentially and then matched 
+     * with the indexed method declarations in parallel. Calls detached from the AST by the crawler have 
+     * been resolved already.
+     * 
      * @param monitor Instance of the progress monitor
      * @return Status OK, if no errors have been encountered
      */
@@ -84,21 +128,34 @@ public class UnresolvedInvocationHandler {
         int tick = 10;
         SubMonitor progress = SubMonitor.convert(monitor, tick * getUnresolvedCalls().keySet().size());
         progress.setTaskName("Resolve method calls");
+        ImportStatistics.PhaseTimer lResolveTimer = fStatistics.startPhase(ImportStatistics.PHASE_RESOLVE);
 
         try {
-            List<FamixMethod> unresolvedMethodDeclarations = getUnresolvedMethodDelcarations();
-            for (FamixMethod method : getUnresolvedCalls().keySet()) {
-                for (UnresolvedMethodInvocation unresolvedMethodInvocation : getUnresolvedCalls().get(method)) {
-                    unresolvedMethodInvocation.matchWithUnresolvedMethodDeclarations(unresolvedMethodDeclarations);
-                }
+            MethodDeclarationIndex methodDeclarationIndex = new MethodDeclarationIndex(getModel());
+            sLogger.debug("Indexed " + methodDeclarationIndex.size() + " method declarations with "
+                    + methodDeclarationIndex.getNrOfNames() + " distinct names");
+            fTypeHierarchyIndex = new TypeHierarchyIndex(getModel());
+            sLogger.debug("Indexed the super types of " + fTypeHierarchyIndex.size() + " classes");
 
-                if (progress.isCanceled()) {
-                    status = Status.CANCEL_STATUS;
-                    break;
+            if (isParallel() && (getUnresolvedCalls().size() > 1)) {
+                status = matchInParallel(methodDeclarationIndex, fTypeHierarchyIndex, progress);
+            } else {
+                for (FamixMethod method : getUnresolvedCalls().keySet()) {
+                    for (UnresolvedMethodInvocation unresolvedMethodInvocation : getUnresolvedCalls().get(method)) {
+                        unresolvedMethodInvocation.matchWithUnresolvedMethodDeclarations(
+                                methodDeclarationIndex,
+                                fTypeHierarchyIndex);
+                    }
+
+                    if (progress.isCanceled()) {
+                        status = Status.CANCEL_STATUS;
+                        break;
+                    }
+                    progress.worked(tick);
                 }
-                progress.worked(tick);
             }
         } finally {
+            lResolveTimer.stop();
             if (monitor != null) {
                 monitor.done();
             }
@@ -107,6 +164,87 @@ public class UnresolvedInvocationHandler {
         return status;
     }
 
+    /**
+     * Resolves all unresolved calls sequentially and matches them with the indexed method declarations
+     * in parallel. The callers are split into contiguous blocks, one per worker.
+     * 
+     * @param methodDeclarationIndex
+     *            The index of method declarations.
+     * @param typeHierarchyIndex
+     *            The index of super types.
+     * @param monitor
+     *            Instance of the progress monitor
+     * @return Status OK, if no errors have been encountered
+     */
+    protected IStatus matchInParallel(
+            MethodDeclarationIndex methodDeclarationIndex,
+            TypeHierarchyIndex typeHierarchyIndex,
+            IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        List<FamixMethod> lCallers = new ArrayList<FamixMethod>(getUnresolvedCalls().keySet());
+        int lNrOfWorkers = Math.min(getNumberOfWorkers(), lCallers.size());
+        sLogger.debug("Matching unresolved calls of " + lCallers.size() + " methods with " + lNrOfWorkers + " workers");
+
+        SubMonitor progress = SubMonitor.convert(monitor, 2 * lCallers.size());
+        for (FamixMethod method : lCallers) {
+            for (UnresolvedMethodInvocation unresolvedMethodInvocation : getUnresolvedCalls().get(method)) {
+                unresolvedMethodInvocation.resolve();
+            }
+            if (progress.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            progress.worked(1);
+        }
+
+        fWorkersCanceled = false;
+        fMatchedCallerCount = new AtomicInteger(0);
+        int lBlockSize = (lCallers.size() + lNrOfWorkers - 1) / lNrOfWorkers;
+        ExecutorService executor = Executors.newFixedThreadPool(lNrOfWorkers);
+        List<Future<IStatus>> results = new ArrayList<Future<IStatus>>(lNrOfWorkers);
+        try {
+            for (int lStart = 0; lStart < lCallers.size(); lStart += lBlockSize) {
+                List<FamixMethod> lBlock = lCallers.subList(lStart, Math.min(lStart + lBlockSize, lCallers.size()));
+                results.add(executor.submit(new MatchingWorker(lBlock, methodDeclarationIndex, typeHierarchyIndex)));
+            }
+
+            int lReportedCallers = 0;
+            for (Future<IStatus> result : results) {
+                IStatus workerStatus = null;
+                while (workerStatus == null) {
+                    if (progress.isCanceled()) {
+                        fWorkersCanceled = true;
+                    }
+                    try {
+                        workerStatus = result.get(WORKER_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException te) {
+                        // check progress and cancellation again
+                    } catch (InterruptedException ie) {
+                        fWorkersCanceled = true;
+                        Thread.currentThread().interrupt();
+                        workerStatus = Status.CANCEL_STATUS;
+                    } catch (ExecutionException ee) {
+                        sLogger.error("Error while matching unresolved calls in parallel", ee.getCause());
+                        workerStatus = new Status(IStatus.ERROR, FamixImporterPlugin.PLUGIN_ID, 
+                                "Error while matching unresolved calls in parallel", ee.getCause());
+                    }
+                    int lMatchedCallers = fMatchedCallerCount.get();
+                    progress.worked(lMatchedCallers - lReportedCallers);
+                    lReportedCallers = lMatchedCallers;
+                }
+
+                if (workerStatus.getSeverity() == IStatus.CANCEL) {
+                    status = workerStatus;
+                } else if ((workerStatus.getSeverity() == IStatus.ERROR) && (status.getSeverity() != IStatus.CANCEL)) {
+                    status = workerStatus;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return status;
+    }
+
     /**
      * Traverse over the set of unresolved method calls and adds them to the FAMIX model. Addition is done in the
      * following way:
@@ -127,12 +265,17 @@ public class UnresolvedInvocationHandler {
         int tick = 10;
         SubMonitor progress = SubMonitor.convert(monitor, tick * getUnresolvedCalls().keySet().size());
         progress.setTaskName("Add resolved calls ...");
+        ImportStatistics.PhaseTimer lAddTimer = fStatistics.startPhase(ImportStatistics.PHASE_ADD_INVOCATIONS);
 
         try {
+            if (fTypeHierarchyIndex == null) {
+                fTypeHierarchyIndex = new TypeHierarchyIndex(getModel());
+            }
             for (FamixMethod method : getUnresolvedCalls().keySet()) {
                 for (UnresolvedMethodInvocation unresolvedMethodInvocation : getUnresolvedCalls().get(method)) {
                     FamixMethod calleeMethod = null;
                     Set<FamixMethod> matches = unresolvedMethodInvocation.getMatchesByAllParametersType();
+                    recordResolutionStages(unresolvedMethodInvocation);
                     if (matches.size() == 1) {
                         calleeMethod = matches.iterator().next();
                     } else if (matches.size() > 1) {
@@ -152,12 +295,13 @@ public class UnresolvedInvocationHandler {
                                         method,
                                         calleeMethod);
                         invocation.setStatement(unresolvedMethodInvocation.getStatement());
-                        invocation.setSourceAnchor(unresolvedMethodInvocation.getInvocationHandler().getSourceAnchor());
+                        invocation.setSourceAnchor(unresolvedMethodInvocation.getSourceAnchor());
                         getModel().addRelation(invocation);
 
                         // add the corresponding constructor to the anonymous class (only for anonymous classes)
                         if (unresolvedMethodInvocation instanceof UnresolvedAnonymousClassInstanceCreationInvocation) {
-                            addAnonymousClass(unresolvedMethodInvocation, calleeMethod);
+                            addAnonymousClass((UnresolvedAnonymousClassInstanceCreationInvocation) unresolvedMethodInvocation, 
+                                    calleeMethod);
                         }
                     }
                 }
@@ -169,6 +313,7 @@ public class UnresolvedInvocationHandler {
                 progress.worked(tick);
             }
         } finally {
+            lAddTimer.stop();
             if (monitor != null) {
                 monitor.done();
             }
@@ -177,6 +322,25 @@ public class UnresolvedInvocationHandler {
         return status;
     }
 
+    /**
+     * Records which matching stages found potential callees of the given call.
+     * 
+     * @param unresolvedMethodInvocation
+     *            The matched call.
+     */
+    private void recordResolutionStages(UnresolvedMethodInvocation unresolvedMethodInvocation) {
+        fStatistics.recordResolutionStage(ImportStatistics.STAGE_NAME, 
+                !unresolvedMethodInvocation.getMatchesByName().isEmpty());
+        fStatistics.recordResolutionStage(ImportStatistics.STAGE_NR_OF_PARAMETERS, 
+                !unresolvedMethodInvocation.getMatchesByNrOfParameters().isEmpty());
+        fStatistics.recordResolutionStage(ImportStatistics.STAGE_RECEIVER_TYPE, 
+                !unresolvedMethodInvocation.getMatchesByCallReceiverTypeSubtyping().isEmpty());
+        fStatistics.recordResolutionStage(ImportStatistics.STAGE_ALL_PARAMETERS_TYPE, 
+                !unresolvedMethodInvocation.getMatchesByAllParametersType().isEmpty());
+        fStatistics.recordResolutionStage(ImportStatistics.STAGE_UNIQUE_MATCH, 
+                unresolvedMethodInvocation.getMatchesByAllParametersType().size() == 1);
+    }
+
     /**
      * Use the resolved binding of the anonymous class or otherwise determine the unique name of the class from the
      * class instance creation statement.
@@ -184,18 +348,15 @@ public class UnresolvedInvocationHandler {
      * @param unresolvedMethodInvocation
      * @param calleeMethod
      */
-    private void addAnonymousClass(UnresolvedMethodInvocation unresolvedMethodInvocation, FamixMethod calleeMethod) {
-        ClassInstanceCreation classInstanceCreation = (ClassInstanceCreation) unresolvedMethodInvocation.getASTNode();
+    private void addAnonymousClass(UnresolvedAnonymousClassInstanceCreationInvocation unresolvedMethodInvocation, 
+            FamixMethod calleeMethod) {
         // determine the anonymous class from the string
-        FamixClass lDeclaringClass = null;
-        ITypeBinding lTypeBinding = classInstanceCreation.resolveTypeBinding();
-        if (lTypeBinding != null) {
-            lDeclaringClass = unresolvedMethodInvocation.getInvocationHandler().getClass(lTypeBinding, null, true);
-        } else {
-            String lClassID = calleeMethod.getUniqueName();
+        String lClassID = unresolvedMethodInvocation.getAnonymousClassID();
+        if (lClassID == null) {
+            lClassID = calleeMethod.getUniqueName();
             lClassID = lClassID.substring(0, lClassID.indexOf(AbstractFamixEntity.CONSTRUCTOR_PREFIX) - 1);
-            lDeclaringClass = unresolvedMethodInvocation.getCrawler().getFactory().createClass(lClassID, null);
         }
+        FamixClass lDeclaringClass = unresolvedMethodInvocation.getCrawler().getFactory().createClass(lClassID, null);
         if (lDeclaringClass != null) {
             lDeclaringClass = (FamixClass) getModel().addElement(lDeclaringClass);
             lDeclaringClass.getMethods().add(calleeMethod);
@@ -223,10 +384,15 @@ public class UnresolvedInvocationHandler {
                                 null));
         List<FamixClass> superTypes = new LinkedList<FamixClass>();
         if (receiverClass != null) {
-            List<FamixClass> subTypes = new LinkedList<FamixClass>();
-            subTypes.add(receiverClass);
             superTypes.add(receiverClass); // also include the sub-class
-            superTypes.addAll(unresolvedMethodInvocation.computeSuperTypes(subTypes));
+            if (fTypeHierarchyIndex.getType(receiverClass.getUniqueName()) != null) {
+                superTypes.addAll(fTypeHierarchyIndex.getSuperTypes(receiverClass));
+            } else {
+                // the receiver class has been added after indexing
+                List<FamixClass> subTypes = new LinkedList<FamixClass>();
+                subTypes.add(receiverClass);
+                superTypes.addAll(unresolvedMethodInvocation.computeSuperTypes(subTypes));
+            }
         }
 
         for (FamixClass type : superTypes) {
@@ -244,22 +410,6 @@ public class UnresolvedInvocationHandler {
         return calleeMethod;
     }
 
-    private List<FamixMethod> getUnresolvedMethodDelcarations() {
-        // focus on the calls that are to methods in the code
-        List<FamixMethod> unresolvedMethodDelcarations = new LinkedList<FamixMethod>();
-        for (AbstractFamixEntity entity : getModel().getFamixEntities()) {
-            if (entity instanceof FamixMethod) {
-                FamixMethod method = (FamixMethod) entity;
-                // if (method.getUniqueName().contains(AbstractASTNodeHandler.UNDEFINED_BINDING)) {
-                if (method.getParent() != null) {
-                    unresolvedMethodDelcarations.add(method);
-                }
-            }
-        }
-
-        return unresolvedMethodDelcarations;
-    }
-
     /**
      * Sets the map of FAMIX FamixMethod and its list of unresolved calls.
      * 
@@ -297,4 +447,120 @@ public class UnresolvedInvocationHandler {
     public FamixModel getModel() {
         return fModel;
     }
+
+    /**
+     * Returns the number of workers matching unresolved calls in parallel.
+     * 
+     * @return The number of workers.
+     */
+    public int getNumberOfWorkers() {
+        return fNumberOfWorkers;
+    }
+
+    /**
+     * Sets the number of workers matching unresolved calls in parallel. Values 
+     * smaller than 1 are replaced by the number of available processors.
+     * 
+     * @param numberOfWorkers
+     *            The number of workers.
+     */
+    public void setNumberOfWorkers(int numberOfWorkers) {
+        if (numberOfWorkers < 1) {
+            fNumberOfWorkers = Runtime.getRuntime().availableProcessors();
+        } else {
+            fNumberOfWorkers = numberOfWorkers;
+        }
+    }
+
+    /**
+     * Returns the timings and counts of the resolution.
+     * 
+     * @return The import statistics.
+     */
+    public ImportStatistics getStatistics() {
+        return fStatistics;
+    }
+
+    /**
+     * Sets the statistics to which the timings and counts of the resolution are recorded.
+     * 
+     * @param statistics
+     *            The import statistics.
+     */
+    public void setStatistics(ImportStatistics statistics) {
+        fStatistics = statistics;
+    }
+
+    /**
+     * Returns true, if unresolved calls are matched by more than one worker.
+     * 
+     * @return True, if unresolved calls are matched in parallel.
+     */
+    public boolean isParallel() {
+        return getNumberOfWorkers() > 1;
+    }
+
+    /**
+     * Matches the resolved calls of a block of caller methods with the indexed method declarations.
+     * 
+     * @author pinzger
+     */
+    private class MatchingWorker implements Callable<IStatus> {
+
+        /**
+         * The caller methods whose unresolved calls are matched by this worker.
+         */
+        private List<FamixMethod> fCallers;
+        /**
+         * The index of method declarations shared by all workers.
+         */
+        private MethodDeclarationIndex fMethodDeclarationIndex;
+        /**
+         * The index of super types shared by all workers.
+         */
+        private TypeHierarchyIndex fTypeHierarchyIndex;
+
+        /**
+         * The constructor.
+         * 
+         * @param callers
+         *            The caller methods.
+         * @param methodDeclarationIndex
+         *            The index of method declarations.
+         * @param typeHierarchyIndex
+         *            The index of super types.
+         */
+        public MatchingWorker(
+                List<FamixMethod> callers,
+                MethodDeclarationIndex methodDeclarationIndex,
+                TypeHierarchyIndex typeHierarchyIndex) {
+            fCallers = callers;
+            fMethodDeclarationIndex = methodDeclarationIndex;
+            fTypeHierarchyIndex = typeHierarchyIndex;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public IStatus call() throws Exception {
+            long lStartCpuTime = ImportStatistics.getCurrentThreadCpuTime();
+            try {
+                for (FamixMethod method : fCallers) {
+                    if (fWorkersCanceled) {
+                        return Status.CANCEL_STATUS;
+                    }
+                    for (UnresolvedMethodInvocation unresolvedMethodInvocation : getUnresolvedCalls().get(method)) {
+                        unresolvedMethodInvocation.matchResolvedWithUnresolvedMethodDeclarations(
+                                fMethodDeclarationIndex,
+                                fTypeHierarchyIndex);
+                    }
+                    fMatchedCallerCount.incrementAndGet();
+                }
+                return Status.OK_STATUS;
+            } finally {
+                fStatistics.addWorkerCpuTime(ImportStatistics.PHASE_RESOLVE, 
+                        ImportStatistics.getCurrentThreadCpuTime() - lStartCpuTime);
+            }
+        }
+    }
 }
@@ -15,6 +15,7 @@
  */
 package org.evolizer.famix.importer.unresolved;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
@@ -60,6 +61,7 @@ import org.evolizer.famix.model.entities.FamixAssociation;
 import org.evolizer.famix.model.entities.FamixClass;
 import org.evolizer.famix.model.entities.FamixMethod;
 import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.SourceAnchor;
 
 /**
  * This source code is not final and subject to change.
@@ -72,6 +74,10 @@ import org.evolizer.famix.model.entities.FamixModel;
  * <li>by argument types (inheritance is not considered, yet)
  * </ul>
  * 
+ * The type of the object receiving the call and the argument types are resolved from the AST when the crawler
+ * completes the compilation unit (see {@link #detach()}). Afterwards, the invocation keeps only the resolved
+ * names and the source anchor, such that the AST of the compilation unit can be garbage collected.
+ * 
  * @author pinzger
  */
 @Entity
@@ -86,13 +92,19 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
             FamixImporterPlugin.getLogManager().getLogger(UnresolvedMethodInvocation.class.getName());
 
     /**
-     * The invocation handler containing the AST Node of the unresolved call
+     * The invocation handler containing the AST Node of the unresolved call, null after detaching from the AST
      */
     @Transient
     private AbstractInvocationHandler fInvocationHandler;
 
     /**
-     * The fVariables in scope of the unresolved call
+     * The crawler that found the unresolved call, giving access to the model and factory
+     */
+    @Transient
+    private ASTCrawler fCrawler;
+
+    /**
+     * The fVariables in scope of the unresolved call, null after detaching from the AST
      */
     @Transient
     private Hashtable<String, AbstractFamixVariable> fVariables = new Hashtable<String, AbstractFamixVariable>();
@@ -103,10 +115,25 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
     @Transient
     private String fResolvedID;
     /**
-     * List of resolved arguments (expressions)
+     * The argument expressions of the call, null after detaching from the AST
+     */
+    @Transient
+    private List<Expression> fArguments;
+    /**
+     * The resolved types of the arguments in the order of the arguments
+     */
+    @Transient
+    private List<String> fResolvedArgumentTypes;
+    /**
+     * The name of the called method, set when detaching from the AST
      */
     @Transient
-    private Hashtable<Expression, String> fResolvedArguments;
+    private String fCalleeName;
+    /**
+     * The source anchor of the call, set when detaching from the AST
+     */
+    @Transient
+    private SourceAnchor fSourceAnchor;
 
     // attributes to store in the db
     /**
@@ -189,6 +216,7 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
     public UnresolvedMethodInvocation(FamixMethod caller, AbstractInvocationHandler invocationHandler) {
         setCaller(caller);
         setASTNodeHandler(invocationHandler);
+        fCrawler = invocationHandler.getCrawler();
 
         fResolvedID = AbstractASTNodeHandler.UNDEFINED_BINDING;
         setStatement(invocationHandler.getASTNode().toString());
@@ -196,25 +224,110 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
         initResolvedArguments();
     }
 
+    /**
+     * The constructor of an invocation that is not attached to an AST. Used by Hibernate and to restore
+     * detached invocations with {@link #restore(ASTCrawler, FamixMethod, String, String, List, String, SourceAnchor)}.
+     */
+    public UnresolvedMethodInvocation() {
+        fResolvedID = AbstractASTNodeHandler.UNDEFINED_BINDING;
+        fResolvedArgumentTypes = new ArrayList<String>();
+        fVariables = null;
+    }
+
+    /**
+     * Restores the state of an invocation that has been detached from the AST, e.g., when replaying
+     * the compilation unit from the parse cache.
+     *
+     * @param crawler
+     *            The crawler giving access to the model and factory.
+     * @param caller
+     *            The FAMIX method containing the unresolved call.
+     * @param statement
+     *            The source code statement of the call.
+     * @param resolvedID
+     *            The resolved ID of the object/class receiving the call.
+     * @param resolvedArgumentTypes
+     *            The resolved types of the arguments in the order of the arguments.
+     * @param calleeName
+     *            The name of the called method.
+     * @param sourceAnchor
+     *            The source anchor of the call.
+     */
+    public void restore(ASTCrawler crawler, FamixMethod caller, String statement, String resolvedID,
+            List<String> resolvedArgumentTypes, String calleeName, SourceAnchor sourceAnchor) {
+        fCrawler = crawler;
+        setCaller(caller);
+        setStatement(statement);
+        setResolvedID(resolvedID);
+        fResolvedArgumentTypes = new ArrayList<String>(resolvedArgumentTypes);
+        fCalleeName = calleeName;
+        fSourceAnchor = sourceAnchor;
+    }
+
     /**
      * Delegator to create the method invoked in the call fStatement.
      * 
      * @return created FAMIX FamixMethod
      */
     public FamixMethod createMethodFromSignature() {
-        return getInvocationHandler().createMethodFromSignature(getResolvedStatement());
+        FamixMethod lMethod = null;
+        String lMethodID = getResolvedStatement();
+        if ((lMethodID != null) && (lMethodID.length() > 0)) {
+            lMethod = getFactory().createMethod(lMethodID, null);
+            if (getModel().contains(lMethod)) {
+                lMethod = (FamixMethod) getModel().getElement(lMethod);
+            }
+        }
+        return lMethod;
     }
 
     /**
      * Initializes the list of arguments of the call with <code>undef</code>.
      */
     protected void initResolvedArguments() {
-        fResolvedArguments = new Hashtable<Expression, String>();
-        for (Object expr : getArgumentsFromASTNode()) {
-            fResolvedArguments.put((Expression) expr, AbstractASTNodeHandler.UNDEFINED_BINDING);
+        fArguments = new ArrayList<Expression>(getInvocationHandler().getArguments());
+        fResolvedArgumentTypes = new ArrayList<String>(fArguments.size());
+        for (int i = 0; i < fArguments.size(); i++) {
+            fResolvedArgumentTypes.add(AbstractASTNodeHandler.UNDEFINED_BINDING);
         }
     }
 
+    /**
+     * Resolves the call with the bindings of the AST and the variables in scope, and releases all
+     * references to the AST. Called by the crawler when the compilation unit has been traversed, 
+     * i.e., when all variables in scope of the call are known.
+     */
+    public void detach() {
+        if (isDetached()) {
+            return;
+        }
+        resolveObjectIdentifier();
+        resolveArguments();
+        detachFromAST();
+        fCalleeName = getASTNodeName();
+        fSourceAnchor = getInvocationHandler().getSourceAnchor();
+
+        fInvocationHandler = null;
+        fArguments = null;
+        fVariables = null;
+    }
+
+    /**
+     * Hook for sub-classes to extract further information from the AST before the invocation is 
+     * detached from it.
+     */
+    protected void detachFromAST() {}
+
+    /**
+     * Checks if the invocation has been detached from the AST.
+     * 
+     * @return true, if the invocation does not refer to the AST anymore.
+     */
+    @Transient
+    public boolean isDetached() {
+        return fInvocationHandler == null;
+    }
+
     /**
      * Adds the fVariables in <code>vars</code> to the list of fVariables in scope of a method call. If a variable
      * already exists it is replaced.
@@ -244,13 +357,13 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
     }
 
     /**
-     * Returns the arguments from ast node.
+     * Returns the number of arguments of the call.
      * 
-     * @return The list of arguments (expressions) of a method invocation.
+     * @return The number of arguments.
      */
     @Transient
-    public List<Expression> getArgumentsFromASTNode() {
-        return getInvocationHandler().getArguments();
+    public int getNrOfArguments() {
+        return fResolvedArgumentTypes.size();
     }
 
     /**
@@ -266,11 +379,60 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
         compareByName(unresolvedMethodDeclarations);
         compareByParameterCount(getMatchesByName());
 
+        reduceMatches(null);
+    }
+
+    /**
+     * Apply the various matching strategies to the potential callee methods looked up in the index of
+     * method declarations. Only the methods with the same name and number of parameters as the call are
+     * considered.
+     * 
+     * @param methodDeclarationIndex
+     *            Index of potential callee methods
+     * @param typeHierarchyIndex
+     *            Index of the super types of the classes of the model
+     */
+    public void matchWithUnresolvedMethodDeclarations(
+            MethodDeclarationIndex methodDeclarationIndex,
+            TypeHierarchyIndex typeHierarchyIndex) {
+        resolve();
+        matchResolvedWithUnresolvedMethodDeclarations(methodDeclarationIndex, typeHierarchyIndex);
+    }
+
+    /**
+     * Apply the various matching strategies to the potential callee methods looked up in the index of
+     * method declarations, without resolving the call first. Accesses the model and the index only for
+     * reading and can therefore be executed for several calls in parallel, provided {@link #resolve()}
+     * has been called before.
+     * 
+     * @param methodDeclarationIndex
+     *            Index of potential callee methods
+     * @param typeHierarchyIndex
+     *            Index of the super types of the classes of the model
+     */
+    public void matchResolvedWithUnresolvedMethodDeclarations(
+            MethodDeclarationIndex methodDeclarationIndex,
+            TypeHierarchyIndex typeHierarchyIndex) {
+        String lName = getASTNodeName();
+        fMatchesByName = new HashSet<FamixMethod>(methodDeclarationIndex.getMethods(lName));
+        fMatchesByNrOfParameters =
+                new HashSet<FamixMethod>(methodDeclarationIndex.getMethods(lName, getNrOfArguments()));
+
+        reduceMatches(typeHierarchyIndex);
+    }
+
+    /**
+     * Reduces the set of potential callee methods matched by name and number of parameters.
+     * 
+     * @param typeHierarchyIndex
+     *            Index of the super types, or <code>null</code> to walk the generalizations of the model
+     */
+    private void reduceMatches(TypeHierarchyIndex typeHierarchyIndex) {
         // reduce the matched set of potential callee using different heuristics
         // compareByParameterType(getMatchesByNrOfParameters());
 
         // compareByCallReceiverType(getMatchesByNrOfParameters());
-        compareByCallReceiverTypeSubtyping(getMatchesByNrOfParameters());
+        compareByCallReceiverTypeSubtyping(getMatchesByNrOfParameters(), typeHierarchyIndex);
 
         // compareByAllParametersType(getMatchesByCallReceiverType());
         // compareByAllParametersTypeSoft(getMatchesByCallReceiverType());
@@ -285,9 +447,22 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
      */
     @Transient
     protected String getASTNodeName() {
+        if (isDetached()) {
+            return getCalleeName();
+        }
         return ((MethodInvocation) getASTNode()).getName().toString();
     }
 
+    /**
+     * Returns the name of the called method recorded when detaching from the AST.
+     * 
+     * @return The name of the called method, or <code>null</code> if not detached yet.
+     */
+    @Transient
+    protected String getCalleeName() {
+        return fCalleeName;
+    }
+
     /**
      * Compare by method name. Name must be equal.
      * 
@@ -312,7 +487,7 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
     private void compareByParameterCount(Set<FamixMethod> potentialMethodDeclarations) {
         fMatchesByNrOfParameters = new HashSet<FamixMethod>();
         for (FamixMethod callee : potentialMethodDeclarations) {
-            if (getArgumentsFromASTNode().size() == callee.getParameters().size()) {
+            if (getNrOfArguments() == callee.getParameters().size()) {
                 fMatchesByNrOfParameters.add(callee);
             }
         }
@@ -336,14 +511,14 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
             if (!lParamString.equals("")) {
                 lParams = lParamString.split(AbstractFamixEntity.METHOD_PARAMETER_SEPARATOR);
             }
-            if (lParams.length == getArgumentsFromASTNode().size()) {
+            if (lParams.length == getNrOfArguments()) {
                 int paramCount = 0;
-                for (int index = 0; index < getArgumentsFromASTNode().size(); index++) {
-                    Expression argument = getArgumentsFromASTNode().get(index);
+                for (int index = 0; index < getNrOfArguments(); index++) {
+                    String argumentType = getResolvedArgumentTypes().get(index);
                     // FamixParameter param = callee.getFormalParameters().get(index);
 
                     // try a full match to get a best match
-                    if (!getResolvedArguments().get(argument).equals(lParams[index])) {
+                    if (!argumentType.equals(lParams[index])) {
                         break;
                         // } else if
                         // (param.getDeclaredClass().getUniqueName().contains(AbstractASTNodeHandler.UNDEFINED_BINDING)
@@ -353,7 +528,7 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
                     paramCount++;
                 }
                 // all parameter types must match
-                if (paramCount == getArgumentsFromASTNode().size()) {
+                if (paramCount == getNrOfArguments()) {
                     fMatchesByAllParametersType.add(callee);
                 }
             }
@@ -382,18 +557,18 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
             if (!lParamString.equals("")) {
                 lParams = lParamString.split(AbstractFamixEntity.METHOD_PARAMETER_SEPARATOR);
             }
-            if (lParams.length == getArgumentsFromASTNode().size()) {
+            if (lParams.length == getNrOfArguments()) {
                 int paramCount = 0;
-                for (int index = 0; index < getArgumentsFromASTNode().size(); index++) {
-                    Expression argument = getArgumentsFromASTNode().get(index);
+                for (int index = 0; index < getNrOfArguments(); index++) {
+                    String argumentType = getResolvedArgumentTypes().get(index);
                     // FamixParameter param = callee.getFormalParameters().get(index);
 
                     // try a full match to get a best match
                     // we can not compare with the declared class of formal parameters
                     // because in case of of an array this is <ARRAY> causing the match to fail.
                     // System.err.println(getArguments().get(argument) + " - " + lParams[index]);
-                    if (!(getResolvedArguments().get(argument).equals(lParams[index]) || ((lParams[index]
-                            .contains(AbstractASTNodeHandler.UNDEFINED_BINDING) && getResolvedArguments().get(argument)
+                    if (!(argumentType.equals(lParams[index]) || ((lParams[index]
+                            .contains(AbstractASTNodeHandler.UNDEFINED_BINDING) && argumentType
                             .contains(AbstractASTNodeHandler.UNDEFINED_BINDING))))) {
                         break;
                     }
@@ -401,7 +576,7 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
                     paramCount++;
                 }
                 // all parameter types must match
-                if (paramCount == getArgumentsFromASTNode().size()) {
+                if (paramCount == getNrOfArguments()) {
                     fMatchesByAllParametersTypeSoft.add(callee);
                 }
             }
@@ -419,9 +594,24 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
         }
     }
 
-    private void compareByCallReceiverTypeSubtyping(Set<FamixMethod> potentialMethodDeclarations) {
+    private void compareByCallReceiverTypeSubtyping(
+            Set<FamixMethod> potentialMethodDeclarations,
+            TypeHierarchyIndex typeHierarchyIndex) {
         fMatchesByCallReceiverTypeSubtyping = new HashSet<FamixMethod>();
 
+        if (typeHierarchyIndex != null) {
+            // check the precomputed super types of the resolved receiver class
+            FamixClass receiverClass = typeHierarchyIndex.getType(getResolvedID());
+            if (receiverClass != null) {
+                for (FamixMethod callee : potentialMethodDeclarations) {
+                    if (typeHierarchyIndex.isSameOrSuperType(callee.getParent(), receiverClass)) {
+                        fMatchesByCallReceiverTypeSubtyping.add(callee);
+                    }
+                }
+            }
+            return;
+        }
+
         // init inheritance hierarchy of resolved receiver object/class
         FamixClass receiverClass = (FamixClass) getModel().getElement(getFactory().createClass(getResolvedID(), null));
         List<FamixClass> superTypes = new LinkedList<FamixClass>();
@@ -504,11 +694,11 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
         signature.append(getASTNodeName());
         signature.append("(");
         StringBuilder argumentString = new StringBuilder();
-        for (Object expression : getArgumentsFromASTNode()) { // order of arguments!
+        for (String argumentType : getResolvedArgumentTypes()) { // order of arguments!
             if (argumentString.length() > 0) {
                 argumentString.append(",");
             }
-            argumentString.append(getResolvedArguments().get(expression));
+            argumentString.append(argumentType);
         }
         signature.append(argumentString);
         signature.append(")");
@@ -540,11 +730,13 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
     }
 
     /**
-     * Resolves the method invocation.
+     * Resolves the method invocation. Invocations detached from the AST have been resolved already.
      */
     public void resolve() {
-        resolveObjectIdentifier();
-        resolveArguments();
+        if (!isDetached()) {
+            resolveObjectIdentifier();
+            resolveArguments();
+        }
         setResolvedStatement(toString());
     }
 
@@ -581,8 +773,9 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
      * Resolves the types of the arguments.
      */
     protected void resolveArguments() {
-        for (Expression expression : getResolvedArguments().keySet()) {
-            if (getResolvedArguments().get(expression).equals(AbstractASTNodeHandler.UNDEFINED_BINDING)) {
+        for (int index = 0; index < fArguments.size(); index++) {
+            Expression expression = fArguments.get(index);
+            if (fResolvedArgumentTypes.get(index).equals(AbstractASTNodeHandler.UNDEFINED_BINDING)) {
                 String argumentType = AbstractASTNodeHandler.UNDEFINED_BINDING;
 
                 ITypeBinding expressionBinding = expression.resolveTypeBinding();
@@ -604,7 +797,7 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
                 } else {
                     argumentType = resolveTypeBinding(expression);
                 }
-                getResolvedArguments().put(expression, argumentType);
+                fResolvedArgumentTypes.set(index, argumentType);
             }
         }
     }
@@ -626,13 +819,7 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
      */
     @Transient
     protected boolean isAllArgumentsResolved() {
-        for (Expression expression : getResolvedArguments().keySet()) {
-            if (getResolvedArguments().get(expression).equals(AbstractASTNodeHandler.UNDEFINED_BINDING)) {
-                return false;
-            }
-        }
-
-        return true;
+        return !fResolvedArgumentTypes.contains(AbstractASTNodeHandler.UNDEFINED_BINDING);
     }
 
     /**
@@ -888,11 +1075,11 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
     /**
      * Returns the ast node.
      * 
-     * @return The AST node.
+     * @return The AST node, <code>null</code> after detaching from the AST.
      */
     @Transient
     public ASTNode getASTNode() {
-        return getInvocationHandler().getASTNode();
+        return isDetached() ? null : getInvocationHandler().getASTNode();
     }
 
     /**
@@ -916,13 +1103,13 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
     }
 
     /**
-     * Returns the resolved arguments.
+     * Returns the resolved argument types.
      * 
-     * @return The hash table of arguments and their resolved type.
+     * @return The resolved types of the arguments in the order of the arguments.
      */
     @Transient
-    public Hashtable<Expression, String> getResolvedArguments() {
-        return fResolvedArguments;
+    public List<String> getResolvedArgumentTypes() {
+        return fResolvedArgumentTypes;
     }
 
     /**
@@ -955,6 +1142,20 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
         return fResolvedStatement;
     }
 
+    /**
+     * Returns the source anchor of the call statement. It equals the source anchor of the 
+     * invocation association created for this call.
+     * 
+     * @return The source anchor of the unresolved method call.
+     */
+    @Transient
+    public SourceAnchor getSourceAnchor() {
+        if (isDetached()) {
+            return fSourceAnchor;
+        }
+        return getInvocationHandler().getSourceAnchor();
+    }
+
     /**
      * Returns the crawler.
      * 
@@ -962,7 +1163,7 @@ public class UnresolvedMethodInvocation implements IEvolizerModelEntity {
      */
     @Transient
     public ASTCrawler getCrawler() {
-        return getInvocationHandler().getCrawler();
+        return fCrawler;
     }
 
     /**
@@ -41,6 +41,13 @@ public class UnresolvedSuperConstructorInvocation extends UnresolvedMethodInvoca
         super(caller, invocationHandler);
     }
 
+    /**
+     * The constructor of an invocation that is not attached to an AST.
+     */
+    public UnresolvedSuperConstructorInvocation() {
+        super();
+    }
+
     /**
      * Returns the constructor prefix.
      * 
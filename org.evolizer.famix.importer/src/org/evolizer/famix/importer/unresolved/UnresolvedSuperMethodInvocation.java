@@ -42,6 +42,13 @@ public class UnresolvedSuperMethodInvocation extends UnresolvedMethodInvocation
         super(caller, invocationHandler);
     }
 
+    /**
+     * The constructor of an invocation that is not attached to an AST.
+     */
+    public UnresolvedSuperMethodInvocation() {
+        super();
+    }
+
     /**
      * Returns the name of the super method. 
      * 
@@ -52,6 +59,9 @@ public class UnresolvedSuperMethodInvocation extends UnresolvedMethodInvocation
     @Override
     @Transient
     protected String getASTNodeName() {
+        if (isDetached()) {
+            return getCalleeName();
+        }
         return ((SuperMethodInvocation) getASTNode()).getName().toString();
     }
 
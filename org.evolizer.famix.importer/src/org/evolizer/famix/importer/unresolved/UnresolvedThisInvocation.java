@@ -42,6 +42,13 @@ public class UnresolvedThisInvocation extends UnresolvedMethodInvocation {
         super(caller, invocationHandler);
     }
 
+    /**
+     * The constructor of an invocation that is not attached to an AST.
+     */
+    public UnresolvedThisInvocation() {
+        super();
+    }
+
     /**
      * Returns the constructor name.
      * 
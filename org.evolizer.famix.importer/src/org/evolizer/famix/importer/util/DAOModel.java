@@ -15,11 +15,19 @@
  */
 package org.evolizer.famix.importer.util;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.log4j.Logger;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -29,9 +37,21 @@ import org.evolizer.core.exceptions.EvolizerRuntimeException;
 import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
 import org.evolizer.core.hibernate.session.api.IEvolizerSession;
 import org.evolizer.famix.importer.FamixImporterPlugin;
+import org.evolizer.famix.importer.IncrementalModelUpdater;
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
 import org.evolizer.famix.model.entities.FamixAssociation;
 import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.SourceAnchor;
+import org.evolizer.famix.model.utils.SnapshotAnalyzer;
+import org.evolizer.model.resources.entities.misc.Content;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
+import org.hibernate.Hibernate;
+import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jdbc.Work;
 
 /**
  * Handles storing and loading FAMIX models of the given Eclipse project. The configuration from the database connection
@@ -46,6 +66,16 @@ public class DAOModel {
      */
     private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(DAOModel.class.getName());
 
+    /**
+     * Number of entities fetched per round trip when streaming a model
+     */
+    private static final int STREAMING_FETCH_SIZE = 500;
+
+    /**
+     * Maximum number of hashes per query when looking up stored source blobs
+     */
+    private static final int SOURCE_BLOB_QUERY_SIZE = 500;
+
     /**
      * The FAMIX model to store
      */
@@ -54,6 +84,22 @@ public class DAOModel {
      * The selected Java project
      */
     private String fDBUrl;
+    /**
+     * Number of rows per JDBC batch in bulk mode, 0 if the bulk mode is disabled
+     */
+    private int fJdbcBatchSize;
+    /**
+     * Timings and counts of storing the model
+     */
+    private ImportStatistics fStatistics = new ImportStatistics();
+    /**
+     * Entities of the deleted models that are evicted from the cache
+     */
+    private List<AbstractFamixEntity> fDeletedEntities = new ArrayList<AbstractFamixEntity>();
+    /**
+     * Associations of the deleted models that are evicted from the cache
+     */
+    private List<FamixAssociation> fDeletedAssociations = new ArrayList<FamixAssociation>();
 
     /**
      * The constructor for loading a model
@@ -87,10 +133,28 @@ public class DAOModel {
         sLogger.debug("Storing Famix-FamixModel " + fModel.getName());
 
         if (fModel.getFamixEntities().size() > 0) {
+            ImportStatistics.PhaseTimer lStoreTimer = fStatistics.startPhase(ImportStatistics.PHASE_STORE);
+            long lStartTime = System.nanoTime();
             try {
-                storeAllFamixObjects(monitor);
+                long lNrOfRows = -1;
+                if (isBulkMode() && (fModel.getId() == null)) {
+                    lNrOfRows = storeAllFamixObjectsInBatchesExclusively(monitor);
+                }
+                if (lNrOfRows < 0) {
+                    Lock lLock = FamixBulkWriter.getStoreLock(fDBUrl).readLock();
+                    lLock.lock();
+                    try {
+                        lNrOfRows = storeAllFamixObjects(monitor);
+                    } finally {
+                        lLock.unlock();
+                    }
+                }
+                fStatistics.recordStoredRows(lNrOfRows, System.nanoTime() - lStartTime);
+                evictFromCache(Collections.<AbstractFamixEntity>emptyList(), Collections.<FamixAssociation>emptyList());
             } catch (EvolizerException e) {
                 sLogger.error("Error while storing Famix-FamixModel data: " + e.getMessage(), e);
+            } finally {
+                lStoreTimer.stop();
             }
         } else {
             sLogger.warn("Famix-FamixModel is empty: Nothing to store");
@@ -99,6 +163,84 @@ public class DAOModel {
         sLogger.debug("==== stored " + fModel.getFamixEntities().size() + " Famix-Entities ====");
     }
 
+    /**
+     * Stores the changes of an incremental model update. Removed entities and associations are deleted,
+     * updated entities are written, and new entities and associations (without Hibernate ID) are inserted.
+     * The model must have been stored before, otherwise the whole model is stored.
+     * 
+     * @param updater The incremental updater that has updated the model.
+     * @param monitor The progress monitor.
+     */
+    public void storeChanges(IncrementalModelUpdater updater, IProgressMonitor monitor) {
+        sLogger.debug("Storing changes of Famix-FamixModel " + fModel.getName());
+
+        if (fModel.getId() == null) {
+            sLogger.warn("Famix-FamixModel " + fModel.getName() + " has not been stored before: Storing whole model");
+            store(monitor);
+            return;
+        }
+
+        Lock lLock = FamixBulkWriter.getStoreLock(fDBUrl).readLock();
+        lLock.lock();
+        try {
+            storeChangedFamixObjects(updater, monitor);
+
+            List<AbstractFamixEntity> lChangedEntities = new ArrayList<AbstractFamixEntity>(updater.getRemovedEntities());
+            lChangedEntities.addAll(updater.getUpdatedEntities());
+            evictFromCache(lChangedEntities, updater.getRemovedAssociations());
+        } catch (EvolizerException e) {
+            sLogger.error("Error while storing changes of Famix-FamixModel data: " + e.getMessage(), e);
+        } finally {
+            lLock.unlock();
+        }
+        sLogger.info("Famix-FamixModel changes storage complete");
+    }
+
+    /**
+     * Sets the number of rows sent to the database in one JDBC batch. A value greater than 0 enables
+     * the bulk mode: models that have not been stored before are written with {@link FamixBulkWriter}
+     * instead of saving each object with the Hibernate session.
+     * 
+     * The bulk writer assigns the IDs of identity columns by incrementing the maximum ID of the table,
+     * hence, it must be the only writer of the database until its transaction ends. Bulk stores are
+     * serialized with all other stores of the importer on the same database, and the bulk mode is refused
+     * (i.e., the model is saved with the Hibernate session) while another thread has a writing unit of
+     * work open on the database. Other writes with the shared session outside of units of work, and
+     * writes of other processes, must not run concurrently with a store in bulk mode.
+     * 
+     * @param jdbcBatchSize The number of rows per batch, 0 to disable the bulk mode.
+     */
+    public void setJdbcBatchSize(int jdbcBatchSize) {
+        fJdbcBatchSize = Math.max(0, jdbcBatchSize);
+    }
+
+    /**
+     * Returns the number of rows sent to the database in one JDBC batch in bulk mode.
+     * 
+     * @return The number of rows per batch, 0 if the bulk mode is disabled.
+     */
+    public int getJdbcBatchSize() {
+        return fJdbcBatchSize;
+    }
+
+    /**
+     * Sets the statistics to which the time and number of rows of storing the model are recorded.
+     * 
+     * @param statistics The import statistics.
+     */
+    public void setStatistics(ImportStatistics statistics) {
+        fStatistics = statistics;
+    }
+
+    /**
+     * Returns true, if models that have not been stored before are written in JDBC batches.
+     * 
+     * @return True, if the bulk mode is enabled.
+     */
+    public boolean isBulkMode() {
+        return fJdbcBatchSize > 0;
+    }
+
     /**
      * Load all the <strong>last</strong> stored model object with the given name. 
      * 
@@ -121,6 +263,67 @@ public class DAOModel {
         return fModel;
     }
     
+    /**
+     * Loads the <strong>last</strong> stored model with the given name by streaming its entities. The associations
+     * are not loaded up front but on first access of the associations of an entity (see
+     * {@link FamixModel#setAssociationLoader(org.evolizer.famix.model.entities.IFamixAssociationLoader)}), hence,
+     * only the queried part of the association graph is kept in memory. The returned model is a transient
+     * container for reading the stored model; it must not be stored again and the session must stay open
+     * while the model is used.
+     * 
+     * For MySQL the connection property <code>useCursorFetch=true</code> is required to stream the entities
+     * with a server-side cursor instead of reading the whole result at once.
+     * 
+     * @param modelName The name of the FAMIX model.
+     * @return The FAMIX model, or null if there is no stored model with the given name.
+     */
+    public FamixModel loadModelStreaming(String modelName) {
+        sLogger.debug("Streaming Famix-FamixModel " + modelName + " from database");
+
+        FamixModel lModel = null;
+        ScrollableResults lEntities = null;
+        try {
+            IEvolizerSession lSession = EvolizerSessionHandler.getHandler().getCurrentSession(fDBUrl);
+            Session lHibernateSession = lSession.getHibernateSession();
+            Object[] lStoredModel = (Object[]) lHibernateSession.getNamedQuery(FamixModel.QUERY_HEADER_BY_NAME)
+                    .setString("name", modelName)
+                    .setMaxResults(1)
+                    .uniqueResult();
+            if (lStoredModel == null) {
+                sLogger.error("No Famix-FamixModel " + modelName + " stored in database");
+                return null;
+            }
+
+            Long lModelId = (Long) lStoredModel[0];
+            lModel = new FamixModel((String) lStoredModel[1], (Date) lStoredModel[2]);
+            lModel.setAssociationLoader(new HibernateAssociationLoader(lHibernateSession, lModelId));
+
+            lEntities = lHibernateSession.getNamedQuery(FamixModel.QUERY_ENTITIES)
+                    .setLong("modelId", lModelId.longValue())
+                    .setFetchSize(STREAMING_FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            int lNrOfEntities = 0;
+            while (lEntities.next()) {
+                lModel.addElement((AbstractFamixEntity) lEntities.get(0));
+                lNrOfEntities++;
+            }
+            sLogger.debug("Streamed " + lNrOfEntities + " entities of Famix-FamixModel " + modelName);
+        } catch (EvolizerRuntimeException ere) {
+            sLogger.error("Error while streaming Famix-FamixModel data from database: " + ere.getMessage(), ere);
+        } catch (EvolizerException ee) {
+            sLogger.error("Error while streaming Famix-FamixModel data from database: " + ee.getMessage(), ee);
+        } catch (HibernateException he) {
+            sLogger.error("Error while streaming Famix-FamixModel data from database: " + he.getMessage(), he);
+        } finally {
+            if (lEntities != null) {
+                lEntities.close();
+            }
+        }
+        fModel = lModel;
+
+        return lModel;
+    }
+
     private void populateBundleContainer(FamixModel model) {
         for (AbstractFamixEntity entity : model.getFamixEntities()) {
             fModel.addElement(entity);
@@ -136,18 +339,21 @@ public class DAOModel {
      * @param modelName The name of the FAMIX model.
      * @return  The list of FAMIX models.
      */
+    @SuppressWarnings("unchecked")
     public List<FamixModel> queryStoredModels(String modelName) {
         List<FamixModel> storedModels = new ArrayList<FamixModel>();
         
         try {
             IEvolizerSession lSession = EvolizerSessionHandler.getHandler().getCurrentSession(fDBUrl);
-            storedModels = lSession.query("from FamixModel as fm " +
-                    "where fm.name = '" + modelName + "'" +
-                    "order by fm.created desc", FamixModel.class);
+            storedModels = lSession.getHibernateSession().getNamedQuery(FamixModel.QUERY_BY_NAME)
+                    .setString("name", modelName)
+                    .list();
         } catch (EvolizerRuntimeException ere) {
             sLogger.error("Error while querying Famix-FamixModels" + ere.getMessage(), ere);
         } catch (EvolizerException ee) {
             sLogger.error("Error while querying Famix-FamixModels" + ee.getMessage(), ee);
+        } catch (HibernateException he) {
+            sLogger.error("Error while querying Famix-FamixModels" + he.getMessage(), he);
         }
         
         return storedModels;
@@ -156,7 +362,7 @@ public class DAOModel {
     /**
      * Deletes the current FAMIX model object from the database.
      * Through cascading all contained entities and associations
-     * of this model are deleted as well.
+     * of this model are deleted as well and evicted from the cache.
      * 
      * @return True if the delete was successful otherwise false.
      */
@@ -171,6 +377,7 @@ public class DAOModel {
             lSession.startTransaction();
             
             lSession.delete(fModel); 
+            addDeletedElements(fModel);
             wasSuccessful = true;
         } catch (EvolizerRuntimeException e) {
             e.printStackTrace();
@@ -187,18 +394,397 @@ public class DAOModel {
                 lSession.endTransaction();
             }
         }
+        if (wasSuccessful) {
+            evictDeletedModels();
+        } else {
+            fDeletedEntities.clear();
+            fDeletedAssociations.clear();
+        }
         sLogger.debug("Deleting Famix-FamixModel " + fModel.getName() + " from database completed");
         
         return wasSuccessful;
     }
 
+    /**
+     * Deletes the stored models with the name of the current FAMIX model in the open transaction of the
+     * given session. Other than {@link #deleteModel()} the delete is committed together with the model
+     * written in the same transaction, hence, the previous snapshot is kept if the storing fails or is
+     * canceled. The cached queries and the deleted entities must be evicted with {@link #evictDeletedModels()}
+     * after the commit.
+     *
+     * @param session The session with the open transaction.
+     * @return The number of deleted models.
+     * @throws HibernateException If the models could not be deleted.
+     */
+    @SuppressWarnings("unchecked")
+    int deleteStoredModels(IEvolizerSession session) throws HibernateException {
+        List<FamixModel> lStoredModels = session.getHibernateSession().getNamedQuery(FamixModel.QUERY_BY_NAME)
+                .setString("name", fModel.getName())
+                .list();
+        int lNrOfDeletedModels = 0;
+        for (FamixModel lStoredModel : lStoredModels) {
+            if (lStoredModel != fModel) {
+                sLogger.debug("Deleting Famix-FamixModel " + lStoredModel.getName() + " (" + lStoredModel.getId() + ") from database");
+                session.delete(lStoredModel);
+                addDeletedElements(lStoredModel);
+                lNrOfDeletedModels++;
+            }
+        }
+        session.flush();
+
+        return lNrOfDeletedModels;
+    }
+
+    /**
+     * Evicts the cached queries and the entities and associations of the deleted models after the stored
+     * models have been deleted with {@link #deleteStoredModels(IEvolizerSession)} and the transaction has
+     * been committed.
+     */
+    void evictDeletedModels() {
+        try {
+            evictFromCache(fDeletedEntities, fDeletedAssociations);
+        } catch (EvolizerException e) {
+            sLogger.error("Error while evicting the deleted Famix-FamixModels from the cache: " + e.getMessage(), e);
+        } finally {
+            fDeletedEntities.clear();
+            fDeletedAssociations.clear();
+        }
+    }
+
+    /**
+     * Records the entities and associations of the given deleted model to evict them from the cache
+     * with {@link #evictDeletedModels()}.
+     *
+     * @param model The deleted model.
+     */
+    private void addDeletedElements(FamixModel model) {
+        fDeletedEntities.addAll(model.getFamixEntities());
+        fDeletedAssociations.addAll(model.getFamixAssociations());
+    }
+
+    /**
+     * Deletes, updates, and inserts the changed entities and associations. If the model object is not
+     * attached to the current session the rows of the model join tables are maintained explicitly
+     * instead of re-attaching (and thereby updating) all entities of the model.
+     * 
+     * @param updater The incremental updater that has updated the model.
+     * @param monitor The progress monitor.
+     * @throws EvolizerException If the changes could not be stored.
+     */
+    private void storeChangedFamixObjects(IncrementalModelUpdater updater, IProgressMonitor monitor) throws EvolizerException {
+        SubMonitor progress = SubMonitor.convert(monitor, 100);
+
+        IEvolizerSession lSession = null;
+        try {
+            lSession = EvolizerSessionHandler.getHandler().getCurrentSession(fDBUrl);
+            lSession.startTransaction();
+            Session lHibernateSession = lSession.getHibernateSession();
+            boolean lIsModelAttached = lHibernateSession.contains(fModel);
+
+            progress.setTaskName("Deleting removed FAMIX entities and associations");
+            for (FamixAssociation association : updater.getRemovedAssociations()) {
+                if (association.getId() != null) {
+                    if (!lIsModelAttached) {
+                        executeJoinTableUpdate(lHibernateSession, 
+                                "delete from Model_Association where model_id = ? and association_id = ?", association.getId());
+                    }
+                    lSession.delete(association);
+                }
+            }
+            for (AbstractFamixEntity entity : updater.getRemovedEntities()) {
+                if (entity.getId() != null) {
+                    if (!lIsModelAttached) {
+                        executeJoinTableUpdate(lHibernateSession, 
+                                "delete from Model_FamixEntity where model_id = ? and entity_id = ?", entity.getId());
+                    }
+                    lSession.delete(entity);
+                }
+            }
+            lSession.flush();
+            progress.worked(30);
+
+            progress.setTaskName("Storing changed FAMIX entities");
+            resolveSourceBlobs(lHibernateSession);
+            for (AbstractFamixEntity entity : updater.getUpdatedEntities()) {
+                if (entity.getId() != null) {
+                    lSession.saveOrUpdate(entity);
+                }
+            }
+            List<AbstractFamixEntity> lNewEntities = new ArrayList<AbstractFamixEntity>();
+            for (AbstractFamixEntity entity : fModel.getFamixEntities()) {
+                if (entity.getId() == null) {
+                    lSession.saveObject(entity);
+                    lNewEntities.add(entity);
+                }
+            }
+            lSession.flush();
+            // the replaced anchors are deleted once no entity refers to them anymore, the anchors of
+            // removed entities have been deleted with the entities
+            Set<SourceAnchor> lDeletedAnchors = Collections.newSetFromMap(new IdentityHashMap<SourceAnchor, Boolean>());
+            for (AbstractFamixEntity entity : updater.getRemovedEntities()) {
+                if (entity.getSourceAnchor() != null) {
+                    lDeletedAnchors.add(entity.getSourceAnchor());
+                }
+            }
+            for (SourceAnchor anchor : updater.getRemovedSourceAnchors()) {
+                if ((anchor.getId() != null) && lDeletedAnchors.add(anchor)) {
+                    lSession.delete(anchor);
+                }
+            }
+            lSession.flush();
+            progress.worked(30);
+
+            progress.setTaskName("Storing new FAMIX associations");
+            List<FamixAssociation> lNewAssociations = new ArrayList<FamixAssociation>();
+            for (FamixAssociation association : fModel.getFamixAssociations()) {
+                if (association.getId() == null) {
+                    lSession.saveObject(association);
+                    lNewAssociations.add(association);
+                }
+            }
+            lSession.flush();
+
+            if (lIsModelAttached) {
+                lSession.saveOrUpdate(fModel);
+            } else {
+                for (AbstractFamixEntity entity : lNewEntities) {
+                    executeJoinTableUpdate(lHibernateSession, 
+                            "insert into Model_FamixEntity (model_id, entity_id) values (?, ?)", entity.getId());
+                }
+                for (FamixAssociation association : lNewAssociations) {
+                    executeJoinTableUpdate(lHibernateSession, 
+                            "insert into Model_Association (model_id, association_id) values (?, ?)", association.getId());
+                }
+            }
+            lSession.flush();
+            lSession.clear();
+            sLogger.debug("Stored changes: deleted " + updater.getRemovedEntities().size() + " entities and " 
+                    + updater.getRemovedAssociations().size() + " associations, inserted " + lNewEntities.size() 
+                    + " entities and " + lNewAssociations.size() + " associations");
+            progress.worked(40);
+        } catch (EvolizerException e) {
+            if (lSession != null) {
+                lSession.rollbackTransaction();
+            }
+            throw new EvolizerException(e);
+        } catch (EvolizerRuntimeException e) {
+            if (lSession != null) {
+                lSession.rollbackTransaction();
+            }
+            throw new EvolizerException(e);
+        } finally {
+            if (lSession != null) {
+                lSession.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * Evicts the cached results of snapshot queries and the given entities and associations, together with
+     * the cached collections of the entities and their parents, from the second-level cache. JDBC batches
+     * and SQL statements on the join tables bypass the invalidation of the cache by Hibernate, hence, the
+     * stored snapshot is invalidated explicitly after each write. Cached entities of other snapshots are kept.
+     * 
+     * @param entities The removed and updated entities.
+     * @param associations The removed associations.
+     * @throws EvolizerException If the session could not be obtained.
+     */
+    private void evictFromCache(
+            Collection<? extends AbstractFamixEntity> entities, 
+            Collection<? extends FamixAssociation> associations) throws EvolizerException {
+        SessionFactory lSessionFactory = 
+            EvolizerSessionHandler.getHandler().getCurrentSession(fDBUrl).getHibernateSession().getSessionFactory();
+        try {
+            lSessionFactory.evictQueries(SnapshotAnalyzer.QUERY_CACHE_REGION);
+            lSessionFactory.evictQueries();
+
+            Map<String, List<String>> lCollectionRoles = new HashMap<String, List<String>>();
+            for (Object role : lSessionFactory.getAllCollectionMetadata().keySet()) {
+                String lRole = (String) role;
+                String lOwner = lRole.substring(0, lRole.lastIndexOf('.'));
+                if (!lCollectionRoles.containsKey(lOwner)) {
+                    lCollectionRoles.put(lOwner, new ArrayList<String>());
+                }
+                lCollectionRoles.get(lOwner).add(lRole);
+            }
+
+            for (AbstractFamixEntity entity : entities) {
+                if (entity.getId() != null) {
+                    lSessionFactory.evict(Hibernate.getClass(entity), entity.getId());
+                    evictCollectionsFromCache(lSessionFactory, lCollectionRoles, entity);
+                }
+                if ((entity.getParent() != null) && (entity.getParent().getId() != null)) {
+                    evictCollectionsFromCache(lSessionFactory, lCollectionRoles, entity.getParent());
+                }
+            }
+            for (FamixAssociation association : associations) {
+                if (association.getId() != null) {
+                    lSessionFactory.evict(Hibernate.getClass(association), association.getId());
+                }
+            }
+        } catch (HibernateException he) {
+            sLogger.error("Error while evicting the stored Famix-FamixModel from the cache: " + he.getMessage(), he);
+        }
+    }
+
+    /**
+     * Evicts the cached collections of the given entity.
+     * 
+     * @param sessionFactory The session factory.
+     * @param collectionRoles The collection roles by owning entity name.
+     * @param entity The entity.
+     */
+    private void evictCollectionsFromCache(
+            SessionFactory sessionFactory, 
+            Map<String, List<String>> collectionRoles, 
+            AbstractFamixEntity entity) {
+        List<String> lRoles = collectionRoles.get(Hibernate.getClass(entity).getName());
+        if (lRoles != null) {
+            for (String lRole : lRoles) {
+                sessionFactory.evictCollection(lRole, entity.getId());
+            }
+        }
+    }
+
+    /**
+     * Executes an SQL statement on a join table of the model object.
+     * 
+     * @param session The Hibernate session.
+     * @param sql The SQL statement with the model ID and the element ID as parameters.
+     * @param elementId The ID of the entity or association.
+     */
+    private void executeJoinTableUpdate(Session session, String sql, Long elementId) {
+        session.createSQLQuery(sql).setLong(0, fModel.getId()).setLong(1, elementId).executeUpdate();
+    }
+
+    /**
+     * Stores the model with JDBC batches while holding the write lock of the database, unless another
+     * thread has a writing unit of work open on the database.
+     * 
+     * @param monitor The progress monitor.
+     * @return The number of written rows, or -1 if the bulk mode has been refused.
+     * @throws EvolizerException If the model could not be stored.
+     */
+    private long storeAllFamixObjectsInBatchesExclusively(IProgressMonitor monitor) throws EvolizerException {
+        Lock lLock = FamixBulkWriter.getStoreLock(fDBUrl).writeLock();
+        lLock.lock();
+        try {
+            if (EvolizerSessionHandler.getHandler().hasOtherWritingUnitOfWork(fDBUrl)) {
+                sLogger.warn("Another unit of work is writing to " + fDBUrl + ": Storing Famix-FamixModel "
+                        + fModel.getName() + " without bulk mode");
+                return -1;
+            }
+            return storeAllFamixObjectsInBatches(monitor);
+        } finally {
+            lLock.unlock();
+        }
+    }
+
+    /**
+     * Stores the entities, associations, and the model object with JDBC batches. The objects are not
+     * attached to the session.
+     * 
+     * @param monitor The progress monitor.
+     * @return The number of written rows.
+     * @throws EvolizerException If the model could not be stored.
+     */
+    private long storeAllFamixObjectsInBatches(final IProgressMonitor monitor) throws EvolizerException {
+        sLogger.debug("Storing all Famix-Entities and Associations in batches of " + fJdbcBatchSize + " rows");
+
+        IEvolizerSession lSession = null;
+        try {
+            lSession = EvolizerSessionHandler.getHandler().getCurrentSession(fDBUrl);
+            lSession.startTransaction();
+            resolveSourceBlobs(lSession.getHibernateSession());
+            final FamixBulkWriter lWriter = new FamixBulkWriter(lSession.getHibernateSession(), fJdbcBatchSize);
+            lSession.getHibernateSession().doWork(new Work() {
+                public void execute(Connection connection) throws SQLException {
+                    lWriter.write(fModel, connection, monitor);
+                }
+            });
+            sLogger.debug("Model entry stored");
+            return lWriter.getNrOfRows();
+        } catch (EvolizerException e) {
+            if (lSession != null) {
+                lSession.rollbackTransaction();
+            }
+            throw new EvolizerException(e);
+        } catch (HibernateException he) {
+            if (lSession != null) {
+                lSession.rollbackTransaction();
+            }
+            throw new EvolizerException(he);
+        } finally {
+            if (lSession != null) {
+                lSession.endTransaction();
+            }
+        }
+    }
+
+    /**
+     * Shares the source blobs of the contents that have not been stored yet. Contents with the same source text get
+     * the same blob, and a blob already stored with a previous snapshot is reused instead of storing the text again.
+     * 
+     * @param session The Hibernate session used to store the model.
+     */
+    private void resolveSourceBlobs(Session session) {
+        resolveSourceBlobs(session, fModel.getFamixEntities(), new HashMap<String, SourceBlob>());
+    }
+
+    /**
+     * Shares the source blobs of the contents of the given entities that have not been stored yet. Contents with the
+     * same source text get the same blob, and a blob already stored with a previous snapshot is reused instead of
+     * storing the text again.
+     * 
+     * @param session The Hibernate session used to store the entities.
+     * @param entities The FAMIX entities.
+     * @param blobs The blobs by hash resolved so far, e.g., for the entities stored before in the same transaction.
+     */
+    @SuppressWarnings("unchecked")
+    static void resolveSourceBlobs(Session session, Collection<? extends AbstractFamixEntity> entities, 
+            Map<String, SourceBlob> blobs) {
+        List<String> lHashes = new ArrayList<String>();
+        List<Content> lContents = new ArrayList<Content>();
+        for (AbstractFamixEntity entity : entities) {
+            Content lContent = entity.getContent();
+            if ((lContent != null) && (lContent.getId() == null) && (lContent.getBlob() != null)
+                    && (lContent.getBlob().getId() == null)) {
+                lContents.add(lContent);
+                if (!blobs.containsKey(lContent.getBlob().getHash())) {
+                    blobs.put(lContent.getBlob().getHash(), lContent.getBlob());
+                    lHashes.add(lContent.getBlob().getHash());
+                }
+            }
+        }
+        if (lContents.isEmpty()) {
+            return;
+        }
+
+        Set<String> lStoredHashes = new HashSet<String>();
+        for (int i = 0; i < lHashes.size(); i += SOURCE_BLOB_QUERY_SIZE) {
+            List<SourceBlob> lStoredBlobs = session.createQuery("from SourceBlob as b where b.hash in (:hashes)")
+                    .setParameterList("hashes", lHashes.subList(i, Math.min(i + SOURCE_BLOB_QUERY_SIZE, lHashes.size())))
+                    .list();
+            for (SourceBlob lStoredBlob : lStoredBlobs) {
+                blobs.put(lStoredBlob.getHash(), lStoredBlob);
+                lStoredHashes.add(lStoredBlob.getHash());
+            }
+        }
+        for (Content lContent : lContents) {
+            lContent.setBlob(blobs.get(lContent.getBlob().getHash()));
+        }
+        sLogger.debug("Resolved source blobs of " + lContents.size() + " contents: " + lHashes.size() 
+                + " distinct new sources, " + lStoredHashes.size() + " of them stored before");
+    }
+
     /**
      * Store associations assigned to the from-entity (to prevent duplication because associations are also assigned to
      * the to-entity).
      * 
      * @param The progress monitor.
+     * @return The number of saved objects.
      */
-    private void storeAllFamixObjects(IProgressMonitor monitor) throws EvolizerException {
+    private long storeAllFamixObjects(IProgressMonitor monitor) throws EvolizerException {
         SubMonitor progress = SubMonitor.convert(monitor, 100);
         progress.setTaskName("Initializing ...");
 
@@ -220,15 +806,18 @@ public class DAOModel {
         Set<AbstractFamixEntity> keys = entityAssocaitionMap.keySet();
 
         IEvolizerSession lSession = null;
+        long lNrOfObjects = 0;
         try {
             sLogger.debug("Storing all Famix-Entities");
             progress.setTaskName("Storing FAMIX entities");
 
             lSession = EvolizerSessionHandler.getHandler().getCurrentSession(fDBUrl);
             lSession.startTransaction();
+            resolveSourceBlobs(lSession.getHibernateSession());
             for (AbstractFamixEntity element : keys) {
                 sLogger.debug("Adding to database " + element.getClass().getName() + ":\n" + element.getUniqueName());
                 lSession.saveObject(element);
+                lNrOfObjects++;
             }
             lSession.flush();
             lSession.clear();
@@ -245,6 +834,7 @@ public class DAOModel {
                                 + association.getFrom().getUniqueName() + " TO " + association.getTo().getUniqueName());
                         // fSession.saveObject(association);
                         lSession.saveObject(association);
+                        lNrOfObjects++;
                     } else {
                         sLogger.warn("Missing ID in " + association.getType() + " association of entitye "
                                 + element.getUniqueName() + "(" + element.getId() + ")");
@@ -258,9 +848,11 @@ public class DAOModel {
             lSession.saveObject(fModel);
             lSession.flush();
             lSession.clear();
+            lNrOfObjects++;
             sLogger.debug("Model entry stored");
             
             progress.worked(45);
+            return lNrOfObjects;
         } catch (EvolizerException e) {
             if (lSession != null) {
                 lSession.rollbackTransaction();
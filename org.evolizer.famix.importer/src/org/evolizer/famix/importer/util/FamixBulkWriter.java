@@ -0,0 +1,1278 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.util;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.evolizer.famix.importer.FamixImporterPlugin;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.hibernate.EntityMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.Oracle9Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.CascadingAction;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PostInsertIdentifierGenerator;
+import org.hibernate.id.SequenceGenerator;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+/**
+ * Writes a FAMIX model that has not been stored before with JDBC batches. The SQL statements are
+ * derived from the Hibernate mapping meta-data, hence, the rows are the same as the ones written by
+ * saving the objects with the Hibernate session. But, objects are neither attached to the session nor
+ * checked for changes, and the IDs of all objects are assigned up front so that the inserts can be
+ * batched (Hibernate does not batch inserts of entities with identity columns).
+ *
+ * The objects are written in phases: first the dependent objects (source anchors, contents), then the
+ * entities ordered by the depth of their parent, then the associations and the model itself, and last
+ * the rows of the join tables. A reference to an object whose row has not been written yet is first
+ * written as <code>null</code> and set with a batched update at the end.
+ *
+ * IDs of identity columns are assigned by incrementing the maximum ID found in the table, therefore the
+ * writer must be the only one inserting into these tables until its transaction ends. Callers hold the
+ * write lock of {@link #getStoreLock(String)} for the whole transaction, and stores with the Hibernate
+ * session hold its read lock, such that a bulk write excludes all other stores of the importer on the
+ * same database. Writers in other processes are not excluded. For MySQL the
+ * <code>rewriteBatchedStatements=true</code> connection property should be set to send a batch as one
+ * multi-row insert.
+ *
+ * A model that is still being built can be written in several steps within one transaction: the complete
+ * entities are written as soon as they are available, the rest of the model and the join tables at the end.
+ * References of rows written early that have changed in the meantime are updated at the end.
+ *
+ * @author pinzger
+ */
+public class FamixBulkWriter {
+
+    /**
+     * Default number of rows sent to the database in one JDBC batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(FamixBulkWriter.class.getName());
+
+    /**
+     * The store locks by database URL.
+     */
+    private static final Map<String, ReadWriteLock> sfStoreLocks = new HashMap<String, ReadWriteLock>();
+
+    /**
+     * The session providing the mapping meta-data and the type conversions.
+     */
+    private SessionImplementor fSession;
+    /**
+     * Number of rows sent to the database in one JDBC batch.
+     */
+    private int fBatchSize;
+    /**
+     * The connection of the current write.
+     */
+    private Connection fConnection;
+
+    /**
+     * Objects to be written by the current write.
+     */
+    private Map<Object, Object> fScheduledObjects;
+    /**
+     * Objects whose rows have been written.
+     */
+    private Map<Object, Object> fWrittenObjects;
+    /**
+     * Objects whose rows are in a batch that has not been executed, yet, and the statement of the batch.
+     */
+    private Map<Object, InsertStatement> fPendingObjects;
+    /**
+     * Objects whose IDs have been assigned by the current write.
+     */
+    private List<Object> fAssignedObjects;
+    /**
+     * The insert statements by entity persister, in the order of their creation.
+     */
+    private Map<AbstractEntityPersister, InsertStatement> fInsertStatements;
+    /**
+     * The next ID by table, for tables with identity columns.
+     */
+    private Map<String, Long> fNextIds;
+    /**
+     * The fetched but not yet assigned IDs by sequence, for tables with sequence generated IDs.
+     */
+    private Map<String, LinkedList<Long>> fSequenceIds;
+    /**
+     * References that have been written as <code>null</code> and need to be updated.
+     */
+    private List<DeferredReference> fDeferredReferences;
+    /**
+     * True, if the references written by the current step are recorded.
+     */
+    private boolean fRecordReferences;
+    /**
+     * The references written by the steps before the finish, by object and property index.
+     */
+    private Map<Object, Object[]> fWrittenReferences;
+
+    /**
+     * Number of inserted entity rows.
+     */
+    private long fNrOfInsertedRows;
+    /**
+     * Number of inserted join table rows.
+     */
+    private long fNrOfJoinTableRows;
+    /**
+     * Number of updated rows (deferred references).
+     */
+    private long fNrOfUpdatedRows;
+    /**
+     * Number of associations not written because one of their entities is not stored.
+     */
+    private int fNrOfSkippedAssociations;
+    /**
+     * Duration of the last write in milliseconds, summed up over all steps.
+     */
+    private long fElapsedTime;
+
+    /**
+     * The constructor.
+     *
+     * @param session
+     *            The Hibernate session providing the mapping meta-data.
+     * @param batchSize
+     *            The number of rows sent to the database in one batch, values smaller than 1 select the default.
+     */
+    public FamixBulkWriter(Session session, int batchSize) {
+        fSession = (SessionImplementor) session;
+        fBatchSize = (batchSize < 1) ? DEFAULT_BATCH_SIZE : batchSize;
+    }
+
+    /**
+     * Returns the lock for storing FAMIX objects in the given database. Bulk writes hold the write lock from the
+     * begin until the end of their transaction, stores with the Hibernate session hold the read lock.
+     *
+     * @param dbUrl
+     *            The URL of the database.
+     * @return The store lock of the database.
+     */
+    public static ReadWriteLock getStoreLock(String dbUrl) {
+        synchronized (sfStoreLocks) {
+            ReadWriteLock lLock = sfStoreLocks.get(dbUrl);
+            if (lLock == null) {
+                lLock = new ReentrantReadWriteLock();
+                sfStoreLocks.put(dbUrl, lLock);
+            }
+            return lLock;
+        }
+    }
+
+    /**
+     * Writes the entities and associations of the model and the model itself using the given connection.
+     * The caller is responsible for the transaction. If the write fails the IDs assigned to the objects
+     * are reset.
+     *
+     * @param model
+     *            The FAMIX model that has not been stored before.
+     * @param connection
+     *            The JDBC connection of the Hibernate session.
+     * @param monitor
+     *            The progress monitor.
+     * @throws SQLException
+     *             If a statement fails.
+     */
+    public void write(FamixModel model, Connection connection, IProgressMonitor monitor) throws SQLException {
+        begin();
+        finish(model, connection, monitor);
+    }
+
+    /**
+     * Begins a write in several steps: the complete parts of a model that is still being built are written with
+     * {@link #write(Collection, Collection, Connection)}, the rest of the model with
+     * {@link #finish(FamixModel, Connection, IProgressMonitor)}. All steps must use the same transaction.
+     */
+    public void begin() {
+        fAssignedObjects = new ArrayList<Object>();
+        fWrittenReferences = new IdentityHashMap<Object, Object[]>();
+        fNextIds = new HashMap<String, Long>();
+        fSequenceIds = new HashMap<String, LinkedList<Long>>();
+        fDeferredReferences = new ArrayList<DeferredReference>();
+        fNrOfInsertedRows = 0;
+        fNrOfJoinTableRows = 0;
+        fNrOfUpdatedRows = 0;
+        fNrOfSkippedAssociations = 0;
+        fElapsedTime = 0;
+    }
+
+    /**
+     * Writes the given entities and the associations between stored entities of a model that is still being built.
+     * The rows of the join tables are written by {@link #finish(FamixModel, Connection, IProgressMonitor)}, because
+     * the collections may still grow. References that change after this step (e.g., to an entity written later) are
+     * updated by the finish, too.
+     *
+     * @param entities
+     *            The complete entities.
+     * @param associations
+     *            The associations, associations with an entity that is neither stored nor part of this step are
+     *            written by the finish.
+     * @param connection
+     *            The JDBC connection of the Hibernate session.
+     * @throws SQLException
+     *             If a statement fails.
+     */
+    public void write(Collection<? extends AbstractFamixEntity> entities, Collection<FamixAssociation> associations,
+            Connection connection) throws SQLException {
+        long lStartTime = System.currentTimeMillis();
+        startStep(connection, true);
+        try {
+            List<List<Object>> lPhases = collectPhases(entities, associations, null);
+            for (List<Object> lPhase : lPhases) {
+                for (Object lObject : lPhase) {
+                    assignIdentifier(lObject);
+                }
+            }
+            for (List<Object> lPhase : lPhases) {
+                for (Object lObject : lPhase) {
+                    insert(lObject);
+                }
+                executeInsertStatements();
+            }
+            updateDeferredReferences();
+        } catch (SQLException se) {
+            resetIdentifiers();
+            throw se;
+        } catch (RuntimeException re) {
+            resetIdentifiers();
+            throw re;
+        } finally {
+            endStep();
+        }
+        fElapsedTime += System.currentTimeMillis() - lStartTime;
+    }
+
+    /**
+     * Writes the remaining entities and associations of the model, the model itself, and the rows of the join
+     * tables of all objects written since {@link #begin()}. If the write fails the IDs assigned since
+     * {@link #begin()} are reset.
+     *
+     * @param model
+     *            The FAMIX model that has not been stored before.
+     * @param connection
+     *            The JDBC connection of the Hibernate session.
+     * @param monitor
+     *            The progress monitor.
+     * @throws SQLException
+     *             If a statement fails.
+     */
+    public void finish(FamixModel model, Connection connection, IProgressMonitor monitor) throws SQLException {
+        long lStartTime = System.currentTimeMillis();
+        SubMonitor progress = SubMonitor.convert(monitor, 100);
+        startStep(connection, false);
+
+        try {
+            progress.setTaskName("Assigning IDs");
+            List<List<Object>> lPhases = collectPhases(model.getFamixEntities(), model.getFamixAssociations(), model);
+            int lNrOfObjects = 0;
+            for (List<Object> lPhase : lPhases) {
+                for (Object lObject : lPhase) {
+                    assignIdentifier(lObject);
+                }
+                lNrOfObjects += lPhase.size();
+            }
+            progress.worked(5);
+
+            progress.setTaskName("Storing FAMIX entities and associations");
+            SubMonitor lRowProgress = progress.newChild(75).setWorkRemaining(lNrOfObjects);
+            for (List<Object> lPhase : lPhases) {
+                for (Object lObject : lPhase) {
+                    insert(lObject);
+                    lRowProgress.worked(1);
+                }
+                executeInsertStatements();
+            }
+
+            progress.setTaskName("Updating references");
+            reconcileReferences();
+            updateDeferredReferences();
+            progress.worked(5);
+
+            progress.setTaskName("Storing FAMIX collections");
+            insertCollectionRows(fAssignedObjects);
+            progress.worked(15);
+        } catch (SQLException se) {
+            resetIdentifiers();
+            throw se;
+        } catch (RuntimeException re) {
+            resetIdentifiers();
+            throw re;
+        } finally {
+            endStep();
+            fWrittenReferences.clear();
+        }
+
+        fElapsedTime += System.currentTimeMillis() - lStartTime;
+        sLogger.info("Stored " + getNrOfRows() + " rows (" + fNrOfInsertedRows + " objects, " + fNrOfJoinTableRows
+                + " join table rows, " + fNrOfUpdatedRows + " updated references) in " + fElapsedTime + " ms ("
+                + getRowsPerSecond() + " rows/s)");
+        if (fNrOfSkippedAssociations > 0) {
+            sLogger.warn("Skipped " + fNrOfSkippedAssociations + " associations with entities that are not stored");
+        }
+    }
+
+    /**
+     * Resets the IDs assigned since {@link #begin()}, e.g., after the transaction of a write in several steps
+     * has been rolled back.
+     */
+    public void abort() {
+        if (fAssignedObjects != null) {
+            resetIdentifiers();
+            fWrittenReferences.clear();
+        }
+    }
+
+    /**
+     * Prepares a step of the write. The objects written by previous steps are recognized by their IDs.
+     *
+     * @param connection
+     *            The JDBC connection of the Hibernate session.
+     * @param recordReferences
+     *            True, if the written references are recorded for reconciling them in the finish.
+     */
+    private void startStep(Connection connection, boolean recordReferences) {
+        fConnection = connection;
+        fRecordReferences = recordReferences;
+        fScheduledObjects = new IdentityHashMap<Object, Object>();
+        fWrittenObjects = new IdentityHashMap<Object, Object>();
+        fPendingObjects = new IdentityHashMap<Object, InsertStatement>();
+        fInsertStatements = new LinkedHashMap<AbstractEntityPersister, InsertStatement>();
+    }
+
+    /**
+     * Closes the statements of a step of the write.
+     */
+    private void endStep() {
+        closeInsertStatements();
+        fDeferredReferences.clear();
+        fConnection = null;
+    }
+
+    /**
+     * Returns the number of rows written by the last write (inserted objects, join table rows, and updates).
+     *
+     * @return The number of rows.
+     */
+    public long getNrOfRows() {
+        return fNrOfInsertedRows + fNrOfJoinTableRows + fNrOfUpdatedRows;
+    }
+
+    /**
+     * Returns the duration of the last write.
+     *
+     * @return The duration in milliseconds.
+     */
+    public long getElapsedTime() {
+        return fElapsedTime;
+    }
+
+    /**
+     * Returns the throughput of the last write.
+     *
+     * @return The number of rows written per second.
+     */
+    public long getRowsPerSecond() {
+        return (getNrOfRows() * 1000) / Math.max(1, fElapsedTime);
+    }
+
+    /**
+     * Returns the number of associations of the last write that were not written because one
+     * of their entities is neither part of the model nor stored.
+     *
+     * @return The number of skipped associations.
+     */
+    public int getNrOfSkippedAssociations() {
+        return fNrOfSkippedAssociations;
+    }
+
+    /**
+     * Determines the objects to write and groups them into phases. The rows of a phase are
+     * written before the rows of the next phase.
+     *
+     * @param entities
+     *            The FAMIX entities.
+     * @param associations
+     *            The FAMIX associations.
+     * @param model
+     *            The FAMIX model, or <code>null</code> when writing a step before the finish.
+     * @return The list of phases.
+     */
+    private List<List<Object>> collectPhases(Collection<? extends AbstractFamixEntity> entities,
+            Collection<FamixAssociation> associations, FamixModel model) {
+        List<List<Object>> lPhases = new ArrayList<List<Object>>();
+        List<Object> lDependents = new ArrayList<Object>();
+        lPhases.add(lDependents);
+
+        final Map<AbstractFamixEntity, Integer> lDepths = new HashMap<AbstractFamixEntity, Integer>();
+        List<AbstractFamixEntity> lEntities = new ArrayList<AbstractFamixEntity>();
+        for (AbstractFamixEntity lEntity : entities) {
+            if (schedule(lEntity, lDependents)) {
+                lEntities.add(lEntity);
+                lDepths.put(lEntity, Integer.valueOf(getDepth(lEntity)));
+            }
+        }
+        Collections.sort(lEntities, new Comparator<AbstractFamixEntity>() {
+            public int compare(AbstractFamixEntity entity1, AbstractFamixEntity entity2) {
+                return lDepths.get(entity1).compareTo(lDepths.get(entity2));
+            }
+        });
+        List<Object> lPhase = null;
+        int lDepth = -1;
+        for (AbstractFamixEntity lEntity : lEntities) {
+            if (lDepths.get(lEntity).intValue() != lDepth) {
+                lDepth = lDepths.get(lEntity).intValue();
+                lPhase = new ArrayList<Object>();
+                lPhases.add(lPhase);
+            }
+            lPhase.add(lEntity);
+        }
+
+        List<Object> lAssociations = new ArrayList<Object>();
+        for (FamixAssociation lAssociation : associations) {
+            if (isStored(lAssociation.getFrom()) && isStored(lAssociation.getTo())) {
+                if (schedule(lAssociation, lDependents)) {
+                    lAssociations.add(lAssociation);
+                }
+            } else if (model != null) {
+                sLogger.debug("Skipping " + lAssociation.getType() + " association from "
+                        + lAssociation.getFrom().getUniqueName() + " to " + lAssociation.getTo().getUniqueName());
+                fNrOfSkippedAssociations++;
+            }
+        }
+        lPhases.add(lAssociations);
+
+        List<Object> lModel = new ArrayList<Object>();
+        if ((model != null) && schedule(model, lDependents)) {
+            lModel.add(model);
+        }
+        lPhases.add(lModel);
+
+        return lPhases;
+    }
+
+    /**
+     * Schedules the object and the objects it references with cascading save (such as source anchors
+     * and contents) for writing. The dependent objects are added to the given list. Objects that have
+     * an ID are considered as stored and are not written again.
+     *
+     * @param object
+     *            The object to schedule.
+     * @param dependents
+     *            The list of dependent objects.
+     * @return True, if the object needs to be written.
+     */
+    private boolean schedule(Object object, List<Object> dependents) {
+        if (fScheduledObjects.containsKey(object) || fWrittenObjects.containsKey(object)) {
+            return false;
+        }
+        AbstractEntityPersister lPersister = getPersister(object);
+        if (lPersister.getIdentifier(object, EntityMode.POJO) != null) {
+            fWrittenObjects.put(object, object);
+            return false;
+        }
+        fScheduledObjects.put(object, object);
+
+        Type[] lTypes = lPersister.getPropertyTypes();
+        Object[] lValues = lPersister.getPropertyValues(object, EntityMode.POJO);
+        for (int i = 0; i < lTypes.length; i++) {
+            if (lTypes[i].isEntityType() && (lValues[i] != null)
+                    && lPersister.getPropertyCascadeStyles()[i].doCascade(CascadingAction.SAVE_UPDATE)) {
+                if (schedule(lValues[i], dependents)) {
+                    dependents.add(lValues[i]);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true, if the entity is part of the current write or has been stored before.
+     *
+     * @param entity
+     *            The FAMIX entity.
+     * @return True, if the entity is or will be stored.
+     */
+    private boolean isStored(AbstractFamixEntity entity) {
+        return (entity != null) && (fScheduledObjects.containsKey(entity) || (entity.getId() != null));
+    }
+
+    /**
+     * Returns the number of parents of the given entity.
+     *
+     * @param entity
+     *            The FAMIX entity.
+     * @return The depth of the entity.
+     */
+    private int getDepth(AbstractFamixEntity entity) {
+        int lDepth = 0;
+        AbstractFamixEntity lParent = entity.getParent();
+        while ((lParent != null) && (lParent != entity)) {
+            lDepth++;
+            lParent = lParent.getParent();
+        }
+        return lDepth;
+    }
+
+    /**
+     * Assigns the ID to the object. IDs of identity columns are taken from the per-table counter,
+     * IDs of plain sequences from blocks fetched with one query per batch, all other IDs are
+     * obtained from the identifier generator of the mapping.
+     *
+     * @param object
+     *            The object to write.
+     * @throws SQLException
+     *             If the maximum ID or the sequence values cannot be queried.
+     */
+    private void assignIdentifier(Object object) throws SQLException {
+        AbstractEntityPersister lPersister = getPersister(object);
+        IdentifierGenerator lGenerator = lPersister.getIdentifierGenerator();
+        Serializable lId;
+        if (lGenerator instanceof PostInsertIdentifierGenerator) {
+            lId = nextIdentifier(lPersister);
+        } else if ((lGenerator.getClass() == SequenceGenerator.class)
+                && (getSequenceRowSource(getDialect(), fBatchSize) != null)) {
+            // subclasses such as the hilo generator apply their own optimizer
+            lId = nextSequenceIdentifier(lPersister, ((SequenceGenerator) lGenerator).getSequenceName());
+        } else {
+            lId = lGenerator.generate(fSession, object);
+        }
+        lPersister.setIdentifier(object, lId, EntityMode.POJO);
+        fAssignedObjects.add(object);
+    }
+
+    /**
+     * Returns the next ID of the root table of the given persister. The maximum ID is queried once per
+     * table, the IDs are only unique as long as no other writer inserts into the table until the
+     * transaction ends (see {@link #getStoreLock(String)}).
+     *
+     * @param persister
+     *            The entity persister.
+     * @return The next ID.
+     * @throws SQLException
+     *             If the maximum ID cannot be queried.
+     */
+    private Serializable nextIdentifier(AbstractEntityPersister persister) throws SQLException {
+        String lTableName = persister.getRootTableName();
+        Long lNextId = fNextIds.get(lTableName);
+        if (lNextId == null) {
+            lNextId = Long.valueOf(queryMaxIdentifier(lTableName, persister.getIdentifierColumnNames()[0]) + 1);
+        }
+        fNextIds.put(lTableName, Long.valueOf(lNextId.longValue() + 1));
+
+        return toIdentifier(persister, lNextId);
+    }
+
+    /**
+     * Returns the next ID of the given sequence. The values are fetched in blocks of the batch size with
+     * one query, like a pooled optimizer does. Values fetched but not assigned leave gaps in the sequence.
+     *
+     * @param persister
+     *            The entity persister.
+     * @param sequenceName
+     *            The sequence of the identifier generator.
+     * @return The next ID.
+     * @throws SQLException
+     *             If the sequence values cannot be queried.
+     */
+    private Serializable nextSequenceIdentifier(AbstractEntityPersister persister, String sequenceName) throws SQLException {
+        LinkedList<Long> lIds = fSequenceIds.get(sequenceName);
+        if (lIds == null) {
+            lIds = new LinkedList<Long>();
+            fSequenceIds.put(sequenceName, lIds);
+        }
+        if (lIds.isEmpty()) {
+            lIds.addAll(querySequenceValues(sequenceName, Math.max(fBatchSize, 1)));
+        }
+        if (lIds.isEmpty()) {
+            throw new HibernateException("Sequence " + sequenceName + " returned no values");
+        }
+
+        return toIdentifier(persister, lIds.removeFirst());
+    }
+
+    /**
+     * Queries the given number of values of a sequence with a single statement.
+     *
+     * @param sequenceName
+     *            The sequence.
+     * @param nrOfValues
+     *            The number of values.
+     * @return The values in ascending order.
+     * @throws SQLException
+     *             If the query fails.
+     */
+    private List<Long> querySequenceValues(String sequenceName, int nrOfValues) throws SQLException {
+        Dialect lDialect = getDialect();
+        String lQuery = "select " + lDialect.getSelectSequenceNextValString(sequenceName) + " from "
+                + getSequenceRowSource(lDialect, nrOfValues);
+        List<Long> lValues = new ArrayList<Long>(nrOfValues);
+        Statement lStatement = fConnection.createStatement();
+        try {
+            ResultSet lResult = lStatement.executeQuery(lQuery);
+            while (lResult.next()) {
+                lValues.add(Long.valueOf(lResult.getLong(1)));
+            }
+        } finally {
+            lStatement.close();
+        }
+        Collections.sort(lValues);
+
+        return lValues;
+    }
+
+    /**
+     * Returns the from clause that produces the given number of rows to select the next values of a
+     * sequence in one statement.
+     *
+     * @param dialect
+     *            The dialect of the database.
+     * @param nrOfRows
+     *            The number of rows.
+     * @return The from clause, <code>null</code> if the dialect is not supported.
+     */
+    private static String getSequenceRowSource(Dialect dialect, int nrOfRows) {
+        int lNrOfRows = Math.max(nrOfRows, 1);
+        if (dialect instanceof H2Dialect) {
+            return "system_range(1, " + lNrOfRows + ")";
+        } else if (dialect instanceof PostgreSQLDialect) {
+            return "generate_series(1, " + lNrOfRows + ")";
+        } else if ((dialect instanceof Oracle8iDialect) || (dialect instanceof Oracle9Dialect)) {
+            return "dual connect by level <= " + lNrOfRows;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the dialect of the session factory.
+     *
+     * @return The dialect.
+     */
+    private Dialect getDialect() {
+        return fSession.getFactory().getDialect();
+    }
+
+    /**
+     * Converts the given value to the identifier type of the persister.
+     *
+     * @param persister
+     *            The entity persister.
+     * @param value
+     *            The ID value.
+     * @return The ID.
+     */
+    private Serializable toIdentifier(AbstractEntityPersister persister, Long value) {
+        Class<?> lIdClass = persister.getIdentifierType().getReturnedClass();
+        if (Long.class.equals(lIdClass)) {
+            return value;
+        } else if (Integer.class.equals(lIdClass)) {
+            return Integer.valueOf(value.intValue());
+        }
+        throw new HibernateException("Unsupported identifier type " + lIdClass.getName() + " of "
+                + persister.getEntityName());
+    }
+
+    /**
+     * Queries the maximum ID of the given table.
+     *
+     * @param tableName
+     *            The table.
+     * @param idColumnName
+     *            The ID column.
+     * @return The maximum ID, 0 if the table is empty.
+     * @throws SQLException
+     *             If the query fails.
+     */
+    private long queryMaxIdentifier(String tableName, String idColumnName) throws SQLException {
+        Statement lStatement = fConnection.createStatement();
+        try {
+            ResultSet lResult = lStatement.executeQuery("select max(" + idColumnName + ") from " + tableName);
+            return lResult.next() ? lResult.getLong(1) : 0;
+        } finally {
+            lStatement.close();
+        }
+    }
+
+    /**
+     * Resets the IDs assigned by the failed write.
+     */
+    private void resetIdentifiers() {
+        for (Object lObject : fAssignedObjects) {
+            getPersister(lObject).setIdentifier(lObject, null, EntityMode.POJO);
+        }
+        fAssignedObjects.clear();
+    }
+
+    /**
+     * Adds the row of the object to the batch of its insert statement.
+     *
+     * @param object
+     *            The object to write.
+     * @throws SQLException
+     *             If the batch fails.
+     */
+    private void insert(Object object) throws SQLException {
+        AbstractEntityPersister lPersister = getPersister(object);
+        InsertStatement lStatement = fInsertStatements.get(lPersister);
+        if (lStatement == null) {
+            lStatement = new InsertStatement(lPersister);
+            fInsertStatements.put(lPersister, lStatement);
+        }
+        lStatement.add(object);
+        if (lStatement.getNrOfPendingRows() >= fBatchSize) {
+            lStatement.execute();
+        }
+    }
+
+    /**
+     * Executes the pending batches of all insert statements.
+     *
+     * @throws SQLException
+     *             If a batch fails.
+     */
+    private void executeInsertStatements() throws SQLException {
+        for (InsertStatement lStatement : fInsertStatements.values()) {
+            lStatement.execute();
+        }
+    }
+
+    /**
+     * Closes all insert statements.
+     */
+    private void closeInsertStatements() {
+        for (InsertStatement lStatement : fInsertStatements.values()) {
+            lStatement.close();
+        }
+    }
+
+    /**
+     * Returns the value to write for a reference from the owner to the referenced object. A reference to an
+     * object of the current write whose row is not in the database nor earlier in the same batch is
+     * deferred and written as <code>null</code>.
+     *
+     * @param owner
+     *            The referencing object.
+     * @param propertyIndex
+     *            The index of the reference property.
+     * @param referencedObject
+     *            The referenced object.
+     * @param statement
+     *            The statement writing the row of the owner.
+     * @return The referenced object, or <code>null</code>.
+     */
+    private Object resolveReference(Object owner, int propertyIndex, Object referencedObject, InsertStatement statement) {
+        if ((referencedObject == null) || fWrittenObjects.containsKey(referencedObject)
+                || (fPendingObjects.get(referencedObject) == statement)) {
+            return referencedObject;
+        }
+        if (fScheduledObjects.containsKey(referencedObject)) {
+            fDeferredReferences.add(new DeferredReference(owner, propertyIndex, referencedObject));
+            return null;
+        }
+        if (getPersister(referencedObject).getIdentifier(referencedObject, EntityMode.POJO) == null) {
+            if (fRecordReferences) {
+                sLogger.debug("Reference from " + owner + " to unsaved object " + referencedObject + " is updated later");
+            } else {
+                sLogger.warn("Reference from " + owner + " to unsaved object " + referencedObject + " is stored as null");
+            }
+            return null;
+        }
+        return referencedObject;
+    }
+
+    /**
+     * Sets the ID of the referenced object as parameter(s) of the statement.
+     *
+     * @param statement
+     *            The prepared statement.
+     * @param type
+     *            The type of the reference.
+     * @param referencedObject
+     *            The referenced object, may be <code>null</code>.
+     * @param index
+     *            The index of the first parameter.
+     * @throws SQLException
+     *             If the parameter cannot be set.
+     */
+    private void setReference(PreparedStatement statement, EntityType type, Object referencedObject, int index)
+            throws SQLException {
+        Type lIdType = type.getIdentifierOrUniqueKeyType(fSession.getFactory());
+        Serializable lId = null;
+        if (referencedObject != null) {
+            lId = getPersister(referencedObject).getIdentifier(referencedObject, EntityMode.POJO);
+        }
+        lIdType.nullSafeSet(statement, lId, index, fSession);
+    }
+
+    /**
+     * Defers the update of the references written by the steps before the finish that have changed since, e.g.,
+     * because the referenced entity was not stored at that time or has been replaced.
+     */
+    private void reconcileReferences() {
+        for (Map.Entry<Object, Object[]> lEntry : fWrittenReferences.entrySet()) {
+            Object lOwner = lEntry.getKey();
+            Object[] lWrittenValues = lEntry.getValue();
+            AbstractEntityPersister lPersister = getPersister(lOwner);
+            Type[] lTypes = lPersister.getPropertyTypes();
+            boolean[] lInsertability = lPersister.getPropertyInsertability();
+            Object[] lValues = lPersister.getPropertyValues(lOwner, EntityMode.POJO);
+            for (int i = 0; i < lTypes.length; i++) {
+                if (!lInsertability[i] || !lTypes[i].isEntityType() || !((EntityType) lTypes[i]).isReferenceToPrimaryKey()
+                        || (lPersister.getPropertyColumnNames(i).length == 0) || (lValues[i] == lWrittenValues[i])) {
+                    continue;
+                }
+                if ((lValues[i] == null) || fWrittenObjects.containsKey(lValues[i])
+                        || (getPersister(lValues[i]).getIdentifier(lValues[i], EntityMode.POJO) != null)) {
+                    fDeferredReferences.add(new DeferredReference(lOwner, i, lValues[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the references that have been written as <code>null</code>.
+     *
+     * @throws SQLException
+     *             If an update fails.
+     */
+    private void updateDeferredReferences() throws SQLException {
+        Map<String, PreparedStatement> lStatements = new HashMap<String, PreparedStatement>();
+        Map<String, Integer> lNrOfPendingRows = new HashMap<String, Integer>();
+        try {
+            for (DeferredReference lReference : fDeferredReferences) {
+                AbstractEntityPersister lPersister = getPersister(lReference.getOwner());
+                int lPropertyIndex = lReference.getPropertyIndex();
+                String[] lColumns = lPersister.getPropertyColumnNames(lPropertyIndex);
+                String[] lIdColumns = lPersister.getIdentifierColumnNames();
+                StringBuilder lSql = new StringBuilder("update " + lPersister.getTableName() + " set ");
+                for (int i = 0; i < lColumns.length; i++) {
+                    lSql.append((i > 0) ? ", " : "").append(lColumns[i]).append(" = ?");
+                }
+                lSql.append(" where ");
+                for (int i = 0; i < lIdColumns.length; i++) {
+                    lSql.append((i > 0) ? " and " : "").append(lIdColumns[i]).append(" = ?");
+                }
+                String lKey = lSql.toString();
+
+                PreparedStatement lStatement = lStatements.get(lKey);
+                if (lStatement == null) {
+                    lStatement = fConnection.prepareStatement(lKey);
+                    lStatements.put(lKey, lStatement);
+                    lNrOfPendingRows.put(lKey, Integer.valueOf(0));
+                }
+                EntityType lType = (EntityType) lPersister.getPropertyTypes()[lPropertyIndex];
+                setReference(lStatement, lType, lReference.getReferencedObject(), 1);
+                lPersister.getIdentifierType().nullSafeSet(lStatement,
+                        lPersister.getIdentifier(lReference.getOwner(), EntityMode.POJO), lColumns.length + 1, fSession);
+                lStatement.addBatch();
+
+                int lPending = lNrOfPendingRows.get(lKey).intValue() + 1;
+                if (lPending >= fBatchSize) {
+                    lStatement.executeBatch();
+                    lPending = 0;
+                }
+                lNrOfPendingRows.put(lKey, Integer.valueOf(lPending));
+                fNrOfUpdatedRows++;
+            }
+            for (PreparedStatement lStatement : lStatements.values()) {
+                lStatement.executeBatch();
+            }
+        } finally {
+            for (PreparedStatement lStatement : lStatements.values()) {
+                lStatement.close();
+            }
+        }
+    }
+
+    /**
+     * Inserts the rows of the join tables of the collections of the given objects. Inverse collections
+     * and collections mapped by a foreign key in the table of the elements are not handled because they
+     * do not have rows on their own.
+     *
+     * @param objects
+     *            The written objects.
+     * @throws SQLException
+     *             If a batch fails.
+     */
+    private void insertCollectionRows(List<Object> objects) throws SQLException {
+        SessionFactoryImplementor lFactory = fSession.getFactory();
+        Map<String, PreparedStatement> lStatements = new LinkedHashMap<String, PreparedStatement>();
+        Map<String, Integer> lNrOfPendingRows = new HashMap<String, Integer>();
+        try {
+            for (Object lObject : objects) {
+                AbstractEntityPersister lPersister = getPersister(lObject);
+                Type[] lTypes = lPersister.getPropertyTypes();
+                Object[] lValues = null;
+                for (int i = 0; i < lTypes.length; i++) {
+                    if (!lTypes[i].isCollectionType()) {
+                        continue;
+                    }
+                    String lRole = ((CollectionType) lTypes[i]).getRole();
+                    AbstractCollectionPersister lCollectionPersister =
+                        (AbstractCollectionPersister) lFactory.getCollectionPersister(lRole);
+                    if (lCollectionPersister.isInverse() || lCollectionPersister.isOneToMany()
+                            || !lCollectionPersister.getElementType().isEntityType()) {
+                        continue;
+                    }
+                    if (lValues == null) {
+                        lValues = lPersister.getPropertyValues(lObject, EntityMode.POJO);
+                    }
+                    if (!(lValues[i] instanceof Collection)) {
+                        continue;
+                    }
+
+                    PreparedStatement lStatement = lStatements.get(lRole);
+                    if (lStatement == null) {
+                        lStatement = fConnection.prepareStatement(createCollectionInsert(lCollectionPersister));
+                        lStatements.put(lRole, lStatement);
+                        lNrOfPendingRows.put(lRole, Integer.valueOf(0));
+                    }
+                    int lPending = lNrOfPendingRows.get(lRole).intValue();
+                    Serializable lOwnerId = lPersister.getIdentifier(lObject, EntityMode.POJO);
+                    int lPosition = 0;
+                    for (Object lElement : (Collection<?>) lValues[i]) {
+                        if ((lElement != null) && (fWrittenObjects.containsKey(lElement)
+                                || (getPersister(lElement).getIdentifier(lElement, EntityMode.POJO) != null))) {
+                            int lIndex = 1;
+                            lCollectionPersister.getKeyType().nullSafeSet(lStatement, lOwnerId, lIndex, fSession);
+                            lIndex += lCollectionPersister.getKeyColumnNames().length;
+                            if (lCollectionPersister.hasIndex()) {
+                                lCollectionPersister.getIndexType().nullSafeSet(lStatement,
+                                        Integer.valueOf(lPosition), lIndex, fSession);
+                                lIndex += lCollectionPersister.getIndexColumnNames().length;
+                            }
+                            setReference(lStatement, (EntityType) lCollectionPersister.getElementType(), lElement, lIndex);
+                            lStatement.addBatch();
+                            fNrOfJoinTableRows++;
+
+                            if (++lPending >= fBatchSize) {
+                                lStatement.executeBatch();
+                                lPending = 0;
+                            }
+                        }
+                        lPosition++;
+                    }
+                    lNrOfPendingRows.put(lRole, Integer.valueOf(lPending));
+                }
+            }
+            for (PreparedStatement lStatement : lStatements.values()) {
+                lStatement.executeBatch();
+            }
+        } finally {
+            for (PreparedStatement lStatement : lStatements.values()) {
+                lStatement.close();
+            }
+        }
+    }
+
+    /**
+     * Creates the insert statement for a row of the join table of a collection.
+     *
+     * @param collectionPersister
+     *            The collection persister.
+     * @return The SQL statement.
+     */
+    private String createCollectionInsert(AbstractCollectionPersister collectionPersister) {
+        List<String> lColumns = new ArrayList<String>();
+        Collections.addAll(lColumns, collectionPersister.getKeyColumnNames());
+        if (collectionPersister.hasIndex()) {
+            Collections.addAll(lColumns, collectionPersister.getIndexColumnNames());
+        }
+        Collections.addAll(lColumns, collectionPersister.getElementColumnNames());
+        return createInsert(collectionPersister.getTableName(), lColumns, new ArrayList<String>(lColumns.size()));
+    }
+
+    /**
+     * Creates an insert statement. Columns without a literal value are set by parameters.
+     *
+     * @param tableName
+     *            The table.
+     * @param columns
+     *            The columns.
+     * @param literals
+     *            The SQL literals of the first columns, the remaining columns are parameters.
+     * @return The SQL statement.
+     */
+    private static String createInsert(String tableName, List<String> columns, List<String> literals) {
+        StringBuilder lColumns = new StringBuilder();
+        StringBuilder lValues = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                lColumns.append(", ");
+                lValues.append(", ");
+            }
+            lColumns.append(columns.get(i));
+            lValues.append((i < literals.size()) ? literals.get(i) : "?");
+        }
+        return "insert into " + tableName + " (" + lColumns + ") values (" + lValues + ")";
+    }
+
+    /**
+     * Returns the entity persister of the object.
+     *
+     * @param object
+     *            The mapped object.
+     * @return The entity persister.
+     */
+    private AbstractEntityPersister getPersister(Object object) {
+        return (AbstractEntityPersister) fSession.getEntityPersister(null, object);
+    }
+
+    /**
+     * Batched insert statement of the rows of one entity persister (i.e., one mapped class).
+     *
+     * @author pinzger
+     */
+    private class InsertStatement {
+
+        /**
+         * The entity persister.
+         */
+        private AbstractEntityPersister fPersister;
+        /**
+         * The JDBC statement.
+         */
+        private PreparedStatement fStatement;
+        /**
+         * Indices of the properties written by the statement.
+         */
+        private List<Integer> fPropertyIndices = new ArrayList<Integer>();
+        /**
+         * Objects whose rows are in the current batch.
+         */
+        private List<Object> fPendingRows = new ArrayList<Object>();
+
+        /**
+         * The constructor. Prepares the statement.
+         *
+         * @param persister
+         *            The entity persister.
+         * @throws SQLException
+         *             If the statement cannot be prepared.
+         */
+        public InsertStatement(AbstractEntityPersister persister) throws SQLException {
+            fPersister = persister;
+
+            List<String> lColumns = new ArrayList<String>();
+            List<String> lLiterals = new ArrayList<String>();
+            String lDiscriminatorColumn = persister.getDiscriminatorColumnName();
+            String lDiscriminatorValue = persister.getDiscriminatorSQLValue();
+            if ((lDiscriminatorColumn != null) && (lDiscriminatorValue != null)
+                    && !"null".equals(lDiscriminatorValue) && !"not null".equals(lDiscriminatorValue)) {
+                lColumns.add(lDiscriminatorColumn);
+                lLiterals.add(lDiscriminatorValue);
+            }
+            Collections.addAll(lColumns, persister.getIdentifierColumnNames());
+
+            boolean[] lInsertability = persister.getPropertyInsertability();
+            Type[] lTypes = persister.getPropertyTypes();
+            for (int i = 0; i < lTypes.length; i++) {
+                String[] lPropertyColumns = persister.getPropertyColumnNames(i);
+                if (lInsertability[i] && !lTypes[i].isCollectionType() && (lPropertyColumns.length > 0)) {
+                    Collections.addAll(lColumns, lPropertyColumns);
+                    fPropertyIndices.add(Integer.valueOf(i));
+                }
+            }
+
+            String lSql = createInsert(persister.getTableName(), lColumns, lLiterals);
+            sLogger.debug("Batch insert statement for " + persister.getEntityName() + ": " + lSql);
+            fStatement = fConnection.prepareStatement(lSql);
+        }
+
+        /**
+         * Adds the row of the object to the current batch.
+         *
+         * @param object
+         *            The object to write.
+         * @throws SQLException
+         *             If a parameter cannot be set.
+         */
+        public void add(Object object) throws SQLException {
+            Object[] lValues = fPersister.getPropertyValues(object, EntityMode.POJO);
+            Type[] lTypes = fPersister.getPropertyTypes();
+
+            int lIndex = 1;
+            fPersister.getIdentifierType().nullSafeSet(fStatement,
+                    fPersister.getIdentifier(object, EntityMode.POJO), lIndex, fSession);
+            lIndex += fPersister.getIdentifierColumnNames().length;
+            Object[] lWrittenReferences = fRecordReferences ? new Object[lValues.length] : null;
+            for (Integer lPropertyIndex : fPropertyIndices) {
+                int i = lPropertyIndex.intValue();
+                Type lType = lTypes[i];
+                if (lType.isEntityType() && ((EntityType) lType).isReferenceToPrimaryKey()) {
+                    Object lReference = resolveReference(object, i, lValues[i], this);
+                    setReference(fStatement, (EntityType) lType, lReference, lIndex);
+                    if (lWrittenReferences != null) {
+                        // deferred references are updated at the end of the step
+                        boolean lDeferred = (lReference == null) && fScheduledObjects.containsKey(lValues[i]);
+                        lWrittenReferences[i] = lDeferred ? lValues[i] : lReference;
+                    }
+                } else {
+                    lType.nullSafeSet(fStatement, lValues[i], lIndex, fSession);
+                }
+                lIndex += fPersister.getPropertyColumnNames(i).length;
+            }
+            fStatement.addBatch();
+            fPendingRows.add(object);
+            fPendingObjects.put(object, this);
+            if (lWrittenReferences != null) {
+                fWrittenReferences.put(object, lWrittenReferences);
+            }
+        }
+
+        /**
+         * Sends the current batch to the database.
+         *
+         * @throws SQLException
+         *             If the batch fails.
+         */
+        public void execute() throws SQLException {
+            if (fPendingRows.isEmpty()) {
+                return;
+            }
+            fStatement.executeBatch();
+            for (Object lObject : fPendingRows) {
+                fPendingObjects.remove(lObject);
+                fWrittenObjects.put(lObject, lObject);
+            }
+            fNrOfInsertedRows += fPendingRows.size();
+            fPendingRows.clear();
+        }
+
+        /**
+         * Returns the number of rows in the current batch.
+         *
+         * @return The number of rows.
+         */
+        public int getNrOfPendingRows() {
+            return fPendingRows.size();
+        }
+
+        /**
+         * Closes the statement.
+         */
+        public void close() {
+            try {
+                fStatement.close();
+            } catch (SQLException se) {
+                sLogger.warn("Error while closing batch insert statement of " + fPersister.getEntityName(), se);
+            }
+        }
+    }
+
+    /**
+     * Reference that has been written as <code>null</code> because the row of the referenced object
+     * has not been written at that time.
+     *
+     * @author pinzger
+     */
+    private static class DeferredReference {
+
+        /**
+         * The referencing object.
+         */
+        private Object fOwner;
+        /**
+         * The index of the reference property.
+         */
+        private int fPropertyIndex;
+        /**
+         * The referenced object.
+         */
+        private Object fReferencedObject;
+
+        /**
+         * The constructor.
+         *
+         * @param owner
+         *            The referencing object.
+         * @param propertyIndex
+         *            The index of the reference property.
+         * @param referencedObject
+         *            The referenced object.
+         */
+        public DeferredReference(Object owner, int propertyIndex, Object referencedObject) {
+            fOwner = owner;
+            fPropertyIndex = propertyIndex;
+            fReferencedObject = referencedObject;
+        }
+
+        /**
+         * Returns the referencing object.
+         *
+         * @return The referencing object.
+         */
+        public Object getOwner() {
+            return fOwner;
+        }
+
+        /**
+         * Returns the index of the reference property.
+         *
+         * @return The property index.
+         */
+        public int getPropertyIndex() {
+            return fPropertyIndex;
+        }
+
+        /**
+         * Returns the referenced object.
+         *
+         * @return The referenced object.
+         */
+        public Object getReferencedObject() {
+            return fReferencedObject;
+        }
+    }
+}
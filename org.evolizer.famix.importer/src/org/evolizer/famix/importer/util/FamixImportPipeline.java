@@ -0,0 +1,640 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.log4j.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.evolizer.core.exceptions.EvolizerException;
+import org.evolizer.core.exceptions.EvolizerRuntimeException;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.famix.importer.FamixImporterPlugin;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
+import org.hibernate.HibernateException;
+import org.hibernate.jdbc.Work;
+
+/**
+ * Stores a FAMIX model while it is being parsed. The parser passes the partial model of each parsed compilation
+ * unit after merging it, and the entities that are complete are sent through a bounded queue to a background
+ * writer. The writer stores them with {@link FamixBulkWriter} in one transaction, hence, parsing and writing to
+ * the database overlap. The invocations that are resolved across compilation units, the referenced entities that
+ * are not declared by a parsed compilation unit, and the rows of the join tables are written when the import is
+ * completed.
+ *
+ * An entity is complete once it, or one of its parents below the package, has been declared (i.e., has a source
+ * anchor). Packages are complete from the start. The children of a complete entity may still change, but they are
+ * stored only at the end. References of stored entities that change afterwards (e.g., by the resolution of the
+ * unresolved invocations) are updated at the end, too.
+ *
+ * The queue bounds the number of chunks waiting for the writer. The parser blocks when the writer falls behind,
+ * such that not more than a few chunks of entities are waiting to be written at any time.
+ *
+ * @author pinzger
+ */
+public class FamixImportPipeline {
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(FamixImportPipeline.class.getName());
+
+    /**
+     * Default number of chunks waiting for the writer.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    /**
+     * Default number of entities and associations per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = FamixBulkWriter.DEFAULT_BATCH_SIZE;
+
+    /**
+     * URL of the database.
+     */
+    private String fDBUrl;
+    /**
+     * Number of rows per JDBC batch.
+     */
+    private int fJdbcBatchSize;
+    /**
+     * Maximum number of chunks waiting for the writer.
+     */
+    private int fQueueCapacity = DEFAULT_QUEUE_CAPACITY;
+    /**
+     * Number of entities and associations per chunk.
+     */
+    private int fChunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * The model being parsed.
+     */
+    private FamixModel fModel;
+    /**
+     * The chunks waiting for the writer.
+     */
+    private BlockingQueue<Chunk> fQueue;
+    /**
+     * The thread of the writer.
+     */
+    private Thread fWriterThread;
+    /**
+     * The status of the writer.
+     */
+    private volatile IStatus fStatus = Status.OK_STATUS;
+
+    /**
+     * The entities sent to the writer.
+     */
+    private Map<AbstractFamixEntity, AbstractFamixEntity> fStreamedEntities;
+    /**
+     * The complete entities of the next chunk.
+     */
+    private List<AbstractFamixEntity> fPendingEntities;
+    /**
+     * The associations of the next chunk.
+     */
+    private List<FamixAssociation> fPendingAssociations;
+    private int fNrOfChunks;
+    private int fNrOfStreamedAssociations;
+    /**
+     * Timings and counts of the writer.
+     */
+    private ImportStatistics fStatistics = new ImportStatistics();
+
+    /**
+     * The constructor.
+     *
+     * @param dbUrl The URL of the database.
+     * @param jdbcBatchSize The number of rows per JDBC batch, values smaller than 1 select the default.
+     */
+    public FamixImportPipeline(String dbUrl, int jdbcBatchSize) {
+        fDBUrl = dbUrl;
+        fJdbcBatchSize = jdbcBatchSize;
+    }
+
+    /**
+     * Starts the writer. Existing models with the name of the given model are deleted in the same
+     * transaction when the import is completed, such that they are kept if the import fails or is
+     * canceled.
+     *
+     * @param model The model being parsed.
+     */
+    public void start(FamixModel model) {
+        fModel = model;
+        fQueue = new ArrayBlockingQueue<Chunk>(fQueueCapacity);
+        fStreamedEntities = new IdentityHashMap<AbstractFamixEntity, AbstractFamixEntity>();
+        fPendingEntities = new ArrayList<AbstractFamixEntity>();
+        fPendingAssociations = new ArrayList<FamixAssociation>();
+        fNrOfChunks = 0;
+        fNrOfStreamedAssociations = 0;
+        fStatus = Status.OK_STATUS;
+
+        fWriterThread = new Thread(new Writer(), "FAMIX model writer");
+        fWriterThread.start();
+    }
+
+    /**
+     * Returns true, if the writer has been started.
+     *
+     * @return True, if the writer has been started.
+     */
+    public boolean isStarted() {
+        return fWriterThread != null;
+    }
+
+    /**
+     * Sends the complete entities of the given partial model and the associations between streamed entities to the
+     * writer. Must be called after the partial model has been merged with the given merger. The references of the
+     * streamed entities are replaced with the instances contained by the merged model. Blocks while the queue is full.
+     *
+     * @param partialModel The merged partial model.
+     * @param merger The merger of the partial models.
+     */
+    public void stream(FamixModel partialModel, FamixModelMerger merger) {
+        for (AbstractFamixEntity lEntity : partialModel.getFamixEntities()) {
+            AbstractFamixEntity lCanonicalEntity = merger.getCanonicalEntity(lEntity);
+            if (!fStreamedEntities.containsKey(lCanonicalEntity) && isComplete(lCanonicalEntity, merger)) {
+                merger.relink(lCanonicalEntity);
+                fStreamedEntities.put(lCanonicalEntity, lCanonicalEntity);
+                fPendingEntities.add(lCanonicalEntity);
+            }
+        }
+        for (FamixAssociation lAssociation : partialModel.getFamixAssociations()) {
+            if (fStreamedEntities.containsKey(lAssociation.getFrom()) && fStreamedEntities.containsKey(lAssociation.getTo())
+                    && isContained(merger.getTargetModel(), lAssociation)) {
+                fPendingAssociations.add(lAssociation);
+            }
+        }
+
+        if (fPendingEntities.size() + fPendingAssociations.size() >= fChunkSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Waits until the writer has written all entities and associations streamed so far. Afterwards the
+     * streamed entities can be changed, e.g., when the unresolved invocations are resolved.
+     */
+    public void awaitWritten() {
+        flush();
+        CountDownLatch lLatch = new CountDownLatch(1);
+        if (put(new Chunk(lLatch))) {
+            try {
+                lLatch.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes the rest of the model and commits the transaction. Must be called after the unresolved invocations
+     * have been added to the model. Blocks until the writer has finished.
+     *
+     * @param monitor The progress monitor of the final write.
+     * @return The status of the writer.
+     */
+    public IStatus complete(IProgressMonitor monitor) {
+        if (!isStarted()) {
+            return new Status(IStatus.ERROR, FamixImporterPlugin.PLUGIN_ID, "The import pipeline has not been started");
+        }
+        flush();
+        fStreamedEntities.clear();
+        if (put(new Chunk(Chunk.FINISH, monitor))) {
+            join();
+        }
+        return fStatus;
+    }
+
+    /**
+     * Rolls back the transaction of the writer, e.g., when the parsing has been canceled or has failed.
+     * Blocks until the writer has finished. Does nothing if the writer has already finished.
+     */
+    public void cancel() {
+        if (!isStarted() || !fWriterThread.isAlive()) {
+            return;
+        }
+        fPendingEntities.clear();
+        fPendingAssociations.clear();
+        fStreamedEntities.clear();
+        if (put(new Chunk(Chunk.ABORT, null))) {
+            join();
+        }
+    }
+
+    /**
+     * Returns the status of the writer.
+     *
+     * @return The status, OK if all chunks have been written so far.
+     */
+    public IStatus getStatus() {
+        return fStatus;
+    }
+
+    /**
+     * Sets the maximum number of chunks waiting for the writer. Must be set before starting the writer.
+     *
+     * @param queueCapacity The queue capacity, values smaller than 1 select the default.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        fQueueCapacity = (queueCapacity < 1) ? DEFAULT_QUEUE_CAPACITY : queueCapacity;
+    }
+
+    /**
+     * Sets the number of entities and associations per chunk.
+     *
+     * @param chunkSize The chunk size, values smaller than 1 select the default.
+     */
+    public void setChunkSize(int chunkSize) {
+        fChunkSize = (chunkSize < 1) ? DEFAULT_CHUNK_SIZE : chunkSize;
+    }
+
+    /**
+     * Sets the statistics to which the time and the number of rows of the writer are recorded. The
+     * store phase covers the whole lifetime of the writer, which overlaps with parsing.
+     *
+     * @param statistics The import statistics.
+     */
+    public void setStatistics(ImportStatistics statistics) {
+        fStatistics = statistics;
+    }
+
+    /**
+     * Returns the number of chunks sent to the writer.
+     *
+     * @return The number of chunks.
+     */
+    public int getNrOfChunks() {
+        return fNrOfChunks;
+    }
+
+    /**
+     * Returns the number of associations sent to the writer while parsing.
+     *
+     * @return The number of streamed associations.
+     */
+    public int getNrOfStreamedAssociations() {
+        return fNrOfStreamedAssociations;
+    }
+
+    /**
+     * Returns true, if the entity or one of its parents below the package has been declared. Packages are
+     * always complete.
+     *
+     * @param entity The FAMIX entity of the merged model.
+     * @param merger The merger of the partial models.
+     * @return True, if the entity is complete.
+     */
+    private boolean isComplete(AbstractFamixEntity entity, FamixModelMerger merger) {
+        if (entity instanceof FamixPackage) {
+            return true;
+        }
+        AbstractFamixEntity lEntity = entity;
+        while ((lEntity != null) && !(lEntity instanceof FamixPackage)) {
+            if (lEntity.getSourceAnchor() != null) {
+                return true;
+            }
+            AbstractFamixEntity lParent = lEntity.getParent();
+            lEntity = ((lParent != null) && (lParent != lEntity)) ? merger.getCanonicalEntity(lParent) : null;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true, if the given instance of the association has been added to the model. Equal
+     * associations of later partial models are not added.
+     *
+     * @param model The merged model.
+     * @param association The FAMIX association.
+     * @return True, if the model contains the association instance.
+     */
+    private boolean isContained(FamixModel model, FamixAssociation association) {
+        for (FamixAssociation lAssociation : model.getAssociations(association.getFrom())) {
+            if (lAssociation == association) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends the pending entities and associations to the writer.
+     */
+    private void flush() {
+        if (fPendingEntities.isEmpty() && fPendingAssociations.isEmpty()) {
+            return;
+        }
+        Chunk lChunk = new Chunk(fPendingEntities, fPendingAssociations);
+        fNrOfStreamedAssociations += fPendingAssociations.size();
+        fPendingEntities = new ArrayList<AbstractFamixEntity>();
+        fPendingAssociations = new ArrayList<FamixAssociation>();
+        if (put(lChunk)) {
+            fNrOfChunks++;
+        }
+    }
+
+    /**
+     * Puts the chunk into the queue, waits while the queue is full.
+     *
+     * @param chunk The chunk.
+     * @return True, if the chunk has been queued, false if the thread has been interrupted.
+     */
+    private boolean put(Chunk chunk) {
+        try {
+            fQueue.put(chunk);
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits for the writer to finish.
+     */
+    private void join() {
+        try {
+            fWriterThread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sets the status of the writer after a failed write.
+     *
+     * @param message The message.
+     * @param throwable The cause.
+     */
+    private void fail(String message, Throwable throwable) {
+        sLogger.error(message, throwable);
+        fStatus = new Status(IStatus.ERROR, FamixImporterPlugin.PLUGIN_ID, IStatus.ERROR, message, throwable);
+    }
+
+    /**
+     * Writes the chunks taken from the queue in one transaction. After a failure the chunks are
+     * taken from the queue but not written, such that the parser does not block.
+     *
+     * @author pinzger
+     */
+    private class Writer implements Runnable {
+        /**
+         * The session of the writer thread.
+         */
+        private IEvolizerSession fSession;
+        /**
+         * The bulk writer.
+         */
+        private FamixBulkWriter fBulkWriter;
+        /**
+         * The source blobs by hash resolved so far.
+         */
+        private Map<String, SourceBlob> fBlobs = new HashMap<String, SourceBlob>();
+
+        /**
+         * {@inheritDoc}
+         */
+        public void run() {
+            long lStartTime = System.currentTimeMillis();
+            long lStartWallTime = System.nanoTime();
+            long lStartCpuTime = ImportStatistics.getCurrentThreadCpuTime();
+            int lNrOfChunks = 0;
+            // the IDs assigned by the bulk writer are unique only without other writers until the commit
+            Lock lStoreLock = FamixBulkWriter.getStoreLock(fDBUrl).writeLock();
+            lStoreLock.lock();
+            // true while the transaction is open
+            boolean lActive = begin();
+            try {
+                Chunk lChunk = fQueue.take();
+                while ((lChunk.getKind() == Chunk.ENTITIES) || (lChunk.getKind() == Chunk.BARRIER)) {
+                    if (lChunk.getKind() == Chunk.BARRIER) {
+                        lChunk.getBarrier().countDown();
+                    } else if (lActive) {
+                        lActive = write(lChunk);
+                        lNrOfChunks++;
+                    }
+                    lChunk = fQueue.take();
+                }
+
+                if (lActive && (lChunk.getKind() == Chunk.FINISH)) {
+                    lActive = false;
+                    finish(lChunk.getMonitor());
+                } else if (lActive) {
+                    sLogger.info("Storing of FAMIX model " + fModel.getName() + " canceled");
+                    fStatus = Status.CANCEL_STATUS;
+                }
+            } catch (InterruptedException ie) {
+                fStatus = Status.CANCEL_STATUS;
+            } finally {
+                if (lActive) {
+                    rollback();
+                }
+                lStoreLock.unlock();
+            }
+            fStatistics.addPhaseTime(ImportStatistics.PHASE_STORE, System.nanoTime() - lStartWallTime,
+                    ImportStatistics.getCurrentThreadCpuTime() - lStartCpuTime);
+            sLogger.info("Writer of FAMIX model " + fModel.getName() + " finished in "
+                    + (System.currentTimeMillis() - lStartTime) + " ms (" + lNrOfChunks + " chunks written while parsing)");
+        }
+
+        /**
+         * Updates the schema and starts the transaction. Fails while another thread has a writing unit of
+         * work open on the database, since the bulk writer must be the only writer until the commit.
+         *
+         * @return True, if the transaction has been started.
+         */
+        private boolean begin() {
+            if (EvolizerSessionHandler.getHandler().hasOtherWritingUnitOfWork(fDBUrl)) {
+                fail("Another unit of work is writing to " + fDBUrl + ": Cannot store FAMIX model " + fModel.getName()
+                        + " while parsing", null);
+                return false;
+            }
+            try {
+                // always perform a schema update before storing the model
+                fSession = EvolizerSessionHandler.getHandler().getCurrentSession(fDBUrl);
+                if (fSession.isOpen()) {
+                    EvolizerSessionHandler.getHandler().updateSchema(EvolizerSessionHandler.getHandler().getProperties(fDBUrl));
+                }
+                fSession.startTransaction();
+                fBulkWriter = new FamixBulkWriter(fSession.getHibernateSession(), fJdbcBatchSize);
+                fBulkWriter.begin();
+                return true;
+            } catch (EvolizerException ee) {
+                fail("Error preparing the database for storing FAMIX model " + fModel.getName(), ee);
+            } catch (EvolizerRuntimeException ere) {
+                fail("Error preparing the database for storing FAMIX model " + fModel.getName(), ere);
+            }
+            return false;
+        }
+
+        /**
+         * Writes the entities and associations of the chunk. The transaction is rolled back if the
+         * write fails.
+         *
+         * @param chunk The chunk.
+         * @return True, if the chunk has been written.
+         */
+        private boolean write(final Chunk chunk) {
+            try {
+                DAOModel.resolveSourceBlobs(fSession.getHibernateSession(), chunk.getEntities(), fBlobs);
+                fSession.getHibernateSession().doWork(new Work() {
+                    public void execute(Connection connection) throws SQLException {
+                        fBulkWriter.write(chunk.getEntities(), chunk.getAssociations(), connection);
+                    }
+                });
+                return true;
+            } catch (HibernateException he) {
+                fail("Error storing FAMIX entities of model " + fModel.getName(), he);
+            }
+            rollback();
+            return false;
+        }
+
+        /**
+         * Deletes the existing models with the name of the model, writes the rest of the model, and
+         * commits the transaction. The transaction is rolled back if the write fails, hence, the
+         * existing models are only replaced if the model has been stored completely.
+         *
+         * @param monitor The progress monitor.
+         * @return True, if the model has been stored.
+         */
+        private boolean finish(final IProgressMonitor monitor) {
+            try {
+                DAOModel lDAOModel = new DAOModel(fDBUrl, fModel);
+                lDAOModel.deleteStoredModels(fSession);
+                DAOModel.resolveSourceBlobs(fSession.getHibernateSession(), fModel.getFamixEntities(), fBlobs);
+                fSession.getHibernateSession().doWork(new Work() {
+                    public void execute(Connection connection) throws SQLException {
+                        fBulkWriter.finish(fModel, connection, monitor);
+                    }
+                });
+                fSession.endTransaction();
+                lDAOModel.evictDeletedModels();
+                fStatistics.recordStoredRows(fBulkWriter.getNrOfRows(), fBulkWriter.getElapsedTime() * 1000000L);
+                sLogger.info("Famix-FamixModel storage complete");
+                return true;
+            } catch (HibernateException he) {
+                fail("Error storing FAMIX model " + fModel.getName(), he);
+            } catch (EvolizerRuntimeException ere) {
+                fail("Error storing FAMIX model " + fModel.getName(), ere);
+            }
+            rollback();
+            return false;
+        }
+
+        /**
+         * Rolls back the transaction and resets the IDs assigned by the bulk writer.
+         */
+        private void rollback() {
+            try {
+                fSession.rollbackTransaction();
+            } catch (EvolizerRuntimeException ere) {
+                sLogger.error("Error rolling back the storing of FAMIX model " + fModel.getName(), ere);
+            } catch (HibernateException he) {
+                sLogger.error("Error rolling back the storing of FAMIX model " + fModel.getName(), he);
+            }
+            fBulkWriter.abort();
+        }
+    }
+
+    /**
+     * Unit of work of the writer: the entities and associations to write, a barrier, or the end of the import.
+     *
+     * @author pinzger
+     */
+    private static class Chunk {
+        static final int ENTITIES = 0;
+        static final int BARRIER = 1;
+        static final int FINISH = 2;
+        static final int ABORT = 3;
+
+        private int fKind;
+        private List<AbstractFamixEntity> fEntities;
+        private List<FamixAssociation> fAssociations;
+        private CountDownLatch fBarrier;
+        private IProgressMonitor fMonitor;
+
+        /**
+         * Creates a chunk of entities and associations.
+         *
+         * @param entities The complete entities.
+         * @param associations The associations between streamed entities.
+         */
+        public Chunk(List<AbstractFamixEntity> entities, List<FamixAssociation> associations) {
+            fKind = ENTITIES;
+            fEntities = entities;
+            fAssociations = associations;
+        }
+
+        /**
+         * Creates a barrier that is released when the writer has written the preceding chunks.
+         *
+         * @param barrier The latch to count down.
+         */
+        public Chunk(CountDownLatch barrier) {
+            fKind = BARRIER;
+            fBarrier = barrier;
+        }
+
+        /**
+         * Creates the end of the import.
+         *
+         * @param kind Either {@link #FINISH} or {@link #ABORT}.
+         * @param monitor The progress monitor of the final write, may be null.
+         */
+        public Chunk(int kind, IProgressMonitor monitor) {
+            fKind = kind;
+            fMonitor = monitor;
+        }
+
+        public int getKind() {
+            return fKind;
+        }
+
+        public List<AbstractFamixEntity> getEntities() {
+            return fEntities;
+        }
+
+        public List<FamixAssociation> getAssociations() {
+            return fAssociations;
+        }
+
+        public CountDownLatch getBarrier() {
+            return fBarrier;
+        }
+
+        public IProgressMonitor getMonitor() {
+            return fMonitor;
+        }
+    }
+}
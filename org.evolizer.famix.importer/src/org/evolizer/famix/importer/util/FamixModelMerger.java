@@ -0,0 +1,226 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.evolizer.famix.importer.FamixImporterPlugin;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.AbstractFamixVariable;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+
+/**
+ * Merges partial FAMIX models into a target model. Partial models are created by
+ * parsing disjoint sets of compilation units with separate crawlers (e.g., in parallel).
+ * The same entity (same unique name) can therefore be contained in several partial models,
+ * once as declared entity and several times as referenced (callee, data type) entity.
+ *
+ * The first instance added to the target model is kept (as in the sequential import). The
+ * declaration information (parent, modifiers, source anchor, and source content) of later
+ * instances is copied into it. After all partial models have been merged {@link #relink()}
+ * replaces the references between entities with the instances contained by the target model.
+ *
+ * @author pinzger
+ */
+public class FamixModelMerger {
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(FamixModelMerger.class.getName());
+
+    /**
+     * The model into which partial models are merged.
+     */
+    private FamixModel fTargetModel;
+
+    /**
+     * The constructor.
+     *
+     * @param targetModel The model into which partial models are merged.
+     */
+    public FamixModelMerger(FamixModel targetModel) {
+        fTargetModel = targetModel;
+    }
+
+    /**
+     * Merges the entities and associations of the given partial model into the target model.
+     * Partial models must be merged in a fixed order to obtain a deterministic result.
+     *
+     * @param partialModel The partial model to merge.
+     */
+    public void merge(FamixModel partialModel) {
+        sLogger.debug("Merging partial model with " + partialModel.getFamixEntities().size() + " entities and "
+                + partialModel.getFamixAssociations().size() + " associations");
+
+        for (AbstractFamixEntity lEntity : partialModel.getFamixEntities()) {
+            AbstractFamixEntity lCanonicalEntity = fTargetModel.addElement(lEntity);
+            if (lCanonicalEntity != lEntity) {
+                absorb(lCanonicalEntity, lEntity);
+            }
+        }
+        for (FamixAssociation lAssociation : partialModel.getFamixAssociations()) {
+            fTargetModel.addRelation(lAssociation);
+        }
+    }
+
+    /**
+     * Replaces the parent, child, and data type references of all entities of the target model
+     * with the instances contained by the target model. Must be called once after the last
+     * partial model has been merged.
+     */
+    public void relink() {
+        for (AbstractFamixEntity lEntity : fTargetModel.getFamixEntities()) {
+            relink(lEntity);
+        }
+    }
+
+    /**
+     * Replaces the parent, child, and data type references of the given entity with the instances
+     * contained by the target model. Entities added by later partial models are not yet contained
+     * and remain referenced as they are.
+     *
+     * @param entity The FAMIX entity of the target model.
+     */
+    public void relink(AbstractFamixEntity entity) {
+        if (entity.getParent() != null) {
+            entity.setParent(getCanonicalEntity(entity.getParent()));
+        }
+
+        if (entity instanceof FamixPackage) {
+            relink(((FamixPackage) entity).getClasses());
+        } else if (entity instanceof FamixClass) {
+            FamixClass lClass = (FamixClass) entity;
+            relink(lClass.getMethods());
+            relink(lClass.getAttributes());
+            relink(lClass.getInnerClasses());
+        } else if (entity instanceof FamixMethod) {
+            FamixMethod lMethod = (FamixMethod) entity;
+            relink(lMethod.getParameters());
+            relink(lMethod.getLocalVariables());
+            relink(lMethod.getAnonymClasses());
+            if (lMethod.getDeclaredReturnClass() != null) {
+                lMethod.setDeclaredReturnClass(getCanonicalEntity(lMethod.getDeclaredReturnClass()));
+            }
+        } else if (entity instanceof AbstractFamixVariable) {
+            AbstractFamixVariable lVariable = (AbstractFamixVariable) entity;
+            if (lVariable.getDeclaredClass() != null) {
+                lVariable.setDeclaredClass(getCanonicalEntity(lVariable.getDeclaredClass()));
+            }
+        }
+    }
+
+    /**
+     * Returns the instance of the given entity contained by the target model. If the
+     * target model does not contain the entity, the given entity is returned.
+     *
+     * @param <T> The type of the FAMIX entity.
+     * @param entity The FAMIX entity.
+     * @return The corresponding FAMIX entity of the target model.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends AbstractFamixEntity> T getCanonicalEntity(T entity) {
+        AbstractFamixEntity lCanonicalEntity = fTargetModel.getElement(entity);
+        return (lCanonicalEntity != null) ? (T) lCanonicalEntity : entity;
+    }
+
+    /**
+     * Returns the target model.
+     *
+     * @return The target model.
+     */
+    public FamixModel getTargetModel() {
+        return fTargetModel;
+    }
+
+    /**
+     * Copies the declaration information and children of the duplicate entity into the canonical entity.
+     * The declaration information is only copied if the canonical entity has not been declared, yet.
+     *
+     * @param canonicalEntity The entity contained by the target model.
+     * @param duplicateEntity The entity with the same unique name from a partial model.
+     */
+    private void absorb(AbstractFamixEntity canonicalEntity, AbstractFamixEntity duplicateEntity) {
+        int lInterfaceModifier = duplicateEntity.getModifiers() & AbstractFamixEntity.MODIFIER_INTERFACE;
+        if ((canonicalEntity.getSourceAnchor() == null) && (duplicateEntity.getSourceAnchor() != null)) {
+            lInterfaceModifier |= canonicalEntity.getModifiers() & AbstractFamixEntity.MODIFIER_INTERFACE;
+            canonicalEntity.setModifiers(duplicateEntity.getModifiers() | lInterfaceModifier);
+            canonicalEntity.setSourceAnchor(duplicateEntity.getSourceAnchor());
+            if (duplicateEntity.getParent() != null) {
+                canonicalEntity.setParent(duplicateEntity.getParent());
+            }
+        } else {
+            canonicalEntity.setModifiers(canonicalEntity.getModifiers() | lInterfaceModifier);
+        }
+        if ((canonicalEntity.getParent() == null) && (duplicateEntity.getParent() != null)) {
+            canonicalEntity.setParent(duplicateEntity.getParent());
+        }
+        if (!canonicalEntity.getContent().hasSource() && duplicateEntity.getContent().hasSource()) {
+            canonicalEntity.setContent(duplicateEntity.getContent());
+        }
+
+        if (canonicalEntity instanceof FamixPackage) {
+            ((FamixPackage) canonicalEntity).getClasses().addAll(((FamixPackage) duplicateEntity).getClasses());
+        } else if (canonicalEntity instanceof FamixClass) {
+            FamixClass lCanonicalClass = (FamixClass) canonicalEntity;
+            FamixClass lDuplicateClass = (FamixClass) duplicateEntity;
+            lCanonicalClass.getMethods().addAll(lDuplicateClass.getMethods());
+            lCanonicalClass.getAttributes().addAll(lDuplicateClass.getAttributes());
+            lCanonicalClass.getInnerClasses().addAll(lDuplicateClass.getInnerClasses());
+        } else if (canonicalEntity instanceof FamixMethod) {
+            FamixMethod lCanonicalMethod = (FamixMethod) canonicalEntity;
+            FamixMethod lDuplicateMethod = (FamixMethod) duplicateEntity;
+            if (lCanonicalMethod.getParameters().isEmpty()) {
+                lCanonicalMethod.getParameters().addAll(lDuplicateMethod.getParameters());
+            }
+            lCanonicalMethod.getLocalVariables().addAll(lDuplicateMethod.getLocalVariables());
+            lCanonicalMethod.getAnonymClasses().addAll(lDuplicateMethod.getAnonymClasses());
+            if (lCanonicalMethod.getDeclaredReturnClass() == null) {
+                lCanonicalMethod.setDeclaredReturnClass(lDuplicateMethod.getDeclaredReturnClass());
+            }
+        } else if (canonicalEntity instanceof AbstractFamixVariable) {
+            AbstractFamixVariable lCanonicalVariable = (AbstractFamixVariable) canonicalEntity;
+            if (lCanonicalVariable.getDeclaredClass() == null) {
+                lCanonicalVariable.setDeclaredClass(((AbstractFamixVariable) duplicateEntity).getDeclaredClass());
+            }
+        }
+    }
+
+    /**
+     * Replaces the entities of the given collection with the instances contained by the target model.
+     * The order of the entities is preserved.
+     *
+     * @param <T> The type of the FAMIX entities.
+     * @param entities The collection of FAMIX entities.
+     */
+    private <T extends AbstractFamixEntity> void relink(Collection<T> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        List<T> lCanonicalEntities = new ArrayList<T>(entities.size());
+        for (T lEntity : entities) {
+            lCanonicalEntities.add(getCanonicalEntity(lEntity));
+        }
+        entities.clear();
+        entities.addAll(lCanonicalEntities);
+    }
+}
@@ -0,0 +1,1025 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.log4j.Logger;
+import org.evolizer.famix.importer.ASTCrawler;
+import org.evolizer.famix.importer.FamixImporterPlugin;
+import org.evolizer.famix.importer.unresolved.UnresolvedAnonymousClassInstanceCreationInvocation;
+import org.evolizer.famix.importer.unresolved.UnresolvedClassInstanceCreationInvocation;
+import org.evolizer.famix.importer.unresolved.UnresolvedMethodInvocation;
+import org.evolizer.famix.importer.unresolved.UnresolvedSuperConstructorInvocation;
+import org.evolizer.famix.importer.unresolved.UnresolvedSuperMethodInvocation;
+import org.evolizer.famix.importer.unresolved.UnresolvedThisInvocation;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.AbstractFamixGeneralization;
+import org.evolizer.famix.model.entities.AbstractFamixObject;
+import org.evolizer.famix.model.entities.AbstractFamixVariable;
+import org.evolizer.famix.model.entities.FamixAccess;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixAttribute;
+import org.evolizer.famix.model.entities.FamixCastTo;
+import org.evolizer.famix.model.entities.FamixCheckInstanceOf;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixInheritance;
+import org.evolizer.famix.model.entities.FamixInvocation;
+import org.evolizer.famix.model.entities.FamixLocalVariable;
+import org.evolizer.famix.model.entities.FamixMethod;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.entities.FamixParameter;
+import org.evolizer.famix.model.entities.FamixSubtyping;
+import org.evolizer.famix.model.entities.SourceAnchor;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
+
+/**
+ * On-disk cache of the FAMIX entities and associations extracted from single compilation units. The partial model of
+ * a compilation unit is stored under the hash of its source code and of the classpath it has been parsed with (see
+ * {@link #computeHash(String, String)}) in a compact, deflated binary form, such that re-importing an unchanged file
+ * replays the cached partial model instead of parsing it again.
+ *
+ * The result of parsing a file also depends on the declarations of the files it references (e.g., the callee of an
+ * invocation is determined by the bindings). The cache therefore keeps an index of the last hash of each compilation
+ * unit, which is used to compute the declarations changed since the last import with
+ * {@link #getChangedDeclarations(FamixModel, FamixModel)}. Cached partial models referencing a changed declaration must
+ * be parsed again.
+ *
+ * The unresolved invocations of a compilation unit are stored with its partial model in the state they have after
+ * being detached from the AST, i.e., with the resolved receiver and argument types. Replaying the entry restores them,
+ * such that they are resolved against the complete model as if the compilation unit had been parsed. Entries of
+ * compilation units that are not indexed anymore are removed with {@link #prune()}.
+ *
+ * @author pinzger
+ */
+public class FamixParseCache {
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(FamixParseCache.class.getName());
+
+    /**
+     * Version of the binary format, entries of other versions are ignored.
+     */
+    private static final int FORMAT_VERSION = 2;
+    /**
+     * Extension of the files containing the partial models.
+     */
+    private static final String ENTRY_EXTENSION = ".famix";
+    /**
+     * Name of the file containing the index of the compilation units.
+     */
+    private static final String INDEX_FILE = "index.properties";
+    /**
+     * Flag of entries that cannot be replayed.
+     */
+    private static final int FLAG_NOT_REPLAYABLE = 1;
+    /**
+     * Flag of top-level classes whose content is the source code of the compilation unit.
+     */
+    private static final int FLAG_HAS_SOURCE = 1;
+    /**
+     * Flag of entities that are referenced but not contained by the partial model.
+     */
+    private static final int FLAG_NOT_IN_MODEL = 2;
+    /**
+     * The FAMIX entity types in the order of their type codes.
+     */
+    private static final Class<?>[] ENTITY_TYPES = {FamixPackage.class, FamixClass.class, FamixMethod.class,
+            FamixAttribute.class, FamixParameter.class, FamixLocalVariable.class};
+    /**
+     * The FAMIX association types in the order of their type codes.
+     */
+    private static final Class<?>[] ASSOCIATION_TYPES = {FamixAssociation.class, FamixInvocation.class,
+            FamixAccess.class, FamixInheritance.class, FamixSubtyping.class, FamixCastTo.class,
+            FamixCheckInstanceOf.class};
+    /**
+     * The unresolved invocation types in the order of their type codes.
+     */
+    private static final Class<?>[] UNRESOLVED_INVOCATION_TYPES = {UnresolvedMethodInvocation.class,
+            UnresolvedClassInstanceCreationInvocation.class, UnresolvedAnonymousClassInstanceCreationInvocation.class,
+            UnresolvedSuperConstructorInvocation.class, UnresolvedSuperMethodInvocation.class,
+            UnresolvedThisInvocation.class};
+
+    /**
+     * The directory containing the cache files.
+     */
+    private File fDirectory;
+    /**
+     * The hash of the last parsed version of each compilation unit.
+     */
+    private Properties fIndex;
+    private int fNrOfHits;
+    private int fNrOfMisses;
+    private int fNrOfStoredEntries;
+    private long fNrOfBytesRead;
+    private long fNrOfBytesWritten;
+
+    /**
+     * The constructor.
+     *
+     * @param directory The directory containing the cache files, created if it does not exist.
+     */
+    public FamixParseCache(File directory) {
+        fDirectory = directory;
+        if (!fDirectory.isDirectory() && !fDirectory.mkdirs()) {
+            sLogger.error("Could not create parse cache directory " + fDirectory);
+        }
+        fIndex = new Properties();
+        File lIndexFile = new File(fDirectory, INDEX_FILE);
+        if (lIndexFile.isFile()) {
+            InputStream lIn = null;
+            try {
+                lIn = new BufferedInputStream(new FileInputStream(lIndexFile));
+                fIndex.load(lIn);
+            } catch (IOException ioe) {
+                sLogger.warn("Could not read parse cache index " + lIndexFile + ": " + ioe.getMessage());
+            } finally {
+                close(lIn);
+            }
+        }
+    }
+
+    /**
+     * Returns the hash under which the partial model of a compilation unit is cached. Besides the source code it
+     * covers the classpath, because the bindings and, hence, the extracted entities depend on the libraries and
+     * compiler options of the project.
+     *
+     * @param source The source code of the compilation unit.
+     * @param classpath A description of the classpath and compiler options the compilation unit is parsed with.
+     * @return The hash.
+     */
+    public static String computeHash(String source, String classpath) {
+        return SourceBlob.computeHash(classpath + '\n' + source);
+    }
+
+    /**
+     * Returns the cached partial model of the compilation unit with the given hash. The contents of the top-level
+     * classes refer to the given source blob. The cached unresolved invocations are added to the given table and
+     * refer to the given crawler.
+     *
+     * @param hash The hash of the compilation unit.
+     * @param modelName The name of the partial model.
+     * @param created The creation date of the partial model.
+     * @param source The source blob of the compilation unit.
+     * @param crawler The crawler to which the unresolved invocations refer.
+     * @param unresolvedCalls The table to which the unresolved invocations are added.
+     * @return The partial model, or <code>null</code> if the compilation unit is not cached or cannot be replayed.
+     */
+    public FamixModel load(String hash, String modelName, Date created, SourceBlob source, ASTCrawler crawler,
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) {
+        FamixModel lPartialModel = read(hash, modelName, created, source, crawler, unresolvedCalls);
+        if (lPartialModel != null) {
+            fNrOfHits++;
+        } else {
+            fNrOfMisses++;
+        }
+        return lPartialModel;
+    }
+
+    /**
+     * Returns the cached partial model of the compilation unit with the given hash including partial models that
+     * cannot be replayed, without its unresolved invocations. Used to determine the declarations of the previous
+     * version of a compilation unit.
+     *
+     * @param hash The hash of the compilation unit, may be <code>null</code>.
+     * @return The partial model, or <code>null</code> if the compilation unit is not cached.
+     */
+    public FamixModel loadDeclarations(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        return read(hash, hash, new Date(), null, null, null);
+    }
+
+    /**
+     * Stores the partial model and the unresolved invocations of the compilation unit with the given hash. Partial
+     * models with invocations that are still attached to the AST are stored for computing the changed declarations
+     * only and are not replayed.
+     *
+     * @param hash The hash of the compilation unit.
+     * @param partialModel The partial model extracted from the compilation unit.
+     * @param unresolvedCalls The unresolved invocations of the compilation unit.
+     */
+    public void store(String hash, FamixModel partialModel,
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) {
+        boolean lReplayable = true;
+        for (List<UnresolvedMethodInvocation> lInvocations : unresolvedCalls.values()) {
+            for (UnresolvedMethodInvocation lInvocation : lInvocations) {
+                lReplayable &= lInvocation.isDetached();
+            }
+        }
+        File lFile = getEntryFile(hash);
+        File lTempFile = new File(fDirectory, hash + ".tmp");
+        DataOutputStream lOut = null;
+        try {
+            ByteArrayOutputStream lBytes = new ByteArrayOutputStream();
+            lOut = new DataOutputStream(new DeflaterOutputStream(lBytes));
+            lOut.writeInt(FORMAT_VERSION);
+            lOut.writeByte(lReplayable ? 0 : FLAG_NOT_REPLAYABLE);
+            write(partialModel, lReplayable ? unresolvedCalls : null, lOut);
+            lOut.close();
+            lOut = null;
+
+            OutputStream lFileOut = new BufferedOutputStream(new FileOutputStream(lTempFile));
+            try {
+                lBytes.writeTo(lFileOut);
+            } finally {
+                lFileOut.close();
+            }
+            if (lFile.exists() && !lFile.delete()) {
+                sLogger.warn("Could not replace parse cache entry " + lFile);
+            }
+            if (!lTempFile.renameTo(lFile)) {
+                sLogger.warn("Could not store parse cache entry " + lFile);
+            }
+            fNrOfStoredEntries++;
+            fNrOfBytesWritten += lBytes.size();
+        } catch (IOException ioe) {
+            sLogger.warn("Could not write parse cache entry " + lFile + ": " + ioe.getMessage());
+        } finally {
+            close(lOut);
+            if (lTempFile.exists()) {
+                lTempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the hash of the last parsed version of the compilation unit.
+     *
+     * @param path The handle identifier of the compilation unit.
+     * @return The hash, or <code>null</code> if the compilation unit has not been parsed before.
+     */
+    public String getIndexedHash(String path) {
+        return fIndex.getProperty(path);
+    }
+
+    /**
+     * Records the hash of the last parsed version of the compilation unit.
+     *
+     * @param path The handle identifier of the compilation unit.
+     * @param hash The hash.
+     */
+    public void index(String path, String hash) {
+        fIndex.setProperty(path, hash);
+    }
+
+    /**
+     * Removes the compilation unit from the index, e.g., because it has been deleted.
+     *
+     * @param path The handle identifier of the compilation unit.
+     */
+    public void removeFromIndex(String path) {
+        fIndex.remove(path);
+    }
+
+    /**
+     * Returns the handle identifiers of the indexed compilation units.
+     *
+     * @return The handle identifiers.
+     */
+    public Set<String> getIndexedPaths() {
+        return fIndex.stringPropertyNames();
+    }
+
+    /**
+     * Writes the index of the compilation units to the cache directory.
+     */
+    public void saveIndex() {
+        File lIndexFile = new File(fDirectory, INDEX_FILE);
+        OutputStream lOut = null;
+        try {
+            lOut = new BufferedOutputStream(new FileOutputStream(lIndexFile));
+            fIndex.store(lOut, "FAMIX parse cache index");
+        } catch (IOException ioe) {
+            sLogger.warn("Could not write parse cache index " + lIndexFile + ": " + ioe.getMessage());
+        } finally {
+            close(lOut);
+        }
+    }
+
+    /**
+     * Removes the entries that are not referenced by the index, i.e., the partial models of previous versions of
+     * the compilation units and of deleted compilation units. Called after the index has been saved.
+     *
+     * @return The number of removed entries.
+     */
+    public int prune() {
+        Set<String> lIndexedHashes = new HashSet<String>();
+        for (String lPath : getIndexedPaths()) {
+            lIndexedHashes.add(getIndexedHash(lPath));
+        }
+        int lNrOfRemovedEntries = 0;
+        File[] lFiles = fDirectory.listFiles();
+        if (lFiles != null) {
+            for (File lFile : lFiles) {
+                String lName = lFile.getName();
+                if (lName.endsWith(ENTRY_EXTENSION)
+                        && !lIndexedHashes.contains(lName.substring(0, lName.length() - ENTRY_EXTENSION.length()))) {
+                    if (lFile.delete()) {
+                        lNrOfRemovedEntries++;
+                    } else {
+                        sLogger.warn("Could not remove parse cache entry " + lFile);
+                    }
+                }
+            }
+        }
+        return lNrOfRemovedEntries;
+    }
+
+    /**
+     * Removes all entries and the index from the cache.
+     */
+    public void clear() {
+        fIndex.clear();
+        File[] lFiles = fDirectory.listFiles();
+        if (lFiles != null) {
+            for (File lFile : lFiles) {
+                if (lFile.getName().endsWith(ENTRY_EXTENSION) || lFile.getName().equals(INDEX_FILE)) {
+                    lFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of replayed partial models.
+     *
+     * @return The number of cache hits.
+     */
+    public int getNrOfHits() {
+        return fNrOfHits;
+    }
+
+    /**
+     * Returns the number of compilation units that were not cached or could not be replayed.
+     *
+     * @return The number of cache misses.
+     */
+    public int getNrOfMisses() {
+        return fNrOfMisses;
+    }
+
+    /**
+     * Returns the number of stored partial models.
+     *
+     * @return The number of stored entries.
+     */
+    public int getNrOfStoredEntries() {
+        return fNrOfStoredEntries;
+    }
+
+    /**
+     * Returns the number of compressed bytes read from the cache.
+     *
+     * @return The number of bytes read.
+     */
+    public long getNrOfBytesRead() {
+        return fNrOfBytesRead;
+    }
+
+    /**
+     * Returns the number of compressed bytes written to the cache.
+     *
+     * @return The number of bytes written.
+     */
+    public long getNrOfBytesWritten() {
+        return fNrOfBytesWritten;
+    }
+
+    /**
+     * Returns the unique names of the declarations that differ between the previous and the current partial model
+     * of a compilation unit. A declaration differs if it has been added or removed, or if its type, modifiers,
+     * declared type, or super types differ. The enclosing classes and methods of a changed declaration are considered
+     * as changed as well, such that references to a class detect changes of its members.
+     *
+     * @param previousModel The previous partial model, or <code>null</code>.
+     * @param currentModel The current partial model, or <code>null</code>.
+     * @return The unique names of the changed declarations.
+     */
+    public static Set<String> getChangedDeclarations(FamixModel previousModel, FamixModel currentModel) {
+        Map<String, String> lPrevious = getDeclarations(previousModel);
+        Map<String, String> lCurrent = getDeclarations(currentModel);
+        Set<String> lChanged = new HashSet<String>();
+        addChangedDeclarations(lPrevious, lCurrent, previousModel, lChanged);
+        addChangedDeclarations(lCurrent, lPrevious, currentModel, lChanged);
+        return lChanged;
+    }
+
+    /**
+     * Returns the unique names of all entities referenced by the partial model, including its own declarations.
+     *
+     * @param partialModel The partial model.
+     * @return The unique names.
+     */
+    public static Set<String> getReferencedNames(FamixModel partialModel) {
+        return getReferencedNames(partialModel, new Hashtable<FamixMethod, List<UnresolvedMethodInvocation>>());
+    }
+
+    /**
+     * Returns the unique names of all entities referenced by the partial model and by its unresolved invocations,
+     * i.e., the resolved receiver and argument types.
+     *
+     * @param partialModel The partial model.
+     * @param unresolvedCalls The unresolved invocations of the partial model.
+     * @return The unique names.
+     */
+    public static Set<String> getReferencedNames(FamixModel partialModel,
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) {
+        Set<String> lNames = new HashSet<String>();
+        for (List<UnresolvedMethodInvocation> lInvocations : unresolvedCalls.values()) {
+            for (UnresolvedMethodInvocation lInvocation : lInvocations) {
+                lNames.add(lInvocation.getResolvedID());
+                lNames.addAll(lInvocation.getResolvedArgumentTypes());
+            }
+        }
+        for (AbstractFamixEntity lEntity : partialModel.getFamixEntities()) {
+            for (AbstractFamixEntity lReferenced = lEntity; lReferenced != null; lReferenced = lReferenced.getParent()) {
+                lNames.add(lReferenced.getUniqueName());
+            }
+            if (lEntity instanceof AbstractFamixVariable) {
+                addName(((AbstractFamixVariable) lEntity).getDeclaredClass(), lNames);
+            } else if (lEntity instanceof FamixMethod) {
+                addName(((FamixMethod) lEntity).getDeclaredReturnClass(), lNames);
+            }
+        }
+        for (FamixAssociation lAssociation : partialModel.getFamixAssociations()) {
+            addName(lAssociation.getFrom(), lNames);
+            addName(lAssociation.getTo(), lNames);
+        }
+        return lNames;
+    }
+
+    private static void addName(AbstractFamixEntity entity, Set<String> names) {
+        if (entity != null) {
+            names.add(entity.getUniqueName());
+        }
+    }
+
+    /**
+     * Returns the fingerprints of the declarations (entities with source anchor) of the partial model.
+     *
+     * @param partialModel The partial model, or <code>null</code>.
+     * @return The fingerprints by unique name.
+     */
+    private static Map<String, String> getDeclarations(FamixModel partialModel) {
+        Map<String, String> lDeclarations = new HashMap<String, String>();
+        if (partialModel == null) {
+            return lDeclarations;
+        }
+        for (AbstractFamixEntity lEntity : partialModel.getFamixEntities()) {
+            if ((lEntity.getSourceAnchor() != null) && !(lEntity instanceof FamixPackage)) {
+                StringBuilder lFingerprint = new StringBuilder(lEntity.getClass().getSimpleName());
+                lFingerprint.append(':').append(lEntity.getModifiers());
+                if (lEntity instanceof AbstractFamixVariable) {
+                    appendName(((AbstractFamixVariable) lEntity).getDeclaredClass(), lFingerprint);
+                } else if (lEntity instanceof FamixMethod) {
+                    appendName(((FamixMethod) lEntity).getDeclaredReturnClass(), lFingerprint);
+                }
+                lDeclarations.put(lEntity.getUniqueName(), lFingerprint.toString());
+            }
+        }
+        for (FamixAssociation lAssociation : partialModel.getFamixAssociations()) {
+            if ((lAssociation instanceof AbstractFamixGeneralization)
+                    && lDeclarations.containsKey(lAssociation.getFrom().getUniqueName())) {
+                StringBuilder lFingerprint = new StringBuilder(lDeclarations.get(lAssociation.getFrom().getUniqueName()));
+                lFingerprint.append(lAssociation.getClass().getSimpleName());
+                appendName(lAssociation.getTo(), lFingerprint);
+                lDeclarations.put(lAssociation.getFrom().getUniqueName(), lFingerprint.toString());
+            }
+        }
+        return lDeclarations;
+    }
+
+    private static void appendName(AbstractFamixEntity entity, StringBuilder fingerprint) {
+        fingerprint.append(':').append((entity != null) ? entity.getUniqueName() : "");
+    }
+
+    /**
+     * Adds the declarations that are not contained by or differ from the other declarations, and their enclosing
+     * classes and methods.
+     */
+    private static void addChangedDeclarations(Map<String, String> declarations, Map<String, String> otherDeclarations,
+            FamixModel model, Set<String> changed) {
+        for (AbstractFamixEntity lEntity : (model != null) ? model.getFamixEntities() : new HashSet<AbstractFamixEntity>()) {
+            String lFingerprint = declarations.get(lEntity.getUniqueName());
+            if ((lFingerprint != null) && !lFingerprint.equals(otherDeclarations.get(lEntity.getUniqueName()))) {
+                for (AbstractFamixEntity lChanged = lEntity; (lChanged != null) && !(lChanged instanceof FamixPackage);
+                        lChanged = lChanged.getParent()) {
+                    changed.add(lChanged.getUniqueName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a cache entry. Entries that cannot be replayed are read only if no unresolved invocations are requested.
+     */
+    private FamixModel read(String hash, String modelName, Date created, SourceBlob source, ASTCrawler crawler,
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) {
+        File lFile = getEntryFile(hash);
+        if (!lFile.isFile()) {
+            return null;
+        }
+        DataInputStream lIn = null;
+        try {
+            lIn = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(lFile))));
+            if (lIn.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            if (((lIn.readByte() & FLAG_NOT_REPLAYABLE) != 0) && (unresolvedCalls != null)) {
+                return null;
+            }
+            FamixModel lPartialModel = read(lIn, new FamixModel(modelName, created), source, crawler, unresolvedCalls);
+            fNrOfBytesRead += lFile.length();
+            return lPartialModel;
+        } catch (IOException ioe) {
+            sLogger.warn("Could not read parse cache entry " + lFile + ": " + ioe.getMessage());
+        } catch (InstantiationException ie) {
+            sLogger.warn("Could not read parse cache entry " + lFile + ": " + ie.getMessage());
+        } catch (IllegalAccessException iae) {
+            sLogger.warn("Could not read parse cache entry " + lFile + ": " + iae.getMessage());
+        } finally {
+            close(lIn);
+        }
+        return null;
+    }
+
+    private File getEntryFile(String hash) {
+        return new File(fDirectory, hash + ENTRY_EXTENSION);
+    }
+
+    /**
+     * Writes the entities, associations, and unresolved invocations of the partial model. Entities are numbered,
+     * references between them are written as numbers. All strings are written once into a string table.
+     */
+    private static void write(FamixModel partialModel,
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls, DataOutputStream out)
+            throws IOException {
+        List<AbstractFamixEntity> lEntities = new ArrayList<AbstractFamixEntity>(partialModel.getFamixEntities());
+        Map<AbstractFamixEntity, Integer> lEntityIndex = new HashMap<AbstractFamixEntity, Integer>();
+        for (AbstractFamixEntity lEntity : lEntities) {
+            lEntityIndex.put(lEntity, Integer.valueOf(lEntityIndex.size()));
+        }
+        int lNrOfModelEntities = lEntities.size();
+        List<FamixAssociation> lAssociations = new ArrayList<FamixAssociation>(partialModel.getFamixAssociations());
+        for (FamixAssociation lAssociation : lAssociations) {
+            addReference(lAssociation.getFrom(), lEntities, lEntityIndex);
+            addReference(lAssociation.getTo(), lEntities, lEntityIndex);
+        }
+        List<UnresolvedMethodInvocation> lInvocations = new ArrayList<UnresolvedMethodInvocation>();
+        if (unresolvedCalls != null) {
+            for (List<UnresolvedMethodInvocation> lCallerInvocations : unresolvedCalls.values()) {
+                for (UnresolvedMethodInvocation lInvocation : lCallerInvocations) {
+                    addReference(lInvocation.getCaller(), lEntities, lEntityIndex);
+                    lInvocations.add(lInvocation);
+                }
+            }
+        }
+        for (int i = 0; i < lEntities.size(); i++) {
+            // referenced entities that are not contained by the model are appended without their children
+            for (AbstractFamixEntity lReferenced : getReferences(lEntities.get(i), i < lNrOfModelEntities)) {
+                addReference(lReferenced, lEntities, lEntityIndex);
+            }
+        }
+
+        Map<String, Integer> lStrings = new HashMap<String, Integer>();
+        List<String> lStringTable = new ArrayList<String>();
+        ByteArrayOutputStream lBodyBytes = new ByteArrayOutputStream();
+        DataOutputStream lBody = new DataOutputStream(lBodyBytes);
+        // the types come first such that all entities can be instantiated before resolving references
+        writeInt(lBody, lEntities.size());
+        for (AbstractFamixEntity lEntity : lEntities) {
+            lBody.writeByte(indexOf(ENTITY_TYPES, lEntity.getClass()));
+        }
+        for (int i = 0; i < lEntities.size(); i++) {
+            AbstractFamixEntity lEntity = lEntities.get(i);
+            int lFlags = (i >= lNrOfModelEntities) ? FLAG_NOT_IN_MODEL : 0;
+            if ((lEntity instanceof FamixClass) && (lEntity.getContent() != null) && (lEntity.getContent().getBlob() != null)) {
+                lFlags |= FLAG_HAS_SOURCE;
+            }
+            lBody.writeByte(lFlags);
+            writeString(lBody, lEntity.getUniqueName(), lStrings, lStringTable);
+            writeInt(lBody, lEntity.getModifiers());
+            writeReference(lBody, lEntity.getParent(), lEntityIndex);
+            writeObject(lBody, lEntity, lStrings, lStringTable);
+            boolean lInModel = i < lNrOfModelEntities;
+            if (lEntity instanceof FamixPackage) {
+                writeReferences(lBody, ((FamixPackage) lEntity).getClasses(), lInModel, lEntityIndex);
+            } else if (lEntity instanceof FamixClass) {
+                FamixClass lClass = (FamixClass) lEntity;
+                writeReferences(lBody, lClass.getMethods(), lInModel, lEntityIndex);
+                writeReferences(lBody, lClass.getAttributes(), lInModel, lEntityIndex);
+                writeReferences(lBody, lClass.getInnerClasses(), lInModel, lEntityIndex);
+            } else if (lEntity instanceof FamixMethod) {
+                FamixMethod lMethod = (FamixMethod) lEntity;
+                writeReference(lBody, lMethod.getDeclaredReturnClass(), lEntityIndex);
+                writeReferences(lBody, lMethod.getParameters(), lInModel, lEntityIndex);
+                writeReferences(lBody, lMethod.getLocalVariables(), lInModel, lEntityIndex);
+                writeReferences(lBody, lMethod.getAnonymClasses(), lInModel, lEntityIndex);
+            } else if (lEntity instanceof AbstractFamixVariable) {
+                writeReference(lBody, ((AbstractFamixVariable) lEntity).getDeclaredClass(), lEntityIndex);
+                if (lEntity instanceof FamixParameter) {
+                    Integer lParamIndex = ((FamixParameter) lEntity).getParamIndex();
+                    writeInt(lBody, (lParamIndex != null) ? lParamIndex.intValue() + 1 : 0);
+                }
+            }
+        }
+        writeInt(lBody, lAssociations.size());
+        for (FamixAssociation lAssociation : lAssociations) {
+            lBody.writeByte(indexOf(ASSOCIATION_TYPES, lAssociation.getClass()));
+            writeReference(lBody, lAssociation.getFrom(), lEntityIndex);
+            writeReference(lBody, lAssociation.getTo(), lEntityIndex);
+            writeOptionalString(lBody, lAssociation.getStatement(), lStrings, lStringTable);
+            writeObject(lBody, lAssociation, lStrings, lStringTable);
+        }
+        writeInt(lBody, lInvocations.size());
+        for (UnresolvedMethodInvocation lInvocation : lInvocations) {
+            lBody.writeByte(indexOf(UNRESOLVED_INVOCATION_TYPES, lInvocation.getClass()));
+            writeReference(lBody, lInvocation.getCaller(), lEntityIndex);
+            writeOptionalString(lBody, lInvocation.getStatement(), lStrings, lStringTable);
+            writeOptionalString(lBody, lInvocation.getResolvedID(), lStrings, lStringTable);
+            writeStrings(lBody, lInvocation.getResolvedArgumentTypes(), lStrings, lStringTable);
+            writeOptionalString(lBody, lInvocation.getLabel(), lStrings, lStringTable);
+            writeAnchor(lBody, lInvocation.getSourceAnchor(), lStrings, lStringTable);
+            String lAnonymousClassID = null;
+            if (lInvocation instanceof UnresolvedAnonymousClassInstanceCreationInvocation) {
+                lAnonymousClassID = ((UnresolvedAnonymousClassInstanceCreationInvocation) lInvocation).getAnonymousClassID();
+            }
+            writeOptionalString(lBody, lAnonymousClassID, lStrings, lStringTable);
+        }
+        lBody.flush();
+
+        writeInt(out, lStringTable.size());
+        for (String lString : lStringTable) {
+            byte[] lBytes = lString.getBytes("UTF-8");
+            writeInt(out, lBytes.length);
+            out.write(lBytes);
+        }
+        lBodyBytes.writeTo(out);
+    }
+
+    /**
+     * Reads the entities and associations into the given partial model and the unresolved invocations into the
+     * given table, if any.
+     */
+    private static FamixModel read(DataInputStream in, FamixModel partialModel, SourceBlob source, ASTCrawler crawler,
+            Hashtable<FamixMethod, List<UnresolvedMethodInvocation>> unresolvedCalls) throws IOException,
+            InstantiationException, IllegalAccessException {
+        String[] lStrings = new String[readInt(in)];
+        for (int i = 0; i < lStrings.length; i++) {
+            byte[] lBytes = new byte[readInt(in)];
+            in.readFully(lBytes);
+            lStrings[i] = new String(lBytes, "UTF-8");
+        }
+
+        AbstractFamixEntity[] lEntities = new AbstractFamixEntity[readInt(in)];
+        int[] lFlags = new int[lEntities.length];
+        int[] lParents = new int[lEntities.length];
+        for (int i = 0; i < lEntities.length; i++) {
+            lEntities[i] = (AbstractFamixEntity) ENTITY_TYPES[in.readByte()].newInstance();
+        }
+        List<int[]> lReferences = new ArrayList<int[]>();
+        for (int i = 0; i < lEntities.length; i++) {
+            AbstractFamixEntity lEntity = lEntities[i];
+            lFlags[i] = in.readByte();
+            lEntity.setUniqueName(lStrings[readInt(in)]);
+            lEntity.setModifiers(readInt(in));
+            lParents[i] = readInt(in);
+            readObject(in, lEntity, lStrings);
+            if (lEntity instanceof FamixPackage) {
+                lReferences.add(readReferences(in));
+            } else if (lEntity instanceof FamixClass) {
+                lReferences.add(readReferences(in));
+                lReferences.add(readReferences(in));
+                lReferences.add(readReferences(in));
+            } else if (lEntity instanceof FamixMethod) {
+                lReferences.add(new int[] {readInt(in)});
+                lReferences.add(readReferences(in));
+                lReferences.add(readReferences(in));
+                lReferences.add(readReferences(in));
+            } else if (lEntity instanceof AbstractFamixVariable) {
+                lReferences.add(new int[] {readInt(in)});
+                if (lEntity instanceof FamixParameter) {
+                    int lParamIndex = readInt(in);
+                    ((FamixParameter) lEntity).setParamIndex((lParamIndex > 0) ? Integer.valueOf(lParamIndex - 1) : null);
+                }
+            }
+        }
+
+        int lReference = 0;
+        for (int i = 0; i < lEntities.length; i++) {
+            AbstractFamixEntity lEntity = lEntities[i];
+            lEntity.setParent(getEntity(lEntities, lParents[i]));
+            if (lEntity instanceof FamixPackage) {
+                addEntities(lEntities, lReferences.get(lReference++), ((FamixPackage) lEntity).getClasses());
+            } else if (lEntity instanceof FamixClass) {
+                FamixClass lClass = (FamixClass) lEntity;
+                addEntities(lEntities, lReferences.get(lReference++), lClass.getMethods());
+                addEntities(lEntities, lReferences.get(lReference++), lClass.getAttributes());
+                addEntities(lEntities, lReferences.get(lReference++), lClass.getInnerClasses());
+                if (((lFlags[i] & FLAG_HAS_SOURCE) != 0) && (source != null)) {
+                    lClass.setSource(source);
+                }
+            } else if (lEntity instanceof FamixMethod) {
+                FamixMethod lMethod = (FamixMethod) lEntity;
+                lMethod.setDeclaredReturnClass((FamixClass) getEntity(lEntities, lReferences.get(lReference++)[0]));
+                addEntities(lEntities, lReferences.get(lReference++), lMethod.getParameters());
+                addEntities(lEntities, lReferences.get(lReference++), lMethod.getLocalVariables());
+                addEntities(lEntities, lReferences.get(lReference++), lMethod.getAnonymClasses());
+            } else if (lEntity instanceof AbstractFamixVariable) {
+                ((AbstractFamixVariable) lEntity).setDeclaredClass((FamixClass) getEntity(lEntities, lReferences.get(lReference++)[0]));
+            }
+        }
+        for (int i = 0; i < lEntities.length; i++) {
+            if ((lFlags[i] & FLAG_NOT_IN_MODEL) == 0) {
+                partialModel.addElement(lEntities[i]);
+            }
+        }
+
+        int lNrOfAssociations = readInt(in);
+        for (int i = 0; i < lNrOfAssociations; i++) {
+            FamixAssociation lAssociation = (FamixAssociation) ASSOCIATION_TYPES[in.readByte()].newInstance();
+            lAssociation.setFrom(getEntity(lEntities, readInt(in)));
+            lAssociation.setTo(getEntity(lEntities, readInt(in)));
+            lAssociation.setStatement(readOptionalString(in, lStrings));
+            readObject(in, lAssociation, lStrings);
+            partialModel.addRelation(lAssociation);
+        }
+        if (unresolvedCalls == null) {
+            return partialModel;
+        }
+
+        int lNrOfInvocations = readInt(in);
+        for (int i = 0; i < lNrOfInvocations; i++) {
+            UnresolvedMethodInvocation lInvocation =
+                    (UnresolvedMethodInvocation) UNRESOLVED_INVOCATION_TYPES[in.readByte()].newInstance();
+            FamixMethod lCaller = (FamixMethod) getEntity(lEntities, readInt(in));
+            String lStatement = readOptionalString(in, lStrings);
+            String lResolvedID = readOptionalString(in, lStrings);
+            List<String> lArgumentTypes = new ArrayList<String>();
+            int lNrOfArguments = readInt(in);
+            for (int j = 0; j < lNrOfArguments; j++) {
+                lArgumentTypes.add(lStrings[readInt(in)]);
+            }
+            String lCalleeName = readOptionalString(in, lStrings);
+            SourceAnchor lAnchor = readAnchor(in, lStrings);
+            String lAnonymousClassID = readOptionalString(in, lStrings);
+            lInvocation.restore(crawler, lCaller, lStatement, lResolvedID, lArgumentTypes, lCalleeName, lAnchor);
+            if (lInvocation instanceof UnresolvedAnonymousClassInstanceCreationInvocation) {
+                ((UnresolvedAnonymousClassInstanceCreationInvocation) lInvocation).setAnonymousClassID(lAnonymousClassID);
+            }
+            if (!unresolvedCalls.containsKey(lCaller)) {
+                unresolvedCalls.put(lCaller, new ArrayList<UnresolvedMethodInvocation>());
+            }
+            unresolvedCalls.get(lCaller).add(lInvocation);
+        }
+        return partialModel;
+    }
+
+    /**
+     * Returns the entities referenced by the given entity, the children are included for entities contained by the
+     * model only.
+     */
+    private static List<AbstractFamixEntity> getReferences(AbstractFamixEntity entity, boolean inModel) {
+        List<AbstractFamixEntity> lReferences = new ArrayList<AbstractFamixEntity>();
+        lReferences.add(entity.getParent());
+        if (entity instanceof FamixMethod) {
+            lReferences.add(((FamixMethod) entity).getDeclaredReturnClass());
+        } else if (entity instanceof AbstractFamixVariable) {
+            lReferences.add(((AbstractFamixVariable) entity).getDeclaredClass());
+        }
+        if (!inModel) {
+            return lReferences;
+        }
+        if (entity instanceof FamixPackage) {
+            lReferences.addAll(((FamixPackage) entity).getClasses());
+        } else if (entity instanceof FamixClass) {
+            FamixClass lClass = (FamixClass) entity;
+            lReferences.addAll(lClass.getMethods());
+            lReferences.addAll(lClass.getAttributes());
+            lReferences.addAll(lClass.getInnerClasses());
+        } else if (entity instanceof FamixMethod) {
+            FamixMethod lMethod = (FamixMethod) entity;
+            lReferences.addAll(lMethod.getParameters());
+            lReferences.addAll(lMethod.getLocalVariables());
+            lReferences.addAll(lMethod.getAnonymClasses());
+        }
+        return lReferences;
+    }
+
+    /**
+     * Writes the source anchor, comments, and properties of the FAMIX object.
+     */
+    private static void writeObject(DataOutputStream out, AbstractFamixObject object, Map<String, Integer> strings,
+            List<String> stringTable) throws IOException {
+        writeAnchor(out, object.getSourceAnchor(), strings, stringTable);
+        writeStrings(out, object.getComments(), strings, stringTable);
+        writeStrings(out, object.getProperties(), strings, stringTable);
+    }
+
+    /**
+     * Reads the source anchor, comments, and properties of the FAMIX object.
+     */
+    private static void readObject(DataInputStream in, AbstractFamixObject object, String[] strings) throws IOException {
+        SourceAnchor lAnchor = readAnchor(in, strings);
+        if (lAnchor != null) {
+            object.setSourceAnchor(lAnchor);
+        }
+        int lNrOfComments = readInt(in);
+        for (int i = 0; i < lNrOfComments; i++) {
+            object.getComments().add(strings[readInt(in)]);
+        }
+        int lNrOfProperties = readInt(in);
+        for (int i = 0; i < lNrOfProperties; i++) {
+            object.getProperties().add(strings[readInt(in)]);
+        }
+    }
+
+    private static void writeAnchor(DataOutputStream out, SourceAnchor anchor, Map<String, Integer> strings,
+            List<String> stringTable) throws IOException {
+        if (anchor == null) {
+            writeInt(out, 0);
+        } else {
+            writeInt(out, 1);
+            writeOptionalString(out, anchor.getFile(), strings, stringTable);
+            writeInt(out, (anchor.getStartPos() != null) ? anchor.getStartPos().intValue() + 1 : 0);
+            writeInt(out, (anchor.getEndPos() != null) ? anchor.getEndPos().intValue() + 1 : 0);
+        }
+    }
+
+    private static SourceAnchor readAnchor(DataInputStream in, String[] strings) throws IOException {
+        if (readInt(in) == 0) {
+            return null;
+        }
+        String lFile = readOptionalString(in, strings);
+        int lStart = readInt(in);
+        int lEnd = readInt(in);
+        return new SourceAnchor(lFile, (lStart > 0) ? Integer.valueOf(lStart - 1) : null,
+                (lEnd > 0) ? Integer.valueOf(lEnd - 1) : null);
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values, Map<String, Integer> strings,
+            List<String> stringTable) throws IOException {
+        writeInt(out, (values != null) ? values.size() : 0);
+        if (values != null) {
+            for (String lValue : values) {
+                writeString(out, lValue, strings, stringTable);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value, Map<String, Integer> strings,
+            List<String> stringTable) throws IOException {
+        Integer lIndex = strings.get(value);
+        if (lIndex == null) {
+            lIndex = Integer.valueOf(stringTable.size());
+            strings.put(value, lIndex);
+            stringTable.add(value);
+        }
+        writeInt(out, lIndex.intValue());
+    }
+
+    private static void writeOptionalString(DataOutputStream out, String value, Map<String, Integer> strings,
+            List<String> stringTable) throws IOException {
+        if (value == null) {
+            writeInt(out, 0);
+        } else {
+            writeInt(out, 1);
+            writeString(out, value, strings, stringTable);
+        }
+    }
+
+    private static String readOptionalString(DataInputStream in, String[] strings) throws IOException {
+        return (readInt(in) != 0) ? strings[readInt(in)] : null;
+    }
+
+    /**
+     * Writes the reference to an entity, 0 is <code>null</code>.
+     */
+    private static void writeReference(DataOutputStream out, AbstractFamixEntity entity,
+            Map<AbstractFamixEntity, Integer> entityIndex) throws IOException {
+        writeInt(out, (entity != null) ? entityIndex.get(entity).intValue() + 1 : 0);
+    }
+
+    /**
+     * Writes the references to the children of an entity, which are omitted for entities not contained by the model.
+     */
+    private static void writeReferences(DataOutputStream out, Collection<? extends AbstractFamixEntity> entities,
+            boolean inModel, Map<AbstractFamixEntity, Integer> entityIndex) throws IOException {
+        writeInt(out, inModel ? entities.size() : 0);
+        if (inModel) {
+            for (AbstractFamixEntity lEntity : entities) {
+                writeReference(out, lEntity, entityIndex);
+            }
+        }
+    }
+
+    private static void addReference(AbstractFamixEntity entity, List<AbstractFamixEntity> entities,
+            Map<AbstractFamixEntity, Integer> entityIndex) {
+        if ((entity != null) && !entityIndex.containsKey(entity)) {
+            entityIndex.put(entity, Integer.valueOf(entities.size()));
+            entities.add(entity);
+        }
+    }
+
+    private static int[] readReferences(DataInputStream in) throws IOException {
+        int[] lReferences = new int[readInt(in)];
+        for (int i = 0; i < lReferences.length; i++) {
+            lReferences[i] = readInt(in);
+        }
+        return lReferences;
+    }
+
+    private static AbstractFamixEntity getEntity(AbstractFamixEntity[] entities, int reference) {
+        return (reference > 0) ? entities[reference - 1] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends AbstractFamixEntity> void addEntities(AbstractFamixEntity[] entities, int[] references,
+            Collection<T> target) {
+        for (int lReference : references) {
+            target.add((T) getEntity(entities, lReference));
+        }
+    }
+
+    private static int indexOf(Class<?>[] types, Class<?> type) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported FAMIX type " + type.getName());
+    }
+
+    /**
+     * Writes a non-negative int with a variable number of bytes.
+     */
+    private static void writeInt(DataOutputStream out, int value) throws IOException {
+        int lValue = value;
+        while ((lValue & ~0x7f) != 0) {
+            out.writeByte((lValue & 0x7f) | 0x80);
+            lValue >>>= 7;
+        }
+        out.writeByte(lValue);
+    }
+
+    private static int readInt(DataInputStream in) throws IOException {
+        int lValue = 0;
+        for (int lShift = 0; lShift < 32; lShift += 7) {
+            int lByte = in.readUnsignedByte();
+            lValue |= (lByte & 0x7f) << lShift;
+            if ((lByte & 0x80) == 0) {
+                return lValue;
+            }
+        }
+        throw new IOException("Malformed variable-length int");
+    }
+
+    private static void close(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ioe) {
+                sLogger.debug("Could not close parse cache stream: " + ioe.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.evolizer.famix.importer.FamixImporterPlugin;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.entities.IFamixAssociationLoader;
+import org.hibernate.Session;
+
+/**
+ * Loads the associations of a stored FAMIX entity from the database. Only the associations
+ * of the given stored model are returned. The session must stay open as long as the model is used.
+ *
+ * @author pinzger
+ */
+public class HibernateAssociationLoader implements IFamixAssociationLoader {
+    /**
+     * The logger.
+     */
+    private static Logger sLogger = FamixImporterPlugin.getLogManager().getLogger(HibernateAssociationLoader.class.getName());
+
+    /**
+     * The Hibernate session.
+     */
+    private Session fSession;
+    /**
+     * The Hibernate ID of the stored model.
+     */
+    private Long fModelId;
+    /**
+     * Number of entities whose associations have been loaded.
+     */
+    private int fNrOfLoadedEntities;
+    /**
+     * Number of loaded associations.
+     */
+    private long fNrOfLoadedAssociations;
+
+    /**
+     * The constructor.
+     *
+     * @param session The Hibernate session.
+     * @param modelId The Hibernate ID of the stored model.
+     */
+    public HibernateAssociationLoader(Session session, Long modelId) {
+        fSession = session;
+        fModelId = modelId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<FamixAssociation> loadAssociations(AbstractFamixEntity famixEntity) {
+        if (famixEntity.getId() == null) {
+            return Collections.emptyList();
+        }
+
+        List<FamixAssociation> lAssociations = fSession.getNamedQuery(FamixModel.QUERY_ASSOCIATIONS_OF_ENTITY)
+                .setLong("modelId", fModelId.longValue())
+                .setLong("entityId", famixEntity.getId().longValue())
+                .list();
+        fNrOfLoadedEntities++;
+        fNrOfLoadedAssociations += lAssociations.size();
+        sLogger.debug("Loaded " + lAssociations.size() + " associations of " + famixEntity.getUniqueName());
+
+        return lAssociations;
+    }
+
+    /**
+     * Returns the number of entities whose associations have been loaded.
+     *
+     * @return The number of entities.
+     */
+    public int getNrOfLoadedEntities() {
+        return fNrOfLoadedEntities;
+    }
+
+    /**
+     * Returns the number of loaded associations.
+     *
+     * @return The number of associations.
+     */
+    public long getNrOfLoadedAssociations() {
+        return fNrOfLoadedAssociations;
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.importer.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings and counts of a FAMIX import. Records the wall and CPU time of the import phases, the number
+ * of visits and the time spent per AST node handler type, the bindings that could not be resolved by jdt,
+ * the hit rates of the stages matching unresolved invocations, and the number of rows stored per second.
+ *
+ * One instance is shared by the parser, its crawlers, the invocation resolution, and the storage of an
+ * import. All methods are thread-safe, such that parallel workers can record into the same instance.
+ * {@link #getReport()} returns a human readable summary, the getters give structured access, e.g., for tests.
+ *
+ * @author pinzger
+ */
+public class ImportStatistics {
+    /**
+     * Phase parsing the compilation units.
+     */
+    public static final String PHASE_PARSE = "parse";
+    /**
+     * Phase merging the partial models of parallel workers.
+     */
+    public static final String PHASE_MERGE = "merge";
+    /**
+     * Phase matching the unresolved invocations with the method declarations.
+     */
+    public static final String PHASE_RESOLVE = "resolve";
+    /**
+     * Phase adding the resolved invocations to the model.
+     */
+    public static final String PHASE_ADD_INVOCATIONS = "add invocations";
+    /**
+     * Phase storing the model in the database.
+     */
+    public static final String PHASE_STORE = "store";
+
+    /**
+     * Type bindings that jdt could not resolve.
+     */
+    public static final String BINDING_TYPE = "type";
+    /**
+     * Method invocations whose binding jdt could not resolve.
+     */
+    public static final String BINDING_METHOD = "method";
+
+    /**
+     * Unresolved invocations with a method declaration of the same name.
+     */
+    public static final String STAGE_NAME = "by name";
+    /**
+     * Unresolved invocations with a method declaration of the same name and number of parameters.
+     */
+    public static final String STAGE_NR_OF_PARAMETERS = "by number of parameters";
+    /**
+     * Unresolved invocations with a method declaration in the type hierarchy of the receiver.
+     */
+    public static final String STAGE_RECEIVER_TYPE = "by receiver type";
+    /**
+     * Unresolved invocations with a method declaration matching all parameter types.
+     */
+    public static final String STAGE_ALL_PARAMETERS_TYPE = "by all parameter types";
+    /**
+     * Unresolved invocations with exactly one matching method declaration.
+     */
+    public static final String STAGE_UNIQUE_MATCH = "unique match";
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private ConcurrentMap<String, Counter> fPhases = new ConcurrentHashMap<String, Counter>();
+    private ConcurrentMap<Class<?>, Counter> fHandlers = new ConcurrentHashMap<Class<?>, Counter>();
+    private ConcurrentMap<String, AtomicLong> fBindingFailures = new ConcurrentHashMap<String, AtomicLong>();
+    private ConcurrentMap<String, Counter> fResolutionStages = new ConcurrentHashMap<String, Counter>();
+    private AtomicLong fNrOfCompilationUnits = new AtomicLong();
+    private AtomicLong fNrOfStoredRows = new AtomicLong();
+    private AtomicLong fStoreTime = new AtomicLong();
+
+    /**
+     * Switch to control the timing of the node handlers.
+     */
+    private volatile boolean fHandlerTimingEnabled = true;
+
+    /**
+     * Starts timing a phase in the current thread.
+     *
+     * @param phase The name of the phase.
+     * @return The timer to stop at the end of the phase.
+     */
+    public PhaseTimer startPhase(String phase) {
+        return new PhaseTimer(phase);
+    }
+
+    /**
+     * Adds the wall and CPU time of a phase.
+     *
+     * @param phase The name of the phase.
+     * @param wallTime The elapsed wall time in nanoseconds.
+     * @param cpuTime The CPU time in nanoseconds.
+     */
+    public void addPhaseTime(String phase, long wallTime, long cpuTime) {
+        Counter lCounter = getCounter(fPhases, phase);
+        lCounter.add(wallTime, cpuTime);
+    }
+
+    /**
+     * Adds the CPU time spent by a worker thread in a phase. The wall time is accounted by the thread
+     * that started the workers.
+     *
+     * @param phase The name of the phase.
+     * @param cpuTime The CPU time in nanoseconds.
+     */
+    public void addWorkerCpuTime(String phase, long cpuTime) {
+        getCounter(fPhases, phase).fSecond.addAndGet(cpuTime);
+    }
+
+    /**
+     * Records a visit of an AST node handler.
+     *
+     * @param handlerType The type of the handler.
+     * @param time The time spent in the handler in nanoseconds.
+     */
+    public void recordVisit(Class<?> handlerType, long time) {
+        getCounter(fHandlers, handlerType).add(1, time);
+    }
+
+    /**
+     * Adds time spent in an AST node handler after its visit, e.g., when post-processing the node.
+     *
+     * @param handlerType The type of the handler.
+     * @param time The time spent in the handler in nanoseconds.
+     */
+    public void addHandlerTime(Class<?> handlerType, long time) {
+        getCounter(fHandlers, handlerType).add(0, time);
+    }
+
+    /**
+     * Records a traversed compilation unit.
+     */
+    public void recordCompilationUnit() {
+        fNrOfCompilationUnits.incrementAndGet();
+    }
+
+    /**
+     * Records bindings that jdt could not resolve.
+     *
+     * @param kind The kind of binding, e.g., {@link #BINDING_TYPE}.
+     * @param count The number of unresolved bindings.
+     */
+    public void recordBindingFailures(String kind, long count) {
+        AtomicLong lCounter = fBindingFailures.get(kind);
+        if (lCounter == null) {
+            fBindingFailures.putIfAbsent(kind, new AtomicLong());
+            lCounter = fBindingFailures.get(kind);
+        }
+        lCounter.addAndGet(count);
+    }
+
+    /**
+     * Records whether a stage matching an unresolved invocation found a method declaration.
+     *
+     * @param stage The stage, e.g., {@link #STAGE_NAME}.
+     * @param hit True, if the stage found at least one method declaration.
+     */
+    public void recordResolutionStage(String stage, boolean hit) {
+        getCounter(fResolutionStages, stage).add(hit ? 1 : 0, 1);
+    }
+
+    /**
+     * Records stored rows.
+     *
+     * @param rows The number of rows.
+     * @param time The time spent writing the rows in nanoseconds.
+     */
+    public void recordStoredRows(long rows, long time) {
+        fNrOfStoredRows.addAndGet(rows);
+        fStoreTime.addAndGet(time);
+    }
+
+    /**
+     * Returns the names of the recorded phases.
+     *
+     * @return The phase names.
+     */
+    public List<String> getPhases() {
+        return new ArrayList<String>(fPhases.keySet());
+    }
+
+    /**
+     * Returns the wall time of a phase.
+     *
+     * @param phase The name of the phase.
+     * @return The wall time in milliseconds, 0 if the phase has not been recorded.
+     */
+    public long getWallTime(String phase) {
+        Counter lCounter = fPhases.get(phase);
+        return (lCounter != null) ? lCounter.fFirst.get() / NANOS_PER_MILLI : 0;
+    }
+
+    /**
+     * Returns the CPU time of a phase including the CPU time of its workers.
+     *
+     * @param phase The name of the phase.
+     * @return The CPU time in milliseconds, 0 if the phase has not been recorded or CPU time is not supported.
+     */
+    public long getCpuTime(String phase) {
+        Counter lCounter = fPhases.get(phase);
+        return (lCounter != null) ? lCounter.fSecond.get() / NANOS_PER_MILLI : 0;
+    }
+
+    /**
+     * Returns the simple names of the handler types that have been visited.
+     *
+     * @return The handler type names.
+     */
+    public List<String> getHandlers() {
+        List<String> lNames = new ArrayList<String>();
+        for (Class<?> lHandlerType : fHandlers.keySet()) {
+            lNames.add(lHandlerType.getSimpleName());
+        }
+        return lNames;
+    }
+
+    /**
+     * Returns the number of visits of a handler type.
+     *
+     * @param handlerType The type of the handler.
+     * @return The number of visits.
+     */
+    public long getNrOfVisits(Class<?> handlerType) {
+        Counter lCounter = fHandlers.get(handlerType);
+        return (lCounter != null) ? lCounter.fFirst.get() : 0;
+    }
+
+    /**
+     * Returns the number of visits of all handler types, i.e., the number of AST nodes dispatched to a handler.
+     *
+     * @return The number of visits.
+     */
+    public long getNrOfVisits() {
+        long lNrOfVisits = 0;
+        for (Counter lCounter : fHandlers.values()) {
+            lNrOfVisits += lCounter.fFirst.get();
+        }
+        return lNrOfVisits;
+    }
+
+    /**
+     * Returns the time spent in a handler type, excluding the time of the child nodes.
+     *
+     * @param handlerType The type of the handler.
+     * @return The time in nanoseconds.
+     */
+    public long getHandlerTime(Class<?> handlerType) {
+        Counter lCounter = fHandlers.get(handlerType);
+        return (lCounter != null) ? lCounter.fSecond.get() : 0;
+    }
+
+    /**
+     * Returns the number of traversed compilation units.
+     *
+     * @return The number of compilation units.
+     */
+    public long getNrOfCompilationUnits() {
+        return fNrOfCompilationUnits.get();
+    }
+
+    /**
+     * Returns the number of bindings of the given kind that jdt could not resolve.
+     *
+     * @param kind The kind of binding, e.g., {@link #BINDING_TYPE}.
+     * @return The number of unresolved bindings.
+     */
+    public long getNrOfBindingFailures(String kind) {
+        AtomicLong lCounter = fBindingFailures.get(kind);
+        return (lCounter != null) ? lCounter.get() : 0;
+    }
+
+    /**
+     * Returns the number of unresolved invocations matched by a stage.
+     *
+     * @param stage The stage, e.g., {@link #STAGE_NAME}.
+     * @return The number of invocations for which the stage found a method declaration.
+     */
+    public long getNrOfStageHits(String stage) {
+        Counter lCounter = fResolutionStages.get(stage);
+        return (lCounter != null) ? lCounter.fFirst.get() : 0;
+    }
+
+    /**
+     * Returns the fraction of unresolved invocations matched by a stage.
+     *
+     * @param stage The stage, e.g., {@link #STAGE_NAME}.
+     * @return The hit rate between 0 and 1, 0 if no invocation has been matched.
+     */
+    public double getHitRate(String stage) {
+        Counter lCounter = fResolutionStages.get(stage);
+        if ((lCounter == null) || (lCounter.fSecond.get() == 0)) {
+            return 0;
+        }
+        return (double) lCounter.fFirst.get() / lCounter.fSecond.get();
+    }
+
+    /**
+     * Returns the number of stored rows.
+     *
+     * @return The number of rows.
+     */
+    public long getNrOfStoredRows() {
+        return fNrOfStoredRows.get();
+    }
+
+    /**
+     * Returns the number of rows stored per second.
+     *
+     * @return The rows per second.
+     */
+    public long getRowsPerSecond() {
+        return (fNrOfStoredRows.get() * 1000) / Math.max(1, fStoreTime.get() / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Returns true, if the time spent in the node handlers is measured.
+     *
+     * @return True, if the handlers are timed.
+     */
+    public boolean isHandlerTimingEnabled() {
+        return fHandlerTimingEnabled;
+    }
+
+    /**
+     * Enables or disables the timing of the node handlers. The visits are counted in any case.
+     *
+     * @param handlerTimingEnabled True to time the handlers.
+     */
+    public void setHandlerTimingEnabled(boolean handlerTimingEnabled) {
+        fHandlerTimingEnabled = handlerTimingEnabled;
+    }
+
+    /**
+     * Returns a summary of the recorded timings and counts. Handlers are listed by decreasing time.
+     *
+     * @return The report.
+     */
+    public String getReport() {
+        StringBuilder lReport = new StringBuilder("FAMIX import statistics\n");
+        lReport.append("Phases (wall ms / cpu ms):\n");
+        for (Map.Entry<String, Counter> lPhase : fPhases.entrySet()) {
+            lReport.append("  ").append(lPhase.getKey()).append(": ")
+                    .append(lPhase.getValue().fFirst.get() / NANOS_PER_MILLI).append(" / ")
+                    .append(lPhase.getValue().fSecond.get() / NANOS_PER_MILLI).append('\n');
+        }
+
+        lReport.append("Handlers of ").append(getNrOfCompilationUnits()).append(" compilation units (visits / ms):\n");
+        List<Map.Entry<Class<?>, Counter>> lHandlers = new ArrayList<Map.Entry<Class<?>, Counter>>(fHandlers.entrySet());
+        Collections.sort(lHandlers, new Comparator<Map.Entry<Class<?>, Counter>>() {
+            public int compare(Map.Entry<Class<?>, Counter> handler1, Map.Entry<Class<?>, Counter> handler2) {
+                long lTime1 = handler1.getValue().fSecond.get();
+                long lTime2 = handler2.getValue().fSecond.get();
+                return (lTime1 > lTime2) ? -1 : ((lTime1 == lTime2) ? 0 : 1);
+            }
+        });
+        for (Map.Entry<Class<?>, Counter> lHandler : lHandlers) {
+            lReport.append("  ").append(lHandler.getKey().getSimpleName()).append(": ")
+                    .append(lHandler.getValue().fFirst.get()).append(" / ")
+                    .append(lHandler.getValue().fSecond.get() / NANOS_PER_MILLI).append('\n');
+        }
+
+        lReport.append("Unresolved bindings:\n");
+        for (Map.Entry<String, AtomicLong> lFailures : fBindingFailures.entrySet()) {
+            lReport.append("  ").append(lFailures.getKey()).append(": ").append(lFailures.getValue().get()).append('\n');
+        }
+
+        lReport.append("Resolution stages (hits / invocations):\n");
+        for (Map.Entry<String, Counter> lStage : fResolutionStages.entrySet()) {
+            lReport.append("  ").append(lStage.getKey()).append(": ").append(lStage.getValue().fFirst.get())
+                    .append(" / ").append(lStage.getValue().fSecond.get()).append('\n');
+        }
+
+        lReport.append("Stored rows: ").append(getNrOfStoredRows()).append(" (").append(getRowsPerSecond())
+                .append(" rows/s)\n");
+        return lReport.toString();
+    }
+
+    /**
+     * Returns the CPU time of the current thread.
+     *
+     * @return The CPU time in nanoseconds, 0 if the JVM does not support measuring CPU time.
+     */
+    public static long getCurrentThreadCpuTime() {
+        ThreadMXBean lThreadBean = ManagementFactory.getThreadMXBean();
+        if (lThreadBean.isCurrentThreadCpuTimeSupported()) {
+            return lThreadBean.getCurrentThreadCpuTime();
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the counter with the given key, creates it if necessary.
+     *
+     * @param <K> The type of the key.
+     * @param counters The counters.
+     * @param key The key.
+     * @return The counter.
+     */
+    private static <K> Counter getCounter(ConcurrentMap<K, Counter> counters, K key) {
+        Counter lCounter = counters.get(key);
+        if (lCounter == null) {
+            counters.putIfAbsent(key, new Counter());
+            lCounter = counters.get(key);
+        }
+        return lCounter;
+    }
+
+    /**
+     * Pair of thread-safe counters.
+     *
+     * @author pinzger
+     */
+    private static class Counter {
+        private AtomicLong fFirst = new AtomicLong();
+        private AtomicLong fSecond = new AtomicLong();
+
+        void add(long first, long second) {
+            fFirst.addAndGet(first);
+            fSecond.addAndGet(second);
+        }
+    }
+
+    /**
+     * Measures the wall and CPU time of a phase in the thread that started it.
+     *
+     * @author pinzger
+     */
+    public final class PhaseTimer {
+        private String fPhase;
+        private long fStartTime;
+        private long fStartCpuTime;
+
+        /**
+         * The constructor.
+         *
+         * @param phase The name of the phase.
+         */
+        private PhaseTimer(String phase) {
+            fPhase = phase;
+            fStartTime = System.nanoTime();
+            fStartCpuTime = getCurrentThreadCpuTime();
+        }
+
+        /**
+         * Stops timing the phase and adds its wall and CPU time.
+         *
+         * @return The wall time of the phase in milliseconds.
+         */
+        public long stop() {
+            long lWallTime = System.nanoTime() - fStartTime;
+            addPhaseTime(fPhase, lWallTime, getCurrentThreadCpuTime() - fStartCpuTime);
+            return lWallTime / NANOS_PER_MILLI;
+        }
+    }
+}
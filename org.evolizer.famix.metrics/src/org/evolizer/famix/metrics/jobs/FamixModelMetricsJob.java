@@ -0,0 +1,138 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.metrics.jobs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.evolizer.core.exceptions.EvolizerException;
+import org.evolizer.core.exceptions.EvolizerRuntimeException;
+import org.evolizer.core.hibernate.session.EvolizerSessionHandler;
+import org.evolizer.core.hibernate.session.api.IEvolizerSession;
+import org.evolizer.famix.metrics.EvolizerFamixMetricsPlugin;
+import org.evolizer.famix.metrics.strategies.AbstractFamixMetricStrategy;
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixModel;
+import org.evolizer.famix.model.utils.FamixGraph;
+import org.evolizer.metrics.store.IMetricCalculationStrategy;
+import org.evolizer.metrics.store.MetricStore;
+
+/**
+ * Job for calculating metrics of all entities of a stored FAMIX model that is held in memory, e.g., the
+ * model loaded or updated by an importer job. The model is converted into a {@link FamixGraph} once, and
+ * the FAMIX metric strategies answer their association and descendant queries from the graph instead of
+ * querying the database per entity. The measurements are stored in the database of the model.
+ *
+ * @author pinzger
+ */
+public class FamixModelMetricsJob extends Job {
+    /**
+     * The stored FAMIX model.
+     */
+    private FamixModel fFamixModel;
+    /**
+     * URL of the database containing the model.
+     */
+    private String fDBUrl;
+    /**
+     * The identifiers of the metrics to calculate.
+     */
+    private List<String> fMetricIdentifiers;
+    /**
+     * The number of calculated or loaded measurements.
+     */
+    private int fNrOfMeasurements;
+
+    /**
+     * The constructor.
+     *
+     * @param famixModel    The FAMIX model, whose entities must be stored in the database.
+     * @param dbUrl The URL of the database containing the model.
+     * @param metricIdentifiers The identifiers of the metrics to calculate (e.g., FANIN), or all registered
+     *            metrics if empty.
+     */
+    public FamixModelMetricsJob(FamixModel famixModel, String dbUrl, Collection<String> metricIdentifiers) {
+        super("Calculate metrics of FAMIX model " + famixModel.getName());
+
+        fFamixModel = famixModel;
+        fDBUrl = dbUrl;
+        fMetricIdentifiers = new ArrayList<String>(metricIdentifiers);
+        fNrOfMeasurements = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        IStatus status = Status.OK_STATUS;
+        List<AbstractFamixEntity> lEntities = new ArrayList<AbstractFamixEntity>(fFamixModel.getFamixEntities());
+        SubMonitor progress = SubMonitor.convert(monitor, "Calculate metrics", lEntities.size() + 1);
+        try {
+            FamixGraph lGraph = new FamixGraph(fFamixModel);
+            List<String> lMetricIdentifiers = fMetricIdentifiers;
+            if (lMetricIdentifiers.isEmpty()) {
+                lMetricIdentifiers = new ArrayList<String>(MetricStore.listAllMetrics());
+            }
+            progress.worked(1);
+
+            IEvolizerSession lSession = EvolizerSessionHandler.getHandler().getCurrentSession(fDBUrl);
+            for (AbstractFamixEntity lEntity : lEntities) {
+                if (progress.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                for (String lIdentifier : lMetricIdentifiers) {
+                    IMetricCalculationStrategy lStrategy = MetricStore.getStrategy(lIdentifier, lEntity.getClass());
+                    if (lStrategy instanceof AbstractFamixMetricStrategy) {
+                        ((AbstractFamixMetricStrategy) lStrategy).calculateValue(lEntity, lSession, lGraph);
+                        fNrOfMeasurements++;
+                    } else if (lStrategy != null) {
+                        lStrategy.calculateValue(lEntity, lSession);
+                        fNrOfMeasurements++;
+                    }
+                }
+                progress.worked(1);
+            }
+        } catch (EvolizerException ee) {
+            status = new Status(IStatus.ERROR, EvolizerFamixMetricsPlugin.PLUGIN_ID,
+                    "Error opening the session of " + fDBUrl, ee);
+        } catch (EvolizerRuntimeException ere) {
+            status = new Status(IStatus.ERROR, EvolizerFamixMetricsPlugin.PLUGIN_ID,
+                    "Error calculating the metrics of FAMIX model " + fFamixModel.getName(), ere);
+        } finally {
+            if (monitor != null) {
+                monitor.done();
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Returns the number of calculated or loaded measurements.
+     *
+     * @return  The number of measurements.
+     */
+    public int getNrOfMeasurements() {
+        return fNrOfMeasurements;
+    }
+}
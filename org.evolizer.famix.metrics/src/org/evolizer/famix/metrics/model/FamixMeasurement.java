@@ -3,6 +3,8 @@ package org.evolizer.famix.metrics.model;
 
 import javax.persistence.Entity;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Transient;
 
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
@@ -16,8 +18,18 @@ import org.evolizer.metrics.model.entities.AbstractMeasurement;
  * 
  */
 @Entity
+@NamedQueries({
+	@NamedQuery(name = FamixMeasurement.QUERY_BY_IDENTIFIER_AND_ENTITY, query = "from FamixMeasurement as fm "
+			+ "where fm.identifier = :identifier and fm.entity.id = :entityId")
+})
 public class FamixMeasurement extends AbstractMeasurement {
 
+	/**
+	 * Named query of the measurement with the given <code>identifier</code> of
+	 * the entity with the given <code>entityId</code>
+	 */
+	public static final String QUERY_BY_IDENTIFIER_AND_ENTITY = "FamixMeasurement.byIdentifierAndEntity";
+
 	/**
 	 * Entity of which the metric value is calculated
 	 */
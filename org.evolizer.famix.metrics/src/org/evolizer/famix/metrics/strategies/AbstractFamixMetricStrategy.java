@@ -7,7 +7,10 @@ import org.evolizer.core.exceptions.EvolizerRuntimeException;
 import org.evolizer.core.hibernate.session.api.IEvolizerSession;
 import org.evolizer.famix.metrics.model.FamixMeasurement;
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.utils.FamixGraph;
+import org.evolizer.famix.model.utils.SnapshotAnalyzer;
 import org.evolizer.metrics.store.IMetricCalculationStrategy;
+import org.hibernate.NonUniqueResultException;
 
 
 /**
@@ -18,19 +21,32 @@ import org.evolizer.metrics.store.IMetricCalculationStrategy;
 public abstract class AbstractFamixMetricStrategy implements IMetricCalculationStrategy {
     private IEvolizerSession fCurrentSession = null;
     private AbstractFamixEntity fCurrentEntity = null;
+    private FamixGraph fCurrentGraph = null;
     
     /** 
      * {@inheritDoc}
      */
     public double calculateValue(Object entity, IEvolizerSession session) throws EvolizerRuntimeException {
+        return calculateValue(entity, session, null);
+    }
+
+    /**
+     * Calculates the metric like {@link #calculateValue(Object, IEvolizerSession)}, but answers the association
+     * and descendant queries of entities contained by the given graph from the graph instead of the database.
+     * 
+     * @param entity    The FAMIX entity.
+     * @param session   The session used to load and store the measurement.
+     * @param graph The in-memory graph of the model containing the entity, or null to query the database.
+     * @return  The calculated or loaded value.
+     * @throws EvolizerRuntimeException if more than one measurement is stored.
+     */
+    public double calculateValue(Object entity, IEvolizerSession session, FamixGraph graph) throws EvolizerRuntimeException {
         fCurrentEntity = (AbstractFamixEntity) entity;
         fCurrentSession = session;
+        fCurrentGraph = graph;
         
-        String query = "from FamixMeasurement as fm " +
-        		"where fm.identifier='" + this.getIdentifier() + "' " + 
-        		"and fm.entity.id = '" + fCurrentEntity.getId() + "'";
         // look in DB if there is already a value stored for that calculation
-        FamixMeasurement measurement = session.uniqueResult(query, FamixMeasurement.class);
+        FamixMeasurement measurement = queryMeasurement(session, fCurrentEntity, this.getIdentifier());
         if (measurement == null) {
             // no value in DB stored, so calculate the value and store it in DB
             measurement = new FamixMeasurement(fCurrentEntity, this.getIdentifier());
@@ -43,6 +59,32 @@ public abstract class AbstractFamixMetricStrategy implements IMetricCalculationS
         return measurement.getValue();
     }
 
+    /**
+     * Returns the stored measurement with the given identifier of the given entity.
+     * 
+     * @param session   The session.
+     * @param entity    The FAMIX entity.
+     * @param identifier    The identifier of the metric.
+     * @return  The stored measurement, or null if the value has not been calculated yet.
+     * @throws EvolizerRuntimeException if more than one measurement is stored.
+     */
+    public static FamixMeasurement queryMeasurement(IEvolizerSession session, AbstractFamixEntity entity, String identifier)
+            throws EvolizerRuntimeException {
+        if (entity.getId() == null) {
+            return null;
+        }
+
+        try {
+            return (FamixMeasurement) session.getHibernateSession()
+                    .getNamedQuery(FamixMeasurement.QUERY_BY_IDENTIFIER_AND_ENTITY)
+                    .setString("identifier", identifier)
+                    .setLong("entityId", entity.getId().longValue())
+                    .uniqueResult();
+        } catch (NonUniqueResultException nure) {
+            throw new EvolizerRuntimeException("Non unique " + identifier + " measurement of " + entity.getUniqueName(), nure);
+        }
+    }
+
     /**
      * Calculation of the specific metric implemented in sub-classes.
      * 
@@ -58,4 +100,17 @@ public abstract class AbstractFamixMetricStrategy implements IMetricCalculationS
     public AbstractFamixEntity getCurrentEntity() {
         return fCurrentEntity;
     }
+
+    public FamixGraph getCurrentGraph() {
+        return fCurrentGraph;
+    }
+
+    /**
+     * Creates the snapshot analyzer for the current session and graph.
+     * 
+     * @return  The snapshot analyzer.
+     */
+    protected SnapshotAnalyzer createSnapshotAnalyzer() {
+        return new SnapshotAnalyzer(fCurrentSession, fCurrentGraph);
+    }
 }
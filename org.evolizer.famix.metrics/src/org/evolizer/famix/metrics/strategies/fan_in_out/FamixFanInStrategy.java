@@ -23,7 +23,7 @@ public class FamixFanInStrategy extends AbstractFamixMetricStrategy {
 	@Override
 	protected double calculate() {
 	    double value = 0d;
-	    SnapshotAnalyzer snapshotAnalyzer = new SnapshotAnalyzer(getCurrentSession());
+	    SnapshotAnalyzer snapshotAnalyzer = createSnapshotAnalyzer();
 	    List<AbstractFamixEntity> entities = snapshotAnalyzer.getDescendants(getCurrentEntity());
 	    List<FamixInvocation> invocations = snapshotAnalyzer.queryAssociationsOfEntities(entities, FamixInvocation.class, "to");
 	    value = invocations.size();
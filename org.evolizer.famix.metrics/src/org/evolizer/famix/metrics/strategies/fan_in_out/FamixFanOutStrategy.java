@@ -24,7 +24,7 @@ public class FamixFanOutStrategy extends AbstractFamixMetricStrategy {
     @Override
     protected double calculate() {
         double value = 0d;
-        SnapshotAnalyzer snapshotAnalyzer = new SnapshotAnalyzer(getCurrentSession());
+        SnapshotAnalyzer snapshotAnalyzer = createSnapshotAnalyzer();
         List<AbstractFamixEntity> entities = snapshotAnalyzer.getDescendants(getCurrentEntity());
         List<FamixInvocation> invocations = snapshotAnalyzer.queryAssociationsOfEntities(entities, FamixInvocation.class, "from");
         value = invocations.size();
@@ -32,7 +32,7 @@ public abstract class AbstractInheritanceFamixClassStrategy extends AbstractFami
     
     protected List<FamixClass> querySuperClasses() {
         FamixClass famixClass = (FamixClass) getCurrentEntity();
-        SnapshotAnalyzer snapshotAnalyzer = new SnapshotAnalyzer(getCurrentSession());
+        SnapshotAnalyzer snapshotAnalyzer = createSnapshotAnalyzer();
         List<FamixClass> entities = new ArrayList<FamixClass>();
         entities.add(famixClass);
         Set<FamixClass> dependentEntities = new HashSet<FamixClass>();
@@ -31,7 +31,7 @@ public class DITFamixClassStrategy extends AbstractInheritanceFamixClassStrategy
     protected double calculate() {
         double value = 0d;
         FamixClass famixClass = (FamixClass) getCurrentEntity();
-        SnapshotAnalyzer snapshotAnalyzer = new SnapshotAnalyzer(getCurrentSession());
+        SnapshotAnalyzer snapshotAnalyzer = createSnapshotAnalyzer();
         List<FamixClass> entities = new ArrayList<FamixClass>();
         entities.add(famixClass);
         Set<FamixClass> dependentEntities = new HashSet<FamixClass>();
@@ -32,7 +32,7 @@ public class NMEFamixClassStrategy extends AbstractInheritanceFamixClassStrategy
     protected double calculate() {
         double value = 0d;
         FamixClass famixClass = (FamixClass) getCurrentEntity();
-        SnapshotAnalyzer snapshotAnalyzer = new SnapshotAnalyzer(getCurrentSession());
+        SnapshotAnalyzer snapshotAnalyzer = createSnapshotAnalyzer();
         List<FamixClass> superClasses = querySuperClasses();
 
         List<FamixInvocation> invocations = snapshotAnalyzer.queryAssociationsOfEntities(
@@ -27,7 +27,7 @@ public class NOCFamixClassStrategy extends AbstractFamixMetricStrategy {
     @Override
     protected double calculate() {
         double value = 0d;
-        SnapshotAnalyzer snapshotAnalyzer = new SnapshotAnalyzer(getCurrentSession());
+        SnapshotAnalyzer snapshotAnalyzer = createSnapshotAnalyzer();
         List<AbstractFamixEntity> entities = new ArrayList<AbstractFamixEntity>();
         entities.add(getCurrentEntity());
         List<AbstractFamixGeneralization> generalizations = snapshotAnalyzer.queryAssociationsOfEntities(entities, AbstractFamixGeneralization.class, "to");
@@ -14,6 +14,12 @@ public abstract class AbstractLOCStrategy extends AbstractFamixMetricStrategy {
 
 	private static final String fIdentifier = "LOC";
 	private static final String fDescription = "Calculates the lines of code";
+	private static final Pattern PACKAGE_DECLARATION = Pattern.compile("^(\\s)*(package)");
+	private static final Pattern IMPORT_STATEMENT = Pattern.compile("^(\\s)*(import)");
+	private static final Pattern EMPTY_LINE = Pattern.compile("^(\\s)*$");
+	private static final Pattern COMMENT_START = Pattern.compile("^(\\s)*(/[*])");
+	private static final Pattern COMMENT_END = Pattern.compile("([*]/)");
+	private static final Pattern LINE_COMMENT = Pattern.compile("^(\\s)*[//]");
 	private boolean inComment = false;
 
 	public String getDescription() {
@@ -28,18 +34,25 @@ public abstract class AbstractLOCStrategy extends AbstractFamixMetricStrategy {
 	 * Strategy for LOC calculation, counts all code lines (Special: - counts
 	 * annotations as code - counts lines with code followed by comment as code
 	 * - does not count lines with closing comment (* /) followed by code)
+	 * The lines are matched as views of the code without copying them.
 	 * 
 	 * @param code
 	 * @return calculated value
 	 */
-	protected float calculateLOC(String code) {
+	protected float calculateLOC(CharSequence code) {
 	    float metricValue = 0;
-		String[] LOCs = code.split("\n");
-		for (String line : LOCs) {
+		int start = 0;
+		while (start <= code.length()) {
+			int end = start;
+			while (end < code.length() && code.charAt(end) != '\n') {
+				end++;
+			}
+			CharSequence line = code.subSequence(start, end);
 			if (!isComment(line) && !isEmptyLine(line) && !inComment
 					&& !isImportStatement(line) && !isPackageDeclaration(line)) {
 				metricValue++;
 			}
+			start = end + 1;
 		}
 		return metricValue;
 	}
@@ -47,39 +60,39 @@ public abstract class AbstractLOCStrategy extends AbstractFamixMetricStrategy {
 	/*
 	 * checks whether the string can be interpreted as a package declaration
 	 */
-	private boolean isPackageDeclaration(String line) {
-		return Pattern.compile("^(\\s)*(package)").matcher(line).find();
+	private boolean isPackageDeclaration(CharSequence line) {
+		return PACKAGE_DECLARATION.matcher(line).find();
 	}
 
 	/*
 	 * checks whether the string can be interpreted as an import statement
 	 */
-	private boolean isImportStatement(String line) {
-		return Pattern.compile("^(\\s)*(import)").matcher(line).find();
+	private boolean isImportStatement(CharSequence line) {
+		return IMPORT_STATEMENT.matcher(line).find();
 	}
 
 	/*
 	 * checks whether the string can be interpreted as an empty line
 	 */
-	private boolean isEmptyLine(String line) {
-		return Pattern.compile("^(\\s)*$").matcher(line).find();
+	private boolean isEmptyLine(CharSequence line) {
+		return EMPTY_LINE.matcher(line).find();
 	}
 
 	/*
 	 * checks whether the string can be interpreted as comment
 	 */
-	private boolean isComment(String line) {
+	private boolean isComment(CharSequence line) {
 		boolean comment = false;
-		if (Pattern.compile("^(\\s)*(/[*])").matcher(line).find()) {
+		if (COMMENT_START.matcher(line).find()) {
 			inComment = true;
 			comment = true;
 			;
 		}
-		if (Pattern.compile("([*]/)").matcher(line).find()) {
+		if (COMMENT_END.matcher(line).find()) {
 			inComment = false;
 			comment = true;
 		}
-		return (Pattern.compile("^(\\s)*[//]").matcher(line).find() || comment);
+		return (LINE_COMMENT.matcher(line).find() || comment);
 	}
 
 }
@@ -9,6 +9,6 @@ public class LOCFamixClassStrategy extends AbstractLOCStrategy {
 
     @Override
 	protected double calculate() {
-		return calculateLOC(getCurrentEntity().getSource());
+		return calculateLOC(getCurrentEntity().getSourceView());
 	}	
 }
@@ -11,7 +11,7 @@ public class LOCFamixMethodStrategy extends AbstractLOCStrategy {
 
 	@Override
 	protected double calculate() {
-		return calculateLOC(getCurrentEntity().getSource());
+		return calculateLOC(getCurrentEntity().getSourceView());
 	}
 
 	public Class<?>[] getCompatibleTypes() {
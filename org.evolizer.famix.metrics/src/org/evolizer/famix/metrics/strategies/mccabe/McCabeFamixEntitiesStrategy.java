@@ -3,6 +3,7 @@ package org.evolizer.famix.metrics.strategies.mccabe;
 import org.evolizer.core.exceptions.EvolizerRuntimeException;
 import org.evolizer.core.hibernate.session.api.IEvolizerSession;
 import org.evolizer.famix.metrics.model.FamixMeasurement;
+import org.evolizer.famix.metrics.strategies.AbstractFamixMetricStrategy;
 import org.evolizer.famix.model.entities.AbstractFamixEntity;
 import org.evolizer.metrics.model.entities.AbstractMeasurement;
 
@@ -19,9 +20,7 @@ public abstract class McCabeFamixEntitiesStrategy extends McCabeStrategy {
 
 	public double calculateValue(Object entity, IEvolizerSession session) throws EvolizerRuntimeException {
 	    AbstractFamixEntity fEntity = (AbstractFamixEntity) entity;
-		String query = "from FamixMeasurement as fm where fm.identifier='McCabe' and fm.entity.id = '"
-				+ fEntity.getId() + "'";
-		measurement = session.uniqueResult(query, FamixMeasurement.class);
+		measurement = AbstractFamixMetricStrategy.queryMeasurement(session, fEntity, "McCabe");
 		if (measurement == null) {
 			FamixMeasurement fMeasurement = new FamixMeasurement(fEntity, "McCabe");
 			fMeasurement.setValue(calculateValue(fEntity));
@@ -24,7 +24,7 @@ public class FamixNumberOfAttributesPackageStrategy extends AbstractFamixNumberO
     @Override
     protected double calculate() {
         double value = 0d;
-        SnapshotAnalyzer snapshotAnalyzer = new SnapshotAnalyzer(getCurrentSession());
+        SnapshotAnalyzer snapshotAnalyzer = createSnapshotAnalyzer();
         List<AbstractFamixEntity> entities = snapshotAnalyzer.getDescendants(getCurrentEntity());
         for (AbstractFamixEntity famixEntity : entities) {
             if (famixEntity instanceof FamixAttribute) {
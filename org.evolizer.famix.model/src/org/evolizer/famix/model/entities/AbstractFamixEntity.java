@@ -19,6 +19,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -28,12 +29,18 @@ import javax.persistence.InheritanceType;
 import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToOne;
 import javax.persistence.Transient;
 
 import org.evolizer.core.hibernate.model.api.IEvolizerModelEntity;
+import org.evolizer.famix.model.utils.SourceCache;
 import org.evolizer.model.resources.entities.misc.Content;
 import org.evolizer.model.resources.entities.misc.IHierarchicalElement;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Index;
 
 /**
  * The base class representing a FAMIX entity.
@@ -42,8 +49,21 @@ import org.evolizer.model.resources.entities.misc.IHierarchicalElement;
  */
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedQueries({
+    @NamedQuery(name = AbstractFamixEntity.QUERY_AT_SOURCE_POSITION, query = "select e from AbstractFamixEntity as e "
+            + "join e.sourceAnchor as sa where sa.file = :file and sa.startPos < :offset and sa.endPos > :offset "
+            + "and e.uniqueName not like '%.<clinit>()' and e.uniqueName not like '%.<oinit>()'")
+})
 public abstract class AbstractFamixEntity extends AbstractFamixObject implements IEvolizerModelEntity {
 
+    /**
+     * Named query of the entities whose source anchor in a <code>file</code> (the full workspace path as stored by
+     * the importer) encloses the given <code>offset</code>, without class and object initializers. Matches the
+     * indexed file and start position of the source anchors.
+     */
+    public static final String QUERY_AT_SOURCE_POSITION = "AbstractFamixEntity.atSourcePosition";
+
     /** Name of the default package. */
     public static final String DEFAULT_PACKAGE_NAME = "<DEFAULT PACKAGE>";
 
@@ -129,6 +149,17 @@ public abstract class AbstractFamixEntity extends AbstractFamixObject implements
      */
     public static final String METHOD_PARAMETER_ARRAY = "[]";
 
+    /**
+     * Maximum length of the indexed prefix of the unique name.
+     */
+    public static final int UNIQUE_NAME_PREFIX_LENGTH = 255;
+
+    /**
+     * Offset basis and prime of the 64 bit FNV-1a hash of unique names.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     /**
      * The Hibernate ID of the FAMIX entity (set by Hibernate).
      */
@@ -144,6 +175,16 @@ public abstract class AbstractFamixEntity extends AbstractFamixObject implements
      */
     private String fUniqueName;
 
+    /**
+     * Hash of the unique name, computed from the unique name if null.
+     */
+    private Long fUniqueNameHash;
+
+    /**
+     * Prefix of the unique name, computed from the unique name if null.
+     */
+    private String fUniqueNamePrefix;
+
     /**
      * Java modifiers - see {@link org.eclipse.jdt.core.dom.Modifier}.
      */
@@ -205,12 +246,12 @@ public abstract class AbstractFamixEntity extends AbstractFamixObject implements
 
     /**
      * {@inheritDoc}
+     * 
+     * Combines the hash codes of the class name and the unique name without building a hash string.
      */
     @Override
     public int hashCode() {
-        String hashString = this.getClass().getName() + HASH_STRING_DELIMITER + getUniqueName();
-
-        return hashString.hashCode();
+        return combineHash(getClass().getName().hashCode(), getUniqueName());
     }
 
     /**
@@ -300,6 +341,92 @@ public abstract class AbstractFamixEntity extends AbstractFamixObject implements
      */
     public void setUniqueName(String uniqueName) {
         fUniqueName = uniqueName;
+        fUniqueNameHash = null;
+        fUniqueNamePrefix = null;
+    }
+
+    /**
+     * Returns the hash of the unique name. The unique name is a LOB that databases cannot index, hence, entities
+     * are looked up by the indexed hash and the matches are compared by their unique name. The hash is written
+     * when the entity is inserted and never updated, hence, computing it for a loaded entity does not make the
+     * entity dirty. Rows stored without hash are filled by {@link org.evolizer.famix.model.utils.SnapshotAnalyzer}.
+     * 
+     * @return The hash of the unique name, null if the entity has no unique name.
+     */
+    @Column(updatable = false)
+    @Index(name = "AbstractFamixEntity_hash_idx")
+    public Long getUniqueNameHash() {
+        if ((fUniqueNameHash == null) && (fUniqueName != null)) {
+            fUniqueNameHash = Long.valueOf(computeUniqueNameHash(fUniqueName));
+        }
+        return fUniqueNameHash;
+    }
+
+    /**
+     * Sets the hash of the unique name. Used by Hibernate, the hash is maintained with the unique name.
+     * 
+     * @param uniqueNameHash
+     *            The hash of the unique name.
+     */
+    protected void setUniqueNameHash(Long uniqueNameHash) {
+        fUniqueNameHash = uniqueNameHash;
+    }
+
+    /**
+     * Returns the first {@link #UNIQUE_NAME_PREFIX_LENGTH} characters of the unique name. Used for indexed
+     * prefix queries, the matches are compared by their unique name. Like the hash, the prefix is written when
+     * the entity is inserted and never updated.
+     * 
+     * @return The prefix of the unique name, null if the entity has no unique name.
+     */
+    @Column(length = UNIQUE_NAME_PREFIX_LENGTH, updatable = false)
+    @Index(name = "AbstractFamixEntity_prefix_idx")
+    public String getUniqueNamePrefix() {
+        if ((fUniqueNamePrefix == null) && (fUniqueName != null)) {
+            fUniqueNamePrefix = computeUniqueNamePrefix(fUniqueName);
+        }
+        return fUniqueNamePrefix;
+    }
+
+    /**
+     * Sets the prefix of the unique name. Used by Hibernate, the prefix is maintained with the unique name.
+     * 
+     * @param uniqueNamePrefix
+     *            The prefix of the unique name.
+     */
+    protected void setUniqueNamePrefix(String uniqueNamePrefix) {
+        fUniqueNamePrefix = uniqueNamePrefix;
+    }
+
+    /**
+     * Computes the 64 bit FNV-1a hash of the given unique name.
+     * 
+     * @param uniqueName
+     *            The unique name.
+     * @return The hash.
+     */
+    public static long computeUniqueNameHash(String uniqueName) {
+        long lHash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < uniqueName.length(); i++) {
+            char lChar = uniqueName.charAt(i);
+            lHash = (lHash ^ (lChar & 0xff)) * FNV_PRIME;
+            lHash = (lHash ^ (lChar >>> 8)) * FNV_PRIME;
+        }
+        return lHash;
+    }
+
+    /**
+     * Returns the indexed prefix of the given unique name.
+     * 
+     * @param uniqueName
+     *            The unique name.
+     * @return The first {@link #UNIQUE_NAME_PREFIX_LENGTH} characters of the unique name.
+     */
+    public static String computeUniqueNamePrefix(String uniqueName) {
+        if (uniqueName.length() <= UNIQUE_NAME_PREFIX_LENGTH) {
+            return uniqueName;
+        }
+        return uniqueName.substring(0, UNIQUE_NAME_PREFIX_LENGTH);
     }
 
     /**
@@ -360,19 +487,18 @@ public abstract class AbstractFamixEntity extends AbstractFamixObject implements
      */
     @Transient
     public String getSource() {
-        String source = "";
-        if (getSourceAnchor() != null) {
-            AbstractFamixEntity topLevelEntity = this;
-            while (topLevelEntity.getParent() != null && !(topLevelEntity.getParent() instanceof FamixPackage)) {
-                topLevelEntity = topLevelEntity.getParent();
-            }
-    
-            if (topLevelEntity instanceof FamixClass) {
-                source = topLevelEntity.getContent().getSource().substring(getSourceAnchor().getStartPos(), getSourceAnchor().getEndPos());
-            }
-        }
+        return getSourceView().toString();
+    }
 
-        return source;
+    /**
+     * Returns a read-only view of the source code of the entity. The source code of the Java file is
+     * cached by the shared {@link SourceCache}, hence, the view is not copied from the file's text.
+     * 
+     * @return The source code, empty if not available.
+     */
+    @Transient
+    public CharSequence getSourceView() {
+        return SourceCache.getSharedCache().getSource(this);
     }
 
     /**
@@ -383,19 +509,8 @@ public abstract class AbstractFamixEntity extends AbstractFamixObject implements
      */
     @Transient
     public String getJavaFileSourceCode() {
-        String source = "";
-        if (getSourceAnchor() != null) {
-            AbstractFamixEntity topLevelEntity = this;
-            while (topLevelEntity.getParent() != null && !(topLevelEntity.getParent() instanceof FamixPackage)) {
-                topLevelEntity = topLevelEntity.getParent();
-            }
-    
-            if (topLevelEntity instanceof FamixClass) {
-                source = topLevelEntity.getContent().getSource();
-            }
-        }
-        
-        return source;
+        CharSequence source = SourceCache.getSharedCache().getJavaFileSource(this);
+        return (source != null) ? source.toString() : null;
     }
     
     /**
@@ -37,6 +37,9 @@ public abstract class AbstractFamixObject implements Cloneable, IEvolizerModelEn
     /** Delimiter for computing the hash string. */
     protected static final String HASH_STRING_DELIMITER = ":";
 
+    /** Multiplier for combining hash codes. */
+    protected static final int HASH_MULTIPLIER = 31;
+
     /**
      * The location of the entity/association in the source code.
      */
@@ -59,6 +62,35 @@ public abstract class AbstractFamixObject implements Cloneable, IEvolizerModelEn
         super();
     }
 
+    /**
+     * Combines the hash code with the hash code of the given string. The hash code of a
+     * string is cached by the string itself, hence, combining does not allocate and always
+     * reflects the current state of the object.
+     * 
+     * @param hash The hash code computed so far.
+     * @param value The string, may be null.
+     * @return The combined hash code.
+     */
+    protected static int combineHash(int hash, String value) {
+        return HASH_MULTIPLIER * hash + ((value != null) ? value.hashCode() : 0);
+    }
+
+    /**
+     * Combines the hash code with the hash code of the source anchor, i.e., the file and the end position
+     * of the source anchor.
+     * 
+     * @param hash The hash code computed so far.
+     * @param sourceAnchor The source anchor, may be null.
+     * @return The combined hash code.
+     */
+    protected static int combineHash(int hash, SourceAnchor sourceAnchor) {
+        if (sourceAnchor == null) {
+            return hash;
+        }
+        int lHash = combineHash(hash, sourceAnchor.getFile());
+        return HASH_MULTIPLIER * lHash + ((sourceAnchor.getEndPos() != null) ? sourceAnchor.getEndPos().intValue() : 0);
+    }
+
     /**
      * Returns the source anchor.
      * 
@@ -28,14 +28,24 @@ import javax.persistence.Transient;
 import org.apache.log4j.Logger;
 import org.evolizer.core.hibernate.model.api.IEvolizerModelEntity;
 import org.evolizer.famix.model.FamixModelPlugin;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Table;
 
 /**
- * Entity representing general associations between FAMIX entities
+ * Entity representing general associations between FAMIX entities. The associations of an entity are queried 
+ * by source or target and type, therefore both are indexed together with the type and the opposite entity.
  * 
  * @author pinzger
  */
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(appliesTo = "FamixAssociation", indexes = {
+        @Index(name = "FamixAssociation_from_idx", columnNames = {"from_id", "DTYPE", "to_id"}),
+        @Index(name = "FamixAssociation_to_idx", columnNames = {"to_id", "DTYPE", "from_id"})
+})
 public class FamixAssociation extends AbstractFamixObject implements IEvolizerModelEntity {
     /**
      * The logger. 
@@ -142,18 +152,16 @@ public class FamixAssociation extends AbstractFamixObject implements IEvolizerMo
      */
     @Override
     public int hashCode() {
-        String hashString =
-                this.getClass().getName() + HASH_STRING_DELIMITER + getFrom().getUniqueName() + HASH_STRING_DELIMITER
-                        + getTo().getUniqueName();
+        int hash = getClass().getName().hashCode();
+        hash = combineHash(hash, getFrom().getUniqueName());
+        hash = combineHash(hash, getTo().getUniqueName());
 
         if (getSourceAnchor() == null) {
             sLogger.warn("HASHCODE: " + this.getClass().getName() + " association from " + getFrom().getUniqueName()
                     + " to " + getTo().getUniqueName() + " has no SourceAnchor");
-        } else {
-            hashString += getSourceAnchor().getFile() + HASH_STRING_DELIMITER + getSourceAnchor().getEndPos();
         }
 
-        return hashString.hashCode();
+        return combineHash(hash, getSourceAnchor());
     }
 
     /** 
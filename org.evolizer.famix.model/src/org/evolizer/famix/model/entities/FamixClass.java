@@ -25,6 +25,9 @@ import javax.persistence.OneToMany;
 import javax.persistence.Transient;
 
 import org.evolizer.model.resources.entities.misc.IHierarchicalElement;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Entity representing a Java class, interface, inner class, or anonymous class.
@@ -81,6 +84,7 @@ public class FamixClass extends AbstractFamixEntity implements IHierarchicalElem
      */
     @OneToMany
     @JoinTable(name = "Class_Attribute", joinColumns = { @JoinColumn(name = "class_id") }, inverseJoinColumns = @JoinColumn(name = "attribute_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     public Set<FamixAttribute> getAttributes() {
         return fAttributes;
     }
@@ -106,6 +110,7 @@ public class FamixClass extends AbstractFamixEntity implements IHierarchicalElem
      */
     @OneToMany
     @JoinTable(name = "Class_InnerClasse", joinColumns = { @JoinColumn(name = "class_id") }, inverseJoinColumns = @JoinColumn(name = "innerclass_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     public Set<org.evolizer.famix.model.entities.FamixClass> getInnerClasses() {
         return fInnerClasses;
     }
@@ -117,6 +122,7 @@ public class FamixClass extends AbstractFamixEntity implements IHierarchicalElem
      */
     @OneToMany
     @JoinTable(name = "Class_Method", joinColumns = { @JoinColumn(name = "class_id") }, inverseJoinColumns = @JoinColumn(name = "method_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     public Set<FamixMethod> getMethods() {
         return fMethods;
     }
@@ -176,4 +182,13 @@ public class FamixClass extends AbstractFamixEntity implements IHierarchicalElem
     public void setSource(String source) {
         getContent().setSource(source);
     }
+
+    /**
+     * Sets the source code stored in the given source blob. The blob may be shared with other classes.
+     * 
+     * @param source The source blob containing the source code of the class.
+     */
+    public void setSource(SourceBlob source) {
+        getContent().setBlob(source);
+    }
 }
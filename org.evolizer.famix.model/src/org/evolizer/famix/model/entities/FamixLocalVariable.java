@@ -85,16 +85,12 @@ public class FamixLocalVariable extends AbstractFamixVariable {
      */
     @Override
     public int hashCode() {
-        String hashString = this.getClass().getName() + HASH_STRING_DELIMITER + getUniqueName();
-
         if (getSourceAnchor() == null) {
             sLogger.warn("HASHCODE: " + this.getClass().getName() + HASH_STRING_DELIMITER + getUniqueName()
                     + " has no SourceAnchor");
-        } else {
-            hashString += getSourceAnchor().getFile() + HASH_STRING_DELIMITER + getSourceAnchor().getEndPos();
         }
 
-        return hashString.hashCode();
+        return combineHash(super.hashCode(), getSourceAnchor());
     }
     
     /**
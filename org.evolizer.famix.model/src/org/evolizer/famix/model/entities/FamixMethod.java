@@ -29,6 +29,8 @@ import javax.persistence.OneToMany;
 import javax.persistence.Transient;
 
 import org.evolizer.model.resources.entities.misc.IHierarchicalElement;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Entity representing a method.
@@ -152,6 +154,7 @@ public class FamixMethod extends AbstractFamixEntity implements IHierarchicalEle
      */
     @OneToMany(targetEntity = FamixParameter.class)
     @JoinTable(name = "Method_Parameter", joinColumns = {@JoinColumn(name = "method_id")}, inverseJoinColumns = @JoinColumn(name = "parameter_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     public List<FamixParameter> getParameters() {
         return fParameters;
     }
@@ -163,6 +166,7 @@ public class FamixMethod extends AbstractFamixEntity implements IHierarchicalEle
      */
     @OneToMany(targetEntity = FamixLocalVariable.class)
     @JoinTable(name = "Method_LocalVariable", joinColumns = {@JoinColumn(name = "method_id")}, inverseJoinColumns = @JoinColumn(name = "localvariable_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     public Set<FamixLocalVariable> getLocalVariables() {
         return fLocalVariables;
     }
@@ -174,6 +178,7 @@ public class FamixMethod extends AbstractFamixEntity implements IHierarchicalEle
      */
     @OneToMany
     @JoinTable(name = "Method_AnonymClass", joinColumns = {@JoinColumn(name = "method_id")}, inverseJoinColumns = @JoinColumn(name = "anonymClasses_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     public Set<FamixClass> getAnonymClasses() {
         return fAnonymClasses;
     }
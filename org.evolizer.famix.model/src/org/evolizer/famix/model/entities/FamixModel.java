@@ -28,6 +28,8 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Transient;
 
@@ -42,7 +44,36 @@ import org.evolizer.famix.model.FamixModelPlugin;
  * @author pinzger
  */
 @Entity
+@NamedQueries({
+    @NamedQuery(name = FamixModel.QUERY_BY_NAME, query = "from FamixModel as fm "
+            + "where fm.name = :name order by fm.created desc"),
+    @NamedQuery(name = FamixModel.QUERY_HEADER_BY_NAME, query = "select fm.id, fm.name, fm.created "
+            + "from FamixModel as fm where fm.name = :name order by fm.created desc"),
+    @NamedQuery(name = FamixModel.QUERY_ENTITIES, query = "select e from FamixModel as fm "
+            + "join fm.famixEntities as e where fm.id = :modelId"),
+    @NamedQuery(name = FamixModel.QUERY_ASSOCIATIONS_OF_ENTITY, query = "select a from FamixModel as fm "
+            + "join fm.famixAssociations as a where fm.id = :modelId and (a.from.id = :entityId or a.to.id = :entityId)")
+})
 public class FamixModel implements IEvolizerModelEntity {
+    /**
+     * Named query of the stored models with the given <code>name</code>, most recent first.
+     */
+    public static final String QUERY_BY_NAME = "FamixModel.byName";
+    /**
+     * Named query of the id, name, and creation date of the stored models with the given <code>name</code>, most
+     * recent first.
+     */
+    public static final String QUERY_HEADER_BY_NAME = "FamixModel.headerByName";
+    /**
+     * Named query of the entities contained by the stored model with the given <code>modelId</code>.
+     */
+    public static final String QUERY_ENTITIES = "FamixModel.entities";
+    /**
+     * Named query of the in-coming and outgoing associations of the entity with the given <code>entityId</code>
+     * contained by the stored model with the given <code>modelId</code>.
+     */
+    public static final String QUERY_ASSOCIATIONS_OF_ENTITY = "FamixModel.associationsOfEntity";
+
     /**
      * The logger. 
      */
@@ -73,6 +104,11 @@ public class FamixModel implements IEvolizerModelEntity {
      */
     private Map<AbstractFamixEntity, Bundle> fFamixToBundleMap = new Hashtable<AbstractFamixEntity, Bundle>();
 
+    /**
+     * Loads the associations of an entity on first access, null if all associations are added explicitly.
+     */
+    private IFamixAssociationLoader fAssociationLoader;
+
     /**
      * The default constructor.
      */
@@ -209,7 +245,7 @@ public class FamixModel implements IEvolizerModelEntity {
          */
         private AbstractFamixEntity fEntity;
         /**
-         * The set of associations of the FAMIX entity.
+         * The set of associations of the FAMIX entity, null until loaded by the association loader.
          */
         private Set<FamixAssociation> fRelations;
 
@@ -220,7 +256,9 @@ public class FamixModel implements IEvolizerModelEntity {
          */
         public Bundle(AbstractFamixEntity famixEntity) {
             fEntity = famixEntity;
-            fRelations = new HashSet<FamixAssociation>();
+            if (fAssociationLoader == null) {
+                fRelations = new HashSet<FamixAssociation>();
+            }
         }
 
         /**
@@ -238,8 +276,64 @@ public class FamixModel implements IEvolizerModelEntity {
          * @return The set of associations.
          */
         public Set<FamixAssociation> getAssociations() {
+            if (fRelations == null) {
+                fRelations = new HashSet<FamixAssociation>();
+                for (FamixAssociation lAssociation : fAssociationLoader.loadAssociations(fEntity)) {
+                    AbstractFamixEntity lFrom = getElement(lAssociation.getFrom());
+                    AbstractFamixEntity lTo = getElement(lAssociation.getTo());
+                    if ((lFrom != null) && (lTo != null)) {
+                        lAssociation.setFrom(lFrom);
+                        lAssociation.setTo(lTo);
+                        fRelations.add(lAssociation);
+                        fFamixAssociations.add(lAssociation);
+                    }
+                }
+            }
             return fRelations;
         }
+
+        /**
+         * Returns true, if the associations of the FAMIX entity are in memory.
+         * 
+         * @return True, if the associations have been added or loaded.
+         */
+        public boolean isMaterialized() {
+            return fRelations != null;
+        }
+    }
+
+    /**
+     * Sets the loader used to materialize the associations of entities on first access. Entities added
+     * afterwards obtain their associations from the loader, hence, the loader must be set before the entities
+     * are added. With a loader, {@link #getFamixAssociations()} only contains the associations materialized
+     * so far.
+     * 
+     * @param associationLoader The association loader, or null.
+     */
+    public void setAssociationLoader(IFamixAssociationLoader associationLoader) {
+        fAssociationLoader = associationLoader;
+    }
+
+    /**
+     * Returns the loader used to materialize the associations of entities on first access.
+     * 
+     * @return The association loader, or null if all associations are in memory.
+     */
+    @Transient
+    public IFamixAssociationLoader getAssociationLoader() {
+        return fAssociationLoader;
+    }
+
+    /**
+     * Checks whether the associations of the given FAMIX entity are in memory. This is always the
+     * case for models without association loader.
+     * 
+     * @param famixEntity The FAMIX entity.
+     * @return True, if the model contains the entity and its associations are in memory.
+     */
+    public boolean isMaterialized(AbstractFamixEntity famixEntity) {
+        Bundle lBundle = getBundle(famixEntity);
+        return (lBundle != null) && lBundle.isMaterialized();
     }
     
     /**
@@ -379,24 +473,48 @@ public class FamixModel implements IEvolizerModelEntity {
         }
     }
 
+    /**
+     * Removes an association from the model.
+     * 
+     * @param association The association to remove.
+     * @return True, if the model contained the association.
+     */
+    public boolean removeRelation(FamixAssociation association) {
+        if ((association == null) || !fFamixAssociations.contains(association)) {
+            return false;
+        }
+
+        Bundle lFromBundle = getBundle(association.getFrom());
+        if (lFromBundle != null) {
+            lFromBundle.getAssociations().remove(association);
+        }
+        Bundle lToBundle = getBundle(association.getTo());
+        if (lToBundle != null) {
+            lToBundle.getAssociations().remove(association);
+        }
+        fFamixAssociations.remove(association);
+
+        return true;
+    }
+
     /**
      * Remove an element and all its direct and transpose relations.
      * 
-     * @param famixEntity The element to remove. Must not be null and must exist in the database.
-     */
-//    public void removeElement(AbstractFamixEntity famixEntity) {
-//        if (contains(famixEntity)) {
-//            Set<FamixAssociation> associations = getAssociations(famixEntity);
-//            for (FamixAssociation lRelation : associations) {
-//                AbstractFamixEntity toEntity = lRelation.getTo();
-//                if (!toEntity.equals(famixEntity)) {
-//                    getAssociations(toEntity).remove(lRelation);
-//                    fFamixAssociations.remove(lRelation);
-//                }
-//            }
-//
-//            fFamixToBundleMap.remove(famixEntity);
-//            fFamixEntities.remove(famixEntity);
-//        }
-//    }
+     * @param famixEntity The element to remove.
+     * @return The associations that have been removed together with the element.
+     */
+    public Set<FamixAssociation> removeElement(AbstractFamixEntity famixEntity) {
+        Set<FamixAssociation> lRemovedAssociations = new HashSet<FamixAssociation>();
+        if (contains(famixEntity)) {
+            lRemovedAssociations.addAll(getAssociations(famixEntity));
+            for (FamixAssociation lRelation : lRemovedAssociations) {
+                removeRelation(lRelation);
+            }
+
+            fFamixToBundleMap.remove(famixEntity);
+            fFamixEntities.remove(famixEntity);
+        }
+
+        return lRemovedAssociations;
+    }
 }
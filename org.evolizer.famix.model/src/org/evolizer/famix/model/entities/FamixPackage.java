@@ -25,6 +25,8 @@ import javax.persistence.OneToMany;
 import javax.persistence.Transient;
 
 import org.evolizer.model.resources.entities.misc.IHierarchicalElement;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Entity representing a package.
@@ -92,6 +94,7 @@ public class FamixPackage extends AbstractFamixEntity implements IHierarchicalEl
      */
     @OneToMany
     @JoinTable(name = "Package_Class", joinColumns = { @JoinColumn(name = "package_id") }, inverseJoinColumns = @JoinColumn(name = "class_id"))
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     public Set<FamixClass> getClasses() {
         return fClasses;
     }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.model.entities;
+
+import java.util.Collection;
+
+/**
+ * Loads the associations of a FAMIX entity on demand. A {@link FamixModel} with an association
+ * loader materializes the associations of an entity the first time they are accessed.
+ *
+ * @author pinzger
+ */
+public interface IFamixAssociationLoader {
+
+    /**
+     * Loads the in-coming and outgoing associations of the given entity.
+     *
+     * @param famixEntity The FAMIX entity.
+     * @return The associations of the entity, empty if there are none.
+     */
+    public Collection<FamixAssociation> loadAssociations(AbstractFamixEntity famixEntity);
+}
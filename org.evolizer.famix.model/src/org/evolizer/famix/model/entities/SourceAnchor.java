@@ -22,14 +22,23 @@ import javax.persistence.Id;
 import javax.persistence.Transient;
 
 import org.evolizer.core.hibernate.model.api.IEvolizerModelEntity;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Table;
 
 /**
  * Reference to the location of a FAMIX entity/association in the source code. The reference has the form of:
  * "fFile:fStart:fEnd". The "fFile" denotes the source fFile and "fStart"/"fEnd" mark the position for the anchor.
+ * Anchors are looked up by file and position, which are therefore indexed together.
  * 
  * @author pinzger
  */
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(appliesTo = "SourceAnchor", indexes = {
+        @Index(name = "SourceAnchor_position_idx", columnNames = {"file", "startPos", "endPos"})
+})
 public final class SourceAnchor implements IEvolizerModelEntity {
 
     /** Delimiter used to define source anchors. */
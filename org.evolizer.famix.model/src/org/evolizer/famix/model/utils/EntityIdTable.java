@@ -0,0 +1,173 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.model.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collection;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+
+/**
+ * Temporary table holding the Hibernate IDs of a set of entities, such that queries can restrict to the set
+ * with a sub-query joined on the database server instead of a large <code>IN</code> list.
+ *
+ * The table is created with the temporary table syntax of the dialect and its rows are visible to the connection
+ * of the session only, hence, it must be created, queried, and dropped within one transaction. The tables of a
+ * query are numbered, since some databases reject referring twice to the same temporary table in one query.
+ * Otherwise the names are fixed: dialects that keep temporary tables after use, e.g., with table definitions
+ * shared between connections, reuse the table of a number and only delete its rows, such that no tables
+ * accumulate on pooled connections.
+ *
+ * @author pinzger
+ */
+class EntityIdTable {
+
+    /**
+     * Name of the ID column.
+     */
+    static final String ID_COLUMN = "entity_id";
+
+    /**
+     * Number of IDs inserted per JDBC batch.
+     */
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private Session fSession;
+    private Dialect fDialect;
+    private String fName;
+    private boolean fCreated;
+
+    /**
+     * The constructor.
+     *
+     * @param session   The Hibernate session, with an active transaction.
+     * @param number    The number of the table, distinct for the tables used in the same query.
+     */
+    EntityIdTable(Session session, int number) {
+        fSession = session;
+        fDialect = getDialect(session);
+        fName = fDialect.generateTemporaryTableName("famix_entity_ids_" + number);
+    }
+
+    /**
+     * Checks whether the database of the session supports temporary tables.
+     *
+     * @param session   The Hibernate session.
+     * @return  True, if temporary tables are supported.
+     */
+    static boolean isSupported(Session session) {
+        return getDialect(session).supportsTemporaryTables();
+    }
+
+    /**
+     * Creates the table and inserts the given IDs. If the dialect keeps temporary tables after use, a failed
+     * creation is taken as the table having been created by a previous query.
+     *
+     * @param ids   The distinct Hibernate IDs.
+     * @throws HibernateException if the table could not be created or filled.
+     */
+    void create(final Collection<Long> ids) throws HibernateException {
+        final String createSql = fDialect.getCreateTemporaryTableString() + " " + fName
+                + " (" + ID_COLUMN + " " + fDialect.getTypeName(Types.BIGINT) + " not null primary key)"
+                + fDialect.getCreateTemporaryTablePostfix();
+        final String insertSql = "insert into " + fName + " (" + ID_COLUMN + ") values (?)";
+
+        fSession.doWork(new Work() {
+            public void execute(Connection connection) throws SQLException {
+                Statement statement = connection.createStatement();
+                try {
+                    statement.executeUpdate(createSql);
+                } catch (SQLException sqle) {
+                    if (fDialect.dropTemporaryTableAfterUse()) {
+                        throw sqle;
+                    }
+                } finally {
+                    statement.close();
+                }
+                fCreated = true;
+
+                PreparedStatement insert = connection.prepareStatement(insertSql);
+                try {
+                    int nrOfBatchedIds = 0;
+                    for (Long id : ids) {
+                        insert.setLong(1, id.longValue());
+                        insert.addBatch();
+                        if (++nrOfBatchedIds == INSERT_BATCH_SIZE) {
+                            insert.executeBatch();
+                            nrOfBatchedIds = 0;
+                        }
+                    }
+                    if (nrOfBatchedIds > 0) {
+                        insert.executeBatch();
+                    }
+                } finally {
+                    insert.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the SQL sub-query selecting the IDs of the table.
+     *
+     * @return  The sub-query.
+     */
+    String getSubquery() {
+        return "select " + ID_COLUMN + " from " + fName;
+    }
+
+    /**
+     * Drops the table if it has been created, or deletes its rows if the dialect keeps temporary tables.
+     *
+     * @throws HibernateException if the table could not be dropped.
+     */
+    void drop() throws HibernateException {
+        if (!fCreated) {
+            return;
+        }
+
+        final String dropSql = fDialect.dropTemporaryTableAfterUse() ? "drop table " + fName : "delete from " + fName;
+        fSession.doWork(new Work() {
+            public void execute(Connection connection) throws SQLException {
+                Statement statement = connection.createStatement();
+                try {
+                    statement.executeUpdate(dropSql);
+                    fCreated = false;
+                } finally {
+                    statement.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the SQL dialect of the session.
+     *
+     * @param session   The Hibernate session.
+     * @return  The dialect.
+     */
+    private static Dialect getDialect(Session session) {
+        return ((SessionFactoryImplementor) session.getSessionFactory()).getDialect();
+    }
+}
@@ -0,0 +1,551 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.model.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixAssociation;
+import org.evolizer.famix.model.entities.FamixModel;
+
+/**
+ * Compact, read-only graph representation of a FAMIX model. Entities are numbered with dense integer
+ * indexes, the containment hierarchy is stored in parent and child arrays, and the associations are
+ * stored per association type (invocation, access, inheritance, ...) in compressed sparse row arrays
+ * for both directions. Traversals work on the integer indexes; {@link #getEntity(int)} and
+ * {@link #getAssociation(int)} map back to the FAMIX objects.
+ *
+ * The graph is a snapshot of the model at construction time and is not updated when the model changes.
+ * Once built it is only read and can be shared by several threads.
+ *
+ * @author pinzger
+ */
+public class FamixGraph {
+    /**
+     * Direction of outgoing associations, i.e., the entity is the from-entity.
+     */
+    public static final String FROM = "from";
+    /**
+     * Direction of in-coming associations, i.e., the entity is the to-entity.
+     */
+    public static final String TO = "to";
+
+    /**
+     * Index value of entities that are not contained by the graph, e.g., the parent of root entities.
+     */
+    public static final int NO_ENTITY = -1;
+
+    /**
+     * The entities indexed by their graph index.
+     */
+    private AbstractFamixEntity[] fEntities;
+    /**
+     * Map of the entities to their graph index, used only to enter the graph.
+     */
+    private Map<AbstractFamixEntity, Integer> fEntityIndexes;
+    /**
+     * The graph index of the parent of each entity, {@link #NO_ENTITY} for root entities.
+     */
+    private int[] fParents;
+    /**
+     * Offsets of the children of each entity into {@link #fChildren}.
+     */
+    private int[] fChildOffsets;
+    /**
+     * The graph indexes of the children, grouped by parent.
+     */
+    private int[] fChildren;
+
+    /**
+     * The associations indexed by their graph index.
+     */
+    private FamixAssociation[] fAssociations;
+    /**
+     * The association types contained by the graph, indexed by their type index.
+     */
+    private List<Class<? extends FamixAssociation>> fAssociationTypes;
+    /**
+     * The adjacency of outgoing associations per association type.
+     */
+    private Adjacency[] fOutgoing;
+    /**
+     * The adjacency of in-coming associations per association type.
+     */
+    private Adjacency[] fIncoming;
+
+    /**
+     * The constructor. Builds the graph of the entities and associations of the given model. Associations
+     * whose from- or to-entity is not contained by the model are omitted.
+     *
+     * @param model The FAMIX model.
+     */
+    public FamixGraph(FamixModel model) {
+        this(model.getFamixEntities(), model.getFamixAssociations());
+    }
+
+    /**
+     * The constructor. Builds the graph of the given entities and associations. Associations
+     * whose from- or to-entity is not in the given collection of entities are omitted.
+     *
+     * @param entities The FAMIX entities.
+     * @param associations The FAMIX associations.
+     */
+    public FamixGraph(Collection<? extends AbstractFamixEntity> entities, Collection<? extends FamixAssociation> associations) {
+        fEntities = entities.toArray(new AbstractFamixEntity[entities.size()]);
+        fEntityIndexes = new HashMap<AbstractFamixEntity, Integer>(fEntities.length * 4 / 3 + 1);
+        for (int i = 0; i < fEntities.length; i++) {
+            fEntityIndexes.put(fEntities[i], Integer.valueOf(i));
+        }
+        initHierarchy();
+
+        // first pass: number the association types and count the associations per entity
+        Map<Class<? extends FamixAssociation>, Integer> lTypeIndexes = new HashMap<Class<? extends FamixAssociation>, Integer>();
+        fAssociationTypes = new ArrayList<Class<? extends FamixAssociation>>();
+        int[] lFrom = new int[associations.size()];
+        int[] lTo = new int[associations.size()];
+        int[] lType = new int[associations.size()];
+        List<FamixAssociation> lAssociations = new ArrayList<FamixAssociation>(associations.size());
+        List<int[]> lOutDegrees = new ArrayList<int[]>();
+        List<int[]> lInDegrees = new ArrayList<int[]>();
+        for (FamixAssociation lAssociation : associations) {
+            int lFromIndex = indexOf(lAssociation.getFrom());
+            int lToIndex = indexOf(lAssociation.getTo());
+            if ((lFromIndex == NO_ENTITY) || (lToIndex == NO_ENTITY)) {
+                continue;
+            }
+            Class<? extends FamixAssociation> lAssociationType = lAssociation.getClass();
+            Integer lTypeIndex = lTypeIndexes.get(lAssociationType);
+            if (lTypeIndex == null) {
+                lTypeIndex = Integer.valueOf(fAssociationTypes.size());
+                lTypeIndexes.put(lAssociationType, lTypeIndex);
+                fAssociationTypes.add(lAssociationType);
+                lOutDegrees.add(new int[fEntities.length + 1]);
+                lInDegrees.add(new int[fEntities.length + 1]);
+            }
+            int lIndex = lAssociations.size();
+            lFrom[lIndex] = lFromIndex;
+            lTo[lIndex] = lToIndex;
+            lType[lIndex] = lTypeIndex.intValue();
+            lAssociations.add(lAssociation);
+            lOutDegrees.get(lType[lIndex])[lFromIndex + 1]++;
+            lInDegrees.get(lType[lIndex])[lToIndex + 1]++;
+        }
+        fAssociations = lAssociations.toArray(new FamixAssociation[lAssociations.size()]);
+
+        // second pass: fill the adjacency arrays
+        fOutgoing = new Adjacency[fAssociationTypes.size()];
+        fIncoming = new Adjacency[fAssociationTypes.size()];
+        for (int t = 0; t < fAssociationTypes.size(); t++) {
+            fOutgoing[t] = new Adjacency(lOutDegrees.get(t));
+            fIncoming[t] = new Adjacency(lInDegrees.get(t));
+        }
+        for (int i = 0; i < fAssociations.length; i++) {
+            fOutgoing[lType[i]].add(lFrom[i], lTo[i], i);
+            fIncoming[lType[i]].add(lTo[i], lFrom[i], i);
+        }
+        for (int t = 0; t < fAssociationTypes.size(); t++) {
+            fOutgoing[t].trim();
+            fIncoming[t].trim();
+        }
+    }
+
+    /**
+     * Initializes the parent and child arrays of the containment hierarchy.
+     */
+    private void initHierarchy() {
+        fParents = new int[fEntities.length];
+        fChildOffsets = new int[fEntities.length + 1];
+        for (int i = 0; i < fEntities.length; i++) {
+            fParents[i] = indexOf(fEntities[i].getParent());
+            if (fParents[i] != NO_ENTITY) {
+                fChildOffsets[fParents[i] + 1]++;
+            }
+        }
+        for (int i = 0; i < fEntities.length; i++) {
+            fChildOffsets[i + 1] += fChildOffsets[i];
+        }
+        fChildren = new int[fChildOffsets[fEntities.length]];
+        int[] lNext = Arrays.copyOf(fChildOffsets, fEntities.length);
+        for (int i = 0; i < fEntities.length; i++) {
+            if (fParents[i] != NO_ENTITY) {
+                fChildren[lNext[fParents[i]]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entities.
+     *
+     * @return The number of entities.
+     */
+    public int getNrOfEntities() {
+        return fEntities.length;
+    }
+
+    /**
+     * Returns the number of associations.
+     *
+     * @return The number of associations.
+     */
+    public int getNrOfAssociations() {
+        return fAssociations.length;
+    }
+
+    /**
+     * Returns the graph index of the given entity.
+     *
+     * @param entity The FAMIX entity.
+     * @return The graph index, or {@link #NO_ENTITY} if the entity is null or not contained by the graph.
+     */
+    public int indexOf(AbstractFamixEntity entity) {
+        if (entity == null) {
+            return NO_ENTITY;
+        }
+        Integer lIndex = fEntityIndexes.get(entity);
+        return (lIndex != null) ? lIndex.intValue() : NO_ENTITY;
+    }
+
+    /**
+     * Checks whether the graph contains the given entity.
+     *
+     * @param entity The FAMIX entity.
+     * @return True, if the graph contains the entity.
+     */
+    public boolean contains(AbstractFamixEntity entity) {
+        return indexOf(entity) != NO_ENTITY;
+    }
+
+    /**
+     * Returns the entity with the given graph index.
+     *
+     * @param index The graph index.
+     * @return The FAMIX entity.
+     */
+    public AbstractFamixEntity getEntity(int index) {
+        return fEntities[index];
+    }
+
+    /**
+     * Returns the association with the given association index.
+     *
+     * @param index The association index.
+     * @return The FAMIX association.
+     */
+    public FamixAssociation getAssociation(int index) {
+        return fAssociations[index];
+    }
+
+    /**
+     * Returns the graph index of the parent of the given entity.
+     *
+     * @param index The graph index of the entity.
+     * @return The graph index of the parent, or {@link #NO_ENTITY} if the entity has no parent in the graph.
+     */
+    public int getParent(int index) {
+        return fParents[index];
+    }
+
+    /**
+     * Returns the graph indexes of the children of the given entity.
+     *
+     * @param index The graph index of the entity.
+     * @return The graph indexes of the children.
+     */
+    public int[] getChildren(int index) {
+        return Arrays.copyOfRange(fChildren, fChildOffsets[index], fChildOffsets[index + 1]);
+    }
+
+    /**
+     * Returns the graph indexes of the given entity and all its descendants in pre-order.
+     *
+     * @param index The graph index of the entity.
+     * @return The graph indexes of the entity and its descendants.
+     */
+    public int[] getDescendants(int index) {
+        IntList lDescendants = new IntList();
+        IntList lStack = new IntList();
+        lStack.add(index);
+        while (lStack.size() > 0) {
+            int lIndex = lStack.removeLast();
+            lDescendants.add(lIndex);
+            for (int c = fChildOffsets[lIndex + 1] - 1; c >= fChildOffsets[lIndex]; c--) {
+                lStack.add(fChildren[c]);
+            }
+        }
+        return lDescendants.toArray();
+    }
+
+    /**
+     * Returns the association types contained by the graph.
+     *
+     * @return The unmodifiable list of association types.
+     */
+    public List<Class<? extends FamixAssociation>> getAssociationTypes() {
+        return Collections.unmodifiableList(fAssociationTypes);
+    }
+
+    /**
+     * Returns the graph indexes of the entities adjacent to the given entity via associations of the given type.
+     *
+     * @param index The graph index of the entity.
+     * @param associationType The association type, including its sub-types - if null associations of all types are used.
+     * @param direction Either {@link #FROM} (i.e., targets of outgoing associations) or {@link #TO} (i.e., sources of in-coming associations).
+     * @return The graph indexes of the adjacent entities, one per association.
+     */
+    public int[] getAdjacentEntities(int index, Class<? extends FamixAssociation> associationType, String direction) {
+        IntList lAdjacent = new IntList();
+        Adjacency[] lAdjacencies = getAdjacencies(direction);
+        for (int t = 0; t < lAdjacencies.length; t++) {
+            if (isOfType(t, associationType)) {
+                Adjacency lAdjacency = lAdjacencies[t];
+                for (int a = lAdjacency.fOffsets[index]; a < lAdjacency.fOffsets[index + 1]; a++) {
+                    lAdjacent.add(lAdjacency.fEntities[a]);
+                }
+            }
+        }
+        return lAdjacent.toArray();
+    }
+
+    /**
+     * Returns the associations of the given type and direction of the given entities that cross the border of the
+     * set, i.e., the opposite entity is not in the set. As in {@link SnapshotAnalyzer#queryAssociationsOfEntities(Collection, Class, String)},
+     * associations whose from- or to-entity has no parent are omitted.
+     *
+     * @param <T> The association type.
+     * @param entities The graph indexes of the entities.
+     * @param associationType The association type, including its sub-types - if null associations of all types are returned.
+     * @param direction Either {@link #FROM} (i.e., outgoing) or {@link #TO} (i.e., in-coming).
+     * @return The list of associations.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends FamixAssociation> List<T> getAssociationsOfEntities(int[] entities, Class<T> associationType, String direction) {
+        boolean[] lInSet = new boolean[fEntities.length];
+        IntList lDistinct = new IntList();
+        for (int lIndex : entities) {
+            if (!lInSet[lIndex]) {
+                lInSet[lIndex] = true;
+                lDistinct.add(lIndex);
+            }
+        }
+
+        List<T> lAssociations = new ArrayList<T>();
+        Adjacency[] lAdjacencies = getAdjacencies(direction);
+        for (int t = 0; t < lAdjacencies.length; t++) {
+            if (isOfType(t, associationType)) {
+                Adjacency lAdjacency = lAdjacencies[t];
+                for (int i = 0; i < lDistinct.size(); i++) {
+                    int lIndex = lDistinct.get(i);
+                    for (int a = lAdjacency.fOffsets[lIndex]; a < lAdjacency.fOffsets[lIndex + 1]; a++) {
+                        int lOpposite = lAdjacency.fEntities[a];
+                        if (!lInSet[lOpposite]
+                                && (fEntities[lIndex].getParent() != null)
+                                && (fEntities[lOpposite].getParent() != null)) {
+                            lAssociations.add((T) fAssociations[lAdjacency.fAssociations[a]]);
+                        }
+                    }
+                }
+            }
+        }
+        return lAssociations;
+    }
+
+    /**
+     * Returns the graph indexes of the given FAMIX entities.
+     *
+     * @param entities The FAMIX entities.
+     * @return The graph indexes, or null if one of the entities is not contained by the graph.
+     */
+    public int[] indexesOf(Collection<? extends AbstractFamixEntity> entities) {
+        int[] lIndexes = new int[entities.size()];
+        int i = 0;
+        for (AbstractFamixEntity lEntity : entities) {
+            lIndexes[i] = indexOf(lEntity);
+            if (lIndexes[i] == NO_ENTITY) {
+                return null;
+            }
+            i++;
+        }
+        return lIndexes;
+    }
+
+    /**
+     * Returns the FAMIX entities with the given graph indexes.
+     *
+     * @param indexes The graph indexes.
+     * @return The list of FAMIX entities.
+     */
+    public List<AbstractFamixEntity> getEntities(int[] indexes) {
+        List<AbstractFamixEntity> lEntities = new ArrayList<AbstractFamixEntity>(indexes.length);
+        for (int lIndex : indexes) {
+            lEntities.add(fEntities[lIndex]);
+        }
+        return lEntities;
+    }
+
+    /**
+     * Returns the adjacency arrays of the given direction.
+     *
+     * @param direction Either {@link #FROM} or {@link #TO}.
+     * @return The adjacency arrays per association type.
+     */
+    private Adjacency[] getAdjacencies(String direction) {
+        if (FROM.equals(direction)) {
+            return fOutgoing;
+        } else if (TO.equals(direction)) {
+            return fIncoming;
+        }
+        throw new IllegalArgumentException("Direction must be '" + FROM + "' or '" + TO + "' but is " + direction);
+    }
+
+    /**
+     * Checks whether the association type with the given type index is the given type or a sub-type.
+     *
+     * @param typeIndex The type index.
+     * @param associationType The association type, null matches all types.
+     * @return True, if the association type matches.
+     */
+    private boolean isOfType(int typeIndex, Class<? extends FamixAssociation> associationType) {
+        return (associationType == null) || associationType.isAssignableFrom(fAssociationTypes.get(typeIndex));
+    }
+
+    /**
+     * Adjacency of one association type and direction in compressed sparse row format: the associations
+     * of entity <code>i</code> are stored at the positions <code>fOffsets[i]</code> to <code>fOffsets[i + 1] - 1</code>.
+     */
+    private static final class Adjacency {
+        /**
+         * Offsets of the associations of each entity.
+         */
+        private int[] fOffsets;
+        /**
+         * The graph indexes of the opposite entities.
+         */
+        private int[] fEntities;
+        /**
+         * The association indexes.
+         */
+        private int[] fAssociations;
+        /**
+         * Next free position per entity, only used while building.
+         */
+        private int[] fNext;
+
+        /**
+         * The constructor.
+         *
+         * @param degrees The number of associations of each entity, shifted by one (i.e., the degree of entity
+         *          <code>i</code> is at position <code>i + 1</code>). The array is reused for the offsets.
+         */
+        private Adjacency(int[] degrees) {
+            fOffsets = degrees;
+            for (int i = 1; i < fOffsets.length; i++) {
+                fOffsets[i] += fOffsets[i - 1];
+            }
+            fEntities = new int[fOffsets[fOffsets.length - 1]];
+            fAssociations = new int[fEntities.length];
+            fNext = Arrays.copyOf(fOffsets, fOffsets.length - 1);
+        }
+
+        /**
+         * Adds an association.
+         *
+         * @param entity The graph index of the entity.
+         * @param opposite The graph index of the opposite entity.
+         * @param association The association index.
+         */
+        private void add(int entity, int opposite, int association) {
+            int lPos = fNext[entity]++;
+            fEntities[lPos] = opposite;
+            fAssociations[lPos] = association;
+        }
+
+        /**
+         * Releases the memory only needed while building.
+         */
+        private void trim() {
+            fNext = null;
+        }
+    }
+
+    /**
+     * Growable list of int values.
+     */
+    private static final class IntList {
+        /**
+         * The values.
+         */
+        private int[] fValues = new int[16];
+        /**
+         * The number of values.
+         */
+        private int fSize;
+
+        /**
+         * Appends a value.
+         *
+         * @param value The value.
+         */
+        private void add(int value) {
+            if (fSize == fValues.length) {
+                fValues = Arrays.copyOf(fValues, fSize * 2);
+            }
+            fValues[fSize++] = value;
+        }
+
+        /**
+         * Removes and returns the last value.
+         *
+         * @return The last value.
+         */
+        private int removeLast() {
+            return fValues[--fSize];
+        }
+
+        /**
+         * Returns the value at the given position.
+         *
+         * @param index The position.
+         * @return The value.
+         */
+        private int get(int index) {
+            return fValues[index];
+        }
+
+        /**
+         * Returns the number of values.
+         *
+         * @return The number of values.
+         */
+        private int size() {
+            return fSize;
+        }
+
+        /**
+         * Returns the values.
+         *
+         * @return The values.
+         */
+        private int[] toArray() {
+            return Arrays.copyOf(fValues, fSize);
+        }
+    }
+}
@@ -16,12 +16,19 @@
  */
 package org.evolizer.famix.model.utils;
 
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.log4j.Logger;
 import org.evolizer.core.exceptions.EvolizerException;
@@ -32,10 +39,18 @@ import org.evolizer.famix.model.entities.AbstractFamixEntity;
 import org.evolizer.famix.model.entities.FamixAssociation;
 import org.evolizer.model.resources.entities.misc.IHierarchicalElement;
 import org.hibernate.Criteria;
+import org.hibernate.EntityMode;
+import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.Queryable;
 
 
 /**
@@ -49,8 +64,75 @@ import org.hibernate.criterion.Restrictions;
 public class SnapshotAnalyzer {
     protected Logger fLogger = FamixModelPlugin.getLogManager().getLogger(getClass().getName());
 
+    /**
+     * Maximum number of entities per <code>IN</code> list when querying the associations of many entities.
+     */
+    public static final int ENTITY_CHUNK_SIZE = 500;
+
+    /**
+     * Default number of entities above which the associations of many entities are queried by joining a
+     * temporary table holding the entity IDs instead of sending them in chunks of {@link #ENTITY_CHUNK_SIZE}.
+     */
+    public static final int DEFAULT_TEMPORARY_TABLE_THRESHOLD = 5000;
+
+    /**
+     * Depth value for following associations or the containment until no new entities are found.
+     */
+    public static final int UNLIMITED_DEPTH = -1;
+
+    /**
+     * Default bound of the depth of recursive queries.
+     */
+    public static final int DEFAULT_MAX_RECURSION_DEPTH = 256;
+
+    /**
+     * Region of the query cache holding the results of the criteria queries of snapshot analyzers. Stored
+     * snapshots are immutable, hence, the results stay valid until an import writes to the database and
+     * evicts the region.
+     */
+    public static final String QUERY_CACHE_REGION = SnapshotAnalyzer.class.getName();
+
+    /**
+     * Dialects of databases supporting recursive common table expressions with <code>with recursive</code>
+     * and <code>union</code>. On other databases recursive queries are either not supported, need a different
+     * syntax (e.g., SQL Server and DB2 accept neither <code>recursive</code> nor <code>union</code> in recursive
+     * queries), or are not reliable (e.g., H2 1.2 returns incomplete results for prepared recursive queries).
+     * Versions not supporting them (e.g., MySQL before 8.0) fail once and then use the fallback.
+     */
+    private static final String[] RECURSIVE_QUERY_DIALECTS = {
+        "org.hibernate.dialect.PostgreSQL",
+        "org.hibernate.dialect.MySQL"
+    };
+
+    private static final String RECURSIVE_DEPENDENCY_QUERY = "dependency";
+    private static final String RECURSIVE_DESCENDANT_QUERY = "descendant";
+    private static final String HASH_DELIMITER = ":";
+
+    /**
+     * Dialects and kinds of recursive queries that failed, shared by all analyzers.
+     */
+    private static Set<String> sUnsupportedRecursiveQueries = Collections.synchronizedSet(new HashSet<String>());
+
+    /**
+     * Session factories whose stored entities all have the indexed hash and prefix of their unique name.
+     */
+    private static Set<SessionFactory> sUniqueNameIndexedFactories = Collections.newSetFromMap(new WeakHashMap<SessionFactory, Boolean>());
+
     private IEvolizerSession fSession;
 
+    private boolean fUseRecursiveQueries = true;
+
+    private int fMaxRecursionDepth = DEFAULT_MAX_RECURSION_DEPTH;
+
+    private boolean fUseQueryCache = true;
+
+    private int fTemporaryTableThreshold = DEFAULT_TEMPORARY_TABLE_THRESHOLD;
+
+    /**
+     * In-memory graph of the model used instead of database queries, null if all queries go to the database.
+     */
+    private FamixGraph fGraph;
+
     /**
      * The constructor.
      * 
@@ -60,6 +142,18 @@ public class SnapshotAnalyzer {
         fSession = session;
     }
 
+    /**
+     * The constructor. Association and descendant queries for entities contained by the given graph
+     * are answered from the graph, all other queries go to the database.
+     * 
+     * @param session   Evolizer session.
+     * @param graph     In-memory graph of the model, or null.
+     */
+    public SnapshotAnalyzer(IEvolizerSession session, FamixGraph graph) {
+        fSession = session;
+        fGraph = graph;
+    }
+
     /**
      * Query incoming or outgoing FAMIX associations of the given type and set of entities.
      * 
@@ -67,6 +161,7 @@ public class SnapshotAnalyzer {
      * @param associationType	FamixAssociation type - if null all associations are queried.
      * @param direction	The direction of associations either "from" (i.e., outgoing) or "to" (i.e., incoming).
      * @return	The list of associations.
+     * @see #setTemporaryTableThreshold(int)
      * 
      * TODO: Handle null values for direction or introduce constants
      */
@@ -75,7 +170,7 @@ public class SnapshotAnalyzer {
             Collection<? extends AbstractFamixEntity> entities, 
             java.lang.Class<T> associationType, 
             String direction) throws EvolizerRuntimeException {
-        associationType = (associationType != null) ? associationType : (Class<T>) org.evolizer.famix.model.entities.FamixAssociation.class;
+        associationType = (associationType != null) ? associationType : (Class<T>) FamixAssociation.class;
 
         String oppositeDirection = "";
         if (direction.equals("from")) {
@@ -84,10 +179,19 @@ public class SnapshotAnalyzer {
             oppositeDirection = "from";
         }
 
+        if (fGraph != null) {
+            int[] entityIndexes = fGraph.indexesOf(entities);
+            if (entityIndexes != null) {
+                return fGraph.getAssociationsOfEntities(entityIndexes, associationType, direction);
+            }
+        }
+
         List<T> associations = new ArrayList<T>();
         try {
-            if (entities.size() > 0) {
-                Criteria invocationQuery = getHibernateSession().createCriteria(associationType).add(
+            if (entities.size() > ENTITY_CHUNK_SIZE && haveIds(entities)) {
+                associations = queryAssociationsOfManyEntities(getHibernateSession(), getDistinctIds(entities), associationType, direction, false);
+            } else if (entities.size() > 0) {
+                Criteria invocationQuery = createCriteria(getHibernateSession(), associationType).add(
                         Restrictions.and(
                                 Restrictions.in(direction, entities), 
                                 Restrictions.not(Restrictions.in(oppositeDirection, entities))
@@ -123,17 +227,20 @@ public class SnapshotAnalyzer {
      * @param entities	The list of entities.
      * @param associationType	FamixAssociation type.
      * @return	The list of associations of the given type between the given entities.
+     * @see #setTemporaryTableThreshold(int)
      */
     @SuppressWarnings({"unchecked"})
     public <T extends FamixAssociation> List<T> queryAssociationsBetweenEntities(
             List<? extends AbstractFamixEntity> entities, 
             java.lang.Class<T> associationType) throws EvolizerRuntimeException {
 
-        associationType = (associationType != null) ? associationType : (Class<T>) org.evolizer.famix.model.entities.FamixAssociation.class;
+        associationType = (associationType != null) ? associationType : (Class<T>) FamixAssociation.class;
         List<T> associations = new ArrayList<T>();
         try {
-            if (entities.size() > 0) {
-                Criteria invocationQuery = getHibernateSession().createCriteria(associationType).add(
+            if (entities.size() > ENTITY_CHUNK_SIZE && haveIds(entities)) {
+                associations = queryAssociationsOfManyEntities(getHibernateSession(), getDistinctIds(entities), associationType, "from", true);
+            } else if (entities.size() > 0) {
+                Criteria invocationQuery = createCriteria(getHibernateSession(), associationType).add(
                         Restrictions.and(Restrictions.in("from", entities), Restrictions.in("to", entities)));
 
                 associations = invocationQuery.list();
@@ -149,6 +256,137 @@ public class SnapshotAnalyzer {
         return associations;
     }
 
+    /**
+     * Queries the associations of more than {@link #ENTITY_CHUNK_SIZE} entities. The associations are
+     * restricted to the entities in the given direction and, depending on <code>between</code>, to
+     * associations whose opposite entity is in or not in the entities. Associations not between entities
+     * additionally need parents at both ends, as in {@link #queryAssociationsOfEntities(Collection, Class, String)}.
+     * 
+     * Above the temporary table threshold the IDs are joined from temporary tables, otherwise the
+     * associations are queried in chunks of {@link #ENTITY_CHUNK_SIZE} IDs and the opposite entities
+     * are checked in memory.
+     * 
+     * @param session   The Hibernate session.
+     * @param ids   The distinct Hibernate IDs of the entities.
+     * @param associationType   FamixAssociation type.
+     * @param direction The direction of associations.
+     * @param between   True if the opposite entity must be in the entities, false if it must not.
+     * @return  The list of associations.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends FamixAssociation> List<T> queryAssociationsOfManyEntities(
+            Session session,
+            Set<Long> ids,
+            Class<T> associationType,
+            String direction,
+            boolean between) throws HibernateException {
+
+        if (useTemporaryTable(session, ids)) {
+            return queryAssociationsOfManyEntitiesByTemporaryTable(session, ids, associationType, direction, between);
+        }
+
+        List<T> associations = new ArrayList<T>();
+        for (List<Long> chunk : chunk(new ArrayList<Long>(ids))) {
+            Criteria associationQuery = createCriteria(session, associationType).add(Restrictions.in(direction + ".id", chunk));
+            if (!between) {
+                associationQuery.createAlias("from", "f");
+                associationQuery.createAlias("to", "t");
+                associationQuery.add(Restrictions.and(Restrictions.isNotNull("f.parent"), Restrictions.isNotNull("t.parent")));
+            }
+
+            for (T association : (List<T>) associationQuery.list()) {
+                AbstractFamixEntity opposite = direction.equals("from") ? association.getTo() : association.getFrom();
+                if (ids.contains(opposite.getId()) == between) {
+                    associations.add(association);
+                }
+            }
+        }
+        fLogger.debug("Queried " + associations.size() + " associations of " + ids.size() + " entities in chunks");
+
+        return associations;
+    }
+
+    /**
+     * Queries the associations of many entities like {@link #queryAssociationsOfManyEntities(Session, Set, Class, String, boolean)}
+     * by joining the IDs of the entities from temporary tables. The tables live in a transaction of this
+     * analyzer that is rolled back after the query, the results are not cached.
+     * 
+     * @param session   The Hibernate session, without active transaction.
+     * @param ids   The distinct Hibernate IDs of the entities.
+     * @param associationType   FamixAssociation type.
+     * @param direction The direction of associations.
+     * @param between   True if the opposite entity must be in the entities, false if it must not.
+     * @return  The list of associations.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends FamixAssociation> List<T> queryAssociationsOfManyEntitiesByTemporaryTable(
+            Session session,
+            Set<Long> ids,
+            Class<T> associationType,
+            String direction,
+            boolean between) throws HibernateException {
+
+        AbstractEntityPersister associationPersister = getPersister(session, FamixAssociation.class);
+        String directionColumn = associationPersister.getPropertyColumnNames(direction)[0];
+        String oppositeColumn = associationPersister.getPropertyColumnNames(direction.equals("from") ? "to" : "from")[0];
+
+        List<T> associations;
+        Transaction transaction = session.beginTransaction();
+        // the opposite restriction uses a second table, since some databases cannot open a temporary table twice
+        EntityIdTable directionIds = new EntityIdTable(session, 1);
+        EntityIdTable oppositeIds = new EntityIdTable(session, 2);
+        try {
+            directionIds.create(ids);
+            oppositeIds.create(ids);
+
+            Criteria associationQuery = session.createCriteria(associationType)
+                    .add(Restrictions.sqlRestriction("{alias}." + directionColumn + " in (" + directionIds.getSubquery() + ")"))
+                    .add(Restrictions.sqlRestriction("{alias}." + oppositeColumn + (between ? " in (" : " not in (") + oppositeIds.getSubquery() + ")"));
+            if (!between) {
+                associationQuery.createAlias("from", "f");
+                associationQuery.createAlias("to", "t");
+                associationQuery.add(Restrictions.and(Restrictions.isNotNull("f.parent"), Restrictions.isNotNull("t.parent")));
+            }
+            associations = associationQuery.list();
+        } finally {
+            try {
+                directionIds.drop();
+                oppositeIds.drop();
+            } finally {
+                transaction.rollback();
+            }
+        }
+        fLogger.debug("Queried " + associations.size() + " associations of " + ids.size() + " entities by temporary tables");
+
+        return associations;
+    }
+
+    /**
+     * Checks whether the associations of the given entity IDs are queried by joining temporary tables. This
+     * requires more IDs than the temporary table threshold, a database supporting temporary tables, and
+     * no active transaction, since creating tables may commit the transaction on some databases.
+     * 
+     * @param session   The Hibernate session.
+     * @param ids   The Hibernate IDs of the entities.
+     * @return  True, if temporary tables are used.
+     */
+    private boolean useTemporaryTable(Session session, Set<Long> ids) {
+        return ids.size() > fTemporaryTableThreshold && canUseTemporaryTable(session);
+    }
+
+    /**
+     * Checks whether temporary tables can be joined, i.e., they are not disabled by a threshold of 0,
+     * the database supports them, and no transaction is active.
+     * 
+     * @param session   The Hibernate session.
+     * @return  True, if temporary tables can be used.
+     */
+    private boolean canUseTemporaryTable(Session session) {
+        return fTemporaryTableThreshold > 0
+                && !session.getTransaction().isActive()
+                && EntityIdTable.isSupported(session);
+    }
+
     /**
      * Query FAMIX associations of the given type between the two entities of set1 and set2.
      * 
@@ -163,11 +401,11 @@ public class SnapshotAnalyzer {
             List<? extends AbstractFamixEntity> set2, 
             java.lang.Class<T> associationType) throws EvolizerRuntimeException {
 
-        associationType = (associationType != null) ? associationType : (Class<T>) org.evolizer.famix.model.entities.FamixAssociation.class;
+        associationType = (associationType != null) ? associationType : (Class<T>) FamixAssociation.class;
 
         List<T> associations = new ArrayList<T>();
         try {
-            Criteria invocationQuery = getHibernateSession().createCriteria(associationType).add(
+            Criteria invocationQuery = createCriteria(getHibernateSession(), associationType).add(
                     Restrictions.or(
                             Restrictions.and(Restrictions.in("from", set1), Restrictions.in("to", set2)),
                             Restrictions.and(Restrictions.in("to", set1), Restrictions.in("from", set2))
@@ -187,30 +425,37 @@ public class SnapshotAnalyzer {
     }
 
     /**
-     * Query FAMIX entities with a unique name equal the given unique names.
+     * Query FAMIX entities with a unique name equal the given unique names. The entities are looked up
+     * by the indexed hash of their unique name in chunks of {@link #ENTITY_CHUNK_SIZE} and compared by
+     * their unique name.
      * 
      * @param uniqueNames	The given unique names.
      * @return	The list of FAMIX entities equaling the given unique names.
      * @throws EvolizerException
      */
-    @SuppressWarnings( { "unchecked" })
     public List<AbstractFamixEntity> queryEntitiesByUniqueName(List<String> uniqueNames) throws EvolizerException {
         List<AbstractFamixEntity> entities = new ArrayList<AbstractFamixEntity>();
 
         try {
-            Criteria query = getHibernateSession().createCriteria(AbstractFamixEntity.class);
-            Disjunction orClausel = Restrictions.disjunction();
-
-            int countOPs = 0;
+            Set<String> names = new HashSet<String>();
+            Set<Long> hashes = new LinkedHashSet<Long>();
             for (String	uniqueName : uniqueNames) {
-                if (uniqueName != "") {
-                    orClausel.add(Restrictions.eq("uniqueName", uniqueName));
-                    countOPs++;
+                if ((uniqueName != null) && (uniqueName.length() > 0)) {
+                    names.add(uniqueName);
+                    hashes.add(AbstractFamixEntity.computeUniqueNameHash(uniqueName));
                 }
             }
 
-            if (countOPs > 0) {
-                entities.addAll(query.add(orClausel).list());
+            ensureUniqueNameIndex(getHibernateSession());
+            for (List<Long> chunk : chunk(new ArrayList<Long>(hashes))) {
+                Criteria query = createCriteria(getHibernateSession(), AbstractFamixEntity.class)
+                        .add(Restrictions.in("uniqueNameHash", chunk));
+                for (Object entity : query.list()) {
+                    // skip hash collisions
+                    if (names.contains(((AbstractFamixEntity) entity).getUniqueName())) {
+                        entities.add((AbstractFamixEntity) entity);
+                    }
+                }
             }
         } catch (HibernateException he) {
             fLogger.error("Error in queryEntitiesByUniqueName " + he.getMessage());
@@ -224,36 +469,45 @@ public class SnapshotAnalyzer {
     }
 
     /**
-     * Query FAMIX entities by the source reference as obtained from the Eclipse FamixPackage Explorer.
+     * Query FAMIX entities by the source reference as obtained from the Eclipse FamixPackage Explorer, i.e., the
+     * methods with the given unique name without parameters and the given start position. The methods are looked 
+     * up by the indexed prefix of their unique name in chunks of {@link #ENTITY_CHUNK_SIZE} and compared by their 
+     * unique name.
      * 
-     * @param sourceReferences
-     * @return
+     * @param sourceReferences  The start positions by unique name without parameters.
+     * @return  The list of FAMIX entities matching the source references.
      * @throws EvolizerException
      */
-    @SuppressWarnings( { "unchecked"} )
     public List<AbstractFamixEntity> queryEntitiesBySourceReference(Hashtable<String,Integer> sourceReferences) throws EvolizerException {
         List<AbstractFamixEntity> entities = new ArrayList<AbstractFamixEntity>();
 
         try {
-            Criteria query = getHibernateSession().createCriteria(AbstractFamixEntity.class);
-            query.createAlias("sourceAnchor", "sa");
-            Disjunction orClausel = Restrictions.disjunction();
-
-            int countOPs = 0;
+            List<String> reducedUniqueNames = new ArrayList<String>();
             for (String reducedUniqueName : sourceReferences.keySet()) {
-                if (reducedUniqueName != "") {
-                    orClausel.add(Restrictions.and(
-                            Restrictions.like("uniqueName", reducedUniqueName + "(%)"),
-                            Restrictions.eq("sa.start", sourceReferences.get(reducedUniqueName))
-                    )
-                    );
-
-                    countOPs++;
+                if (reducedUniqueName.length() > 0) {
+                    reducedUniqueNames.add(reducedUniqueName);
                 }
             }
 
-            if (countOPs > 0) {
-                entities.addAll(query.add(orClausel).list());
+            ensureUniqueNameIndex(getHibernateSession());
+            for (List<String> chunk : chunk(reducedUniqueNames)) {
+                Criteria query = createCriteria(getHibernateSession(), AbstractFamixEntity.class);
+                query.createAlias("sourceAnchor", "sa");
+                Disjunction orClausel = Restrictions.disjunction();
+                for (String reducedUniqueName : chunk) {
+                    String prefix = AbstractFamixEntity.computeUniqueNamePrefix(
+                            reducedUniqueName + AbstractFamixEntity.METHOD_START_BRACE);
+                    orClausel.add(Restrictions.and(
+                            Restrictions.like("uniqueNamePrefix", prefix + "%"),
+                            Restrictions.eq("sa.startPos", sourceReferences.get(reducedUniqueName))
+                    ));
+                }
+
+                for (Object entity : query.add(orClausel).list()) {
+                    if (matchesSourceReference((AbstractFamixEntity) entity, sourceReferences)) {
+                        entities.add((AbstractFamixEntity) entity);
+                    }
+                }
             }
         } catch (HibernateException he) {
             fLogger.error("Error in queryEntitiesBySourceReference " + he.getMessage());
@@ -266,22 +520,135 @@ public class SnapshotAnalyzer {
         return entities;
     }
 
+    /**
+     * Makes sure that all stored entities can be looked up by the indexed hash and prefix of their unique name.
+     * The schema update adds these columns without values to existing databases, hence, before the first lookup
+     * on a session factory the missing values are computed and written by {@link #fillUniqueNameIndex(SessionFactory)}.
+     * 
+     * @param session   The Hibernate session.
+     * @throws HibernateException
+     */
+    private void ensureUniqueNameIndex(Session session) throws HibernateException {
+        SessionFactory factory = session.getSessionFactory();
+        synchronized (sUniqueNameIndexedFactories) {
+            if (!sUniqueNameIndexedFactories.contains(factory)) {
+                fillUniqueNameIndex(factory);
+                sUniqueNameIndexedFactories.add(factory);
+            }
+        }
+    }
+
+    /**
+     * Writes the hash and prefix of the unique names of the stored entities that have none, in chunks of
+     * {@link #ENTITY_CHUNK_SIZE} entities. Uses its own session and transactions, such that the session of
+     * this analyzer stays read-only.
+     * 
+     * @param factory   The session factory of the database.
+     * @throws HibernateException
+     */
+    @SuppressWarnings("unchecked")
+    private void fillUniqueNameIndex(SessionFactory factory) throws HibernateException {
+        AbstractEntityPersister entityPersister = (AbstractEntityPersister) factory.getClassMetadata(AbstractFamixEntity.class);
+        String update = "update " + entityPersister.getTableName()
+                + " set " + entityPersister.getPropertyColumnNames("uniqueNameHash")[0] + " = ?, "
+                + entityPersister.getPropertyColumnNames("uniqueNamePrefix")[0] + " = ?"
+                + " where " + entityPersister.getIdentifierColumnNames()[0] + " = ?";
+
+        int filled = 0;
+        Session session = factory.openSession();
+        Transaction transaction = null;
+        try {
+            Long lastId = Long.valueOf(Long.MIN_VALUE);
+            List<Object[]> rows;
+            do {
+                transaction = session.beginTransaction();
+                rows = session.createQuery("select e.id, e.uniqueName from AbstractFamixEntity as e "
+                        + "where e.uniqueNameHash is null and e.uniqueName is not null and e.id > :lastId order by e.id")
+                        .setLong("lastId", lastId.longValue())
+                        .setMaxResults(ENTITY_CHUNK_SIZE)
+                        .list();
+                for (Object[] row : rows) {
+                    String uniqueName = (String) row[1];
+                    session.createSQLQuery(update)
+                            .setLong(0, AbstractFamixEntity.computeUniqueNameHash(uniqueName))
+                            .setString(1, AbstractFamixEntity.computeUniqueNamePrefix(uniqueName))
+                            .setLong(2, ((Long) row[0]).longValue())
+                            .executeUpdate();
+                    lastId = (Long) row[0];
+                }
+                transaction.commit();
+                filled += rows.size();
+            } while (rows.size() == ENTITY_CHUNK_SIZE);
+        } catch (HibernateException he) {
+            if ((transaction != null) && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw he;
+        } finally {
+            session.close();
+        }
+
+        if (filled > 0) {
+            factory.evictQueries(QUERY_CACHE_REGION);
+            fLogger.info("Filled the unique name hash and prefix of " + filled + " stored entities");
+        }
+    }
+
+    /**
+     * Checks if the unique name of the entity is one of the given unique names followed by a parameter list,
+     * and its source anchor starts at the corresponding position. Filters the candidates matched by the prefix
+     * of their unique name.
+     * 
+     * @param entity    The candidate entity.
+     * @param sourceReferences  The start positions by unique name without parameters.
+     * @return  true, if the entity matches one of the source references.
+     */
+    private boolean matchesSourceReference(AbstractFamixEntity entity, Hashtable<String,Integer> sourceReferences) {
+        String uniqueName = entity.getUniqueName();
+        int braceIndex = uniqueName.indexOf(AbstractFamixEntity.METHOD_START_BRACE);
+        if ((braceIndex < 0) || !uniqueName.endsWith(AbstractFamixEntity.METHOD_END_BRACE)) {
+            return false;
+        }
+        Integer start = sourceReferences.get(uniqueName.substring(0, braceIndex));
+        return (start != null) && (entity.getSourceAnchor() != null) && start.equals(entity.getSourceAnchor().getStartPos());
+    }
+
 
     /**
-     * Returns a list containing the given entity and all its descendants.
+     * Returns a list containing the given entity and all its descendants. The descendants of stored
+     * entities are queried with {@link #queryDescendants(Collection, int)} instead of navigating
+     * (and lazily loading) the children of each entity.
      * 
      * @param entity    The parent entity.
      * @return  The list of descendant entities inclusive the given parent entity.
      */
-    @SuppressWarnings("unchecked")
     public List<AbstractFamixEntity> getDescendants(AbstractFamixEntity entity) {
+        if (fGraph != null && fGraph.contains(entity)) {
+            return fGraph.getEntities(fGraph.getDescendants(fGraph.indexOf(entity)));
+        }
+        if (entity.getId() != null && fSession != null) {
+            return queryDescendants(Collections.singletonList(entity), UNLIMITED_DEPTH);
+        }
+
+        return getLoadedDescendants(entity);
+    }
+
+    /**
+     * Returns a list containing the given entity and all its descendants by navigating the
+     * children of the entities.
+     * 
+     * @param entity    The parent entity.
+     * @return  The list of descendant entities inclusive the given parent entity.
+     */
+    @SuppressWarnings("unchecked")
+    private List<AbstractFamixEntity> getLoadedDescendants(AbstractFamixEntity entity) {
         List<AbstractFamixEntity> entities = new ArrayList<AbstractFamixEntity>();
         entities.add(entity);
         if (entity instanceof IHierarchicalElement) {
             IHierarchicalElement<? extends AbstractFamixEntity> parentEntity = (IHierarchicalElement<? extends AbstractFamixEntity>) entity;
             if (parentEntity.getChildren().size() > 0) {
                 for (AbstractFamixEntity child : parentEntity.getChildren()) {
-                    entities.addAll(getDescendants(child));
+                    entities.addAll(getLoadedDescendants(child));
                 }
             }
         }
@@ -291,7 +658,7 @@ public class SnapshotAnalyzer {
     /**
      * Return the entities depending on the given entities in the given direction to the given
      * maximum level deep. If <code>maxLevel=-1</code> then until there are no more new dependent
-     * FAMIX entities.
+     * FAMIX entities. The dependencies are computed with {@link #queryTransitiveDependencies(Collection, Class, String, int)}.
      * 
      * @param entities the entities
      * @param dependentEntities all dependent entities
@@ -303,7 +670,6 @@ public class SnapshotAnalyzer {
      * 
      * @return the nesting level
      */
-    @SuppressWarnings("unchecked")
     public <T extends AbstractFamixEntity> int queryDependentEntities(
             List<T> entities,
             Set<T> dependentEntities,
@@ -313,76 +679,689 @@ public class SnapshotAnalyzer {
             int level,
             final int maxLevel) {
 
-        if (level != maxLevel) {
-            List<? extends FamixAssociation> associations = queryAssociationsOfEntities(
-                    entities, 
-                    associationType, 
-                    direction);
-            Set<T> newDependentEntities = new HashSet<T>();
-            for (FamixAssociation association : associations) {
-                T dependentEntity;
-                if (direction.equals("from")) {
-                    dependentEntity = (T) association.getTo();
-                } else {
-                    dependentEntity = (T) association.getFrom();                    
+        if (level == maxLevel) {
+            return level;
+        }
+        int maxDepth = (maxLevel < level) ? UNLIMITED_DEPTH : (maxLevel - level);
+
+        Map<T, Integer> newDependentEntities;
+        if (dependentEntities.isEmpty()) {
+            newDependentEntities = queryTransitiveDependencies(entities, associationType, direction, maxDepth);
+        } else {
+            // already known dependent entities are not expanded again
+            newDependentEntities = queryTransitiveDependenciesByFrontier(
+                    entities, dependentEntities, associationType, direction, maxDepth);
+        }
+
+        int depth = 0;
+        for (Integer dependencyDepth : newDependentEntities.values()) {
+            depth = Math.max(depth, dependencyDepth.intValue());
+        }
+        dependentEntities.addAll(newDependentEntities.keySet());
+
+        return level + depth;
+    }
+
+    /**
+     * Returns the entities that transitively depend on the given entities via associations of the
+     * given type in the given direction, together with the length of the shortest association path
+     * to each of them. Each entity is expanded once, so cycles terminate. The given entities are never
+     * contained in the result, also if they are reachable via a cycle or from another given entity.
+     * The paths are bounded by {@link #getMaxRecursionDepth()}.
+     * 
+     * On databases supporting recursive common table expressions the reachable entities are computed by
+     * a single recursive query. On all other databases, or if an in-memory graph is set, the closure is
+     * computed level by level with one query per level and chunk of {@link #ENTITY_CHUNK_SIZE} entities.
+     * Both return the same entities and depths.
+     * 
+     * @param entities  The start entities.
+     * @param associationType   FamixAssociation type - if null all associations are followed.
+     * @param direction The direction of associations either "from" (i.e., outgoing) or "to" (i.e., incoming).
+     * @param maxDepth  The maximum path length, {@link #UNLIMITED_DEPTH} to follow the paths until no new entities are found.
+     * @return  The map of dependent entities to their depth, in the order they are found.
+     */
+    public <T extends AbstractFamixEntity> Map<T, Integer> queryTransitiveDependencies(
+            Collection<T> entities,
+            Class<? extends FamixAssociation> associationType,
+            String direction,
+            int maxDepth) throws EvolizerRuntimeException {
+
+        if (maxDepth == 0 || entities.isEmpty()) {
+            return new LinkedHashMap<T, Integer>();
+        }
+        if (fGraph == null && isRecursiveQuerySupported(RECURSIVE_DEPENDENCY_QUERY) && haveIds(entities)) {
+            try {
+                return queryTransitiveDependenciesRecursively(entities, associationType, direction, maxDepth);
+            } catch (HibernateException he) {
+                recursiveQueryFailed(RECURSIVE_DEPENDENCY_QUERY, he);
+            }
+        }
+
+        return queryTransitiveDependenciesByFrontier(entities, new HashSet<T>(), associationType, direction, maxDepth);
+    }
+
+    /**
+     * Returns the given entities and all their descendants, i.e., the entities contained by them via
+     * their parent reference, up to the given depth. On databases supporting recursive common table
+     * expressions the whole containment subtree is loaded with one statement, on all other databases
+     * with one query per containment level.
+     * 
+     * @param entities  The parent entities.
+     * @param maxDepth  The maximum containment depth, {@link #UNLIMITED_DEPTH} for all descendants.
+     * @return  The list of the given entities and their descendants.
+     */
+    public List<AbstractFamixEntity> queryDescendants(
+            Collection<? extends AbstractFamixEntity> entities,
+            int maxDepth) throws EvolizerRuntimeException {
+
+        Set<AbstractFamixEntity> descendants = new LinkedHashSet<AbstractFamixEntity>(entities);
+        if (maxDepth == 0 || entities.isEmpty()) {
+            return new ArrayList<AbstractFamixEntity>(descendants);
+        }
+        try {
+            if (isRecursiveQuerySupported(RECURSIVE_DESCENDANT_QUERY) && haveIds(entities)) {
+                try {
+                    descendants.addAll(queryDescendantsRecursively(entities, maxDepth));
+                    return new ArrayList<AbstractFamixEntity>(descendants);
+                } catch (HibernateException he) {
+                    recursiveQueryFailed(RECURSIVE_DESCENDANT_QUERY, he);
                 }
-                if (!dependentEntities.contains(dependentEntity)) {
-                    newDependentEntities.add(dependentEntity);
+            }
+
+            List<AbstractFamixEntity> frontier = new ArrayList<AbstractFamixEntity>(descendants);
+            for (int depth = 0; !frontier.isEmpty() && depth != maxDepth && depth < fMaxRecursionDepth; depth++) {
+                List<AbstractFamixEntity> children = new ArrayList<AbstractFamixEntity>();
+                for (List<AbstractFamixEntity> chunk : chunk(frontier)) {
+                    for (Object child : createCriteria(getHibernateSession(), AbstractFamixEntity.class)
+                            .add(Restrictions.in("parent", chunk)).list()) {
+                        // cycle protection
+                        if (descendants.add((AbstractFamixEntity) child)) {
+                            children.add((AbstractFamixEntity) child);
+                        }
+                    }
                 }
+                frontier = children;
             }
-            if (! newDependentEntities.isEmpty()) {
-                dependentEntities.addAll(newDependentEntities);
-                level = queryDependentEntities(
-                        new ArrayList<T>(newDependentEntities),
-                        dependentEntities,
-                        entityType,
-                        associationType,
-                        direction,
-                        (level + 1),
-                        maxLevel);
+        } catch (HibernateException he) {
+            fLogger.error("Error in queryDescendants " + he.getMessage());
+            throw new EvolizerRuntimeException("Error in queryDescendants", he);
+        } catch (EvolizerException ee) {
+            fLogger.error("Error in queryDescendants " + ee.getMessage());
+            throw new EvolizerRuntimeException("Error in queryDescendants", ee);
+        }
+
+        return new ArrayList<AbstractFamixEntity>(descendants);
+    }
+
+    /**
+     * Computes the transitive dependencies level by level.
+     * 
+     * @param entities  The start entities, which are not returned.
+     * @param knownEntities Entities that are neither returned nor expanded.
+     * @param associationType   FamixAssociation type - if null all associations are followed.
+     * @param direction The direction of associations.
+     * @param maxDepth  The maximum path length, {@link #UNLIMITED_DEPTH} for no limit.
+     * @return  The map of new dependent entities to their depth.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends AbstractFamixEntity> Map<T, Integer> queryTransitiveDependenciesByFrontier(
+            Collection<T> entities,
+            Set<T> knownEntities,
+            Class<? extends FamixAssociation> associationType,
+            String direction,
+            int maxDepth) throws EvolizerRuntimeException {
+
+        Map<T, Integer> dependentEntities = new LinkedHashMap<T, Integer>();
+        Set<T> startEntities = new HashSet<T>(entities);
+        List<T> frontier = new ArrayList<T>(startEntities);
+        int depthBound = getDepthBound(maxDepth);
+        for (int depth = 1; !frontier.isEmpty() && depth <= depthBound; depth++) {
+            List<T> newFrontier = new ArrayList<T>();
+            for (FamixAssociation association : queryAssociationsOfEntities(frontier, (Class<FamixAssociation>) associationType, direction)) {
+                T dependentEntity = (T) (direction.equals("from") ? association.getTo() : association.getFrom());
+                if (!startEntities.contains(dependentEntity) && !knownEntities.contains(dependentEntity) 
+                        && !dependentEntities.containsKey(dependentEntity)) {
+                    dependentEntities.put(dependentEntity, Integer.valueOf(depth));
+                    newFrontier.add(dependentEntity);
+                }
             }
+            frontier = newFrontier;
         }
 
-        return level;
+        return dependentEntities;
+    }
+
+    /**
+     * Computes the transitive dependencies with one recursive query. The query only collects the
+     * reachable entities, the union removes entities found before, hence, each entity is expanded
+     * once and cycles terminate. It returns the associations leaving the start entities and the
+     * reachable entities, from which the shortest path lengths are computed level by level in memory,
+     * as in {@link #queryTransitiveDependenciesByFrontier(Collection, Set, Class, String, int)}.
+     * 
+     * @param entities  The start entities, all with Hibernate ID.
+     * @param associationType   FamixAssociation type - if null all associations are followed.
+     * @param direction The direction of associations.
+     * @param maxDepth  The maximum path length, {@link #UNLIMITED_DEPTH} for no limit.
+     * @return  The map of dependent entities to their depth.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends AbstractFamixEntity> Map<T, Integer> queryTransitiveDependenciesRecursively(
+            Collection<T> entities,
+            Class<? extends FamixAssociation> associationType,
+            String direction,
+            int maxDepth) throws EvolizerRuntimeException {
+
+        Map<T, Integer> dependentEntities = new LinkedHashMap<T, Integer>();
+        try {
+            Session session = getHibernateSession();
+            AbstractEntityPersister associationPersister = getPersister(session, FamixAssociation.class);
+            AbstractEntityPersister entityPersister = getPersister(session, AbstractFamixEntity.class);
+            String associationTable = associationPersister.getTableName();
+            String fromColumn = associationPersister.getPropertyColumnNames(direction.equals("from") ? "from" : "to")[0];
+            String toColumn = associationPersister.getPropertyColumnNames(direction.equals("from") ? "to" : "from")[0];
+            String entityTable = entityPersister.getTableName();
+            String idColumn = entityPersister.getIdentifierColumnNames()[0];
+            String parentColumn = entityPersister.getPropertyColumnNames("parent")[0];
+
+            // associations between entities with parents that do not lead back to a start entity, 
+            // as in queryAssociationsOfEntities and queryTransitiveDependenciesByFrontier
+            String edges = "select a." + fromColumn + " as src, a." + toColumn + " as dst from " + associationTable + " a"
+                    + " join " + entityTable + " f on a." + fromColumn + " = f." + idColumn
+                    + " join " + entityTable + " t on a." + toColumn + " = t." + idColumn
+                    + " where f." + parentColumn + " is not null and t." + parentColumn + " is not null"
+                    + " and a." + toColumn + " not in (:entityIds)"
+                    + getDiscriminatorRestriction(session, associationPersister, associationType);
+            String sql = "with recursive closure (entity_id) as ("
+                    + " select e.dst from (" + edges + ") e where e.src in (:entityIds)"
+                    + " union"
+                    + " select e.dst from (" + edges + ") e join closure c on e.src = c.entity_id)"
+                    + " select e.src, e.dst from (" + edges + ") e"
+                    + " where e.src in (:entityIds) or e.src in (select entity_id from closure)";
+
+            Set<Long> startIds = getDistinctIds(entities);
+            List<Object[]> rows = session.createSQLQuery(sql)
+                    .addScalar("src", Hibernate.LONG)
+                    .addScalar("dst", Hibernate.LONG)
+                    .setParameterList("entityIds", startIds)
+                    .list();
+
+            Map<Long, List<Long>> successors = new HashMap<Long, List<Long>>();
+            for (Object[] row : rows) {
+                List<Long> dsts = successors.get(row[0]);
+                if (dsts == null) {
+                    dsts = new ArrayList<Long>();
+                    successors.put((Long) row[0], dsts);
+                }
+                dsts.add((Long) row[1]);
+            }
+
+            Map<Long, Integer> depths = new LinkedHashMap<Long, Integer>();
+            List<Long> frontier = new ArrayList<Long>(startIds);
+            int depthBound = getDepthBound(maxDepth);
+            for (int depth = 1; !frontier.isEmpty() && depth <= depthBound; depth++) {
+                List<Long> newFrontier = new ArrayList<Long>();
+                for (Long src : frontier) {
+                    List<Long> dsts = successors.get(src);
+                    if (dsts != null) {
+                        for (Long dst : dsts) {
+                            if (!depths.containsKey(dst)) {
+                                depths.put(dst, Integer.valueOf(depth));
+                                newFrontier.add(dst);
+                            }
+                        }
+                    }
+                }
+                frontier = newFrontier;
+            }
+
+            Map<Long, AbstractFamixEntity> loadedEntities = loadEntities(session, new ArrayList<Long>(depths.keySet()));
+            for (Map.Entry<Long, Integer> depth : depths.entrySet()) {
+                AbstractFamixEntity entity = loadedEntities.get(depth.getKey());
+                if (entity != null) {
+                    dependentEntities.put((T) entity, depth.getValue());
+                }
+            }
+        } catch (EvolizerException ee) {
+            fLogger.error("Error in queryTransitiveDependencies " + ee.getMessage());
+            throw new EvolizerRuntimeException("Error in queryTransitiveDependencies", ee);
+        }
+
+        return dependentEntities;
+    }
+
+    /**
+     * Loads the descendants of the given entities with one recursive query. The containment is a tree,
+     * the depth bound protects against corrupt (cyclic) parent references.
+     * 
+     * @param entities  The parent entities, all with Hibernate ID.
+     * @param maxDepth  The maximum containment depth, {@link #UNLIMITED_DEPTH} for no limit.
+     * @return  The descendants of the entities, without the entities.
+     */
+    @SuppressWarnings("unchecked")
+    private List<AbstractFamixEntity> queryDescendantsRecursively(
+            Collection<? extends AbstractFamixEntity> entities,
+            int maxDepth) throws EvolizerException {
+
+        Session session = getHibernateSession();
+        AbstractEntityPersister entityPersister = getPersister(session, AbstractFamixEntity.class);
+        String entityTable = entityPersister.getTableName();
+        String idColumn = entityPersister.getIdentifierColumnNames()[0];
+        String parentColumn = entityPersister.getPropertyColumnNames("parent")[0];
+
+        String sql = "with recursive subtree (entity_id, depth) as ("
+                + " select " + idColumn + ", 1 from " + entityTable + " where " + parentColumn + " in (:entityIds)"
+                + " union all"
+                + " select c." + idColumn + ", s.depth + 1 from " + entityTable + " c join subtree s on c." + parentColumn + " = s.entity_id"
+                + " where s.depth < :maxDepth)"
+                + " select {e.*} from subtree s join " + entityTable + " {e} on {e}." + idColumn + " = s.entity_id";
+
+        return session.createSQLQuery(sql)
+                .addEntity("e", AbstractFamixEntity.class)
+                .setParameterList("entityIds", getIds(entities))
+                .setInteger("maxDepth", (maxDepth == UNLIMITED_DEPTH) ? fMaxRecursionDepth : Math.min(maxDepth, fMaxRecursionDepth))
+                .list();
+    }
+
+    /**
+     * Returns the SQL restriction of the association table to the discriminator values of the given
+     * association type and its sub-types.
+     * 
+     * @param session   The Hibernate session.
+     * @param associationPersister  The persister of the association table.
+     * @param associationType   The association type, null for all associations.
+     * @return  The restriction starting with <code>and</code>, or an empty string if all associations match.
+     */
+    private String getDiscriminatorRestriction(Session session, AbstractEntityPersister associationPersister, Class<? extends FamixAssociation> associationType) {
+        if (associationType == null || associationType.equals(FamixAssociation.class)) {
+            return "";
+        }
+
+        StringBuilder values = new StringBuilder();
+        for (Object metadata : session.getSessionFactory().getAllClassMetadata().values()) {
+            Class<?> mappedClass = ((ClassMetadata) metadata).getMappedClass(EntityMode.POJO);
+            if (associationType.isAssignableFrom(mappedClass) && !Modifier.isAbstract(mappedClass.getModifiers())) {
+                values.append((values.length() > 0) ? ", " : "").append(((Queryable) metadata).getDiscriminatorSQLValue());
+            }
+        }
+        if (values.length() == 0) {
+            values.append("null");
+        }
+        return " and a." + associationPersister.getDiscriminatorColumnName() + " in (" + values + ")";
+    }
+
+    /**
+     * Loads the entities with the given IDs in chunks of {@link #ENTITY_CHUNK_SIZE}.
+     * 
+     * @param session   The Hibernate session.
+     * @param ids   The Hibernate IDs.
+     * @return  The map of IDs to entities.
+     */
+    private Map<Long, AbstractFamixEntity> loadEntities(Session session, List<Long> ids) {
+        Map<Long, AbstractFamixEntity> entities = new HashMap<Long, AbstractFamixEntity>();
+        for (List<Long> chunk : chunk(ids)) {
+            for (Object entity : createCriteria(session, AbstractFamixEntity.class).add(Restrictions.in("id", chunk)).list()) {
+                entities.put(((AbstractFamixEntity) entity).getId(), (AbstractFamixEntity) entity);
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Returns the maximum path length of transitive dependency queries.
+     * 
+     * @param maxDepth  The requested maximum path length, {@link #UNLIMITED_DEPTH} for no limit.
+     * @return  The requested length bounded by {@link #getMaxRecursionDepth()}.
+     */
+    private int getDepthBound(int maxDepth) {
+        return (maxDepth == UNLIMITED_DEPTH) ? fMaxRecursionDepth : Math.min(maxDepth, fMaxRecursionDepth);
+    }
+
+    /**
+     * Returns the persister of the given mapped class.
+     * 
+     * @param session   The Hibernate session.
+     * @param mappedClass   The mapped class.
+     * @return  The persister.
+     */
+    private AbstractEntityPersister getPersister(Session session, Class<?> mappedClass) {
+        return (AbstractEntityPersister) session.getSessionFactory().getClassMetadata(mappedClass);
+    }
+
+    /**
+     * Checks whether recursive queries of the given kind are supported by the database of the session.
+     * 
+     * @param queryKind The kind of recursive query.
+     * @return  True, if recursive queries are enabled and have not failed on this database.
+     */
+    private boolean isRecursiveQuerySupported(String queryKind) {
+        if (!fUseRecursiveQueries) {
+            return false;
+        }
+        try {
+            String dialectName = getDialectName();
+            for (String recursiveQueryDialect : RECURSIVE_QUERY_DIALECTS) {
+                if (dialectName.startsWith(recursiveQueryDialect)) {
+                    return !sUnsupportedRecursiveQueries.contains(dialectName + HASH_DELIMITER + queryKind);
+                }
+            }
+            return false;
+        } catch (EvolizerException ee) {
+            return false;
+        }
+    }
+
+    /**
+     * Remembers that recursive queries of the given kind are not supported by the database of the session,
+     * such that subsequent queries directly use the level-by-level fallback.
+     * 
+     * @param queryKind The kind of recursive query.
+     * @param he    The exception raised by the recursive query.
+     */
+    private void recursiveQueryFailed(String queryKind, HibernateException he) {
+        fLogger.info("Recursive " + queryKind + " query not supported, falling back to level-by-level queries: " + he.getMessage());
+        try {
+            sUnsupportedRecursiveQueries.add(getDialectName() + HASH_DELIMITER + queryKind);
+        } catch (EvolizerException ee) {
+            fLogger.error("Error in recursiveQueryFailed " + ee.getMessage());
+        }
+    }
+
+    /**
+     * Returns the class name of the SQL dialect of the session.
+     * 
+     * @return  The dialect name.
+     * @throws EvolizerException
+     */
+    private String getDialectName() throws EvolizerException {
+        return ((SessionFactoryImplementor) getHibernateSession().getSessionFactory()).getDialect().getClass().getName();
+    }
+
+    /**
+     * Checks whether all entities have a Hibernate ID.
+     * 
+     * @param entities  The entities.
+     * @return  True, if all entities are stored.
+     */
+    private boolean haveIds(Collection<? extends AbstractFamixEntity> entities) {
+        for (AbstractFamixEntity entity : entities) {
+            if (entity.getId() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the Hibernate IDs of the entities.
+     * 
+     * @param entities  The entities.
+     * @return  The list of IDs.
+     */
+    private List<Long> getIds(Collection<? extends AbstractFamixEntity> entities) {
+        List<Long> ids = new ArrayList<Long>(entities.size());
+        for (AbstractFamixEntity entity : entities) {
+            ids.add(entity.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the distinct Hibernate IDs of the entities.
+     * 
+     * @param entities  The entities.
+     * @return  The set of IDs in the order of the entities.
+     */
+    private Set<Long> getDistinctIds(Collection<? extends AbstractFamixEntity> entities) {
+        Set<Long> ids = new LinkedHashSet<Long>(entities.size());
+        for (AbstractFamixEntity entity : entities) {
+            ids.add(entity.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Splits the list into chunks of at most {@link #ENTITY_CHUNK_SIZE} elements.
+     * 
+     * @param list  The list.
+     * @return  The chunks.
+     */
+    private static <E> List<List<E>> chunk(List<E> list) {
+        List<List<E>> chunks = new ArrayList<List<E>>();
+        for (int from = 0; from < list.size(); from += ENTITY_CHUNK_SIZE) {
+            chunks.add(list.subList(from, Math.min(from + ENTITY_CHUNK_SIZE, list.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Creates a criteria query on the given type, whose results are cached in the {@link #QUERY_CACHE_REGION}
+     * if the query cache is used and enabled for the session factory.
+     * 
+     * @param session   The Hibernate session.
+     * @param type  The queried type.
+     * @return  The criteria query.
+     */
+    private Criteria createCriteria(Session session, Class<?> type) {
+        Criteria criteria = session.createCriteria(type);
+        if (fUseQueryCache) {
+            criteria.setCacheable(true).setCacheRegion(QUERY_CACHE_REGION);
+        }
+        return criteria;
+    }
+
+    /**
+     * Sets whether the results of criteria queries are cached in the {@link #QUERY_CACHE_REGION}. Has
+     * no effect if the query cache is disabled for the session factory.
+     * 
+     * @param useQueryCache False to always query the database.
+     */
+    public void setUseQueryCache(boolean useQueryCache) {
+        fUseQueryCache = useQueryCache;
+    }
+
+    /**
+     * Returns the number of entities above which the associations of entities are queried by joining
+     * temporary tables holding the entity IDs.
+     * 
+     * @return  The temporary table threshold.
+     */
+    public int getTemporaryTableThreshold() {
+        return fTemporaryTableThreshold;
+    }
+
+    /**
+     * Sets the number of entities above which {@link #queryAssociationsOfEntities(Collection, Class, String)}
+     * and {@link #queryAssociationsBetweenEntities(List, Class)} join temporary tables holding the entity IDs.
+     * Collections of up to {@link #ENTITY_CHUNK_SIZE} entities are queried with one <code>IN</code> list,
+     * collections up to the threshold with chunks of <code>IN</code> lists whose results are merged.
+     * Temporary tables are not used within active transactions or if the database does not support them.
+     * 
+     * @param temporaryTableThreshold   The threshold, 0 to never use temporary tables.
+     */
+    public void setTemporaryTableThreshold(int temporaryTableThreshold) {
+        fTemporaryTableThreshold = temporaryTableThreshold;
+    }
+
+    /**
+     * Sets whether recursive SQL queries are used for transitive dependencies and descendants.
+     * 
+     * @param useRecursiveQueries   False to always use level-by-level queries.
+     */
+    public void setUseRecursiveQueries(boolean useRecursiveQueries) {
+        fUseRecursiveQueries = useRecursiveQueries;
+    }
+
+    /**
+     * Returns the maximum path length of transitive dependency queries and the maximum depth of
+     * descendant queries.
+     * 
+     * @return  The maximum recursion depth.
+     */
+    public int getMaxRecursionDepth() {
+        return fMaxRecursionDepth;
+    }
+
+    /**
+     * Sets the maximum path length of transitive dependency queries and the maximum depth of descendant
+     * queries. The recursive and the level-by-level queries apply the same bound, the descendant queries
+     * rely on it to terminate on corrupt (cyclic) parent references.
+     * 
+     * @param maxRecursionDepth The maximum recursion depth.
+     */
+    public void setMaxRecursionDepth(int maxRecursionDepth) {
+        fMaxRecursionDepth = maxRecursionDepth;
     }
 
     /**
      * Calculates associations of the given type between the given parent entities.
      * For each parent entity the descendants are determined. Then the associations between 
-     * between these sets of entities are computed. 
+     * these sets of entities are computed. 
+     * 
+     * The descendants of all stored parent entities are loaded with one set-at-a-time query (see
+     * {@link #queryDescendants(Collection, int)}) and attributed to their parent entities by following
+     * the parent references among the loaded entities. The associations between all descendants are
+     * queried with both ends restricted on the database, by joining temporary tables for more than
+     * {@link #ENTITY_CHUNK_SIZE} descendants, and are assigned to the pairs of parent entities in memory.
+     * Hence, the number of queries depends neither on the number of parent entities nor on the number of
+     * parent pairs. An association is returned once for each (unordered) pair of parent entities it connects.
      * 
      * @param entities  The list of parent entities.
      * @param associationType   The FAMIX association type.   
      * @return  A list of associations between the parent entities and their contained descendants.
      */
+    @SuppressWarnings("unchecked")
     public <T extends FamixAssociation> List<T> getAssociationsBetweenParentEntities(
             List<AbstractFamixEntity> entities, 
             Class<T> associationType) 
             throws EvolizerRuntimeException {
 
+        associationType = (associationType != null) ? associationType : (Class<T>) FamixAssociation.class;
+
+        Map<AbstractFamixEntity, List<AbstractFamixEntity>> parentsOfDescendants = getParentsOfDescendants(
+                new ArrayList<AbstractFamixEntity>(new LinkedHashSet<AbstractFamixEntity>(entities)));
+
         List<T> allAssociations = new ArrayList<T>();
+        List<AbstractFamixEntity> descendants = new ArrayList<AbstractFamixEntity>(parentsOfDescendants.keySet());
+        try {
+            List<T> associations;
+            Session session = getHibernateSession();
+            if (descendants.size() > ENTITY_CHUNK_SIZE && haveIds(descendants) && canUseTemporaryTable(session)) {
+                // chunks could not restrict the to-entities, temporary tables keep both ends on the database
+                associations = queryAssociationsOfManyEntitiesByTemporaryTable(session, getDistinctIds(descendants), associationType, "from", true);
+            } else {
+                associations = queryAssociationsBetweenEntities(descendants, associationType);
+            }
 
-        Hashtable<AbstractFamixEntity, List<AbstractFamixEntity>> entitySets = new Hashtable<AbstractFamixEntity, List<AbstractFamixEntity>>();
-        for (AbstractFamixEntity entity : entities) {
-            entitySets.put(entity, getDescendants(entity));
+            for (T association : associations) {
+                List<AbstractFamixEntity> fromParents = parentsOfDescendants.get(association.getFrom());
+                List<AbstractFamixEntity> toParents = parentsOfDescendants.get(association.getTo());
+                if (fromParents != null && toParents != null) {
+                    int nrOfParentPairs = countParentPairs(fromParents, toParents);
+                    for (int i = 0; i < nrOfParentPairs; i++) {
+                        allAssociations.add(association);
+                    }
+                }
+            }
+        } catch (HibernateException he) {
+            fLogger.error("Error in getAssociationsBetweenParentEntities " + he.getMessage());
+            throw new EvolizerRuntimeException("Error in getAssociationsBetweenParentEntities", he);
+        } catch (EvolizerException ee) {
+            fLogger.error("Error in getAssociationsBetweenParentEntities " + ee.getMessage());
+            throw new EvolizerRuntimeException("Error in getAssociationsBetweenParentEntities", ee);
         }
 
-        Set<AbstractFamixEntity> processedToParents = new HashSet<AbstractFamixEntity>();
-        for (AbstractFamixEntity fromParent : entitySets.keySet()) {
-            for (AbstractFamixEntity toParent : entitySets.keySet()) {
-                if (!fromParent.equals(toParent) && !processedToParents.contains(toParent)) {
-                    List<T> associations = queryAssociationsBetweenEntitySets(
-                            entitySets.get(fromParent), 
-                            entitySets.get(toParent), 
-                            associationType);
+        return allAssociations;
+    }
 
-                    allAssociations.addAll(associations);
+    /**
+     * Maps the descendants of the given parent entities, inclusive the parent entities, to the parent
+     * entities containing them. The descendants of stored parent entities are queried together and
+     * attributed to the parent entities via the parent references of the loaded descendants, which
+     * does not load further entities. Descendants of parent entities in the in-memory graph or without
+     * Hibernate ID are determined per parent entity without querying the database.
+     * 
+     * @param parents   The distinct parent entities.
+     * @return  The map of descendants to the parent entities containing them.
+     */
+    private Map<AbstractFamixEntity, List<AbstractFamixEntity>> getParentsOfDescendants(List<AbstractFamixEntity> parents) {
+        Map<AbstractFamixEntity, List<AbstractFamixEntity>> parentsOfDescendants = new HashMap<AbstractFamixEntity, List<AbstractFamixEntity>>();
+        if (fSession == null || !haveIds(parents) || (fGraph != null && fGraph.indexesOf(parents) != null)) {
+            for (AbstractFamixEntity parent : parents) {
+                for (AbstractFamixEntity descendant : getDescendants(parent)) {
+                    addParent(parentsOfDescendants, descendant, parent);
                 }
             }
-            processedToParents.add(fromParent);     // the query is bi-directional - queries for this fromParent can be skipped
+            return parentsOfDescendants;
         }
 
-        return allAssociations;
+        Map<Long, AbstractFamixEntity> parentsById = new HashMap<Long, AbstractFamixEntity>();
+        for (AbstractFamixEntity parent : parents) {
+            parentsById.put(parent.getId(), parent);
+        }
+        List<AbstractFamixEntity> descendants = queryDescendants(parents, UNLIMITED_DEPTH);
+        Map<Long, AbstractFamixEntity> descendantsById = new HashMap<Long, AbstractFamixEntity>();
+        for (AbstractFamixEntity descendant : descendants) {
+            descendantsById.put(descendant.getId(), descendant);
+        }
+        for (AbstractFamixEntity descendant : descendants) {
+            // the IDs of parent proxies are read without initializing them
+            AbstractFamixEntity ancestor = descendant;
+            for (int depth = 0; ancestor != null && depth <= fMaxRecursionDepth; depth++) {
+                AbstractFamixEntity parent = parentsById.get(ancestor.getId());
+                if (parent != null) {
+                    addParent(parentsOfDescendants, descendant, parent);
+                }
+                ancestor = (ancestor.getParent() != null) ? descendantsById.get(ancestor.getParent().getId()) : null;
+            }
+        }
+
+        return parentsOfDescendants;
+    }
+
+    /**
+     * Adds the parent entity to the parent entities of the given descendant.
+     * 
+     * @param parentsOfDescendants  The map of descendants to the parent entities containing them.
+     * @param descendant    The descendant.
+     * @param parent    The parent entity containing the descendant.
+     */
+    private void addParent(Map<AbstractFamixEntity, List<AbstractFamixEntity>> parentsOfDescendants,
+            AbstractFamixEntity descendant, AbstractFamixEntity parent) {
+        List<AbstractFamixEntity> parents = parentsOfDescendants.get(descendant);
+        if (parents == null) {
+            parents = new ArrayList<AbstractFamixEntity>(1);
+            parentsOfDescendants.put(descendant, parents);
+        }
+        if (!parents.contains(parent)) {
+            parents.add(parent);
+        }
+    }
+
+    /**
+     * Counts the unordered pairs of distinct parent entities connected by an association whose
+     * from-entity is contained by the from-parents and whose to-entity is contained by the to-parents.
+     * 
+     * @param fromParents   The parent entities of the from-entity.
+     * @param toParents The parent entities of the to-entity.
+     * @return  The number of pairs.
+     */
+    private int countParentPairs(List<AbstractFamixEntity> fromParents, List<AbstractFamixEntity> toParents) {
+        if (fromParents.size() == 1 && toParents.size() == 1) {
+            return fromParents.get(0).equals(toParents.get(0)) ? 0 : 1;
+        }
+
+        Set<Set<AbstractFamixEntity>> pairs = new HashSet<Set<AbstractFamixEntity>>();
+        for (AbstractFamixEntity fromParent : fromParents) {
+            for (AbstractFamixEntity toParent : toParents) {
+                if (!fromParent.equals(toParent)) {
+                    Set<AbstractFamixEntity> pair = new HashSet<AbstractFamixEntity>(2);
+                    pair.add(fromParent);
+                    pair.add(toParent);
+                    pairs.add(pair);
+                }
+            }
+        }
+        return pairs.size();
     }
 
     /**
@@ -401,6 +1380,15 @@ public class SnapshotAnalyzer {
         return parentEntities;
     }
 
+    /**
+     * Returns the in-memory graph of the model used instead of database queries.
+     * 
+     * @return the graph, or null if all queries go to the database.
+     */
+    public FamixGraph getGraph() {
+        return fGraph;
+    }
+
     /**
      * Returns the wrapped Hibernate session used when dealing with special
      * issues like Criteria, Restrictions, etc.
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.famix.model.utils;
+
+import java.nio.CharBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.evolizer.famix.model.entities.AbstractFamixEntity;
+import org.evolizer.famix.model.entities.FamixClass;
+import org.evolizer.famix.model.entities.FamixPackage;
+import org.evolizer.famix.model.entities.SourceAnchor;
+import org.evolizer.model.resources.entities.misc.Content;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
+
+/**
+ * Bounded cache of the source code of Java files. The source code of a file is stored with the content of its
+ * top-level FAMIX class and is loaded (and decompressed) once when first accessed. The source code of the entities in
+ * the file is returned as read-only {@link CharSequence} views of the range given by their source anchor, without
+ * copying the text.
+ *
+ * The source code is cached per hash of the source blob, which is immutable and shared by all classes with the same
+ * source code. Keying on the hash also hits for instances of the same blob loaded by different sessions.
+ * Least recently used files are evicted when the cached text exceeds the maximum number of characters.
+ *
+ * @author pinzger
+ */
+public class SourceCache {
+    /**
+     * Default maximum number of cached characters (about 32 MB of text).
+     */
+    public static final int DEFAULT_MAX_CHARS = 16 * 1024 * 1024;
+
+    /**
+     * The cache shared by the FAMIX entities.
+     */
+    private static final SourceCache sSharedCache = new SourceCache(DEFAULT_MAX_CHARS);
+
+    /**
+     * The cached source code by blob hash in least recently used order.
+     */
+    private LinkedHashMap<String, String> fSources;
+    /**
+     * Maximum number of cached characters.
+     */
+    private int fMaxChars;
+    /**
+     * Number of currently cached characters.
+     */
+    private long fNrOfCachedChars;
+    private long fNrOfHits;
+    private long fNrOfMisses;
+    private long fNrOfCharsRead;
+
+    /**
+     * The constructor.
+     *
+     * @param maxChars The maximum number of cached characters.
+     */
+    public SourceCache(int maxChars) {
+        fMaxChars = maxChars;
+        fSources = new LinkedHashMap<String, String>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cache shared by the FAMIX entities.
+     *
+     * @return The shared cache.
+     */
+    public static SourceCache getSharedCache() {
+        return sSharedCache;
+    }
+
+    /**
+     * Returns the source code of the given entity, i.e., the range of its source anchor in the source code of the
+     * Java file.
+     *
+     * @param entity The FAMIX entity.
+     * @return The view of the source code, empty if the entity has no source anchor or source code.
+     */
+    public CharSequence getSource(AbstractFamixEntity entity) {
+        SourceAnchor lAnchor = entity.getSourceAnchor();
+        Content lContent = (lAnchor != null) ? getTopLevelContent(entity) : null;
+        String lSource = (lContent != null) ? getSource(lContent) : null;
+        if (lSource == null) {
+            return "";
+        }
+        return CharBuffer.wrap(lSource, lAnchor.getStartPos(), lAnchor.getEndPos());
+    }
+
+    /**
+     * Returns the source code of the Java file that contains the given entity.
+     *
+     * @param entity The FAMIX entity.
+     * @return The source code of the Java file, empty if the entity has no source anchor or is not contained by a
+     *         top-level class, <code>null</code> if the top-level class has no source code.
+     */
+    public CharSequence getJavaFileSource(AbstractFamixEntity entity) {
+        Content lContent = (entity.getSourceAnchor() != null) ? getTopLevelContent(entity) : null;
+        if (lContent == null) {
+            return "";
+        }
+        return getSource(lContent);
+    }
+
+    /**
+     * Returns the content of the top-level class containing the given entity.
+     *
+     * @param entity The FAMIX entity.
+     * @return The content, or <code>null</code> if the entity is not contained by a top-level class.
+     */
+    private Content getTopLevelContent(AbstractFamixEntity entity) {
+        AbstractFamixEntity lTopLevelEntity = entity;
+        while ((lTopLevelEntity.getParent() != null) && !(lTopLevelEntity.getParent() instanceof FamixPackage)) {
+            lTopLevelEntity = lTopLevelEntity.getParent();
+        }
+        return (lTopLevelEntity instanceof FamixClass) ? lTopLevelEntity.getContent() : null;
+    }
+
+    /**
+     * Returns the source code of the content. Source code stored inline by previous versions is already in memory
+     * and returned directly, the source code of a source blob is cached.
+     *
+     * @param content The content.
+     * @return The source code, or <code>null</code>.
+     */
+    private String getSource(Content content) {
+        SourceBlob lBlob = content.getBlob();
+        if ((lBlob == null) || (lBlob.getHash() == null)) {
+            return content.getSource();
+        }
+        return getSource(lBlob, content);
+    }
+
+    /**
+     * Returns the cached source code of the blob, loads it from the content on a cache miss.
+     *
+     * @param blob The source blob.
+     * @param content The content referring to the blob.
+     * @return The source code.
+     */
+    private synchronized String getSource(SourceBlob blob, Content content) {
+        String lSource = fSources.get(blob.getHash());
+        if (lSource != null) {
+            fNrOfHits++;
+            return lSource;
+        }
+
+        fNrOfMisses++;
+        lSource = content.getSource();
+        if (lSource == null) {
+            return null;
+        }
+        fNrOfCharsRead += lSource.length();
+        if (lSource.length() <= fMaxChars) {
+            fSources.put(blob.getHash(), lSource);
+            fNrOfCachedChars += lSource.length();
+            evict();
+        }
+        return lSource;
+    }
+
+    /**
+     * Removes the least recently used source code until the cache is within its bounds.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, String>> lIterator = fSources.entrySet().iterator();
+        while ((fNrOfCachedChars > fMaxChars) && lIterator.hasNext()) {
+            fNrOfCachedChars -= lIterator.next().getValue().length();
+            lIterator.remove();
+        }
+    }
+
+    /**
+     * Removes all source code from the cache. The statistics are kept.
+     */
+    public synchronized void clear() {
+        fSources.clear();
+        fNrOfCachedChars = 0;
+    }
+
+    /**
+     * Returns the number of accesses served from the cache.
+     *
+     * @return The number of hits.
+     */
+    public synchronized long getNrOfHits() {
+        return fNrOfHits;
+    }
+
+    /**
+     * Returns the number of accesses that loaded the source code of a file.
+     *
+     * @return The number of misses.
+     */
+    public synchronized long getNrOfMisses() {
+        return fNrOfMisses;
+    }
+
+    /**
+     * Returns the number of characters loaded on cache misses.
+     *
+     * @return The number of characters read.
+     */
+    public synchronized long getNrOfCharsRead() {
+        return fNrOfCharsRead;
+    }
+
+    /**
+     * Returns the number of currently cached characters.
+     *
+     * @return The number of cached characters.
+     */
+    public synchronized long getNrOfCachedChars() {
+        return fNrOfCachedChars;
+    }
+}
@@ -174,4 +174,17 @@ public final class MetricStore {
         return strategy.calculateValue(entity, session); // TODO storage-template method in an abstract class that
         // implements IMetricCalculationStrategy?
     }
+
+    /**
+     * Returns the strategy registered to calculate a metric for entities of a given type.
+     * 
+     * @param metricIdentifier
+     *            a short identifier denoting the kind of metric (e.g., LOC).
+     * @param type
+     *            the type of the entities.
+     * @return the strategy, or <code>null</code> if the store does not know how to calculate the metric for the type.
+     */
+    public static IMetricCalculationStrategy getStrategy(String metricIdentifier, Class<?> type) {
+        return sRegisteredStrategies.get(new CompositeKey<String, Class<?>>(metricIdentifier, type));
+    }
 }
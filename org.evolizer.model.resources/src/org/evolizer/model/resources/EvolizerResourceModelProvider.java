@@ -22,6 +22,7 @@ import org.evolizer.model.resources.entities.fs.File;
 import org.evolizer.model.resources.entities.humans.Person;
 import org.evolizer.model.resources.entities.humans.Role;
 import org.evolizer.model.resources.entities.misc.Content;
+import org.evolizer.model.resources.entities.misc.SourceBlob;
 
 /**
  * This class collects all the implementors of {@link IEvolizerModelEntity} in this plug-in
@@ -34,7 +35,7 @@ public class EvolizerResourceModelProvider implements IEvolizerModelProvider {
      * {@inheritDoc}
      */
     public Class<?>[] getAnnotatedClasses() {
-        Class<?>[] annotatedClasses = {Directory.class, File.class, Person.class, Role.class, Content.class};
+        Class<?>[] annotatedClasses = {Directory.class, File.class, Person.class, Role.class, Content.class, SourceBlob.class};
 
         return annotatedClasses;
     }
@@ -17,16 +17,23 @@ package org.evolizer.model.resources.entities.misc;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
+import javax.persistence.ManyToOne;
 import javax.persistence.Transient;
 
 import org.evolizer.core.hibernate.model.api.IEvolizerModelEntity;
+import org.hibernate.annotations.Cascade;
+import org.hibernate.annotations.CascadeType;
 
 /**
  * Wrapper for e.g., source code. This is needed because Hibernate cannot load primitive data types and Strings lazily.
+ * The source text is kept in a {@link SourceBlob} that is shared by all contents with the same text. Contents stored
+ * before source blobs were introduced keep their text in the source column.
  * 
  * @author wuersch
  */
@@ -36,6 +43,8 @@ public class Content implements IEvolizerModelEntity {
     private Long fId;
     private String fDescriptor;
     private String fSource;
+    private String fStoredSource;
+    private SourceBlob fBlob;
 
     /**
      * Instantiates a new content.
@@ -83,24 +92,89 @@ public class Content implements IEvolizerModelEntity {
     }
 
     /**
-     * Returns the source.
+     * Returns the source. The text of a stored source blob is not kept by the content but decompressed on each
+     * access; callers that access the source repeatedly should cache it.
      * 
      * @return the source
      */
-    @Lob
-    @Column(length = 2000000000)
+    @Transient
     public String getSource() {
-        return fSource;
+        if (fSource != null) {
+            return fSource;
+        } else if (fStoredSource != null) {
+            return fStoredSource;
+        } else if (fBlob != null) {
+            return fBlob.getSource();
+        }
+        return null;
     }
 
     /**
-     * Sets the source.
+     * Returns true, if the content has a source. Other than {@link #getSource()} the source blob is not
+     * decompressed.
+     * 
+     * @return true, if the content has a source
+     */
+    @Transient
+    public boolean hasSource() {
+        return (fSource != null) || (fStoredSource != null) || (fBlob != null);
+    }
+
+    /**
+     * Sets the source. A new source blob is created for the text; the importer replaces it with an already stored
+     * blob of the same hash before storing.
      * 
      * @param source
      *            the new source
      */
     public void setSource(String source) {
         this.fSource = source;
+        this.fStoredSource = null;
+        this.fBlob = (source != null) ? new SourceBlob(source) : null;
+    }
+
+    /**
+     * Returns the source blob containing the source.
+     * 
+     * @return the source blob, or <code>null</code>
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "blob_id")
+    @Cascade(CascadeType.SAVE_UPDATE)
+    public SourceBlob getBlob() {
+        return fBlob;
+    }
+
+    /**
+     * Sets the source blob. The source blob should contain the current source, e.g., when sharing the blob of a
+     * compilation unit among its top-level types.
+     * 
+     * @param blob
+     *            the new source blob
+     */
+    public void setBlob(SourceBlob blob) {
+        this.fBlob = blob;
+    }
+
+    /**
+     * Returns the source stored inline by previous versions. Only used by Hibernate.
+     * 
+     * @return the inline source
+     */
+    @Lob
+    @Column(name = "source", length = 2000000000)
+    public String getStoredSource() {
+        return fStoredSource;
+    }
+
+    /**
+     * Sets the inline source. Only used by Hibernate.
+     * 
+     * @param storedSource
+     *            the inline source
+     */
+    public void setStoredSource(String storedSource) {
+        this.fStoredSource = storedSource;
     }
 
     /**
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2009 University of Zurich, Switzerland
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.evolizer.model.resources.entities.misc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Transient;
+
+import org.evolizer.core.exceptions.EvolizerRuntimeException;
+import org.evolizer.core.hibernate.model.api.IEvolizerModelEntity;
+import org.hibernate.annotations.Index;
+
+/**
+ * Compressed source text identified by the SHA-1 hash of its content. A source blob is immutable and shared by all
+ * {@link Content}s with the same text, such that each version of a file is stored once across all snapshots.
+ *
+ * @author pinzger
+ */
+@Entity
+public class SourceBlob implements IEvolizerModelEntity {
+
+    /**
+     * The encoding of the hashed and compressed source text.
+     */
+    private static final String ENCODING = "UTF-8";
+    /**
+     * The algorithm of the content hash.
+     */
+    private static final String HASH_ALGORITHM = "SHA-1";
+    /**
+     * Size of the buffer used to compress and decompress the source text.
+     */
+    private static final int BUFFER_SIZE = 8192;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private Long fId;
+    private String fHash;
+    private byte[] fData;
+    private int fSize;
+
+    /**
+     * Instantiates a new source blob. Used by Hibernate.
+     */
+    public SourceBlob() {
+        super();
+    }
+
+    /**
+     * Instantiates a new source blob containing the given source text.
+     *
+     * @param source
+     *            the source text
+     */
+    public SourceBlob(String source) {
+        byte[] lBytes = encode(source);
+        fHash = computeHash(lBytes);
+        fData = compress(lBytes);
+        fSize = lBytes.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    public Long getId() {
+        return fId;
+    }
+
+    /**
+     * Sets the id.
+     *
+     * @param id
+     *            the new id
+     */
+    public void setId(Long id) {
+        fId = id;
+    }
+
+    /**
+     * Returns the hex encoded SHA-1 hash of the source text.
+     *
+     * @return the hash
+     */
+    @Column(length = 40, nullable = false)
+    @Index(name = "SourceBlob_hash_idx")
+    public String getHash() {
+        return fHash;
+    }
+
+    /**
+     * Sets the hash.
+     *
+     * @param hash
+     *            the new hash
+     */
+    public void setHash(String hash) {
+        fHash = hash;
+    }
+
+    /**
+     * Returns the deflated source text.
+     *
+     * @return the compressed data
+     */
+    @Lob
+    @Column(length = 2000000000)
+    public byte[] getData() {
+        return fData;
+    }
+
+    /**
+     * Sets the compressed data.
+     *
+     * @param data
+     *            the new compressed data
+     */
+    public void setData(byte[] data) {
+        fData = data;
+    }
+
+    /**
+     * Returns the number of bytes of the uncompressed source text.
+     *
+     * @return the size
+     */
+    public int getSize() {
+        return fSize;
+    }
+
+    /**
+     * Sets the size.
+     *
+     * @param size
+     *            the new size
+     */
+    public void setSize(int size) {
+        fSize = size;
+    }
+
+    /**
+     * Returns the decompressed source text.
+     *
+     * @return the source text
+     */
+    @Transient
+    public String getSource() {
+        Inflater lInflater = new Inflater();
+        try {
+            byte[] lBytes = new byte[fSize];
+            lInflater.setInput(fData);
+            int lLength = 0;
+            while (lLength < fSize) {
+                int lInflated = lInflater.inflate(lBytes, lLength, fSize - lLength);
+                if ((lInflated == 0) && (lInflater.finished() || lInflater.needsInput())) {
+                    throw new EvolizerRuntimeException("Truncated source blob " + fHash);
+                }
+                lLength += lInflated;
+            }
+            return new String(lBytes, ENCODING);
+        } catch (DataFormatException dfe) {
+            throw new EvolizerRuntimeException("Corrupt source blob " + fHash, dfe);
+        } catch (UnsupportedEncodingException uee) {
+            throw new EvolizerRuntimeException("Encoding " + ENCODING + " not supported", uee);
+        } finally {
+            lInflater.end();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transient
+    public String getLabel() {
+        return fHash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Transient
+    public String getURI() {
+        return null;
+    }
+
+    /**
+     * Computes the hash under which the given source text is stored.
+     *
+     * @param source
+     *            the source text
+     * @return the hex encoded SHA-1 hash
+     */
+    public static String computeHash(String source) {
+        return computeHash(encode(source));
+    }
+
+    private static String computeHash(byte[] bytes) {
+        try {
+            byte[] lDigest = MessageDigest.getInstance(HASH_ALGORITHM).digest(bytes);
+            char[] lHex = new char[lDigest.length * 2];
+            for (int i = 0; i < lDigest.length; i++) {
+                lHex[2 * i] = HEX_DIGITS[(lDigest[i] >> 4) & 0xf];
+                lHex[2 * i + 1] = HEX_DIGITS[lDigest[i] & 0xf];
+            }
+            return new String(lHex);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new EvolizerRuntimeException("Hash algorithm " + HASH_ALGORITHM + " not supported", nsae);
+        }
+    }
+
+    private static byte[] encode(String source) {
+        try {
+            return source.getBytes(ENCODING);
+        } catch (UnsupportedEncodingException uee) {
+            throw new EvolizerRuntimeException("Encoding " + ENCODING + " not supported", uee);
+        }
+    }
+
+    private static byte[] compress(byte[] bytes) {
+        Deflater lDeflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            lDeflater.setInput(bytes);
+            lDeflater.finish();
+            ByteArrayOutputStream lOut = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+            byte[] lBuffer = new byte[BUFFER_SIZE];
+            while (!lDeflater.finished()) {
+                int lLength = lDeflater.deflate(lBuffer);
+                lOut.write(lBuffer, 0, lLength);
+            }
+            return lOut.toByteArray();
+        } finally {
+            lDeflater.end();
+        }
+    }
+}